@@ -23,12 +23,23 @@
  */
 package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
 
+import static edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityIndex.*;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Resource;
 
@@ -38,15 +49,17 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
 import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityIndex.Builder;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.AsyncBioportalRestService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
-import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.OntologyBean;
 import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.util.BioportalConstants;
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.NamedThreadFactory;
 
 /**
  * The Class IdentityConverter.
@@ -60,6 +73,9 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 
 	@Resource
 	private BioportalRestService bioportalRestService;
+	
+	@Resource
+	private AsyncBioportalRestService asyncBioportalRestService;
 
 	private static final String ABBREVIATION = "abbreviation";
 	private static final String ONTOLOGY_VERSION_ID = "id";
@@ -74,19 +90,15 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	protected static final String CODING_SCHEME = "codingScheme";
 	protected static final String ONTOLOGY_BEAN = "success.data.ontologyBean";
 	protected static final String STRING = "string";
+	
+	private static final String SNAPSHOT_FILE_NAME = "identity.snapshot";
+	
+	private IdentitySnapshot snapshot;
 
-	private Map<String,String> ontologyIdToCodeSystemName = new HashMap<String,String>();
-	private Map<String,String> ontologyIdToValueSetName = new HashMap<String,String>();
-	private Map<String,String> codeSystemNameToOntologyId = new HashMap<String,String>();
-	private Map<String,String> valueSetNameToOntologyId = new HashMap<String,String>();
-	private Map<String,String> nameToOntologyVersionId = new HashMap<String,String>();
-	private Map<String,String> ontologyVersionIdToName = new HashMap<String,String>();
-	private Map<String,String> codeSystemVersionNameToVersion = new HashMap<String,String>();
-	private Map<String,String> codeSystemNameToAbout = new HashMap<String,String>();
-	private Map<String,String> codeSystemAboutToName = new HashMap<String,String>();
-	private Map<String,String> valueSetNameToAbout = new HashMap<String,String>();
-	private Map<String,String> versionNameToName = new HashMap<String,String>();
-	private Map<String,String> codeSystemNameAndVersionIdToCodeSystemVersionName = new HashMap<String,String>();
+	private final AtomicReference<IdentityIndex> index = 
+		new AtomicReference<IdentityIndex>(IdentityIndex.EMPTY);
+	
+	private final AtomicLong staleCacheCallsAvoided = new AtomicLong();
 	
 	/**
 	 * The Enum NameType.
@@ -101,15 +113,117 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	public void afterPropertiesSet() throws Exception {
 		try {
 			this.bioportalRestService.addObserver(this);
-			this.cacheNameAndId();
+			this.snapshot = this.createSnapshot();
+			
+			if(this.loadSnapshot()){
+				this.startReconcile();
+			} else {
+				this.cacheNameAndId();
+				this.saveSnapshot();
+			}
 		} catch (Exception e) {
 			log.error("Error Starting BioPortal Service", e);
 		}
 	}
+	
+	/**
+	 * Creates the snapshot, stored next to the Bioportal response cache.
+	 *
+	 * @return the identity snapshot, or null if there is no cache path
+	 */
+	protected IdentitySnapshot createSnapshot() {
+		String cachePath = this.bioportalRestService.getCachePath();
+		
+		if(StringUtils.isBlank(cachePath)){
+			return null;
+		} else {
+			return new IdentitySnapshot(new File(cachePath, SNAPSHOT_FILE_NAME));
+		}
+	}
+	
+	/**
+	 * Load the index from the snapshot, if there is one.
+	 *
+	 * @return true, if loaded
+	 */
+	private boolean loadSnapshot() {
+		if(this.snapshot == null){
+			return false;
+		}
+		
+		Map<String,Map<String,String>> snapshotMaps = this.snapshot.read();
+		if(snapshotMaps == null){
+			return false;
+		}
+		
+		this.index.set(new Builder().putAll(snapshotMaps).build());
+		
+		log.info("Loaded " + this.index.get().size(ONTOLOGY_VERSION_ID_TO_NAME) + 
+				" ontology versions from " + this.snapshot.getFile() + ".");
+		
+		return true;
+	}
+	
+	/**
+	 * Write the current index to the snapshot.
+	 */
+	private void saveSnapshot() {
+		if(this.snapshot == null){
+			return;
+		}
+		
+		try {
+			this.snapshot.write(this.index.get().getMaps());
+		} catch (IOException e) {
+			log.warn("Error writing identity snapshot " + this.snapshot.getFile() + ".", e);
+		}
+	}
+	
+	/**
+	 * Publish changes made on top of the current index. If another update
+	 * was published in the meantime, the changes are re-applied to that.
+	 *
+	 * @param builder the builder holding the changes
+	 */
+	private void publish(Builder builder) {
+		IdentityIndex current;
+		do {
+			current = this.index.get();
+		} while(! this.index.compareAndSet(current, builder.buildOn(current)));
+	}
+	
+	/**
+	 * Gets the current index.
+	 *
+	 * @return the index
+	 */
+	protected IdentityIndex getIndex() {
+		return this.index.get();
+	}
+	
+	/**
+	 * Bring the maps loaded from the snapshot up to date with Bioportal,
+	 * in the background -- requests are served from the snapshot meanwhile.
+	 */
+	private void startReconcile() {
+		Thread thread = new NamedThreadFactory("bioportal-identity-reconcile").newThread(new Runnable(){
 
-	@Override
-	public void onApiKeyChange() {
-		this.cacheNameAndId();
+			public void run() {
+				try {
+					long start = System.currentTimeMillis();
+					
+					cacheNameAndId();
+					saveSnapshot();
+					
+					log.info("Reconciled identity snapshot in " + 
+							(System.currentTimeMillis() - start) + "ms.");
+				} catch (Exception e) {
+					log.error("Error reconciling identity snapshot", e);
+				}
+			}
+		});
+		
+		thread.start();
 	}
 
 	/**
@@ -119,7 +233,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	public String codeSystemAboutToName(String about){
-		return this.codeSystemAboutToName.get(about);
+		return this.index.get().get(CODE_SYSTEM_ABOUT_TO_NAME, about);
 	}
 
 	/**
@@ -129,7 +243,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	public String codeSystemNameToOntologyId(String codeSystemName){
-		return this.codeSystemNameToOntologyId.get(codeSystemName);
+		return this.index.get().get(CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, codeSystemName);
 	}
 	
 	/**
@@ -139,7 +253,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	public String valueSetNameToOntologyId(String valueSetName){
-		return this.valueSetNameToOntologyId.get(valueSetName);
+		return this.index.get().get(VALUE_SET_NAME_TO_ONTOLOGY_ID, valueSetName);
 	}
 	
 	/**
@@ -149,22 +263,24 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	public String ontologyIdToCodeSystemName(String ontologyId){
-		String codeSystemName = this.ontologyIdToCodeSystemName.get(ontologyId);
+		String codeSystemName = this.index.get().get(ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, ontologyId);
 		
 		if(StringUtils.isBlank(codeSystemName)){
 			log.warn("ResourceNameOrUri for ontologyId: " + ontologyId + " is blank. Checking Virtual Ids...");
 			
-			this.cacheNameAndIdByVirtualId(ontologyId);
-			this.cacheVersionNameAndOntologyVersionId(ontologyId);
+			Builder builder = new Builder(this.index.get());
+			this.cacheNameAndIdByVirtualId(ontologyId, builder);
+			this.cacheVersionNameAndOntologyVersionId(ontologyId, builder);
+			this.publish(builder);
 			
-			codeSystemName = this.ontologyIdToCodeSystemName.get(ontologyId);
+			codeSystemName = builder.get(ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, ontologyId);
 		}
 		
 		return codeSystemName;
 	}
 	
 	public Set<String> getAllCodeSystemOntologyIds(){
-		return this.ontologyIdToCodeSystemName.keySet();
+		return this.index.get().keySet(ONTOLOGY_ID_TO_CODE_SYSTEM_NAME);
 	}
 	
 	/**
@@ -174,15 +290,17 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	public String ontologyIdToValueSetName(String ontologyId){
-		String valueSetName = this.ontologyIdToValueSetName.get(ontologyId);
+		String valueSetName = this.index.get().get(ONTOLOGY_ID_TO_VALUE_SET_NAME, ontologyId);
 		
 		if(StringUtils.isBlank(valueSetName)){
 			log.warn("ResourceNameOrUri for ontologyId: " + ontologyId + " is blank. Checking Virtual Ids...");
 			
-			this.cacheNameAndIdByVirtualId(ontologyId);
-			this.cacheVersionNameAndOntologyVersionId(ontologyId);
+			Builder builder = new Builder(this.index.get());
+			this.cacheNameAndIdByVirtualId(ontologyId, builder);
+			this.cacheVersionNameAndOntologyVersionId(ontologyId, builder);
+			this.publish(builder);
 			
-			valueSetName = this.ontologyIdToCodeSystemName.get(ontologyId);
+			valueSetName = builder.get(ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, ontologyId);
 		}
 		
 		return valueSetName;
@@ -193,33 +311,33 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 *
 	 * @param xml the xml
 	 * @param type the type
+	 * @param builder the builder
 	 */
-	private void cachNameAndId(String xml, NameType type ) {
+	private void cachNameAndId(String xml, NameType type, Builder builder) {
+		
+		List<String> ontologyIds = new ArrayList<String>();
 		
-		Document document = BioportalRestUtils.getDocument(xml);
 		try {
 
-			List<Node> nodeList = TransformUtils.getNodeListWithPath(document, 
-			"success.data.list.ontologyBean");
+			List<OntologyBean> beanList = TransformUtils.getOntologyBeanList(xml);
 
-			for(Node node : nodeList){
+			for(OntologyBean bean : beanList){
 			
-				String name = buildName(node);
-				String ontologyId = TransformUtils.getNamedChildText(node, ONTOLOGY_ID);
+				String name = buildName(bean);
+				String ontologyId = bean.get(ONTOLOGY_ID);
 				
 				
 				
 				switch(type){
 					case VALUESET :{
-						this.valueSetNameToOntologyId.put(name, ontologyId);
-						this.ontologyIdToValueSetName.put(ontologyId, name);
+						builder.put(VALUE_SET_NAME_TO_ONTOLOGY_ID, name, ontologyId);
+						builder.put(ONTOLOGY_ID_TO_VALUE_SET_NAME, ontologyId, name);
 						//break;						//break;
 					} case CODESYSTEM :{
-						this.codeSystemNameToOntologyId.put(name, ontologyId);
-						this.ontologyIdToCodeSystemName.put(ontologyId, name);
+						builder.put(CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, name, ontologyId);
+						builder.put(ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, ontologyId, name);
 						
-						this.cacheVersionNameAndOntologyVersionId(ontologyId);
-						this.cacheCodeSystemAbout(ontologyId);
+						ontologyIds.add(ontologyId);
 						break;
 					}
 				}
@@ -227,34 +345,119 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 		} catch (Exception e) {
 			throw new Cts2RuntimeException(e);
 		}
+		
+		this.warmUp(ontologyIds, type, builder);
+	}
+	
+	/**
+	 * Cache the versions and 'about' of each ontology, in parallel on the
+	 * {@link AsyncBioportalRestService} pool. An ontology that fails is
+	 * logged and skipped -- it will be loaded lazily on first use instead.
+	 *
+	 * @param ontologyIds the ontology ids
+	 * @param type the type
+	 * @param builder the builder
+	 * @return the number of ontologies that failed
+	 */
+	private int warmUp(Collection<String> ontologyIds, NameType type, final Builder builder) {
+		final int total = ontologyIds.size();
+		final int logInterval = Math.max(1, total / 10);
+		final String description = type.toString().toLowerCase();
+		
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		
+		long start = System.currentTimeMillis();
+		
+		log.info("Warming up " + total + " " + description + " ontologies.");
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(final String ontologyId : ontologyIds){
+			tasks.add(new Callable<Void>(){
+
+				public Void call() throws Exception {
+					try {
+						cacheVersionNameAndOntologyVersionId(ontologyId, builder);
+						cacheCodeSystemAbout(ontologyId, builder);
+					} catch (Exception e) {
+						failed.incrementAndGet();
+						log.warn("Error warming up OntologyId: " + ontologyId + ". Skipping.", e);
+					} finally {
+						int done = completed.incrementAndGet();
+						if(done % logInterval == 0 && done < total){
+							log.info("Warmed up " + done + " of " + total + " " + description + " ontologies.");
+						}
+					}
+					
+					return null;
+				}
+			});
+		}
+		
+		this.runAll(tasks);
+		
+		log.info("Warmed up " + total + " " + description + " ontologies in " + 
+				(System.currentTimeMillis() - start) + "ms (" + failed.get() + " failed).");
+		
+		return failed.get();
 	}
 	
 	/**
-	 * Cache name and id.
+	 * Cache name and id. The index is rebuilt from scratch, off to the side,
+	 * and replaces the current one in a single swap once complete. Entries
+	 * published meanwhile (by lazy lookups) are re-applied to the rebuilt
+	 * index, so they are not lost.
 	 */
 	private void cacheNameAndId() {
+		IdentityIndex before = this.index.get();
+		
 		String codeSystemXml = this.bioportalRestService.getLatestOntologyVersions(true);
 		String valueSetXml = this.bioportalRestService.getLatestViews(true);
 
-		this.cachNameAndId(codeSystemXml, NameType.CODESYSTEM);
+		Builder builder = new Builder();
+		
+		this.cachNameAndId(codeSystemXml, NameType.CODESYSTEM, builder);
 
-		this.cachNameAndId(valueSetXml, NameType.VALUESET);
+		this.cachNameAndId(valueSetXml, NameType.VALUESET, builder);
+		
+		this.updateStaleCache(codeSystemXml, builder);
+		this.updateStaleCache(valueSetXml, builder);
+		
+		IdentityIndex rebuilt = builder.build();
 		
-		this.updateStaleCache(codeSystemXml);
-		this.updateStaleCache(valueSetXml);
+		IdentityIndex current;
+		do {
+			current = this.index.get();
+		} while(! this.index.compareAndSet(current, 
+				new Builder(rebuilt).putAll(current.changesSince(before)).build()));
 	}
 	
 	private void updateStaleCache(){
 		String codeSystemXml = this.bioportalRestService.getLatestOntologyVersions(true);
 		String valueSetXml = this.bioportalRestService.getLatestViews(true);
 		
-		this.updateStaleCache(codeSystemXml);
-		this.updateStaleCache(valueSetXml);
+		Builder builder = new Builder(this.index.get());
+		
+		this.updateStaleCache(codeSystemXml, builder);
+		this.updateStaleCache(valueSetXml, builder);
+		
+		this.publish(builder);
 	}
 	
-	private void updateStaleCache(String xml){
+	/**
+	 * Bring the cache up to date with an ontology listing. Only the ontologies
+	 * with a version that is not cached yet are refreshed, and those in parallel.
+	 * 
+	 * This used to probe every integer version id between the highest cached
+	 * and highest listed id -- most of which belong to other ontologies or do
+	 * not exist. The number of calls saved over that is logged and counted.
+	 *
+	 * @param xml the ontology listing xml
+	 * @param builder the builder
+	 */
+	private void updateStaleCache(String xml, final Builder builder){
 		int highestCachedVersionId = 0;
-		for(String ontologyVersionId : this.ontologyVersionIdToName.keySet()){
+		for(String ontologyVersionId : builder.keySet(ONTOLOGY_VERSION_ID_TO_NAME)){
 			int versionId = Integer.parseInt(ontologyVersionId);
 			if(highestCachedVersionId < versionId){
 				highestCachedVersionId = versionId;
@@ -263,28 +466,111 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 		
 		int highestFoundVersionId = this.getHighestVersionId(xml);
 		
-		if(highestFoundVersionId > highestCachedVersionId){
-			for(int i=highestCachedVersionId+1;i<=highestFoundVersionId;i++){
-				try { 
-					this.cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(Integer.toString(i));
+		int probeCalls = Math.max(0, highestFoundVersionId - highestCachedVersionId);
+		
+		final Map<String,String> staleVersionIdToOntologyId = new LinkedHashMap<String,String>();
+		for(OntologyBean bean : TransformUtils.getOntologyBeanList(xml)){
+			String ontologyVersionId = bean.get(ONTOLOGY_VERSION_ID);
+			
+			if(! builder.containsKey(ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId)){
+				staleVersionIdToOntologyId.put(ontologyVersionId, bean.get(ONTOLOGY_ID));
+			}
+		}
+		
+		if(staleVersionIdToOntologyId.isEmpty()){
+			this.staleCacheCallsAvoided.addAndGet(probeCalls);
+			return;
+		}
+		
+		final AtomicInteger calls = new AtomicInteger();
+		
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(final String ontologyId : new LinkedHashSet<String>(staleVersionIdToOntologyId.values())){
+			tasks.add(new Callable<Void>(){
+
+				public Void call() throws Exception {
+					calls.incrementAndGet();
+					try {
+						cacheVersionNameAndOntologyVersionId(ontologyId, true, builder);
+					} catch (Exception e) {
+						log.error("Error refreshing OntologyId: " + ontologyId, e);
+					}
+					
+					return null;
+				}
+			});
+		}
+		this.runAll(tasks);
+		
+		//anything the version lists did not cover is fetched by its own id
+		tasks.clear();
+		for(final String ontologyVersionId : staleVersionIdToOntologyId.keySet()){
+			if(! builder.containsKey(ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId)){
+				tasks.add(new Callable<Void>(){
+
+					public Void call() throws Exception {
+						calls.incrementAndGet();
+						try { 
+							cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(ontologyVersionId, builder);
+						} catch (Exception e) {
+							log.error("Error refreshing OntologyVersionId: " + ontologyVersionId, e);
+						}
+						
+						return null;
+					}
+				});
+			}
+		}
+		this.runAll(tasks);
+		
+		int avoided = Math.max(0, probeCalls - calls.get());
+		this.staleCacheCallsAvoided.addAndGet(avoided);
+		
+		log.info("Refreshed " + staleVersionIdToOntologyId.size() + " stale ontology versions with " + 
+				calls.get() + " calls (" + avoided + " calls avoided).");
+	}
+	
+	/**
+	 * Run the tasks in parallel on the {@link AsyncBioportalRestService} pool
+	 * (or one after another if there is none), and wait for all of them.
+	 *
+	 * @param tasks the tasks
+	 */
+	private void runAll(List<Callable<Void>> tasks) {
+		if(this.asyncBioportalRestService != null){
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for(Callable<Void> task : tasks){
+				futures.add(this.asyncBioportalRestService.submit(task));
+			}
+			for(Future<Void> future : futures){
+				AsyncBioportalRestService.getResult(future);
+			}
+		} else {
+			for(Callable<Void> task : tasks){
+				try {
+					task.call();
 				} catch (Exception e) {
-					log.error("Error Starting BioPortal Service", e);
+					throw new Cts2RuntimeException(e);
 				}
 			}
 		}
 	}
 	
+	/**
+	 * Gets the number of Bioportal calls the stale cache refresh avoided,
+	 * compared to probing every version id in the gap.
+	 *
+	 * @return the calls avoided
+	 */
+	public long getStaleCacheCallsAvoided() {
+		return this.staleCacheCallsAvoided.get();
+	}
+	
 	private int getHighestVersionId(String xml){
 		int highestVersionId = 0;
-		Document document = BioportalRestUtils.getDocument(xml);
-	
 
-		List<Node> nodeList = TransformUtils.getNodeListWithPath(document,
-				"success.data.list.ontologyBean");
-
-		for (Node node : nodeList) {
-			String ontologyVersionId = TransformUtils.getNamedChildText(node,
-					ONTOLOGY_VERSION_ID);
+		for (OntologyBean bean : TransformUtils.getOntologyBeanList(xml)) {
+			String ontologyVersionId = bean.get(ONTOLOGY_VERSION_ID);
 			
 			int versionId = Integer.parseInt(ontologyVersionId);
 			
@@ -300,26 +586,24 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * Cache name and id by virtual id.
 	 *
 	 * @param virtualId the virtual id
+	 * @param builder the builder
 	 */
-	private void cacheNameAndIdByVirtualId(String virtualId) {
+	private void cacheNameAndIdByVirtualId(String virtualId, Builder builder) {
 		try {
 			String xml = 
 				this.bioportalRestService.getLatestOntologyVersionByVirtualId(virtualId);
 
-			Document doc = BioportalRestUtils.getDocument(xml);
-
-			Node node = TransformUtils.getNamedChildWithPath(doc, 
-				"success.data.ontologyBean");
+			OntologyBean bean = TransformUtils.getOntologyBean(xml);
 
-			String name = buildName(node);
-				String ontologyId = TransformUtils.getNamedChildText(node, ONTOLOGY_ID);
+			String name = buildName(bean);
+			String ontologyId = bean.get(ONTOLOGY_ID);
 
-			if(BooleanUtils.toBoolean(TransformUtils.getNamedChildText(node, IS_VIEW))){
-				this.valueSetNameToOntologyId.put(name, ontologyId);
-				this.ontologyIdToValueSetName.put(ontologyId, name);
+			if(BooleanUtils.toBoolean(bean.get(IS_VIEW))){
+				builder.put(VALUE_SET_NAME_TO_ONTOLOGY_ID, name, ontologyId);
+				builder.put(ONTOLOGY_ID_TO_VALUE_SET_NAME, ontologyId, name);
 			} else {
-				this.codeSystemNameToOntologyId.put(name, ontologyId);
-				this.ontologyIdToCodeSystemName.put(ontologyId, name);
+				builder.put(CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, name, ontologyId);
+				builder.put(ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, ontologyId, name);
 			}
 
 		} catch (Exception e) {
@@ -334,7 +618,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */	
 	public String codeSystemVersionNameToVersion(String codeSystemVersionName) {		
-		String version = this.codeSystemVersionNameToVersion.get(codeSystemVersionName);
+		String version = this.index.get().get(CODE_SYSTEM_VERSION_NAME_TO_VERSION, codeSystemVersionName);
 		
 		//if there's no version, just return the full name
 		if(version == null){
@@ -358,28 +642,35 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			String ontologyId,
 			String ontologyVersionId){
 
-		if(! this.ontologyVersionIdToName.containsKey(ontologyVersionId)){
-			this.cacheVersionNameAndOntologyVersionId(ontologyId, true);
+		if(! this.index.get().containsKey(ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId)){
+			Builder builder = new Builder(this.index.get());
+			this.cacheVersionNameAndOntologyVersionId(ontologyId, true, builder);
 			
-			if(! this.ontologyVersionIdToName.containsKey(ontologyVersionId)){
-				this.cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(ontologyVersionId);
+			if(! builder.containsKey(ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId)){
+				this.cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(ontologyVersionId, builder);
 			}
+			
+			this.publish(builder);
+			
+			return builder.get(ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId);
 		}
 		
-		return this.ontologyVersionIdToName.get(ontologyVersionId);
+		return this.index.get().get(ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId);
 	}
 	
 	public String ontologyVersionIdToCodeSystemVersionName(
 			String ontologyVersionId){
 
-		if(! this.ontologyVersionIdToName.containsKey(ontologyVersionId)){
-		
-			if(! this.ontologyVersionIdToName.containsKey(ontologyVersionId)){
-				this.cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(ontologyVersionId);
-			}
+		if(! this.index.get().containsKey(ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId)){
+			Builder builder = new Builder(this.index.get());
+			this.cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(ontologyVersionId, builder);
+			
+			this.publish(builder);
+			
+			return builder.get(ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId);
 		}
 		
-		return this.ontologyVersionIdToName.get(ontologyVersionId);
+		return this.index.get().get(ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId);
 	}
 	
 	/**
@@ -405,24 +696,24 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	public String codeSystemVersionNameToOntologyVersionId(
 			String codeSystemVersionName){
 
-		if(! this.nameToOntologyVersionId.containsKey(codeSystemVersionName)){		
+		if(! this.index.get().containsKey(NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName)){		
 			this.updateStaleCache();
-			if(! this.nameToOntologyVersionId.containsKey(codeSystemVersionName)){		
+			if(! this.index.get().containsKey(NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName)){		
 				throw new RuntimeException("OntologyVersionId should be cached.");
 			}
 		}
 		
-		return this.nameToOntologyVersionId.get(codeSystemVersionName);
+		return this.index.get().get(NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName);
 	}
 	
 	public String codeSystemVersionNameCodeSystemName(
 			String codeSystemVersionName){
 
-		if(! this.nameToOntologyVersionId.containsKey(codeSystemVersionName)){	
+		if(! this.index.get().containsKey(NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName)){	
 			this.updateStaleCache();
 		}
 		
-		return this.versionNameToName.get(codeSystemVersionName);
+		return this.index.get().get(VERSION_NAME_TO_NAME, codeSystemVersionName);
 	}
 	
 	public String codeSystemNameAndVersionIdToCodeSystemVersionName(
@@ -450,11 +741,11 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			String codeSystemName,
 			String versionId){
 
-		if(! this.codeSystemNameAndVersionIdToCodeSystemVersionName.containsKey(
+		if(! this.index.get().containsKey(CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME,
 				this.createNameVersionIdKey(codeSystemName, versionId))){	
 			
 			//If the 'versionId' is the CodeSystemVersionName
-			if(this.codeSystemVersionNameToVersion.containsKey(versionId)){
+			if(this.index.get().containsKey(CODE_SYSTEM_VERSION_NAME_TO_VERSION, versionId)){
 				return versionId;
 			} else {
 				this.updateStaleCache();
@@ -462,7 +753,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			}
 		}
 
-		return this.codeSystemNameAndVersionIdToCodeSystemVersionName.get(
+		return this.index.get().get(CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME,
 				this.createNameVersionIdKey(codeSystemName, versionId));
 	}
 	
@@ -475,14 +766,14 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	public String valueSetDefinitionNameToOntologyVersionId(
 			String valueSetDefinitionName){
 
-		if(! this.nameToOntologyVersionId.containsKey(valueSetDefinitionName)){		
+		if(! this.index.get().containsKey(NAME_TO_ONTOLOGY_VERSION_ID, valueSetDefinitionName)){		
 			this.updateStaleCache();
-			if(! this.nameToOntologyVersionId.containsKey(valueSetDefinitionName)){	
+			if(! this.index.get().containsKey(NAME_TO_ONTOLOGY_VERSION_ID, valueSetDefinitionName)){	
 				throw new RuntimeException("OntologyVersionId should be cached.");
 			}
 		}
 		
-		return this.nameToOntologyVersionId.get(valueSetDefinitionName);
+		return this.index.get().get(NAME_TO_ONTOLOGY_VERSION_ID, valueSetDefinitionName);
 	}
 
 	
@@ -490,17 +781,14 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 		try {
 			String xml = this.bioportalRestService.getOntologyVersionsByOntologyId(ontologyId);
 
-			Document doc = BioportalRestUtils.getDocument(xml);
-
-			List<Node> nodeList = TransformUtils.getNodeListWithPath(doc, 
-			"success.data.list.ontologyBean");
+			List<OntologyBean> beanList = TransformUtils.getOntologyBeanList(xml);
 			
 			// We check to see if all the versions of an ontologyId has unique names. If they do, we
 			// use the version as the cts2 version, else we use the ontology version id as the version.
 			Set<String> version_set= new HashSet<String> ();
 			boolean unique_versions= true;
-            for(Node node : nodeList){				
-				String version = TransformUtils.getNamedChildText(node, VERSION);
+            for(OntologyBean bean : beanList){				
+				String version = bean.get(VERSION);
 				if (!version_set.contains(version)) {
 					version_set.add(version);
 				} else {
@@ -513,11 +801,11 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 		  }
 	}
 
-	private void cacheVersionNameAndOntologyVersionId(String ontologyId) {
-		this.cacheVersionNameAndOntologyVersionId(ontologyId, false);
+	private void cacheVersionNameAndOntologyVersionId(String ontologyId, Builder builder) {
+		this.cacheVersionNameAndOntologyVersionId(ontologyId, false, builder);
 	}
 	
-	private void cacheVersionNameAndOntologyVersionId(String ontologyId, boolean forceRefresh) {
+	private void cacheVersionNameAndOntologyVersionId(String ontologyId, boolean forceRefresh, Builder builder) {
 		try {
 			String xml;
 			try {
@@ -528,18 +816,15 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 				return;
 			}
 
-			Document doc = BioportalRestUtils.getDocument(xml);
-
-			List<Node> nodeList = TransformUtils.getNodeListWithPath(doc, 
-			"success.data.list.ontologyBean");
+			List<OntologyBean> beanList = TransformUtils.getOntologyBeanList(xml);
 			
 			// We check to see if all the versions of an ontologyId has unique names. If they do, we
 			// use the version as the cts2 version, else we use the ontology version id as the version.
 			Set<String> version_set= new HashSet<String> ();
 			Set<String> non_unique_version_set= new HashSet<String> ();
 			boolean unique_versions= true;
-            for(Node node : nodeList){				
-				String version = TransformUtils.getNamedChildText(node, VERSION);
+            for(OntologyBean bean : beanList){				
+				String version = bean.get(VERSION);
 				if (!version_set.contains(version)) {
 					version_set.add(version);
 				} else {
@@ -548,18 +833,18 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 				}				
 			}
 
-			for(Node node : nodeList){
-				this.doCacheVersionNode(node, unique_versions);
+			for(OntologyBean bean : beanList){
+				this.doCacheVersionNode(bean, unique_versions, builder);
 			}
 
 			if(!unique_versions){
-				Node node = nodeList.get(nodeList.size() - 1);
+				OntologyBean bean = beanList.get(beanList.size() - 1);
 				for(String nonUniqueVersion : non_unique_version_set){
-					String versionName = this.buildVersionName(node, unique_versions);
+					String versionName = this.buildVersionName(bean, unique_versions);
 					
-					this.codeSystemNameAndVersionIdToCodeSystemVersionName.put(
+					builder.put(CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME,
 							this.createNameVersionIdKey(
-									TransformUtils.getNamedChildText(node, ABBREVIATION), nonUniqueVersion),
+									bean.get(ABBREVIATION), nonUniqueVersion),
 							versionName);
 				}
 			}
@@ -569,23 +854,23 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 		}
 	}
 	
-	private void doCacheVersionNode(Node node, boolean unique_versions){
-		String ontologyVersionId = TransformUtils.getNamedChildText(node, ONTOLOGY_VERSION_ID);
-		String versionName = this.buildVersionName(node, unique_versions);
+	private void doCacheVersionNode(OntologyBean bean, boolean unique_versions, Builder builder){
+		String ontologyVersionId = bean.get(ONTOLOGY_VERSION_ID);
+		String versionName = this.buildVersionName(bean, unique_versions);
 
-		this.nameToOntologyVersionId.put(versionName, ontologyVersionId);
-		this.ontologyVersionIdToName.put(ontologyVersionId, versionName);
-		this.versionNameToName.put(versionName, this.buildName(node));
+		builder.put(NAME_TO_ONTOLOGY_VERSION_ID, versionName, ontologyVersionId);
+		builder.put(ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId, versionName);
+		builder.put(VERSION_NAME_TO_NAME, versionName, this.buildName(bean));
 		String version;
 		if (unique_versions) {
-		    version = TransformUtils.getNamedChildText(node, VERSION);
+		    version = bean.get(VERSION);
 		} else {
 			version= ontologyVersionId;
 		}
-		codeSystemVersionNameToVersion.put(versionName, version);
-		this.codeSystemNameAndVersionIdToCodeSystemVersionName.put(
+		builder.put(CODE_SYSTEM_VERSION_NAME_TO_VERSION, versionName, version);
+		builder.put(CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME,
 				this.createNameVersionIdKey(
-						TransformUtils.getNamedChildText(node, ABBREVIATION), version),
+						bean.get(ABBREVIATION), version),
 				versionName);
 	}
 	
@@ -597,16 +882,20 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * Cache code system about.
 	 *
 	 * @param ontologyId the ontology id
+	 * @param builder the builder
 	 */
-	private void cacheCodeSystemAbout(String ontologyId) {
+	private void cacheCodeSystemAbout(String ontologyId, Builder builder) {
 		try {
 			String xml = this.bioportalRestService.getLatestOntologyVersionByOntologyId(ontologyId);
 
-			String name = this.ontologyIdToCodeSystemName(ontologyId);
+			String name = builder.get(ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, ontologyId);
+			if(StringUtils.isBlank(name)){
+				name = this.ontologyIdToCodeSystemName(ontologyId);
+			}
 			
 			String about = this.getAboutFromXml(xml, name, BioportalConstants.DEFAULT_ONTOLOGY_ABOUT);
 			
-			this.codeSystemAboutToName.put(about, name);
+			builder.put(CODE_SYSTEM_ABOUT_TO_NAME, about, name);
 			
 		} catch (Exception e) {
 			throw new Cts2RuntimeException(e);
@@ -617,33 +906,32 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * Cache version name and ontology version id with ontology version id.
 	 *
 	 * @param ontologyVersionId the ontology version id
+	 * @param builder the builder
 	 */
-	private void cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(String ontologyVersionId) {
+	private void cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(String ontologyVersionId, Builder builder) {
 		try {
 			String xml = this.bioportalRestService.getOntologyByOntologyVersionId(ontologyVersionId);
 
-			Document doc = BioportalRestUtils.getDocument(xml);
-
-			Node node = TransformUtils.getNamedChildWithPath(doc, "success.data.ontologyBean");
+			OntologyBean bean = TransformUtils.getOntologyBean(xml);
 
-			String versionName = this.buildVersionName(node, false);
+			String versionName = this.buildVersionName(bean, false);
 
-			this.nameToOntologyVersionId.put(versionName, ontologyVersionId);
-			this.ontologyVersionIdToName.put(ontologyVersionId, versionName);
+			builder.put(NAME_TO_ONTOLOGY_VERSION_ID, versionName, ontologyVersionId);
+			builder.put(ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId, versionName);
 			
-			this.versionNameToName.put(versionName, this.buildName(node));
+			builder.put(VERSION_NAME_TO_NAME, versionName, this.buildName(bean));
 			
 			String version;
 			
-			if (this.hasUniqueVersions(TransformUtils.getNamedChildText(node, ONTOLOGY_ID))) {
-			    version = TransformUtils.getNamedChildText(node, VERSION);
+			if (this.hasUniqueVersions(bean.get(ONTOLOGY_ID))) {
+			    version = bean.get(VERSION);
 			} else {
 				version = ontologyVersionId;
 			}
-			codeSystemVersionNameToVersion.put(versionName, version);
-			this.codeSystemNameAndVersionIdToCodeSystemVersionName.put(
+			builder.put(CODE_SYSTEM_VERSION_NAME_TO_VERSION, versionName, version);
+			builder.put(CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME,
 					this.createNameVersionIdKey(
-							TransformUtils.getNamedChildText(node, ABBREVIATION), version),
+							bean.get(ABBREVIATION), version),
 					versionName);
 
 		} catch (Exception e) {
@@ -658,11 +946,31 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	public String buildName(Node node){
+		return this.buildName(
+				TransformUtils.getNamedChildText(node, ABBREVIATION), 
+				TransformUtils.getNamedChildText(node, DISPLAY_LABEL));
+	}
 
-			try {
+	/**
+	 * Builds the name.
+	 *
+	 * @param bean the ontology bean
+	 * @return the string
+	 */
+	public String buildName(OntologyBean bean){
+		return this.buildName(bean.get(ABBREVIATION), bean.get(DISPLAY_LABEL));
+	}
+
+	/**
+	 * Builds the name.
+	 *
+	 * @param abbreviation the abbreviation
+	 * @param displayLabel the display label
+	 * @return the string
+	 */
+	private String buildName(String abbreviation, String displayLabel){
 
-				String abbreviation = TransformUtils.getNamedChildText(node, ABBREVIATION);
-				String displayLabel = TransformUtils.getNamedChildText(node, DISPLAY_LABEL);
+			try {
 
 				if(StringUtils.isNotBlank(abbreviation)){
 					return abbreviation;
@@ -677,24 +985,36 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 				throw new Cts2RuntimeException(e);
 			}
 	}
-	
+
 	/**
 	 * Builds the version name.
 	 *
 	 * @param node the node
+	 * @param useVersion append the version to the name
 	 * @return the string
 	 */
 	private String buildVersionName(Node node, boolean useVersion){
+		return this.buildVersionName(OntologyBean.fromNode(node), useVersion);
+	}
+
+	/**
+	 * Builds the version name.
+	 *
+	 * @param bean the ontology bean
+	 * @param useVersion append the version to the name
+	 * @return the string
+	 */
+	private String buildVersionName(OntologyBean bean, boolean useVersion){
 
 		try {
-			String abbreviation = this.buildName(node);
+			String abbreviation = this.buildName(bean);
 		
-			String format = TransformUtils.getNamedChildText(node, FORMAT);
+			String format = bean.get(FORMAT);
 			String version;
 			if (useVersion) {
-				 version = TransformUtils.getNamedChildText(node, VERSION);
+				 version = bean.get(VERSION);
 			} else {			
-			   version = TransformUtils.getNamedChildText(node, ONTOLOGY_VERSION_ID);
+			   version = bean.get(ONTOLOGY_VERSION_ID);
 			}
 
 			StringBuffer sb = new StringBuffer();
@@ -720,11 +1040,33 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver#onCodeSystemsChangeEvent(java.util.List)
 	 */
 	public void onCodeSystemsChangeEvent(List<String> changedOntologyIds) {
-		this.cacheNameAndId();
+		final Builder builder = new Builder(this.index.get());
 		
-		for(String ontologyId : changedOntologyIds){
-			this.cacheVersionNameAndOntologyVersionId(ontologyId);
+		//only the changed ontologies are refreshed -- not a full rebuild
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(final String ontologyId : changedOntologyIds){
+			tasks.add(new Callable<Void>(){
+
+				public Void call() throws Exception {
+					try {
+						cacheNameAndIdByVirtualId(ontologyId, builder);
+						cacheVersionNameAndOntologyVersionId(ontologyId, builder);
+					} catch (Exception e) {
+						log.warn("Error refreshing changed OntologyId: " + ontologyId + ". Skipping.", e);
+					}
+					
+					return null;
+				}
+			});
 		}
+		this.runAll(tasks);
+		
+		this.publish(builder);
+		
+		//and any listed version still missing
+		this.updateStaleCache();
+		
+		this.saveSnapshot();
 	}
 	
 	/**
@@ -735,12 +1077,12 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 */
 	public String getUrn(String xml){
 		try {
-			Node node = TransformUtils.getNamedChildWithPath(BioportalRestUtils.getDocument(xml), ONTOLOGY_BEAN);
+			OntologyBean bean = TransformUtils.getOntologyBean(xml);
 
-			String urn = TransformUtils.getNamedChildText(node, URN);
+			String urn = bean.get(URN);
 
 			if(StringUtils.isBlank(urn)){
-				urn = TransformUtils.getNamedChildText(node, CODING_SCHEME);
+				urn = bean.get(CODING_SCHEME);
 			} 
 			
 			urn = StringUtils.trim(urn);
@@ -782,14 +1124,14 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	private String doGetAbout(String name, String defaultAboutPrefix, NameType type){
-		Map<String,String> map;
+		String mapName;
 		switch(type){
 			case CODESYSTEM: {
-				map = this.codeSystemNameToAbout;
+				mapName = CODE_SYSTEM_NAME_TO_ABOUT;
 				break;
 			}
 			case VALUESET: {
-				map = this.valueSetNameToAbout;
+				mapName = VALUE_SET_NAME_TO_ABOUT;
 				break;
 			}
 			default: {
@@ -797,7 +1139,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			}
 		}
 		
-		if(! map.containsKey(name)){
+		if(! this.index.get().containsKey(mapName, name)){
 			String ontologyId;
 				switch(type){
 				case CODESYSTEM: {
@@ -817,11 +1159,14 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			}
 			String xml = this.bioportalRestService.getLatestOntologyVersionByOntologyId(ontologyId);
 			
-			map.put(name, 
-					this.getAboutFromXml(xml, name, defaultAboutPrefix));
+			String about = this.getAboutFromXml(xml, name, defaultAboutPrefix);
+			
+			this.publish(new Builder().put(mapName, name, about));
+			
+			return about;
 		}
 		
-		return map.get(name);
+		return this.index.get().get(mapName, name);
 	}
 	
 	/**
@@ -868,19 +1213,10 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the file names
 	 */
 	private List<String> getFileNames(String xml){
-		List<String> returnList = new ArrayList<String>();
-		
-		Node node = TransformUtils.getNamedChildWithPath(BioportalRestUtils.getDocument(xml), ONTOLOGY_BEAN);
-		node = TransformUtils.getNamedChild(node, FILENAMES);
-		
-		for(Node stringNode : TransformUtils.getNodeList(node, STRING)){
-			returnList.add(TransformUtils.getNodeText(stringNode));
-		}
-
-		return returnList;
+		return TransformUtils.getOntologyBean(xml).getFilenames();
 	}
 	
 	public boolean isCachedCodeSystemVersionName(String codeSystemVersionName) {
-		return nameToOntologyVersionId.containsKey(codeSystemVersionName);
+		return this.index.get().containsKey(NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName);
 	}
 }
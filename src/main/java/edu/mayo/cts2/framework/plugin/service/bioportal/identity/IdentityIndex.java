@@ -0,0 +1,364 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.ObjectUtils;
+
+/**
+ * An immutable set of the name/ID maps used by the {@link IdentityConverter}.
+ * An index is never changed once built -- updates are made in a
+ * {@link Builder} and published as a whole new index, so readers never
+ * need to lock.
+ * <p>
+ * Small updates (a lazy lookup adds a handful of entries) are kept in a
+ * small set of recent entries on top of maps shared with the previous
+ * index, so publishing them does not copy the maps. The recent entries
+ * are merged into the maps once there are more than {@link #MAX_RECENT}.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public final class IdentityIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String ONTOLOGY_ID_TO_CODE_SYSTEM_NAME = "ontologyIdToCodeSystemName";
+	public static final String ONTOLOGY_ID_TO_VALUE_SET_NAME = "ontologyIdToValueSetName";
+	public static final String CODE_SYSTEM_NAME_TO_ONTOLOGY_ID = "codeSystemNameToOntologyId";
+	public static final String VALUE_SET_NAME_TO_ONTOLOGY_ID = "valueSetNameToOntologyId";
+	public static final String NAME_TO_ONTOLOGY_VERSION_ID = "nameToOntologyVersionId";
+	public static final String ONTOLOGY_VERSION_ID_TO_NAME = "ontologyVersionIdToName";
+	public static final String CODE_SYSTEM_VERSION_NAME_TO_VERSION = "codeSystemVersionNameToVersion";
+	public static final String CODE_SYSTEM_NAME_TO_ABOUT = "codeSystemNameToAbout";
+	public static final String CODE_SYSTEM_ABOUT_TO_NAME = "codeSystemAboutToName";
+	public static final String VALUE_SET_NAME_TO_ABOUT = "valueSetNameToAbout";
+	public static final String VERSION_NAME_TO_NAME = "versionNameToName";
+	public static final String CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME = 
+		"codeSystemNameAndVersionIdToCodeSystemVersionName";
+
+	protected static final int MAX_RECENT = 256;
+
+	public static final IdentityIndex EMPTY = new IdentityIndex(
+			Collections.<String,Map<String,String>>emptyMap(),
+			Collections.<String,Map<String,String>>emptyMap(), 
+			0);
+
+	private final Map<String,Map<String,String>> maps;
+
+	private final Map<String,Map<String,String>> recent;
+
+	private final int recentSize;
+
+	/*
+	 * The maps are not copied -- they are never changed once passed in,
+	 * and may be shared with other indexes.
+	 */
+	private IdentityIndex(
+			Map<String,Map<String,String>> maps, 
+			Map<String,Map<String,String>> recent, 
+			int recentSize){
+		super();
+		this.maps = maps;
+		this.recent = recent;
+		this.recentSize = recentSize;
+	}
+
+	/**
+	 * Look up a key.
+	 *
+	 * @param mapName the map name
+	 * @param key the key
+	 * @return the value, or null
+	 */
+	public String get(String mapName, String key) {
+		Map<String,String> recentMap = this.recent.get(mapName);
+		if(recentMap != null && recentMap.containsKey(key)){
+			return recentMap.get(key);
+		}
+
+		Map<String,String> map = this.maps.get(mapName);
+
+		return map != null ? map.get(key) : null;
+	}
+
+	/**
+	 * Contains key.
+	 *
+	 * @param mapName the map name
+	 * @param key the key
+	 * @return true, if successful
+	 */
+	public boolean containsKey(String mapName, String key) {
+		Map<String,String> recentMap = this.recent.get(mapName);
+		if(recentMap != null && recentMap.containsKey(key)){
+			return true;
+		}
+
+		Map<String,String> map = this.maps.get(mapName);
+
+		return map != null && map.containsKey(key);
+	}
+
+	/**
+	 * Gets the keys of one map.
+	 *
+	 * @param mapName the map name
+	 * @return the keys
+	 */
+	public Set<String> keySet(String mapName) {
+		Map<String,String> map = this.maps.get(mapName);
+		Map<String,String> recentMap = this.recent.get(mapName);
+
+		if(recentMap == null){
+			return map != null ? map.keySet() : Collections.<String>emptySet();
+		}
+
+		Set<String> keys = new HashSet<String>(recentMap.keySet());
+		if(map != null){
+			keys.addAll(map.keySet());
+		}
+
+		return Collections.unmodifiableSet(keys);
+	}
+
+	/**
+	 * Gets the number of entries in one map.
+	 *
+	 * @param mapName the map name
+	 * @return the size
+	 */
+	public int size(String mapName) {
+		return this.keySet(mapName).size();
+	}
+
+	/**
+	 * Gets all maps, keyed by name.
+	 *
+	 * @return the maps
+	 */
+	public Map<String,Map<String,String>> getMaps() {
+		if(this.recentSize == 0){
+			return this.maps;
+		} else {
+			return merge(this.maps, this.recent).maps;
+		}
+	}
+
+	/**
+	 * Gets the entries of this index that are not in (or differ from)
+	 * an earlier one -- those added since, as indexes only ever grow
+	 * between rebuilds.
+	 *
+	 * @param earlier the earlier index
+	 * @return the entries, keyed by map name
+	 */
+	public Map<String,Map<String,String>> changesSince(IdentityIndex earlier) {
+		Map<String,Map<String,String>> changes = new HashMap<String,Map<String,String>>();
+		if(earlier == this){
+			return changes;
+		}
+
+		//maps still shared with the earlier index can't hold changes
+		Map<String,Map<String,String>> candidates = 
+			this.maps == earlier.maps ? this.recent : this.getMaps();
+
+		for(Map.Entry<String,Map<String,String>> map : candidates.entrySet()){
+			for(Map.Entry<String,String> entry : map.getValue().entrySet()){
+				String mapName = map.getKey();
+				String key = entry.getKey();
+
+				if(! earlier.containsKey(mapName, key) || 
+						! ObjectUtils.equals(earlier.get(mapName, key), entry.getValue())){
+					Map<String,String> changed = changes.get(mapName);
+					if(changed == null){
+						changed = new HashMap<String,String>();
+						changes.put(mapName, changed);
+					}
+					changed.put(key, entry.getValue());
+				}
+			}
+		}
+
+		return changes;
+	}
+
+	/**
+	 * A new index, with the given entries added to (or replacing) those
+	 * of this one. Only the recent entries are copied, unless they have
+	 * grown too many and are merged into the maps.
+	 */
+	private IdentityIndex with(Map<String,Map<String,String>> changes) {
+		if(changes.isEmpty()){
+			return this;
+		}
+
+		int newRecentSize = this.recentSize;
+		for(Map<String,String> change : changes.values()){
+			newRecentSize += change.size();
+		}
+
+		Map<String,Map<String,String>> newRecent = 
+			new HashMap<String,Map<String,String>>(this.recent);
+		for(Map.Entry<String,Map<String,String>> change : changes.entrySet()){
+			newRecent.put(change.getKey(), putAll(this.recent.get(change.getKey()), change.getValue()));
+		}
+
+		if(newRecentSize > MAX_RECENT){
+			return merge(this.maps, newRecent);
+		} else {
+			return new IdentityIndex(this.maps, Collections.unmodifiableMap(newRecent), newRecentSize);
+		}
+	}
+
+	/*
+	 * An index of the maps with the entries added. Maps without added
+	 * entries are shared, not copied.
+	 */
+	private static IdentityIndex merge(
+			Map<String,Map<String,String>> maps, 
+			Map<String,Map<String,String>> entries) {
+		Map<String,Map<String,String>> newMaps = new HashMap<String,Map<String,String>>(maps);
+		for(Map.Entry<String,Map<String,String>> entry : entries.entrySet()){
+			newMaps.put(entry.getKey(), putAll(maps.get(entry.getKey()), entry.getValue()));
+		}
+
+		return new IdentityIndex(
+				Collections.unmodifiableMap(newMaps), 
+				Collections.<String,Map<String,String>>emptyMap(), 
+				0);
+	}
+
+	/*
+	 * An unmodifiable copy of a (possibly null) map, with the entries added.
+	 */
+	private static Map<String,String> putAll(Map<String,String> map, Map<String,String> entries) {
+		Map<String,String> copy = map != null ? 
+				new HashMap<String,String>(map) : new HashMap<String,String>();
+		copy.putAll(entries);
+
+		return Collections.unmodifiableMap(copy);
+	}
+
+	/**
+	 * Collects changes on top of a base index. Reads see the base index
+	 * plus any changes made so far. The builder may be shared by several
+	 * threads while an index is being built.
+	 */
+	public static class Builder {
+
+		private final IdentityIndex base;
+
+		private final Map<String,Map<String,String>> changes = new HashMap<String,Map<String,String>>();
+
+		/**
+		 * Instantiates a new builder for an index built from scratch.
+		 */
+		public Builder(){
+			this(EMPTY);
+		}
+
+		/**
+		 * Instantiates a new builder for changes to an existing index.
+		 *
+		 * @param base the base index
+		 */
+		public Builder(IdentityIndex base){
+			super();
+			this.base = base;
+		}
+
+		public synchronized Builder put(String mapName, String key, String value) {
+			Map<String,String> map = this.changes.get(mapName);
+			if(map == null){
+				map = new HashMap<String,String>();
+				this.changes.put(mapName, map);
+			}
+			map.put(key, value);
+
+			return this;
+		}
+
+		public synchronized Builder putAll(Map<String,Map<String,String>> maps) {
+			for(Map.Entry<String,Map<String,String>> map : maps.entrySet()){
+				for(Map.Entry<String,String> entry : map.getValue().entrySet()){
+					this.put(map.getKey(), entry.getKey(), entry.getValue());
+				}
+			}
+
+			return this;
+		}
+
+		public synchronized String get(String mapName, String key) {
+			Map<String,String> map = this.changes.get(mapName);
+			if(map != null && map.containsKey(key)){
+				return map.get(key);
+			}
+
+			return this.base.get(mapName, key);
+		}
+
+		public synchronized boolean containsKey(String mapName, String key) {
+			Map<String,String> map = this.changes.get(mapName);
+
+			return (map != null && map.containsKey(key)) || this.base.containsKey(mapName, key);
+		}
+
+		public synchronized Set<String> keySet(String mapName) {
+			Set<String> keys = new HashSet<String>(this.base.keySet(mapName));
+
+			Map<String,String> map = this.changes.get(mapName);
+			if(map != null){
+				keys.addAll(map.keySet());
+			}
+
+			return keys;
+		}
+
+		/**
+		 * Build the base index plus the changes.
+		 *
+		 * @return the identity index
+		 */
+		public IdentityIndex build() {
+			return this.buildOn(this.base);
+		}
+
+		/**
+		 * Apply the changes to another index -- used when the index has
+		 * been replaced since this builder was created.
+		 *
+		 * @param index the index
+		 * @return the identity index
+		 */
+		public synchronized IdentityIndex buildOn(IdentityIndex index) {
+			return index.with(this.changes);
+		}
+	}
+}
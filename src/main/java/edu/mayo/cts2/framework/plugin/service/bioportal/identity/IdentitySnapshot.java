@@ -0,0 +1,140 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.SnapshotFile;
+
+/**
+ * Reads and writes the {@link IdentityConverter} name/ID maps to a compact,
+ * gzipped file, so a restart does not have to rebuild them from Bioportal.
+ * 
+ * The file starts with a magic number and a format version -- a snapshot
+ * written in any other format is ignored, never partially loaded.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class IdentitySnapshot {
+
+	private static final Log log = LogFactory.getLog(IdentitySnapshot.class);
+
+	private static final int MAGIC = 0xB105A7ED;
+
+	protected static final int FORMAT_VERSION = 1;
+
+	private final SnapshotFile snapshotFile;
+
+	/**
+	 * Instantiates a new identity snapshot.
+	 *
+	 * @param file the snapshot file
+	 */
+	public IdentitySnapshot(File file){
+		super();
+		this.snapshotFile = new SnapshotFile(file, MAGIC, FORMAT_VERSION);
+	}
+
+	/**
+	 * Write the maps, replacing any existing snapshot. The snapshot is
+	 * written to a temporary file first, and only replaces the snapshot
+	 * once completely written, so a failure never leaves a half-written
+	 * snapshot behind.
+	 *
+	 * @param maps the maps, keyed by name
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void write(final Map<String,Map<String,String>> maps) throws IOException {
+		this.snapshotFile.write(new SnapshotFile.Writer(){
+
+			public void write(DataOutputStream out) throws IOException {
+				out.writeLong(System.currentTimeMillis());
+
+				out.writeInt(maps.size());
+				for(Map.Entry<String,Map<String,String>> map : maps.entrySet()){
+					out.writeUTF(map.getKey());
+					out.writeInt(map.getValue().size());
+
+					for(Map.Entry<String,String> entry : map.getValue().entrySet()){
+						SnapshotFile.writeString(out, entry.getKey());
+						SnapshotFile.writeString(out, entry.getValue());
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Read the maps.
+	 *
+	 * @return the maps keyed by name, or null if there is no usable snapshot
+	 */
+	public Map<String,Map<String,String>> read() {
+		return this.snapshotFile.read(new SnapshotFile.Reader<Map<String,Map<String,String>>>(){
+
+			public Map<String,Map<String,String>> read(DataInputStream in) throws IOException {
+				long written = in.readLong();
+
+				Map<String,Map<String,String>> maps = new HashMap<String,Map<String,String>>();
+
+				int mapCount = in.readInt();
+				for(int i=0;i<mapCount;i++){
+					String name = in.readUTF();
+					int size = in.readInt();
+
+					Map<String,String> map = new HashMap<String,String>();
+					for(int j=0;j<size;j++){
+						map.put(SnapshotFile.readString(in), SnapshotFile.readString(in));
+					}
+
+					maps.put(name, map);
+				}
+
+				log.info("Read identity snapshot written " + new Date(written) + ".");
+
+				return maps;
+			}
+		});
+	}
+
+	/**
+	 * Delete the snapshot.
+	 */
+	public void delete() {
+		this.snapshotFile.delete();
+	}
+
+	public File getFile() {
+		return this.snapshotFile.getFile();
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+import edu.mayo.cts2.framework.filter.match.AttributeResolver;
+import edu.mayo.cts2.framework.model.command.ResolvedFilter;
+import edu.mayo.cts2.framework.model.core.PropertyReference;
+import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference;
+
+/**
+ * An in-memory index over a fixed list of catalog entries, used to narrow
+ * down the entries a query could match before the (linear) directory
+ * builder matchers run on them.
+ * 
+ * Each indexed property gets an exact-match index, keyed by the trimmed,
+ * lower case value, and a trigram index. A 'contains' filter is narrowed to
+ * the entries having every trigram of every word of the match value. The
+ * candidates are always a superset of the real matches -- filters on
+ * properties or algorithms that are not indexed do not narrow anything.
+ *
+ * @param <T> the catalog entry type
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class CatalogIndex<T> {
+
+	private static final int GRAM_SIZE = 3;
+
+	private static final String EXACT_MATCH = 
+		StandardMatchAlgorithmReference.EXACT_MATCH.getMatchAlgorithmReference().getContent();
+
+	private static final String CONTAINS = 
+		StandardMatchAlgorithmReference.CONTAINS.getMatchAlgorithmReference().getContent();
+
+	private final List<T> entries;
+
+	private final Map<String,Map<String,BitSet>> exactIndexes = new HashMap<String,Map<String,BitSet>>();
+
+	private final Map<String,Map<String,BitSet>> gramIndexes = new HashMap<String,Map<String,BitSet>>();
+
+	/**
+	 * Instantiates a new catalog index.
+	 *
+	 * @param entries the entries
+	 * @param resolvers the attribute resolvers of the properties to index, 
+	 * keyed by property name
+	 */
+	public CatalogIndex(List<T> entries, Map<String,AttributeResolver<T>> resolvers){
+		super();
+		this.entries = Collections.unmodifiableList(new ArrayList<T>(entries));
+
+		for(Map.Entry<String,AttributeResolver<T>> resolver : resolvers.entrySet()){
+			Map<String,BitSet> exactIndex = new HashMap<String,BitSet>();
+			Map<String,BitSet> gramIndex = new HashMap<String,BitSet>();
+
+			for(int i=0;i<this.entries.size();i++){
+				Iterable<String> values = resolver.getValue().resolveAttribute(this.entries.get(i));
+				if(values == null){
+					continue;
+				}
+
+				for(String value : values){
+					String normalized = normalize(value);
+					if(normalized == null){
+						continue;
+					}
+
+					add(exactIndex, normalized, i);
+					for(String gram : getGrams(normalized)){
+						add(gramIndex, gram, i);
+					}
+				}
+			}
+
+			this.exactIndexes.put(resolver.getKey(), exactIndex);
+			this.gramIndexes.put(resolver.getKey(), gramIndex);
+		}
+	}
+
+	/**
+	 * Gets the entries that may match all of the filters, in catalog order.
+	 *
+	 * @param filters the filters
+	 * @return the candidates
+	 */
+	public List<T> getCandidates(Set<ResolvedFilter> filters) {
+		BitSet candidates = new BitSet(this.entries.size());
+		candidates.set(0, this.entries.size());
+
+		if(filters != null){
+			for(ResolvedFilter filter : filters){
+				BitSet filterCandidates = this.getCandidates(filter);
+				if(filterCandidates != null){
+					candidates.and(filterCandidates);
+				}
+			}
+		}
+
+		List<T> returnList = new ArrayList<T>(candidates.cardinality());
+		for(int i=candidates.nextSetBit(0);i>=0;i=candidates.nextSetBit(i+1)){
+			returnList.add(this.entries.get(i));
+		}
+
+		return returnList;
+	}
+
+	/**
+	 * The candidates for one filter, or null if the index can't narrow it.
+	 */
+	private BitSet getCandidates(ResolvedFilter filter) {
+		String property = getPropertyName(filter.getPropertyReference());
+		String value = normalize(filter.getMatchValue());
+
+		if(property == null || 
+				value == null ||
+				filter.getMatchAlgorithmReference() == null ||
+				! this.exactIndexes.containsKey(property)){
+			return null;
+		}
+
+		String algorithm = filter.getMatchAlgorithmReference().getContent();
+
+		if(StringUtils.equals(algorithm, EXACT_MATCH)){
+			BitSet match = this.exactIndexes.get(property).get(value);
+
+			return match != null ? match : new BitSet();
+		}
+
+		if(StringUtils.equals(algorithm, CONTAINS)){
+			Map<String,BitSet> gramIndex = this.gramIndexes.get(property);
+
+			BitSet candidates = null;
+			for(String word : StringUtils.split(value)){
+				for(String gram : getGrams(word)){
+					BitSet match = gramIndex.get(gram);
+					if(match == null){
+						return new BitSet();
+					}
+					if(candidates == null){
+						candidates = (BitSet) match.clone();
+					} else {
+						candidates.and(match);
+					}
+				}
+			}
+
+			return candidates;
+		}
+
+		return null;
+	}
+
+	public List<T> getEntries() {
+		return this.entries;
+	}
+
+	/**
+	 * Gets the name a property is indexed by.
+	 *
+	 * @param propertyReference the property reference
+	 * @return the property name
+	 */
+	public static String getPropertyName(PropertyReference propertyReference) {
+		if(propertyReference == null || propertyReference.getReferenceTarget() == null){
+			return null;
+		}
+
+		return propertyReference.getReferenceTarget().getName();
+	}
+
+	private static String normalize(String value) {
+		String trimmed = StringUtils.trimToNull(value);
+
+		return trimmed != null ? trimmed.toLowerCase() : null;
+	}
+
+	/**
+	 * The distinct trigrams of a string -- none if it is shorter than a trigram.
+	 */
+	private static Set<String> getGrams(String value) {
+		Set<String> grams = new LinkedHashSet<String>();
+		for(int i=0;i + GRAM_SIZE <= value.length();i++){
+			grams.add(value.substring(i, i + GRAM_SIZE));
+		}
+
+		return grams;
+	}
+
+	private static void add(Map<String,BitSet> index, String key, int position) {
+		BitSet bits = index.get(key);
+		if(bits == null){
+			bits = new BitSet();
+			index.put(key, bits);
+		}
+		bits.set(position);
+	}
+}
@@ -0,0 +1,476 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import edu.mayo.cts2.framework.model.command.Page;
+import edu.mayo.cts2.framework.model.command.ResolvedFilter;
+import edu.mayo.cts2.framework.model.core.PropertyReference;
+import edu.mayo.cts2.framework.plugin.service.bioportal.index.EntityTermIndex.Hit;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.LocalEntitySearch;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.PageInfo;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.StreamingPageReader;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.StreamingPageReader.StreamingPage;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.NamedThreadFactory;
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.SnapshotFile;
+import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference;
+
+/**
+ * Answers entity searches over the ontologies listed in the 
+ * 'localSearchOntologyIds' setting from local {@link EntityTermIndex}es,
+ * without calling Bioportal.
+ * 
+ * Each index is built in the background by paging through all entities
+ * of the latest ontology version, and is written under the cache path so
+ * a restart only rebuilds ontologies that have changed since. Until every
+ * requested ontology is indexed -- and for searches on definitions or 
+ * properties, which the entity listing doesn't carry -- searches are left
+ * to Bioportal.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+@Component
+public class EntitySearchIndex implements LocalEntitySearch, InitializingBean, DisposableBean, CacheObserver {
+
+	private static final Log log = LogFactory.getLog(EntitySearchIndex.class);
+
+	private static final String INDEX_DIRECTORY = "entity-index";
+
+	private static final int MAGIC = 0xB105E171;
+
+	protected static final int FORMAT_VERSION = 1;
+
+	private static final int BUILD_PAGE_SIZE = 500;
+
+	private static final long RETRY_DELAY = 60000L;
+
+	private static final String FULL_ID = "fullId";
+	private static final String ID = "id";
+	private static final String LABEL = "label";
+	private static final String ONTOLOGY_VERSION_ID = "id";
+
+	private static final String ENTITY_NODELIST = "success.data.page.contents.classBeanResultList.classBean";
+
+	@Resource
+	private BioportalRestService bioportalRestService;
+
+	private final ConcurrentMap<String,EntityTermIndex> indexes = 
+		new ConcurrentHashMap<String,EntityTermIndex>();
+
+	private final Set<String> building = 
+		Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+
+	private final ConcurrentMap<String,Long> failures = 
+		new ConcurrentHashMap<String,Long>();
+
+	private ExecutorService executorService;
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		this.executorService = Executors.newSingleThreadExecutor(
+				new NamedThreadFactory("bioportal-entity-index"));
+
+		this.bioportalRestService.addObserver(this);
+		this.bioportalRestService.setLocalEntitySearch(this);
+
+		for(String ontologyId : this.getConfiguredOntologyIds()){
+			this.scheduleBuild(ontologyId);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	public void destroy() throws Exception {
+		this.executorService.shutdownNow();
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver#onCodeSystemsChangeEvent(java.util.List)
+	 */
+	public void onCodeSystemsChangeEvent(List<String> changedOntologyIds) {
+		if(changedOntologyIds == null){
+			return;
+		}
+
+		Set<String> configured = this.getConfiguredOntologyIds();
+		for(String ontologyId : changedOntologyIds){
+			EntityTermIndex removed = this.indexes.remove(ontologyId);
+			if(removed != null){
+				FileUtils.deleteQuietly(this.getIndexFile(removed.getOntologyVersionId()));
+			}
+
+			this.failures.remove(ontologyId);
+			if(configured.contains(ontologyId)){
+				this.scheduleBuild(ontologyId);
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.LocalEntitySearch#search(java.util.Collection, edu.mayo.cts2.framework.model.command.ResolvedFilter, edu.mayo.cts2.framework.model.command.Page)
+	 */
+	public String search(Collection<String> ontologyIds, ResolvedFilter filter, Page page) {
+		if(CollectionUtils.isEmpty(ontologyIds) || ! isSupported(filter)){
+			return null;
+		}
+
+		Set<String> configured = this.getConfiguredOntologyIds();
+
+		List<EntityTermIndex> searchIndexes = new ArrayList<EntityTermIndex>();
+		for(String ontologyId : ontologyIds){
+			if(! configured.contains(ontologyId)){
+				return null;
+			}
+
+			EntityTermIndex index = this.indexes.get(ontologyId);
+			if(index == null){
+				this.scheduleBuild(ontologyId);
+				return null;
+			}
+
+			searchIndexes.add(index);
+		}
+
+		boolean exactMatch = isExactMatch(filter);
+
+		List<Hit> hits = new ArrayList<Hit>();
+		for(EntityTermIndex index : searchIndexes){
+			hits.addAll(index.search(filter.getMatchValue(), exactMatch));
+		}
+
+		if(searchIndexes.size() > 1){
+			Collections.sort(hits, EntityTermIndex.HIT_ORDER);
+		}
+
+		return toSearchXml(hits, page);
+	}
+
+	/**
+	 * Only 'contains' and 'exact match' on the entity's name or 
+	 * designation can be answered -- definitions and properties
+	 * aren't indexed.
+	 */
+	protected static boolean isSupported(ResolvedFilter filter) {
+		if(filter == null || StringUtils.isBlank(filter.getMatchValue())){
+			return false;
+		}
+
+		PropertyReference property = filter.getPropertyReference();
+		if(property != null && property.getReferenceTarget() != null){
+			String name = property.getReferenceTarget().getName();
+			if(StringUtils.equals(name, BioportalRestService.DEFINITIONS_NAME) ||
+					StringUtils.equals(name, BioportalRestService.PROPERTIES_NAME)){
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isExactMatch(ResolvedFilter filter) {
+		return filter.getMatchAlgorithmReference() != null &&
+			StringUtils.equals(
+				filter.getMatchAlgorithmReference().getContent(),
+				StandardMatchAlgorithmReference.EXACT_MATCH.getMatchAlgorithmReference().getContent());
+	}
+
+	/**
+	 * Write a page of hits as a Bioportal search response.
+	 *
+	 * @param hits the hits
+	 * @param page the page
+	 * @return the xml
+	 */
+	protected static String toSearchXml(List<Hit> hits, Page page) {
+		int pageSize = page.getMaxToReturn();
+		int start = Math.min(BioportalRestUtils.getStart(page), hits.size());
+		int end = Math.min(BioportalRestUtils.getEnd(page), hits.size());
+		int numPages = pageSize > 0 ? Math.max(1, (hits.size() + pageSize - 1) / pageSize) : 1;
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("<success><data><page>");
+		element(sb, "pageNum", Integer.toString(page.getPage() + 1));
+		element(sb, "numPages", Integer.toString(numPages));
+		element(sb, "pageSize", Integer.toString(pageSize));
+		element(sb, "numResultsPage", Integer.toString(end - start));
+		element(sb, "numResultsTotal", Integer.toString(hits.size()));
+		sb.append("<contents><searchResultList>");
+
+		for(Hit hit : hits.subList(start, end)){
+			sb.append("<searchBean>");
+			element(sb, "ontologyVersionId", hit.getOntologyVersionId());
+			element(sb, "ontologyId", hit.getOntologyId());
+			element(sb, "recordType", "apreferredname");
+			element(sb, "conceptId", hit.getFullId());
+			element(sb, "conceptIdShort", hit.getId());
+			element(sb, "preferredName", hit.getLabel());
+			element(sb, "contents", hit.getLabel());
+			sb.append("</searchBean>");
+		}
+
+		sb.append("</searchResultList></contents></page></data></success>");
+
+		return sb.toString();
+	}
+
+	private static void element(StringBuilder sb, String name, String text) {
+		sb.append('<').append(name).append('>');
+		sb.append(StringEscapeUtils.escapeXml(StringUtils.defaultString(text)));
+		sb.append("</").append(name).append('>');
+	}
+
+	/**
+	 * Gets the ontology ids configured for local search.
+	 *
+	 * @return the configured ontology ids
+	 */
+	protected Set<String> getConfiguredOntologyIds() {
+		Set<String> ontologyIds = new HashSet<String>();
+
+		String setting = this.bioportalRestService.getLocalSearchOntologyIds();
+		if(StringUtils.isNotBlank(setting)){
+			for(String ontologyId : StringUtils.split(setting, ", ")){
+				ontologyIds.add(ontologyId);
+			}
+		}
+
+		return ontologyIds;
+	}
+
+	private void scheduleBuild(final String ontologyId) {
+		Long failed = this.failures.get(ontologyId);
+		if(failed != null && System.currentTimeMillis() - failed < RETRY_DELAY){
+			return;
+		}
+
+		if(! this.building.add(ontologyId)){
+			return;
+		}
+
+		this.executorService.execute(new Runnable(){
+
+			public void run() {
+				try {
+					indexes.put(ontologyId, loadOrBuild(ontologyId));
+					failures.remove(ontologyId);
+				} catch (Exception e) {
+					log.warn("Could not index the entities of ontology: " + ontologyId, e);
+					failures.put(ontologyId, System.currentTimeMillis());
+				} finally {
+					building.remove(ontologyId);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Load the index of the latest version of an ontology from disk,
+	 * or build (and save) it if there isn't one.
+	 *
+	 * @param ontologyId the ontology id
+	 * @return the entity term index
+	 */
+	protected EntityTermIndex loadOrBuild(String ontologyId) {
+		String ontologyVersionId = TransformUtils.getOntologyBean(
+				this.bioportalRestService.getLatestOntologyVersionByOntologyId(ontologyId)).get(ONTOLOGY_VERSION_ID);
+
+		File file = this.getIndexFile(ontologyVersionId);
+
+		EntityTermIndex index = read(file);
+		if(index != null && StringUtils.equals(index.getOntologyId(), ontologyId)){
+			log.info("Loaded the entity index of ontology version: " + ontologyVersionId + 
+					" (" + index.size() + " entities).");
+
+			return index;
+		}
+
+		index = this.build(ontologyId, ontologyVersionId);
+
+		if(file != null){
+			try {
+				write(file, index);
+			} catch (IOException e) {
+				log.warn("Could not save the entity index: " + file, e);
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Build the index by paging through all entities of an ontology version.
+	 *
+	 * @param ontologyId the ontology id
+	 * @param ontologyVersionId the ontology version id
+	 * @return the entity term index
+	 */
+	protected EntityTermIndex build(String ontologyId, String ontologyVersionId) {
+		long start = System.currentTimeMillis();
+
+		EntityTermIndex.Builder builder = new EntityTermIndex.Builder(ontologyId, ontologyVersionId);
+
+		Page page = new Page();
+		page.setMaxToReturn(BUILD_PAGE_SIZE);
+
+		for(int pageNumber = 0;;pageNumber++){
+			page.setPage(pageNumber);
+
+			String xml = this.bioportalRestService.getAllEntitiesByOntologyVersionId(ontologyVersionId, page);
+
+			StreamingPage streamingPage = StreamingPageReader.read(
+					xml, ENTITY_NODELIST, 0, Integer.MAX_VALUE, FULL_ID, ID, LABEL);
+
+			for(Map<String,String> entry : streamingPage.getEntries()){
+				builder.add(entry.get(FULL_ID), entry.get(ID), entry.get(LABEL));
+			}
+
+			PageInfo pageInfo = streamingPage.getPageInfo();
+			if(streamingPage.getEntries().isEmpty() || pageInfo == null || pageInfo.isAtEnd(0)){
+				break;
+			}
+		}
+
+		EntityTermIndex index = builder.build();
+
+		log.info("Indexed " + index.size() + " entities (" + index.getTermCount() + " terms) of ontology version: " 
+				+ ontologyVersionId + " in " + (System.currentTimeMillis() - start) + " ms.");
+
+		return index;
+	}
+
+	private File getIndexFile(String ontologyVersionId) {
+		String cachePath = this.bioportalRestService.getCachePath();
+
+		if(StringUtils.isBlank(cachePath) || StringUtils.isBlank(ontologyVersionId)){
+			return null;
+		} else {
+			return new File(new File(cachePath, INDEX_DIRECTORY), ontologyVersionId + ".idx");
+		}
+	}
+
+	/**
+	 * Read a saved index.
+	 *
+	 * @param file the file
+	 * @return the entity term index, or null if there is no usable one
+	 */
+	protected static EntityTermIndex read(File file) {
+		if(file == null){
+			return null;
+		}
+
+		return new SnapshotFile(file, MAGIC, FORMAT_VERSION).read(new SnapshotFile.Reader<EntityTermIndex>(){
+
+			public EntityTermIndex read(DataInputStream in) throws IOException {
+				EntityTermIndex.Builder builder = new EntityTermIndex.Builder(in.readUTF(), in.readUTF());
+
+				int size = in.readInt();
+				for(int i=0;i<size;i++){
+					builder.add(
+							SnapshotFile.readString(in), 
+							SnapshotFile.readString(in), 
+							SnapshotFile.readString(in));
+				}
+
+				return builder.build();
+			}
+		});
+	}
+
+	/**
+	 * Save an index, replacing any existing one. The index is written
+	 * to a temporary file first, and only replaces the saved one once 
+	 * completely written, so a failure never leaves a half-written
+	 * index behind. Only the entities are saved -- the terms are 
+	 * re-derived when the index is read.
+	 *
+	 * @param file the file
+	 * @param index the index
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	protected static void write(File file, final EntityTermIndex index) throws IOException {
+		new SnapshotFile(file, MAGIC, FORMAT_VERSION).write(new SnapshotFile.Writer(){
+
+			public void write(DataOutputStream out) throws IOException {
+				out.writeUTF(index.getOntologyId());
+				out.writeUTF(index.getOntologyVersionId());
+
+				out.writeInt(index.size());
+				for(int i=0;i<index.size();i++){
+					SnapshotFile.writeString(out, index.getFullId(i));
+					SnapshotFile.writeString(out, index.getId(i));
+					SnapshotFile.writeString(out, index.getLabel(i));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Checks if an ontology is indexed and ready for search.
+	 *
+	 * @param ontologyId the ontology id
+	 * @return true, if indexed
+	 */
+	public boolean isIndexed(String ontologyId) {
+		return this.indexes.containsKey(ontologyId);
+	}
+
+	protected void putIndex(EntityTermIndex index) {
+		this.indexes.put(index.getOntologyId(), index);
+	}
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * An inverted index of the entities of one ontology version, keyed
+ * by the (lower cased, alphanumeric) terms of their labels and ids.
+ * 
+ * A 'contains' search matches entities having, for every query term, a
+ * term starting with it; an 'exact match' search matches entities whose
+ * normalized label or id equals the query. Hits are scored so exact 
+ * matches come first, then labels starting with the query, then the 
+ * rest -- shorter labels before longer ones.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class EntityTermIndex {
+
+	private static final char MAX_CHAR = Character.MAX_VALUE;
+
+	private final String ontologyId;
+
+	private final String ontologyVersionId;
+
+	private final String[] fullIds;
+
+	private final String[] ids;
+
+	private final String[] labels;
+
+	private final TreeMap<String,int[]> postings;
+
+	private EntityTermIndex(
+			String ontologyId,
+			String ontologyVersionId,
+			String[] fullIds,
+			String[] ids,
+			String[] labels,
+			TreeMap<String,int[]> postings){
+		super();
+		this.ontologyId = ontologyId;
+		this.ontologyVersionId = ontologyVersionId;
+		this.fullIds = fullIds;
+		this.ids = ids;
+		this.labels = labels;
+		this.postings = postings;
+	}
+
+	/**
+	 * Search the index.
+	 *
+	 * @param matchValue the match value
+	 * @param exactMatch true for an exact match, false for 'contains'
+	 * @return the hits, best first
+	 */
+	public List<Hit> search(String matchValue, boolean exactMatch) {
+		String query = normalize(matchValue);
+		List<String> terms = tokenize(query);
+
+		List<Hit> hits = new ArrayList<Hit>();
+		if(terms.isEmpty()){
+			return hits;
+		}
+
+		BitSet candidates = null;
+		for(String term : terms){
+			BitSet matches = exactMatch ? this.getExact(term) : this.getPrefixed(term);
+			if(candidates == null){
+				candidates = matches;
+			} else {
+				candidates.and(matches);
+			}
+		}
+
+		for(int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)){
+			String label = normalize(this.labels[i]);
+
+			if(exactMatch && 
+					! label.equals(query) && 
+					! normalize(this.ids[i]).equals(query)){
+				continue;
+			}
+
+			hits.add(new Hit(this, i, score(query, label)));
+		}
+
+		Collections.sort(hits, HIT_ORDER);
+
+		return hits;
+	}
+
+	private BitSet getExact(String term) {
+		BitSet bits = new BitSet(this.size());
+
+		int[] entities = this.postings.get(term);
+		if(entities != null){
+			for(int entity : entities){
+				bits.set(entity);
+			}
+		}
+
+		return bits;
+	}
+
+	private BitSet getPrefixed(String term) {
+		BitSet bits = new BitSet(this.size());
+
+		SortedMap<String,int[]> prefixed = this.postings.subMap(term, term + MAX_CHAR);
+		for(int[] entities : prefixed.values()){
+			for(int entity : entities){
+				bits.set(entity);
+			}
+		}
+
+		return bits;
+	}
+
+	/**
+	 * Score a hit: 3 for an exact label match, 2 for a label starting
+	 * with the query, 1 otherwise -- plus the fraction of the label
+	 * the query covers.
+	 */
+	protected static float score(String query, String label) {
+		float score;
+		if(label.equals(query)){
+			score = 3;
+		} else if(label.startsWith(query)){
+			score = 2;
+		} else {
+			score = 1;
+		}
+
+		if(label.length() > 0){
+			score += Math.min(1f, (float) query.length() / label.length());
+		}
+
+		return score;
+	}
+
+	/**
+	 * Lower case and collapse whitespace.
+	 */
+	protected static String normalize(String text) {
+		if(text == null){
+			return "";
+		}
+
+		return StringUtils.join(StringUtils.split(text.toLowerCase()), ' ');
+	}
+
+	/**
+	 * Split into lower cased alphanumeric terms.
+	 */
+	protected static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<String>();
+		if(text == null){
+			return terms;
+		}
+
+		String lowerCase = text.toLowerCase();
+
+		int start = -1;
+		for(int i=0;i<=lowerCase.length();i++){
+			boolean termChar = i < lowerCase.length() && 
+				Character.isLetterOrDigit(lowerCase.charAt(i));
+
+			if(termChar && start < 0){
+				start = i;
+			} else if(! termChar && start >= 0){
+				terms.add(lowerCase.substring(start, i));
+				start = -1;
+			}
+		}
+
+		return terms;
+	}
+
+	public String getOntologyId() {
+		return ontologyId;
+	}
+
+	public String getOntologyVersionId() {
+		return ontologyVersionId;
+	}
+
+	String getFullId(int entity) {
+		return this.fullIds[entity];
+	}
+
+	String getId(int entity) {
+		return this.ids[entity];
+	}
+
+	String getLabel(int entity) {
+		return this.labels[entity];
+	}
+
+	/**
+	 * Gets the number of indexed entities.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return this.fullIds.length;
+	}
+
+	/**
+	 * Gets the number of distinct terms.
+	 *
+	 * @return the term count
+	 */
+	public int getTermCount() {
+		return this.postings.size();
+	}
+
+	/**
+	 * Orders hits best score first, then by label and id.
+	 */
+	public static final Comparator<Hit> HIT_ORDER = new Comparator<Hit>(){
+
+		public int compare(Hit hit1, Hit hit2) {
+			int compare = Float.compare(hit2.score, hit1.score);
+			if(compare == 0){
+				compare = StringUtils.defaultString(hit1.getLabel()).compareToIgnoreCase(
+						StringUtils.defaultString(hit2.getLabel()));
+			}
+			if(compare == 0){
+				compare = StringUtils.defaultString(hit1.getId()).compareTo(
+						StringUtils.defaultString(hit2.getId()));
+			}
+
+			return compare;
+		}
+	};
+
+	/**
+	 * An entity matching a search, with its relevance score.
+	 */
+	public static class Hit {
+
+		private final EntityTermIndex index;
+
+		private final int entity;
+
+		private final float score;
+
+		private Hit(EntityTermIndex index, int entity, float score){
+			this.index = index;
+			this.entity = entity;
+			this.score = score;
+		}
+
+		public String getFullId() {
+			return this.index.fullIds[this.entity];
+		}
+
+		public String getId() {
+			return this.index.ids[this.entity];
+		}
+
+		public String getLabel() {
+			return this.index.labels[this.entity];
+		}
+
+		public String getOntologyId() {
+			return this.index.ontologyId;
+		}
+
+		public String getOntologyVersionId() {
+			return this.index.ontologyVersionId;
+		}
+
+		public float getScore() {
+			return score;
+		}
+	}
+
+	/**
+	 * Collects entities into an {@link EntityTermIndex}. Entities are
+	 * identified by their full id -- adding one twice keeps the first.
+	 */
+	public static class Builder {
+
+		private final String ontologyId;
+
+		private final String ontologyVersionId;
+
+		private final List<String> fullIds = new ArrayList<String>();
+
+		private final List<String> ids = new ArrayList<String>();
+
+		private final List<String> labels = new ArrayList<String>();
+
+		private final Set<String> seen = new HashSet<String>();
+
+		private final TreeMap<String,List<Integer>> postings = new TreeMap<String,List<Integer>>();
+
+		/**
+		 * Instantiates a new builder.
+		 *
+		 * @param ontologyId the ontology id
+		 * @param ontologyVersionId the ontology version id
+		 */
+		public Builder(String ontologyId, String ontologyVersionId){
+			super();
+			this.ontologyId = ontologyId;
+			this.ontologyVersionId = ontologyVersionId;
+		}
+
+		/**
+		 * Add an entity.
+		 *
+		 * @param fullId the full id (uri)
+		 * @param id the short id
+		 * @param label the label
+		 * @return true, if added
+		 */
+		public boolean add(String fullId, String id, String label) {
+			if(StringUtils.isBlank(fullId) || ! this.seen.add(fullId)){
+				return false;
+			}
+
+			int entity = this.fullIds.size();
+
+			this.fullIds.add(fullId);
+			this.ids.add(id);
+			this.labels.add(label);
+
+			this.addTerms(entity, label);
+			this.addTerms(entity, id);
+
+			return true;
+		}
+
+		private void addTerms(int entity, String text) {
+			for(String term : tokenize(text)){
+				List<Integer> entities = this.postings.get(term);
+				if(entities == null){
+					entities = new ArrayList<Integer>();
+					this.postings.put(term, entities);
+				}
+
+				if(entities.isEmpty() || entities.get(entities.size() - 1) != entity){
+					entities.add(entity);
+				}
+			}
+		}
+
+		/**
+		 * Gets the number of entities added so far.
+		 *
+		 * @return the size
+		 */
+		public int size() {
+			return this.fullIds.size();
+		}
+
+		/**
+		 * Build the index.
+		 *
+		 * @return the entity term index
+		 */
+		public EntityTermIndex build() {
+			TreeMap<String,int[]> postingArrays = new TreeMap<String,int[]>();
+			for(Map.Entry<String,List<Integer>> entry : this.postings.entrySet()){
+				List<Integer> entities = entry.getValue();
+
+				int[] array = new int[entities.size()];
+				for(int i=0;i<array.length;i++){
+					array[i] = entities.get(i);
+				}
+
+				postingArrays.put(entry.getKey(), array);
+			}
+
+			return new EntityTermIndex(
+					this.ontologyId,
+					this.ontologyVersionId,
+					this.fullIds.toArray(new String[this.fullIds.size()]),
+					this.ids.toArray(new String[this.ids.size()]),
+					this.labels.toArray(new String[this.labels.size()]),
+					postingArrays);
+		}
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.AsyncBioportalRestService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver;
+import edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.ValueSetDirectoryBuilder.ValueSetCodeSystemExtractor;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.OntologyBean;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils;
+
+/**
+ * A bidirectional index of the code systems each value set (Bioportal view)
+ * is a view on. 
+ * 
+ * The index is built from the views listing the first time it is needed, 
+ * resolving the viewed ontology versions in parallel, and is dropped (to be 
+ * rebuilt on next use) whenever the code systems change. A 'codesystem' 
+ * value set restriction then becomes a map lookup instead of a round of 
+ * Bioportal calls per candidate value set.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+@Component
+public class ValueSetCodeSystemIndex implements ValueSetCodeSystemExtractor, InitializingBean, CacheObserver {
+
+	private static final Log log = LogFactory.getLog(ValueSetCodeSystemIndex.class);
+
+	private static final String ONTOLOGY_ID = "ontologyId";
+
+	@Resource
+	private BioportalRestService bioportalRestService;
+
+	@Resource
+	private AsyncBioportalRestService asyncBioportalRestService;
+
+	@Resource
+	private IdentityConverter identityConverter;
+
+	private volatile Mapping mapping;
+
+	private final Object buildLock = new Object();
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		this.bioportalRestService.addObserver(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver#onCodeSystemsChangeEvent(java.util.List)
+	 */
+	public void onCodeSystemsChangeEvent(List<String> changedOntologyIds) {
+		this.mapping = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.ValueSetDirectoryBuilder.ValueSetCodeSystemExtractor#getCodeSystemsOfValueSet(java.lang.String)
+	 */
+	public Set<String> getCodeSystemsOfValueSet(String valueSetName) {
+		return get(this.getMapping().valueSetToCodeSystems, valueSetName);
+	}
+
+	/**
+	 * Gets the value sets that are views on a code system.
+	 *
+	 * @param codeSystemName the code system name
+	 * @return the value sets of the code system
+	 */
+	public Set<String> getValueSetsOfCodeSystem(String codeSystemName) {
+		return get(this.getMapping().codeSystemToValueSets, codeSystemName);
+	}
+
+	private static Set<String> get(Map<String,Set<String>> map, String key){
+		Set<String> values = map.get(key);
+
+		return values != null ? Collections.unmodifiableSet(values) : Collections.<String>emptySet();
+	}
+
+	private Mapping getMapping() {
+		Mapping current = this.mapping;
+		if(current == null){
+			synchronized(this.buildLock){
+				current = this.mapping;
+				if(current == null){
+					current = this.buildMapping();
+
+					//one built with failures is used once, then rebuilt
+					if(current.complete){
+						this.mapping = current;
+					}
+				}
+			}
+		}
+
+		return current;
+	}
+
+	/**
+	 * Build the mapping from the views listing. Views that can't be 
+	 * resolved are logged and left out rather than failing the build,
+	 * and the mapping is marked incomplete, so it isn't kept.
+	 *
+	 * @return the mapping
+	 */
+	protected Mapping buildMapping() {
+		long start = System.currentTimeMillis();
+
+		String xml = this.bioportalRestService.getLatestViews();
+
+		final Map<String,List<String>> valueSetToVersionIds = 
+			new ConcurrentHashMap<String,List<String>>();
+
+		final AtomicInteger failures = new AtomicInteger();
+
+		List<Callable<Void>> viewTasks = new ArrayList<Callable<Void>>();
+		for(final OntologyBean bean : TransformUtils.getOntologyBeanList(xml)){
+			final String ontologyId = bean.get(ONTOLOGY_ID);
+			if(StringUtils.isBlank(ontologyId)){
+				continue;
+			}
+
+			viewTasks.add(new Callable<Void>(){
+
+				public Void call() throws Exception {
+					try {
+						String valueSetName = identityConverter.ontologyIdToValueSetName(ontologyId);
+
+						List<String> versionIds = bean.getViewOnOntologyVersionIds();
+						if(versionIds.isEmpty()){
+							versionIds = TransformUtils.getOntologyBean(
+								bioportalRestService.getLatestOntologyVersionByOntologyId(ontologyId)).
+									getViewOnOntologyVersionIds();
+						}
+
+						valueSetToVersionIds.put(valueSetName, versionIds);
+					} catch (Exception e) {
+						failures.incrementAndGet();
+						log.warn("Could not resolve the code systems of view: " + ontologyId, e);
+					}
+
+					return null;
+				}
+			});
+		}
+
+		this.runAll(viewTasks);
+
+		Set<String> versionIds = new HashSet<String>();
+		for(List<String> ids : valueSetToVersionIds.values()){
+			for(String id : ids){
+				if(StringUtils.isNotBlank(id)){
+					versionIds.add(id);
+				}
+			}
+		}
+
+		final Map<String,String> versionIdToCodeSystem = new ConcurrentHashMap<String,String>();
+
+		List<Callable<Void>> versionTasks = new ArrayList<Callable<Void>>();
+		for(final String ontologyVersionId : versionIds){
+			versionTasks.add(new Callable<Void>(){
+
+				public Void call() throws Exception {
+					try {
+						String versionXml = bioportalRestService.getOntologyByOntologyVersionId(ontologyVersionId);
+
+						versionIdToCodeSystem.put(ontologyVersionId, 
+							identityConverter.buildName(TransformUtils.getOntologyBean(versionXml)));
+					} catch (Exception e) {
+						failures.incrementAndGet();
+						log.warn("Could not resolve ontology version: " + ontologyVersionId, e);
+					}
+
+					return null;
+				}
+			});
+		}
+
+		this.runAll(versionTasks);
+
+		Mapping newMapping = new Mapping(failures.get() == 0);
+		for(Map.Entry<String,List<String>> entry : valueSetToVersionIds.entrySet()){
+			for(String ontologyVersionId : entry.getValue()){
+				String codeSystemName = versionIdToCodeSystem.get(ontologyVersionId);
+				if(codeSystemName != null){
+					newMapping.add(entry.getKey(), codeSystemName);
+				}
+			}
+		}
+
+		log.info("Indexed the code systems of " + valueSetToVersionIds.size() + " value sets in " 
+				+ (System.currentTimeMillis() - start) + " ms" + 
+				(newMapping.complete ? "." : " (" + failures.get() + " failed, will rebuild)."));
+
+		return newMapping;
+	}
+
+	private void runAll(List<Callable<Void>> tasks) {
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for(Callable<Void> task : tasks){
+			futures.add(this.asyncBioportalRestService.submit(task));
+		}
+		for(Future<Void> future : futures){
+			AsyncBioportalRestService.getResult(future);
+		}
+	}
+
+	/**
+	 * The value set to code system names mapping, in both directions.
+	 */
+	protected static class Mapping {
+
+		private final boolean complete;
+
+		private final Map<String,Set<String>> valueSetToCodeSystems = new HashMap<String,Set<String>>();
+
+		private final Map<String,Set<String>> codeSystemToValueSets = new HashMap<String,Set<String>>();
+
+		/**
+		 * Instantiates a new mapping.
+		 *
+		 * @param complete false, if built with failures
+		 */
+		protected Mapping(boolean complete){
+			super();
+			this.complete = complete;
+		}
+
+		protected void add(String valueSetName, String codeSystemName){
+			put(this.valueSetToCodeSystems, valueSetName, codeSystemName);
+			put(this.codeSystemToValueSets, codeSystemName, valueSetName);
+		}
+
+		private static void put(Map<String,Set<String>> map, String key, String value){
+			Set<String> values = map.get(key);
+			if(values == null){
+				values = new HashSet<String>();
+				map.put(key, values);
+			}
+			values.add(value);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.profile.association;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import edu.mayo.cts2.framework.model.association.GraphNode;
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.AsyncBioportalRestService;
+
+/**
+ * Expands an association graph breadth-first from a focus entity.
+ * 
+ * Each level of the graph is fetched concurrently, one entity per task.
+ * An entity is only expanded once, however many paths lead to it, and an 
+ * association reached from both of its ends is only listed once. Nodes are
+ * numbered in the order they are found, so the nodes of one level always
+ * come before those of the next.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class AssociationGraphTraversal {
+
+	/**
+	 * The associations of an entity, as graph nodes of the related entities.
+	 */
+	public interface NeighbourSource {
+
+		/**
+		 * Gets the neighbours of an entity.
+		 *
+		 * @param entityUri the entity uri
+		 * @return the neighbours
+		 */
+		public List<GraphNode> getNeighbours(String entityUri);
+	}
+
+	private final NeighbourSource neighbourSource;
+
+	private final AsyncBioportalRestService asyncBioportalRestService;
+
+	private final int fanOutLimit;
+
+	/**
+	 * Instantiates a new association graph traversal.
+	 *
+	 * @param neighbourSource the neighbour source
+	 * @param asyncBioportalRestService the executor for the level fetches, or null to fetch inline
+	 * @param fanOutLimit the most neighbours followed from any one entity, 0 for no limit
+	 */
+	public AssociationGraphTraversal(
+			NeighbourSource neighbourSource,
+			AsyncBioportalRestService asyncBioportalRestService,
+			int fanOutLimit){
+		super();
+		this.neighbourSource = neighbourSource;
+		this.asyncBioportalRestService = asyncBioportalRestService;
+		this.fanOutLimit = fanOutLimit;
+	}
+
+	/**
+	 * Traverse the graph.
+	 *
+	 * @param focusUri the uri of the focus entity, if known
+	 * @param focusNeighbours the neighbours of the focus entity (the first level)
+	 * @param depth the number of levels to traverse, at least 1
+	 * @return the graph nodes, numbered
+	 */
+	public List<GraphNode> traverse(String focusUri, List<GraphNode> focusNeighbours, long depth) {
+		if(depth < 1){
+			throw new IllegalArgumentException("Depth must be at least '1'.");
+		}
+
+		List<GraphNode> graph = new ArrayList<GraphNode>();
+
+		Set<String> visited = new HashSet<String>();
+		if(focusUri != null){
+			visited.add(focusUri);
+		}
+
+		Set<String> associations = new HashSet<String>();
+
+		List<GraphNode> level = this.limit(focusNeighbours);
+
+		for(long levelNumber = 1; ! level.isEmpty(); levelNumber++){
+			List<String> frontier = new ArrayList<String>();
+
+			for(GraphNode node : level){
+				if(! associations.add(getAssociationKey(node))){
+					continue;
+				}
+
+				node.setNodeNumber((long) graph.size());
+				node.setNextNodeNumber((long) graph.size() + 1);
+				graph.add(node);
+
+				String uri = getNodeUri(node);
+				if(levelNumber < depth && uri != null && visited.add(uri)){
+					frontier.add(uri);
+				}
+			}
+
+			level = new ArrayList<GraphNode>();
+			for(List<GraphNode> neighbours : this.expand(frontier)){
+				level.addAll(this.limit(neighbours));
+			}
+		}
+
+		return graph;
+	}
+
+	private List<List<GraphNode>> expand(List<String> frontier) {
+		List<Callable<List<GraphNode>>> tasks = new ArrayList<Callable<List<GraphNode>>>();
+		for(final String uri : frontier){
+			tasks.add(new Callable<List<GraphNode>>(){
+
+				public List<GraphNode> call() throws Exception {
+					return neighbourSource.getNeighbours(uri);
+				}
+			});
+		}
+
+		if(this.asyncBioportalRestService != null && tasks.size() > 1){
+			return this.asyncBioportalRestService.invokeAll(tasks);
+		} else {
+			List<List<GraphNode>> results = new ArrayList<List<GraphNode>>();
+			for(Callable<List<GraphNode>> task : tasks){
+				try {
+					results.add(task.call());
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new Cts2RuntimeException(e);
+				}
+			}
+
+			return results;
+		}
+	}
+
+	private List<GraphNode> limit(List<GraphNode> neighbours) {
+		if(neighbours == null){
+			return new ArrayList<GraphNode>();
+		}
+		if(this.fanOutLimit > 0 && neighbours.size() > this.fanOutLimit){
+			return new ArrayList<GraphNode>(neighbours.subList(0, this.fanOutLimit));
+		}
+
+		return neighbours;
+	}
+
+	private static String getNodeUri(GraphNode node) {
+		return node.getNodeEntity() != null ? node.getNodeEntity().getUri() : null;
+	}
+
+	/**
+	 * An association is keyed by its subject, predicate and target, so 
+	 * it is the same association whichever end it was reached from.
+	 */
+	private static String getAssociationKey(GraphNode node) {
+		return node.getSubject().getUri() + " " + 
+			node.getPredicate().getName() + " " + 
+			node.getTarget().getEntity().getUri();
+	}
+}
@@ -23,6 +23,7 @@
  */
 package edu.mayo.cts2.framework.plugin.service.bioportal.profile.association;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -49,14 +50,16 @@ import edu.mayo.cts2.framework.model.core.PredicateReference;
 import edu.mayo.cts2.framework.model.core.PropertyReference;
 import edu.mayo.cts2.framework.model.core.ScopedEntityName;
 import edu.mayo.cts2.framework.model.core.SortCriteria;
-import edu.mayo.cts2.framework.model.core.types.AssociationDirection;
 import edu.mayo.cts2.framework.model.directory.DirectoryResult;
 import edu.mayo.cts2.framework.model.entity.EntityDirectoryEntry;
 import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter;
 import edu.mayo.cts2.framework.plugin.service.bioportal.profile.AbstractBioportalRestService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.AsyncBioportalRestService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.ParentOrChildOfEntityDirectoryBuilder;
 import edu.mayo.cts2.framework.plugin.service.bioportal.transform.AssociationTransform;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.util.EntityResolver;
 import edu.mayo.cts2.framework.service.command.restriction.AssociationQueryServiceRestrictions;
 import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference;
@@ -86,6 +89,11 @@ public class BioportalRestAssociationQueryService
 	
 	@Resource
 	private EntityResolver entityResolver;
+	
+	@Resource
+	private AsyncBioportalRestService asyncBioportalRestService;
+	
+	private static final String FOCUS_URI = "success.data.classBean.fullId";
 
 	@Override
 	public Set<ResolvablePropertyReference<EntityDirectoryEntry>> getSupportedSearchReferences() {
@@ -263,23 +271,20 @@ public class BioportalRestAssociationQueryService
 	public DirectoryResult<GraphNode> getAssociationGraph(
 			GraphFocus focusType,
 			EntityDescriptionReadId id, 
-			GraphDirection direction,
+			final GraphDirection direction,
 			long depth) {	
 		
-		String codeSystemVersionName = id.getCodeSystemVersion().getName();
-		String codeSystemName = this.identityConverter.
+		final String codeSystemVersionName = id.getCodeSystemVersion().getName();
+		final String codeSystemName = this.identityConverter.
 				codeSystemVersionNameCodeSystemName(codeSystemVersionName);
 		
 		ScopedEntityName focusEntityName = id.getEntityName();
 		
-		if(depth != 1){
-			throw new UnsupportedOperationException("Only depth of '1' is allowed.");
-		}
-		if(direction != GraphDirection.FORWARD){
-			throw new UnsupportedOperationException("Only GraphDirection of 'FORWARD' is allowed.");
+		if(depth < 1){
+			throw new UnsupportedOperationException("Only a depth of '1' or more is allowed.");
 		}
 
-		String ontologyVersionId = this.identityConverter.
+		final String ontologyVersionId = this.identityConverter.
 			codeSystemVersionNameToOntologyVersionId(codeSystemVersionName);
 		
 		String xml;
@@ -295,18 +300,29 @@ public class BioportalRestAssociationQueryService
 		
 	
 		List<GraphNode> associations = 
-			this.associationTransform.transformAssociationForGraph(xml, codeSystemName, codeSystemVersionName);
+			this.associationTransform.transformAssociationForGraph(xml, codeSystemName, codeSystemVersionName, direction);
 		
-		for(long i=0;i<associations.size();i++){
-			GraphNode entry = associations.get((int)i);
-			entry.setNodeNumber(i);
-			entry.setNextNodeNumber(i+1);
-			
-			entry.setDirection(AssociationDirection.SOURCE_TO_TARGET);
-			
-		}
+		String focusUri = TransformUtils.getNamedChildTextWithPath(
+				BioportalRestUtils.getDocument(xml), FOCUS_URI);
+		
+		AssociationGraphTraversal traversal = new AssociationGraphTraversal(
+				new AssociationGraphTraversal.NeighbourSource(){
+
+					public List<GraphNode> getNeighbours(String entityUri) {
+						String entityXml = entityResolver.getEntityXml(entityUri, ontologyVersionId);
+						
+						if(entityXml == null){
+							return new ArrayList<GraphNode>();
+						}
+						
+						return associationTransform.transformAssociationForGraph(
+								entityXml, codeSystemName, codeSystemVersionName, direction);
+					}
+				},
+				this.asyncBioportalRestService,
+				this.bioportalRestService.getGraphFanOutLimit());
 		
-		return new DirectoryResult<GraphNode>(associations,true);
+		return new DirectoryResult<GraphNode>(traversal.traverse(focusUri, associations, depth),true);
 	}
 
 	
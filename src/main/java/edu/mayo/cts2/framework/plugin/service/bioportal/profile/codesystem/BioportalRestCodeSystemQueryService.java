@@ -25,12 +25,15 @@ package edu.mayo.cts2.framework.plugin.service.bioportal.profile.codesystem;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Resource;
 
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
@@ -52,10 +55,13 @@ import edu.mayo.cts2.framework.model.core.URIAndEntityName;
 import edu.mayo.cts2.framework.model.core.types.TargetReferenceType;
 import edu.mayo.cts2.framework.model.directory.DirectoryResult;
 import edu.mayo.cts2.framework.model.util.ModelUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.index.CatalogIndex;
 import edu.mayo.cts2.framework.plugin.service.bioportal.profile.AbstractBioportalRestService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver;
 import edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.CodeSystemDirectoryBuilder;
 import edu.mayo.cts2.framework.plugin.service.bioportal.transform.CodeSystemTransform;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.ParsedResponseCache;
 import edu.mayo.cts2.framework.plugin.service.bioportal.util.BioportalConstants;
 import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference;
 import edu.mayo.cts2.framework.service.meta.StandardModelAttributeReference;
@@ -71,22 +77,141 @@ import edu.mayo.cts2.framework.service.profile.codesystem.CodeSystemQueryService
 @Qualifier("local")
 public class BioportalRestCodeSystemQueryService 
 	extends AbstractBioportalRestService
-	implements CodeSystemQueryService {
+	implements CodeSystemQueryService, InitializingBean, CacheObserver {
 
 	@Resource
 	private BioportalRestService bioportalRestService;
 	
 	@Resource
 	private CodeSystemTransform codeSystemTransform;
+	
+	private volatile Catalog catalog;
+	
+	
+	private final AttributeResolver<CodeSystemCatalogEntry> nameResolver = 
+		new AttributeResolver<CodeSystemCatalogEntry>(){
+
+			public Iterable<String> resolveAttribute(
+					CodeSystemCatalogEntry modelObject) {
+				return Arrays.asList( 
+					modelObject.getCodeSystemName());
+			}
+		};
+		
+	private final AttributeResolver<CodeSystemCatalogEntry> aboutResolver = 
+		new AttributeResolver<CodeSystemCatalogEntry>(){
+
+			public Iterable<String> resolveAttribute(
+					CodeSystemCatalogEntry modelObject) {
+				return Arrays.asList( 
+					modelObject.getAbout());
+			}
+		};
+		
+	private final AttributeResolver<CodeSystemCatalogEntry> synopsisResolver = 
+		new AttributeResolver<CodeSystemCatalogEntry>(){
+
+			public Iterable<String> resolveAttribute(
+					CodeSystemCatalogEntry modelObject) {
+				return Arrays.asList(ModelUtils.getResourceSynopsisValue(
+						modelObject));
+			}
+		};
+		
+	private final AttributeResolver<CodeSystemCatalogEntry> keywordResolver = 
+		new AttributeResolver<CodeSystemCatalogEntry>(){
+
+			public Iterable<String> resolveAttribute(
+					CodeSystemCatalogEntry modelObject) {
+				
+				return Arrays.asList(
+						modelObject.getKeyword());
+			}
+		};
+		
+	private final AttributeResolver<CodeSystemCatalogEntry> ontologyIdResolver = 
+		new AttributeResolver<CodeSystemCatalogEntry>(){
+
+			public Iterable<String> resolveAttribute(
+					CodeSystemCatalogEntry modelObject) {
+				List<String> returnList = new ArrayList<String>();
+				for(Property prop : modelObject.getProperty()){
+					if(prop.getPredicate().getName().equals(
+							BioportalConstants.BIOPORTAL_ONTOLOGY_ID_NAME)){
+						for(StatementTarget value : prop.getValue()){
+							String content = 
+								value.getLiteral().getValue().getContent();
+							
+							returnList.add(content);
+						}
+					}
+				}
+				
+				return returnList;
+			}
+		};
 
 	/* (non-Javadoc)
-	 * @see org.cts2.rest.service.CodeSystemService#getCodeSystemById(java.lang.String)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
 	 */
-	private List<CodeSystemCatalogEntry> getAllCodeSystemCatalogEntries() {
-			
-		String xml = this.bioportalRestService.getLatestOntologyVersions();
+	public void afterPropertiesSet() throws Exception {
+		this.bioportalRestService.addObserver(this);
+	}
 
-		return this.codeSystemTransform.transformResources(xml);
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver#onCodeSystemsChangeEvent(java.util.List)
+	 */
+	public void onCodeSystemsChangeEvent(List<String> changedOntologyIds) {
+		this.catalog = null;
+	}
+	
+	/**
+	 * Gets the catalog built from the latest ontology versions. The catalog
+	 * (the transformed entries and their index) is only rebuilt if the
+	 * Bioportal listing has changed since it was last built.
+	 *
+	 * @return the catalog
+	 */
+	protected Catalog getCatalog() {
+		String xml = this.bioportalRestService.getLatestOntologyVersions();
+		
+		Catalog current = this.catalog;
+		if(current != null && current.isBuiltFrom(xml)){
+			return current;
+		}
+		
+		List<CodeSystemCatalogEntry> entries = 
+			this.codeSystemTransform.transformResources(xml);
+		
+		Catalog newCatalog = new Catalog(
+				xml,
+				new CatalogIndex<CodeSystemCatalogEntry>(entries, this.getIndexedResolvers()));
+		
+		this.catalog = newCatalog;
+		
+		return newCatalog;
+	}
+	
+	/**
+	 * Gets the resolvers of the properties to index, keyed by property name.
+	 *
+	 * @return the indexed resolvers
+	 */
+	private Map<String,AttributeResolver<CodeSystemCatalogEntry>> getIndexedResolvers(){
+		Map<String,AttributeResolver<CodeSystemCatalogEntry>> returnMap = 
+			new HashMap<String,AttributeResolver<CodeSystemCatalogEntry>>();
+		
+		returnMap.put(getPropertyName(StandardModelAttributeReference.RESOURCE_NAME), this.nameResolver);
+		returnMap.put(getPropertyName(StandardModelAttributeReference.ABOUT), this.aboutResolver);
+		returnMap.put(getPropertyName(StandardModelAttributeReference.RESOURCE_SYNOPSIS), this.synopsisResolver);
+		returnMap.put(getPropertyName(StandardModelAttributeReference.KEYWORD), this.keywordResolver);
+		returnMap.put(BioportalConstants.BIOPORTAL_ONTOLOGY_ID_NAME, this.ontologyIdResolver);
+		
+		return returnMap;
+	}
+	
+	private static String getPropertyName(StandardModelAttributeReference reference){
+		return CatalogIndex.getPropertyName(reference.getPropertyReference());
 	}
 	
 	public Set<ResolvableMatchAlgorithmReference> getSupportedMatchAlgorithms(){
@@ -117,28 +242,7 @@ public class BioportalRestCodeSystemQueryService
 			new HashSet<ResolvablePropertyReference<CodeSystemCatalogEntry>>();
 		
 		ResolvablePropertyReference<CodeSystemCatalogEntry> ref = 
-			new ResolvablePropertyReference<CodeSystemCatalogEntry>(
-					
-					new AttributeResolver<CodeSystemCatalogEntry>(){
-
-						public Iterable<String> resolveAttribute(
-								CodeSystemCatalogEntry modelObject) {
-							List<String> returnList = new ArrayList<String>();
-							for(Property prop : modelObject.getProperty()){
-								if(prop.getPredicate().getName().equals(
-										BioportalConstants.BIOPORTAL_ONTOLOGY_ID_NAME)){
-									for(StatementTarget value : prop.getValue()){
-										String content = 
-											value.getLiteral().getValue().getContent();
-										
-										returnList.add(content);
-									}
-								}
-							}
-							
-							return returnList;
-						}
-					});
+			new ResolvablePropertyReference<CodeSystemCatalogEntry>(this.ontologyIdResolver);
 		
 		URIAndEntityName uriAndName = new URIAndEntityName();
 		uriAndName.setName(BioportalConstants.BIOPORTAL_ONTOLOGY_ID_NAME);
@@ -160,51 +264,22 @@ public class BioportalRestCodeSystemQueryService
 		ResolvablePropertyReference<CodeSystemCatalogEntry> refName = 
 				ResolvablePropertyReference.toPropertyReference(
 					StandardModelAttributeReference.RESOURCE_NAME.getPropertyReference(), 
-					new AttributeResolver<CodeSystemCatalogEntry>(){
-
-						public Iterable<String> resolveAttribute(
-								CodeSystemCatalogEntry modelObject) {
-							return Arrays.asList( 
-								modelObject.getCodeSystemName());
-						}
-					});
+					this.nameResolver);
 		
 		ResolvablePropertyReference<CodeSystemCatalogEntry> refAbout = 
 				ResolvablePropertyReference.toPropertyReference(
 					StandardModelAttributeReference.ABOUT.getPropertyReference(), 
-					new AttributeResolver<CodeSystemCatalogEntry>(){
-
-						public Iterable<String> resolveAttribute(
-								CodeSystemCatalogEntry modelObject) {
-							return Arrays.asList( 
-								modelObject.getAbout());
-						}
-					});
+					this.aboutResolver);
 		
 		ResolvablePropertyReference<CodeSystemCatalogEntry> refSynopsis = 
 				ResolvablePropertyReference.toPropertyReference(
 					StandardModelAttributeReference.RESOURCE_SYNOPSIS.getPropertyReference(), 
-					new AttributeResolver<CodeSystemCatalogEntry>(){
-
-						public Iterable<String> resolveAttribute(
-								CodeSystemCatalogEntry modelObject) {
-							return Arrays.asList(ModelUtils.getResourceSynopsisValue(
-									modelObject));
-						}
-					});
+					this.synopsisResolver);
 		
 		ResolvablePropertyReference<CodeSystemCatalogEntry> keyword = 
 				ResolvablePropertyReference.toPropertyReference(
 					StandardModelAttributeReference.KEYWORD.getPropertyReference(), 
-					new AttributeResolver<CodeSystemCatalogEntry>(){
-
-						public Iterable<String> resolveAttribute(
-								CodeSystemCatalogEntry modelObject) {
-							
-							return Arrays.asList(
-									modelObject.getKeyword());
-						}
-					});
+					this.keywordResolver);
 		
 		
 		returnSet.add(refName);
@@ -228,10 +303,15 @@ public class BioportalRestCodeSystemQueryService
 			SortCriteria sortCriteria,
 			Page page) {
 		
+		//narrow the catalog down with the index -- the builder still
+		//applies the real matchers to whatever is left.
+		List<CodeSystemCatalogEntry> candidates = 
+			this.getCatalog().getIndex().getCandidates(query.getFilterComponent());
+		
 		CodeSystemDirectoryBuilder builder = 
 			new CodeSystemDirectoryBuilder(
 					this.codeSystemTransform,
-					this.getAllCodeSystemCatalogEntries(),
+					candidates,
 					this.getSupportedMatchAlgorithms(),
 					this.getSupportedSearchReferences());
 
@@ -272,4 +352,47 @@ public class BioportalRestCodeSystemQueryService
 	public Set<PredicateReference> getKnownProperties() {
 		return null;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * A build of the code system catalog, keyed by a digest of the listing
+	 * it was built from.
+	 */
+	protected static class Catalog {
+		
+		private final String sourceDigest;
+		
+		/*
+		 * The listing last seen to match -- while the same instance is 
+		 * served (from the memory cache) it is not digested again.
+		 */
+		private volatile String source;
+		
+		private final CatalogIndex<CodeSystemCatalogEntry> index;
+		
+		private Catalog(String xml, CatalogIndex<CodeSystemCatalogEntry> index){
+			this.source = xml;
+			this.sourceDigest = xml != null ? ParsedResponseCache.digest(xml) : null;
+			this.index = index;
+		}
+		
+		private boolean isBuiltFrom(String xml){
+			if(xml == null){
+				return false;
+			}
+			if(xml == this.source){
+				return true;
+			}
+			
+			if(ParsedResponseCache.digest(xml).equals(this.sourceDigest)){
+				this.source = xml;
+				return true;
+			}
+			
+			return false;
+		}
+
+		public CatalogIndex<CodeSystemCatalogEntry> getIndex() {
+			return index;
+		}
+	}
+}
@@ -23,13 +23,16 @@
  */
 package edu.mayo.cts2.framework.plugin.service.bioportal.profile.entitydescription;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Resource;
 
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
 
 import edu.mayo.cts2.framework.filter.directory.AbstractCallbackDirectoryBuilder.Callback;
 import edu.mayo.cts2.framework.model.command.Page;
@@ -51,11 +54,15 @@ import edu.mayo.cts2.framework.model.service.core.Query;
 import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter;
 import edu.mayo.cts2.framework.plugin.service.bioportal.profile.AbstractBioportalRestService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.profile.association.BioportalRestAssociationQueryService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.AsyncBioportalRestService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
-import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheTagObserver;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheTags;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.PagePlan;
 import edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.EntityDirectoryBuilder;
 import edu.mayo.cts2.framework.plugin.service.bioportal.transform.EntityDescriptionTransform;
 import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.TotalCountCache;
 import edu.mayo.cts2.framework.service.command.restriction.EntityDescriptionQueryServiceRestrictions;
 import edu.mayo.cts2.framework.service.command.restriction.EntityDescriptionQueryServiceRestrictions.HierarchyRestriction.HierarchyType;
 import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference;
@@ -71,7 +78,7 @@ import edu.mayo.cts2.framework.service.profile.entitydescription.EntityDescripti
 @Component
 public class BioportalRestEntityDescriptionQueryService 
 	extends AbstractBioportalRestService
-	implements EntityDescriptionQueryService {
+	implements EntityDescriptionQueryService, InitializingBean, CacheTagObserver {
 
 	@Resource
 	private BioportalRestService bioportalRestService;
@@ -85,8 +92,21 @@ public class BioportalRestEntityDescriptionQueryService
 	@Resource
 	private BioportalRestAssociationQueryService bioportalRestAssociationQueryService;
 	
+	@Resource
+	private AsyncBioportalRestService asyncBioportalRestService;
+	
 	private static final String CHILDREN_PREDICATE = "SubClass";
 	
+	private static final String SEARCH_COUNT = "search";
+	
+	private static final String ALL_COUNT = "all";
+	
+	private static final int TOTAL_COUNT_CACHE_SIZE = 10000;
+	
+	private static final long ONE_MINUTE = 60000L;
+	
+	private final TotalCountCache totalCounts = new TotalCountCache(TOTAL_COUNT_CACHE_SIZE);
+	
 	/**
 	 * Gets the entity description name from uri.
 	 *
@@ -121,44 +141,153 @@ public class BioportalRestEntityDescriptionQueryService
 	}
 	
 	/**
-	 * Gets the count.
+	 * Gets the total count of a query from the count cache.
+	 *
+	 * @param key the query key
+	 * @return the count, or null if it isn't known
+	 */
+	private Integer getCachedCount(String key){
+		return this.totalCounts.get(key);
+	}
+	
+	/**
+	 * Remember the total count reported by a page of a query.
 	 *
-	 * @param xml the xml
-	 * @return the count
+	 * @param key the query key
+	 * @param xml the page xml
+	 * @return the total count
 	 */
-	private int getCount(String xml){
-		Document doc = BioportalRestUtils.getDocument(xml);
+	private int recordCount(String key, String xml){
+		int count = TransformUtils.getTotalCount(xml);
 		
-		String count = TransformUtils.getNamedChildTextWithPath(doc, "success.data.page.numResultsTotal");
+		this.totalCounts.put(
+				key, 
+				count, 
+				ONE_MINUTE * this.bioportalRestService.getMemCacheTimeToLive());
+		
+		return count;
+	}
+	
+	private static String getSearchCountKey(String ontologyId, ResolvedFilter filter){
+		return TotalCountCache.createKey(
+				SEARCH_COUNT,
+				ontologyId,
+				filter.getMatchValue(),
+				filter.getMatchAlgorithmReference() != null ? 
+						filter.getMatchAlgorithmReference().getContent() : null,
+				filter.getPropertyReference() != null && filter.getPropertyReference().getReferenceTarget() != null ? 
+						filter.getPropertyReference().getReferenceTarget().getName() : null);
+	}
+	
+	private static String getAllCountKey(String ontologyVersionId){
+		return TotalCountCache.createKey(ALL_COUNT, ontologyVersionId);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		this.bioportalRestService.addObserver(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver#onCodeSystemsChangeEvent(java.util.List)
+	 */
+	public void onCodeSystemsChangeEvent(List<String> changedOntologyIds) {
+		//no-op -- the counts are dropped tag by tag, see onCacheTagInvalidated
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheTagObserver#onCacheTagInvalidated(java.lang.String)
+	 */
+	public void onCacheTagInvalidated(String tag) {
+		String ontologyVersionId = CacheTags.getOntologyVersionId(tag);
+		String ontologyId = CacheTags.getOntologyId(tag);
 		
-		return Integer.valueOf(count);
+		if(ontologyVersionId != null){
+			this.totalCounts.remove(getAllCountKey(ontologyVersionId));
+		} else if(ontologyId != null){
+			this.totalCounts.removeAll(SEARCH_COUNT, ontologyId);
+		} else if(tag.equals(CacheTags.ALL_ONTOLOGIES)){
+			this.totalCounts.removeAll(SEARCH_COUNT, null);
+		}
 	}
 	
 	/**
-	 * Gets the page for start and max.
+	 * Read the (start, max) window of results, fetching the aligned Bioportal
+	 * pages of its {@link PagePlan} in parallel and stitching them together.
 	 *
 	 * @param start the start
 	 * @param max the max
-	 * @return the page for start and max
+	 * @param reader the page reader
+	 * @return the directory result
 	 */
-	private Page getPageForStartAndMax(int start, int max){
-		Page page = new Page();
-		if(start < max){
-			page.setMaxToReturn(max);
-			page.setPage(0);
+	private DirectoryResult<EntityDirectoryEntry> readWindow(
+			int start, 
+			int max, 
+			final PageReader reader){
+		final PagePlan plan = PagePlan.plan(start, max);
+		
+		List<DirectoryResult<EntityDirectoryEntry>> results;
+		
+		if(plan.getPages().size() > 1 && this.asyncBioportalRestService != null){
+			List<Callable<DirectoryResult<EntityDirectoryEntry>>> tasks = 
+				new ArrayList<Callable<DirectoryResult<EntityDirectoryEntry>>>();
+			
+			for(final Page page : plan.getPages()){
+				tasks.add(new Callable<DirectoryResult<EntityDirectoryEntry>>(){
+
+					public DirectoryResult<EntityDirectoryEntry> call() throws Exception {
+						return reader.read(page, plan.getFrom(page), plan.getTo(page));
+					}
+				});
+			}
+			
+			results = this.asyncBioportalRestService.invokeAll(tasks);
 		} else {
-			int calculatedPage;
-			if(start != 0){
-				calculatedPage = start / max;
-			} else {
-				calculatedPage = 0;
+			results = new ArrayList<DirectoryResult<EntityDirectoryEntry>>();
+			
+			for(Page page : plan.getPages()){
+				results.add(reader.read(page, plan.getFrom(page), plan.getTo(page)));
+			}
+		}
+		
+		List<EntityDirectoryEntry> entries = new ArrayList<EntityDirectoryEntry>();
+		boolean atEnd = false;
+		
+		for(int i=0;i<results.size();i++){
+			DirectoryResult<EntityDirectoryEntry> result = results.get(i);
+			Page page = plan.getPages().get(i);
+			
+			entries.addAll(result.getEntries());
+			
+			//the page being the last one doesn't mean the window is, unless
+			//the window runs to the end of the page or the page ran out first.
+			if(result.isAtEnd() && 
+					(plan.getTo(page) == page.getMaxToReturn() || 
+					 result.getEntries().size() < plan.getTo(page) - plan.getFrom(page))){
+				atEnd = true;
+				break;
 			}
-			page.setPage(calculatedPage);
-			page.setMaxToReturn(
-					(start - (calculatedPage * max)) + max);
 		}
 		
-		return page;
+		return new DirectoryResult<EntityDirectoryEntry>(entries, atEnd);
+	}
+	
+	/**
+	 * Reads the results between two indexes of one Bioportal page.
+	 */
+	private interface PageReader {
+		
+		/**
+		 * Read.
+		 *
+		 * @param page the Bioportal page
+		 * @param from the index of the first result to read (inclusive)
+		 * @param to the index after the last result to read (exclusive)
+		 * @return the directory result
+		 */
+		public DirectoryResult<EntityDirectoryEntry> read(Page page, int from, int to);
 	}
 
 	/**
@@ -247,31 +376,6 @@ public class BioportalRestEntityDescriptionQueryService
 			addStart(page.getStart()).resolve();
 	}
 	
-	/**
-	 * Calculate transform start.
-	 *
-	 * @param bioportalPage the bioportal page
-	 * @param start the start
-	 * @return the int
-	 */
-	private int calculateTransformStart(Page bioportalPage, int start){
-		int bioportalStart = bioportalPage.getStart();
-
-		return start - bioportalStart;
-	}
-	
-	/**
-	 * Calculate transform end.
-	 *
-	 * @param bioportalPage the bioportal page
-	 * @param start the start
-	 * @param max the max
-	 * @return the int
-	 */
-	private int calculateTransformEnd(Page bioportalPage, int start, int max){
-		return this.calculateTransformStart(bioportalPage, start) + max;
-	}
-
 	/* (non-Javadoc)
 	 * @see org.cts2.rest.service.EntityDescriptionService#getAllEntityDescriptionsCount(org.cts2.rest.service.command.Filter)
 	 */
@@ -387,30 +491,40 @@ public class BioportalRestEntityDescriptionQueryService
 		return new EntityDirectoryBuilder(new Callback<EntityDirectoryEntry>(){
 
 			public DirectoryResult<EntityDirectoryEntry> execute(
-					ResolvedFilter filterComponent,
+					final ResolvedFilter filterComponent,
 					float minScore,
 					int start, 
 					int maxResults) {
 				
-				Page bioportalPage = getPageForStartAndMax(start, maxResults);
-			
-				String xml = bioportalRestService.searchEntitiesByOntologyId(
-						ontologyId, 
-						filterComponent,
-						bioportalPage);
-				
-				DirectoryResult<EntityDirectoryEntry> directoryResult = 
-						entityDescriptionTransform.transformEntityDirectoryFromSearch(
-								calculateTransformStart(bioportalPage, start), 
-								calculateTransformEnd(bioportalPage, start, maxResults),
+				return readWindow(start, maxResults, new PageReader(){
+
+					public DirectoryResult<EntityDirectoryEntry> read(
+							Page bioportalPage, int from, int to) {
+						String xml = bioportalRestService.searchEntitiesByOntologyId(
+								ontologyId, 
+								filterComponent,
+								bioportalPage);
+						
+						recordCount(getSearchCountKey(ontologyId, filterComponent), xml);
+						
+						return entityDescriptionTransform.transformEntityDirectoryFromSearch(
+								from, 
+								to - 1,
 								xml);
-					
-					return directoryResult;
+					}
+				});
 			}
 			
 			public int executeCount(
 					ResolvedFilter filterComponent,
 					float minScore) {
+				String key = getSearchCountKey(ontologyId, filterComponent);
+				
+				Integer count = getCachedCount(key);
+				if(count != null){
+					return count;
+				}
+				
 				Page bioportalPage = new Page();
 				bioportalPage.setPage(0);
 				bioportalPage.setMaxToReturn(1);
@@ -420,29 +534,41 @@ public class BioportalRestEntityDescriptionQueryService
 						filterComponent,
 						bioportalPage);
 				
-				return getCount(xml);
+				return recordCount(key, xml);
 			}
 
 			public DirectoryResult<EntityDirectoryEntry> execute(
 					int start,
 					int maxResults) {
 				
-				Page bioportalPage = getPageForStartAndMax(start, maxResults);
-				
-				String xml = bioportalRestService.getAllEntitiesByOntologyVersionId(
-						ontologyVersionId, 
-						bioportalPage);
-				
-				DirectoryResult<EntityDirectoryEntry> directoryResult = 
-						entityDescriptionTransform.transformEntityDirectory(
+				return readWindow(start, maxResults, new PageReader(){
+
+					public DirectoryResult<EntityDirectoryEntry> read(
+							Page bioportalPage, int from, int to) {
+						String xml = bioportalRestService.getAllEntitiesByOntologyVersionId(
+								ontologyVersionId, 
+								bioportalPage);
+						
+						recordCount(getAllCountKey(ontologyVersionId), xml);
+						
+						return entityDescriptionTransform.transformEntityDirectory(
+								from,
+								to - 1,
 								xml,
 								codeSystemName,
 								codeSystemVersionName);
-					
-				return directoryResult;
+					}
+				});
 			}
 
 			public int executeCount() {
+				String key = getAllCountKey(ontologyVersionId);
+				
+				Integer count = getCachedCount(key);
+				if(count != null){
+					return count;
+				}
+				
 				Page bioportalPage = new Page();
 				bioportalPage.setPage(0);
 				bioportalPage.setMaxToReturn(1);
@@ -450,7 +576,7 @@ public class BioportalRestEntityDescriptionQueryService
 				String xml = bioportalRestService.
 					getAllEntitiesByOntologyVersionId(ontologyVersionId, bioportalPage);
 				
-				return getCount(xml);
+				return recordCount(key, xml);
 			}
 		},
 		getSupportedMatchAlgorithms());
@@ -462,29 +588,39 @@ public class BioportalRestEntityDescriptionQueryService
 			new Callback<EntityDirectoryEntry>(){
 
 				public DirectoryResult<EntityDirectoryEntry> execute(
-						ResolvedFilter filterComponent, 
+						final ResolvedFilter filterComponent, 
 						float minScore,
 						int start, 
 						int maxResults) {
 				
-					Page bioportalPage = getPageForStartAndMax(start, maxResults);
-					
-					String xml = bioportalRestService.searchEntitiesOfLatestOntologyVersions(
-							filterComponent,
-							bioportalPage);
-		
-					DirectoryResult<EntityDirectoryEntry> directoryResult = 
-							entityDescriptionTransform.transformEntityDirectoryFromSearch(
-									calculateTransformStart(bioportalPage, start), 
-									calculateTransformEnd(bioportalPage, start, maxResults),
+					return readWindow(start, maxResults, new PageReader(){
+
+						public DirectoryResult<EntityDirectoryEntry> read(
+								Page bioportalPage, int from, int to) {
+							String xml = bioportalRestService.searchEntitiesOfLatestOntologyVersions(
+									filterComponent,
+									bioportalPage);
+							
+							recordCount(getSearchCountKey(null, filterComponent), xml);
+							
+							return entityDescriptionTransform.transformEntityDirectoryFromSearch(
+									from, 
+									to - 1,
 									xml);
-						
-						return directoryResult;			
+						}
+					});
 				}
 
 				public int executeCount(
 						ResolvedFilter filterComponent, 
 						float minScore) {
+					String key = getSearchCountKey(null, filterComponent);
+					
+					Integer count = getCachedCount(key);
+					if(count != null){
+						return count;
+					}
+					
 					Page bioportalPage = new Page();
 					bioportalPage.setPage(0);
 					bioportalPage.setMaxToReturn(1);
@@ -493,7 +629,7 @@ public class BioportalRestEntityDescriptionQueryService
 							filterComponent,
 							bioportalPage);
 					
-					return getCount(xml);
+					return recordCount(key, xml);
 				}
 
 				public DirectoryResult<EntityDirectoryEntry> execute(
@@ -30,10 +30,8 @@ import java.util.Set;
 
 import javax.annotation.Resource;
 
-import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Node;
 
 import edu.mayo.cts2.framework.filter.match.AttributeResolver;
 import edu.mayo.cts2.framework.filter.match.ContainsMatcher;
@@ -50,12 +48,10 @@ import edu.mayo.cts2.framework.model.util.ModelUtils;
 import edu.mayo.cts2.framework.model.valueset.ValueSetCatalogEntry;
 import edu.mayo.cts2.framework.model.valueset.ValueSetCatalogEntrySummary;
 import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter;
+import edu.mayo.cts2.framework.plugin.service.bioportal.index.ValueSetCodeSystemIndex;
 import edu.mayo.cts2.framework.plugin.service.bioportal.profile.AbstractBioportalRestService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
-import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.ValueSetDirectoryBuilder;
-import edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.ValueSetDirectoryBuilder.ValueSetCodeSystemExtractor;
-import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.transform.ValueSetTransform;
 import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference;
 import edu.mayo.cts2.framework.service.meta.StandardModelAttributeReference;
@@ -81,6 +77,9 @@ public class BioportalRestValueSetQueryService
 	
 	@Resource
 	private IdentityConverter identityConverter;
+	
+	@Resource
+	private ValueSetCodeSystemIndex valueSetCodeSystemIndex;
 
 	/* (non-Javadoc)
 	 * @see edu.mayo.cts2.framework.service.profile.QueryService#getPropertyReference(java.lang.String)
@@ -191,48 +190,6 @@ public class BioportalRestValueSetQueryService
 		return returnSet;
 	}
 	
-	/**
-	 * The Class CodeSystemExtractor.
-	 *
-	 * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
-	 */
-	private class CodeSystemExtractor implements ValueSetCodeSystemExtractor {
-
-		/* (non-Javadoc)
-		 * @see edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.ValueSetDirectoryBuilder.ValueSetCodeSystemExtractor#getCodeSystemsOfValueSet(java.lang.String)
-		 */
-		public Set<String> getCodeSystemsOfValueSet(String valueSetName) {
-			Set<String> returnSet = new HashSet<String>();
-			
-			String ontologyId = identityConverter.valueSetNameToOntologyId(valueSetName);
-
-			
-			String xml = bioportalRestService.getLatestOntologyVersionByOntologyId(ontologyId);
-		
-			Node versionIds = TransformUtils.getNamedChildWithPath(
-					BioportalRestUtils.getDocument(xml), "success.data.ontologyBean.viewOnOntologyVersionId");
-			
-			for(Node id : TransformUtils.getNodeList(versionIds, "int")){
-				String ontologyVersionId = TransformUtils.getNodeText(id);
-			
-				
-				if(StringUtils.isNotBlank(ontologyVersionId)){
-					String versionXml = bioportalRestService.getOntologyByOntologyVersionId(ontologyVersionId);
-					
-					String name = 
-						identityConverter.buildName(
-								TransformUtils.getNamedChildWithPath(BioportalRestUtils.getDocument(versionXml), 
-										"success.data.ontologyBean"));
-				
-					returnSet.add(name);
-				}
-			}	
-			
-			return returnSet;
-		}
-	}
-
-
 	/* (non-Javadoc)
 	 * @see edu.mayo.cts2.framework.service.profile.QueryService#getResourceSummaries(edu.mayo.cts2.framework.model.service.core.Query, edu.mayo.cts2.framework.model.core.FilterComponent, java.lang.Object, edu.mayo.cts2.framework.service.command.Page)
 	 */
@@ -245,7 +202,7 @@ public class BioportalRestValueSetQueryService
 				new ValueSetDirectoryBuilder(
 						this.valueSetTransform,
 						this.getAllValueSetCatalogEntries(),
-						new CodeSystemExtractor(), 
+						this.valueSetCodeSystemIndex, 
 						this.getSupportedMatchAlgorithms(),
 						this.getSupportedSearchReferences());
 
@@ -280,7 +237,7 @@ public class BioportalRestValueSetQueryService
 				new ValueSetDirectoryBuilder(
 						this.valueSetTransform,
 						this.getAllValueSetCatalogEntries(),
-						new CodeSystemExtractor(), 
+						this.valueSetCodeSystemIndex, 
 						this.getSupportedMatchAlgorithms(),
 						this.getSupportedSearchReferences()
 						);
@@ -0,0 +1,361 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import edu.mayo.cts2.framework.model.command.Page;
+import edu.mayo.cts2.framework.model.command.ResolvedFilter;
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.NamedThreadFactory;
+
+/**
+ * Asynchronous access to the {@link BioportalRestService}. Calls are run on a
+ * bounded pool and return a {@link Future}, so callers can fan out several
+ * Bioportal requests at once. All calls go through the
+ * {@link BioportalRestService}, so they share its caches and request coalescing.
+ * 
+ * The pool is sized to the per-host HTTP connection limit -- more threads
+ * than connections would only queue inside the connection manager. When the
+ * work queue is full the submitting thread runs the call itself.
+ * 
+ * Work submitted from a pool thread is also run by that thread. A pool
+ * thread waiting on work queued behind it could otherwise block forever
+ * once every thread in the pool is waiting.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+@Component
+public class AsyncBioportalRestService implements InitializingBean, DisposableBean {
+
+	private static final int QUEUE_SIZE_PER_THREAD = 50;
+
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	@Resource
+	private BioportalRestService bioportalRestService;
+
+	private ThreadPoolExecutor executor;
+
+	private final ThreadLocal<Boolean> poolThread = new ThreadLocal<Boolean>();
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		int threads = Math.max(1, this.bioportalRestService.getHttpMaxConnectionsPerHost());
+
+		this.executor = new ThreadPoolExecutor(
+				threads, 
+				threads, 
+				KEEP_ALIVE_SECONDS, 
+				TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(threads * QUEUE_SIZE_PER_THREAD), 
+				new NamedThreadFactory("bioportal-async"){
+
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						return super.newThread(new Runnable(){
+
+							public void run() {
+								poolThread.set(Boolean.TRUE);
+								runnable.run();
+							}
+						});
+					}
+				}, 
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	public void destroy() throws Exception {
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * Submit a unit of work to the Bioportal pool.
+	 *
+	 * @param <T> the result type
+	 * @param task the task
+	 * @return the future result
+	 */
+	public <T> Future<T> submit(Callable<T> task) {
+		if(this.isPoolThread()){
+			FutureTask<T> future = new FutureTask<T>(task);
+			future.run();
+
+			return future;
+		}
+
+		return this.executor.submit(task);
+	}
+
+	/**
+	 * Checks if the current thread is one of the pool threads.
+	 *
+	 * @return true, if it is a pool thread
+	 */
+	protected boolean isPoolThread() {
+		return this.poolThread.get() != null;
+	}
+
+	/**
+	 * Submit all tasks to the Bioportal pool and wait for the results.
+	 * Results are returned in the order of the tasks.
+	 *
+	 * @param <T> the result type
+	 * @param tasks the tasks
+	 * @return the results
+	 */
+	public <T> List<T> invokeAll(Collection<? extends Callable<T>> tasks) {
+		List<Future<T>> futures = new ArrayList<Future<T>>();
+		for(Callable<T> task : tasks){
+			futures.add(this.submit(task));
+		}
+
+		List<T> returnList = new ArrayList<T>();
+		for(Future<T> future : futures){
+			returnList.add(getResult(future));
+		}
+
+		return returnList;
+	}
+
+	/**
+	 * Run all tasks in parallel and return the first non-null result to
+	 * arrive. A task that fails does not stop the others -- the failure
+	 * is only rethrown if no task returns a result. Once there is a result
+	 * the remaining tasks are cancelled, without interrupting them: a pool
+	 * thread may be running a call shared with other callers.
+	 * Called from a pool thread, the tasks are tried one after the other.
+	 *
+	 * @param <T> the result type
+	 * @param tasks the tasks
+	 * @return the first non-null result, or null if all returned null
+	 */
+	public <T> T firstNonNull(Collection<? extends Callable<T>> tasks) {
+		RuntimeException failure = null;
+
+		if(this.isPoolThread()){
+			for(Callable<T> task : tasks){
+				try {
+					T result = getResult(this.submit(task));
+					if(result != null){
+						return result;
+					}
+				} catch (RuntimeException e) {
+					if(failure == null){
+						failure = e;
+					}
+				}
+			}
+
+			return nullOrThrow(failure);
+		}
+
+		CompletionService<T> completionService = new ExecutorCompletionService<T>(this.executor);
+
+		List<Future<T>> futures = new ArrayList<Future<T>>();
+		try {
+			for(Callable<T> task : tasks){
+				futures.add(completionService.submit(task));
+			}
+
+			for(int i=0;i<futures.size();i++){
+				Future<T> future = completionService.take();
+				try {
+					T result = getResult(future);
+					if(result != null){
+						return result;
+					}
+				} catch (RuntimeException e) {
+					if(failure == null){
+						failure = e;
+					}
+				}
+			}
+
+			return nullOrThrow(failure);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new Cts2RuntimeException(e);
+		} finally {
+			for(Future<T> future : futures){
+				future.cancel(false);
+			}
+		}
+	}
+
+	private static <T> T nullOrThrow(RuntimeException failure) {
+		if(failure != null){
+			throw failure;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Wait for a result, rethrowing whatever the call threw.
+	 *
+	 * @param <T> the result type
+	 * @param future the future
+	 * @return the result
+	 */
+	public static <T> T getResult(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new Cts2RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException){
+				throw (RuntimeException) cause;
+			}
+			if(cause instanceof Error){
+				throw (Error) cause;
+			}
+			throw new Cts2RuntimeException(cause);
+		}
+	}
+
+	public Future<String> getEntityByOntologyVersionIdAndEntityId(
+			final String ontologyVersionId, final String entityId) {
+		return this.submit(new Callable<String>(){
+
+			public String call() throws Exception {
+				return bioportalRestService.getEntityByOntologyVersionIdAndEntityId(ontologyVersionId, entityId);
+			}
+		});
+	}
+
+	public Future<String> getHierarchyRootsByOntolotyVersionId(final String ontologyVersionId) {
+		return this.submit(new Callable<String>(){
+
+			public String call() throws Exception {
+				return bioportalRestService.getHierarchyRootsByOntolotyVersionId(ontologyVersionId);
+			}
+		});
+	}
+
+	public Future<String> getLatestOntologyVersionByOntologyId(final String ontologyId) {
+		return this.submit(new Callable<String>(){
+
+			public String call() throws Exception {
+				return bioportalRestService.getLatestOntologyVersionByOntologyId(ontologyId);
+			}
+		});
+	}
+
+	public Future<String> getOntologyByOntologyVersionId(final String ontologyVersionId) {
+		return this.submit(new Callable<String>(){
+
+			public String call() throws Exception {
+				return bioportalRestService.getOntologyByOntologyVersionId(ontologyVersionId);
+			}
+		});
+	}
+
+	public Future<String> getOntologyVersionsByOntologyId(final String ontologyId) {
+		return this.submit(new Callable<String>(){
+
+			public String call() throws Exception {
+				return bioportalRestService.getOntologyVersionsByOntologyId(ontologyId);
+			}
+		});
+	}
+
+	public Future<String> getAllEntitiesByOntologyVersionId(
+			final String ontologyVersionId, final Page page) {
+		return this.submit(new Callable<String>(){
+
+			public String call() throws Exception {
+				return bioportalRestService.getAllEntitiesByOntologyVersionId(ontologyVersionId, page);
+			}
+		});
+	}
+
+	public Future<String> searchEntitiesByOntologyIds(
+			final Collection<String> ontologyIds, final ResolvedFilter filter, final Page page) {
+		return this.submit(new Callable<String>(){
+
+			public String call() throws Exception {
+				return bioportalRestService.searchEntitiesByOntologyIds(ontologyIds, filter, page);
+			}
+		});
+	}
+
+	public Future<String> searchEntitiesOfLatestOntologyVersions(
+			final ResolvedFilter filter, final Page page) {
+		return this.submit(new Callable<String>(){
+
+			public String call() throws Exception {
+				return bioportalRestService.searchEntitiesOfLatestOntologyVersions(filter, page);
+			}
+		});
+	}
+
+	/**
+	 * Gets the number of calls waiting for a free thread.
+	 *
+	 * @return the queued count
+	 */
+	public int getQueuedCount() {
+		return this.executor.getQueue().size();
+	}
+
+	/**
+	 * Gets the number of calls currently running.
+	 *
+	 * @return the active count
+	 */
+	public int getActiveCount() {
+		return this.executor.getActiveCount();
+	}
+
+	public int getPoolSize() {
+		return this.executor.getMaximumPoolSize();
+	}
+}
@@ -60,10 +60,17 @@ public class BaseCacheObservable implements CacheObservable {
 			observer.onCodeSystemsChangeEvent(ontologyIds);
 		}
 	}
-	
-	protected void fireApiKeyChangeEvent(){
+
+	/**
+	 * Fire on cache tag invalidated, to the {@link CacheTagObserver}s.
+	 *
+	 * @param tag the tag
+	 */
+	protected void fireOnCacheTagInvalidated(String tag){
 		for (CacheObserver observer : observers) {
-			observer.onApiKeyChange();
+			if(observer instanceof CacheTagObserver){
+				((CacheTagObserver) observer).onCacheTagInvalidated(tag);
+			}
 		}
 	}
 }
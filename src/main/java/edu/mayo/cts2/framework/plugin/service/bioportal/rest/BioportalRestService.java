@@ -28,17 +28,27 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Resource;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.SerializationUtils;
 import org.apache.commons.lang.StringUtils;
@@ -53,6 +63,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
@@ -66,6 +77,9 @@ import edu.mayo.cts2.framework.model.core.PropertyReference;
 import edu.mayo.cts2.framework.model.core.URIAndEntityName;
 import edu.mayo.cts2.framework.model.core.types.TargetReferenceType;
 import edu.mayo.cts2.framework.model.exception.ExceptionFactory;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.OntologyBean;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.NamedThreadFactory;
 import edu.mayo.cts2.framework.service.constant.ExternalCts2Constants;
 import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference;
 
@@ -79,6 +93,19 @@ public class BioportalRestService extends BaseCacheObservable
 	
 	public static final String BIOPORTAL_CACHE_NAME = "bioportal-cache";
 	
+	public static final String BIOPORTAL_CACHE_TAGS_NAME = "bioportal-cache-tags";
+	
+	public static final String BIOPORTAL_CACHE_INFO_NAME = "bioportal-cache-info";
+	
+	public static final String BIOPORTAL_CACHE_ENTRIES_NAME = "bioportal-cache-entries";
+	
+	private static final String CACHE_KEY_FORMAT_PROP = "keyFormat";
+	
+	/*
+	 * the version of the cache key format -- see CacheKeys
+	 */
+	private static final String CACHE_KEY_FORMAT = "2";
+	
 	public static final String BIOPORTAL_CONFIG_NAMESPACE = "bioportal-service";
 	
 	public static final String CACHE_CONFIG_PROP = "cache";
@@ -93,7 +120,40 @@ public class BioportalRestService extends BaseCacheObservable
 	@Resource
 	private PluginConfigManager pluginConfigManager;
 	
-	private Map<String,String> cache;
+	/*
+	 * key -> response, stored as-is (a String) or encoded (a byte[]) -- see CacheValueCodecs
+	 */
+	private Map<String,Object> cache;
+	
+	private CacheTagIndex cacheTagIndex;
+	
+	private volatile PersistentCachePolicy cachePolicy;
+	
+	/* in megabytes, 0 for no limit */
+	private static final int DEFAULT_CACHE_MAX_SIZE = 1024;
+	
+	/* in days, 0 for no expiry */
+	private static final int DEFAULT_CACHE_TIME_TO_LIVE = 30;
+	
+	/* in hours, 0 to disable */
+	private static final int DEFAULT_CACHE_COMPACTION_PERIOD = 24;
+	
+	/* in minutes */
+	private static final int CACHE_MAINTENANCE_PERIOD = 10;
+	
+	private int cacheMaxSize = DEFAULT_CACHE_MAX_SIZE;
+	
+	private int cacheTimeToLive = DEFAULT_CACHE_TIME_TO_LIVE;
+	
+	private int cacheCompactionPeriod = DEFAULT_CACHE_COMPACTION_PERIOD;
+	
+	private ScheduledExecutorService maintenanceScheduler;
+	
+	private final AtomicLong removedSinceCompaction = new AtomicLong();
+	
+	private final AtomicLong compactionCount = new AtomicLong();
+	
+	private volatile long lastCompactionMillis = -1;
 	
 	private RestTemplate restTemplate = new RestTemplate();
 	
@@ -101,20 +161,105 @@ public class BioportalRestService extends BaseCacheObservable
 	
 	private String apiKey;
 	
-	private static final String API_KEY_PARAM = "apikey";
-	
 	/* every hour default */
 	private static final int DEFAULT_CACHE_UPDATE_PERIOD = 60;
 	
 	/* in minutes */
 	private int cacheUpdatePeriod = DEFAULT_CACHE_UPDATE_PERIOD;
 	
+	private ScheduledExecutorService updateScheduler;
+	
+	private static final String ONTOLOGY_VERSION_ID = "id";
+	
 	private static final long ONE_MINUTE = 60000L;
 	
-	private static int DEFAULT_MEM_CACHE_SIZE = 25;
+	private static final long ONE_HOUR = 60L * ONE_MINUTE;
+	
+	private static final long ONE_DAY = 24L * ONE_HOUR;
+	
+	private static final long ONE_SECOND = 1000L;
+	
+	/* one of 'sync' or 'writeBehind' */
+	private static final String DEFAULT_CACHE_COMMIT_MODE = CacheCommitter.Mode.SYNC.name();
+	
+	private static final int DEFAULT_CACHE_COMMIT_BATCH_SIZE = 100;
+	
+	/* in seconds */
+	private static final int DEFAULT_CACHE_COMMIT_INTERVAL = 10;
+	
+	private String cacheCommitMode = DEFAULT_CACHE_COMMIT_MODE;
+	
+	private int cacheCommitBatchSize = DEFAULT_CACHE_COMMIT_BATCH_SIZE;
+	
+	private int cacheCommitInterval = DEFAULT_CACHE_COMMIT_INTERVAL;
+	
+	private CacheCommitter cacheCommitter;
+	
+	private static final String DEFAULT_CACHE_COMPRESSION = CacheValueCodecs.DEFLATE_DICTIONARY.getName();
+	
+	private CacheValueCodec cacheValueCodec = CacheValueCodecs.forName(DEFAULT_CACHE_COMPRESSION);
+	
+	private RequestCoalescer requestCoalescer = new RequestCoalescer();
+	
+	private static final String BIOPORTAL_URL_PREFIX = "/bioportal/";
+	
+	private static final int DEFAULT_HTTP_MAX_CONNECTIONS = 20;
+	
+	private static final int DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST = 10;
+	
+	/* in seconds */
+	private static final int DEFAULT_HTTP_CONNECT_TIMEOUT = 10;
+	
+	/* in seconds */
+	private static final int DEFAULT_HTTP_READ_TIMEOUT = 120;
+	
+	/* in seconds */
+	private static final int DEFAULT_HTTP_KEEP_ALIVE = 30;
+	
+	private int httpMaxConnections = DEFAULT_HTTP_MAX_CONNECTIONS;
+	
+	private int httpMaxConnectionsPerHost = DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST;
+	
+	private int documentBuilderPoolSize;
+	
+	private int httpConnectTimeout = DEFAULT_HTTP_CONNECT_TIMEOUT;
+	
+	private int httpReadTimeout = DEFAULT_HTTP_READ_TIMEOUT;
+	
+	private int httpKeepAlive = DEFAULT_HTTP_KEEP_ALIVE;
+	
+	private boolean httpCompression = true;
+	
+	private ClientHttpRequestFactory clientHttpRequestFactory;
+	
+	/* in minutes */
+	private static final int DEFAULT_ENTITY_NOT_FOUND_TIME_TO_LIVE = 60;
+	
+	private int entityNotFoundTimeToLive = DEFAULT_ENTITY_NOT_FOUND_TIME_TO_LIVE;
+	
+	private boolean concurrentEntityLookup = false;
+	
+	private String localSearchOntologyIds;
+	
+	/* 0 for no limit */
+	private int graphFanOutLimit = 0;
+	
+	private LocalEntitySearch localEntitySearch;
+	
+	private static final int DEFAULT_MEM_CACHE_MAX_ENTRIES = 500;
+	
+	/* in megabytes */
+	private static final int DEFAULT_MEM_CACHE_MAX_SIZE = 32;
+	
+	/* in minutes */
+	private static final int DEFAULT_MEM_CACHE_TIME_TO_LIVE = 60;
+	
+	private static final long ONE_MEGABYTE = 1024L * 1024L;
 	
-	@SuppressWarnings("unchecked")
-	private Map<String,String> memCache = new LRUMap(DEFAULT_MEM_CACHE_SIZE);
+	private MemoryResponseCache memCache = new MemoryResponseCache(
+			DEFAULT_MEM_CACHE_MAX_ENTRIES, 
+			ONE_MEGABYTE * DEFAULT_MEM_CACHE_MAX_SIZE, 
+			ONE_MINUTE * DEFAULT_MEM_CACHE_TIME_TO_LIVE);
 
 	private String cachePath;
 	
@@ -143,11 +288,40 @@ public class BioportalRestService extends BaseCacheObservable
 	@Override
 	public void destroy() throws Exception {
 		log.info("Shutting down... writing cache to file.");
-		this.writeCache();
+		if(this.updateScheduler != null){
+			this.updateScheduler.shutdownNow();
+			//a check may be invalidating -- let it finish before the cache is closed
+			this.updateScheduler.awaitTermination(ONE_MINUTE, TimeUnit.MILLISECONDS);
+		}
+		if(this.maintenanceScheduler != null){
+			this.maintenanceScheduler.shutdownNow();
+			this.maintenanceScheduler.awaitTermination(ONE_MINUTE, TimeUnit.MILLISECONDS);
+		}
+		this.cacheCommitter.shutdown();
 		this.db.close();
+		
+		if(this.clientHttpRequestFactory instanceof PooledClientHttpRequestFactory){
+			((PooledClientHttpRequestFactory)this.clientHttpRequestFactory).shutdown();
+		}
 	}
 
-	protected Map<String, String> createCache(File file) {
+	/**
+	 * Creates the factory for the HTTP connections to Bioportal. By default
+	 * this is a pooled, keep-alive client -- override to plug in another.
+	 *
+	 * @return the client http request factory
+	 */
+	protected ClientHttpRequestFactory createClientHttpRequestFactory() {
+		return new PooledClientHttpRequestFactory(
+				this.httpMaxConnections, 
+				this.httpMaxConnectionsPerHost, 
+				(int) (ONE_SECOND * this.httpConnectTimeout), 
+				(int) (ONE_SECOND * this.httpReadTimeout), 
+				ONE_SECOND * this.httpKeepAlive, 
+				this.httpCompression);
+	}
+
+	protected Map<String, Object> createCache(File file) {
 		this.db = DBMaker.newFileDB(file).
 				randomAccessFileEnable().
 				closeOnJvmShutdown().
@@ -155,6 +329,103 @@ public class BioportalRestService extends BaseCacheObservable
 		
 		return db.getHashMap(BIOPORTAL_CACHE_NAME);
 	}
+	
+	/**
+	 * Creates the tag index of the cache. With a MapDB cache the index is
+	 * kept (and committed) in the same database; a cache written before 
+	 * there was an index gets indexed once, here.
+	 *
+	 * @return the cache tag index
+	 */
+	protected CacheTagIndex createCacheTagIndex() {
+		NavigableSet<String> entries;
+		if(this.db != null){
+			entries = this.db.getTreeSet(BIOPORTAL_CACHE_TAGS_NAME);
+		} else {
+			entries = new ConcurrentSkipListSet<String>();
+		}
+		
+		CacheTagIndex index = new CacheTagIndex(entries);
+		
+		if(index.isEmpty() && ! this.cache.isEmpty()){
+			log.info("Indexing the tags of " + this.cache.size() + " cached responses.");
+			for(String key : this.cache.keySet()){
+				index.add(key);
+			}
+			
+			if(this.cacheCommitter != null){
+				this.cacheCommitter.onWrite();
+			}
+		}
+		
+		return index;
+	}
+	
+	/**
+	 * Creates the policy bounding the cache. With a MapDB cache the entry
+	 * timestamps and sizes are kept in the same database; responses cached
+	 * before there was a policy are tracked from now.
+	 *
+	 * @return the persistent cache policy
+	 */
+	protected PersistentCachePolicy createCachePolicy() {
+		Map<String,long[]> entries;
+		if(this.db != null){
+			entries = this.db.getHashMap(BIOPORTAL_CACHE_ENTRIES_NAME);
+		} else {
+			entries = new ConcurrentHashMap<String,long[]>();
+		}
+		
+		PersistentCachePolicy policy = new PersistentCachePolicy(
+				entries, 
+				ONE_MEGABYTE * this.cacheMaxSize, 
+				ONE_DAY * this.cacheTimeToLive);
+		
+		if(entries.isEmpty() && ! this.cache.isEmpty()){
+			log.info("Tracking the sizes of " + this.cache.size() + " cached responses.");
+			policy.track(this.cache);
+			
+			if(this.cacheCommitter != null){
+				this.cacheCommitter.onWrite();
+			}
+		}
+		
+		return policy;
+	}
+	
+	/**
+	 * Gets the policy bounding the cache, creating it on first use. It is
+	 * consulted on every cache read, so only its creation is synchronized.
+	 *
+	 * @return the persistent cache policy
+	 */
+	public PersistentCachePolicy getCachePolicy() {
+		PersistentCachePolicy policy = this.cachePolicy;
+		if(policy == null){
+			synchronized(this){
+				policy = this.cachePolicy;
+				if(policy == null){
+					policy = this.createCachePolicy();
+					this.cachePolicy = policy;
+				}
+			}
+		}
+		
+		return policy;
+	}
+	
+	/**
+	 * Gets the tag index of the cache, creating it on first use.
+	 *
+	 * @return the cache tag index
+	 */
+	protected synchronized CacheTagIndex getCacheTagIndex() {
+		if(this.cacheTagIndex == null){
+			this.cacheTagIndex = this.createCacheTagIndex();
+		}
+		
+		return this.cacheTagIndex;
+	}
 
 	public String getLatestViews(boolean forceRefresh){
 		String url = buildGetLatestViewsUrl();
@@ -207,15 +478,6 @@ public class BioportalRestService extends BaseCacheObservable
 		return url;
 	}
 	
-	/**
-	 * Purge get latest ontology versions.
-	 */
-	private void purgeGetLatestOntologyVersions(){
-		String url = buildGetLatestOntologyVersionsUrl();
-		
-		this.purgeCache(url);
-	}
-	
 	/**
 	 * Gets the entity by ontology version id and entity id.
 	 *
@@ -227,7 +489,7 @@ public class BioportalRestService extends BaseCacheObservable
 		String url = "http://rest.bioontology.org/bioportal/concepts/" + ontologyVersionId + "?" 
 				+ "conceptid=" + entityId;
 
-		String xml = this.doCallBioportalMemCache(url);
+		String xml = this.doCallBioportalMemCache(url, MemoryResponseCache.Category.CONCEPT);
 
 		return xml;
 	}
@@ -241,7 +503,7 @@ public class BioportalRestService extends BaseCacheObservable
 	public String getHierarchyRootsByOntolotyVersionId(String ontologyVersionId){
 		String url = "http://rest.bioontology.org/bioportal/concepts/" + ontologyVersionId + "/root";
 
-		String xml = this.doCallBioportalMemCache(url);
+		String xml = this.doCallBioportalMemCache(url, MemoryResponseCache.Category.ROOT);
 
 		return xml;
 	}
@@ -283,17 +545,6 @@ public class BioportalRestService extends BaseCacheObservable
 		return url;
 	}
 	
-	/**
-	 * Purge get latest ontology version by ontology id.
-	 *
-	 * @param ontologyId the ontology id
-	 */
-	private void purgeGetLatestOntologyVersionByOntologyId(String ontologyId){
-		String url = buildGetLatestOntologyVersionByOntologyIdUrl(ontologyId);
-		
-		this.purgeCache(url);
-	}
-	
 	/**
 	 * Gets the ontology by ontology version id.
 	 *
@@ -372,17 +623,6 @@ public class BioportalRestService extends BaseCacheObservable
 		return url;
 	}
 	
-	/**
-	 * Purge get ontology versions by ontology id.
-	 *
-	 * @param ontologyId the ontology id
-	 */
-	private void purgeGetOntologyVersionsByOntologyId(String ontologyId){
-		String url = buildGetOntologyVersionsByOntologyIdUrl(ontologyId);
-		
-		this.purgeCache(url);
-	}
-
 	/**
 	 * Gets the all entities by ontology version id.
 	 *
@@ -454,6 +694,13 @@ public class BioportalRestService extends BaseCacheObservable
 	 * @return the string
 	 */
 	protected String doSearchEntities(Collection<String> ontologyIds, ResolvedFilter filter, Page page){
+		if(this.localEntitySearch != null){
+			String localXml = this.localEntitySearch.search(ontologyIds, filter, page);
+			if(localXml != null){
+				return localXml;
+			}
+		}
+		
 		String url = "http://rest.bioontology.org/bioportal/search/" + filter.getMatchValue() +
 			"?pagenum=" + (page.getPage() + 1) +
 			"&pagesize=" + page.getMaxToReturn();
@@ -480,7 +727,7 @@ public class BioportalRestService extends BaseCacheObservable
 		sb.append(
 				this.getBioportalQueryStringForFilter(filter));
 		
-		String xml = this.doCallBioportalMemCache(sb.toString());
+		String xml = this.doCallBioportalMemCache(sb.toString(), MemoryResponseCache.Category.SEARCH);
 
 		return xml;
 	}
@@ -507,13 +754,14 @@ public class BioportalRestService extends BaseCacheObservable
 	}
 	
 	/**
-	 * Append api key.
+	 * Append api key. Only the urls actually called carry the key --
+	 * the cache is keyed by {@link CacheKeys}, without it.
 	 *
 	 * @param url the url
 	 * @return the string
 	 */
 	private String appendApiKey(String url){
-		String fullUrl = url + ( url.contains("?") ? "&" : "?") + API_KEY_PARAM + "=" + this.apiKey;
+		String fullUrl = url + ( url.contains("?") ? "&" : "?") + CacheKeys.API_KEY_PARAM + "=" + this.apiKey;
 		
 		return fullUrl;
 	}
@@ -527,31 +775,92 @@ public class BioportalRestService extends BaseCacheObservable
 	 * @param url the url
 	 * @return the string
 	 */
-	protected String doCallBioportal(String url, boolean forceRefresh){
-		String fullUrl = this.appendApiKey(url);
+	protected String doCallBioportal(final String url, final boolean forceRefresh){
+		final String key = CacheKeys.getKey(url);
 		
-		if(forceRefresh){
-			String xml = this.callBioportal(fullUrl);
-			
-			this.cache.put(fullUrl, xml);
-			
-			this.writeCache();
+		if(! forceRefresh){
+			String xml = this.getCachedResponse(key);
 			
-			return xml;
-		} else {
-			if(!this.cache.containsKey(fullUrl)){
+			if(xml != null){
+				return xml;
+			}
+		}
 		
-				String xml = this.callBioportal(fullUrl);
+		return this.requestCoalescer.execute(key, getEndpoint(url), new Callable<String>(){
+
+			public String call() throws Exception {
+				//a call for the same key may have finished, and cached
+				//its response, since the check above
+				if(! forceRefresh){
+					String cached = getCachedResponse(key);
+					
+					if(cached != null){
+						return cached;
+					}
+				}
 				
-				this.cache.put(fullUrl, xml);
-	
-				this.writeCache();
+				String xml = callBioportal(appendApiKey(url));
+				
+				Object value = CacheValueCodecs.encode(xml, cacheValueCodec);
+				
+				//same lock as maintenance and compaction
+				synchronized(cache){
+					cache.put(key, value);
+					getCacheTagIndex().add(key);
+					getCachePolicy().onPut(key, value);
+		
+					cacheCommitter.onWrite();
+				}
 				
 				return xml;
-			} else {
-				return new String(this.cache.get(fullUrl));
 			}
+			
+		});
+	}
+	
+	/**
+	 * Gets a response from the persistent cache, decoding it if it was 
+	 * stored encoded. A value that can't be decoded is dropped, and read
+	 * as a miss -- as is one past its time-to-live.
+	 *
+	 * @param key the cache key
+	 * @return the response, or null if not cached
+	 */
+	protected String getCachedResponse(String key){
+		if(this.getCachePolicy().isExpired(key, System.currentTimeMillis())){
+			return null;
+		}
+		
+		Object value = this.cache.get(key);
+		
+		try {
+			return CacheValueCodecs.decode(value, this.cacheValueCodec);
+		} catch (RuntimeException e) {
+			log.warn("Could not decode the cached response of: " + key + ", dropping it.", e);
+			this.purgeCache(key);
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * Remove a response from the persistent cache, its tag index and its
+	 * policy. Callers hold the cache lock, and commit.
+	 *
+	 * @param key the cache key
+	 * @return true, if there was a response
+	 */
+	private boolean removeCachedResponse(String key){
+		boolean removed = this.cache.remove(key) != null;
+		
+		this.getCacheTagIndex().remove(key);
+		this.getCachePolicy().onRemove(key);
+		
+		if(removed){
+			this.removedSinceCompaction.incrementAndGet();
 		}
+		
+		return removed;
 	}
 	
 	/**
@@ -560,14 +869,14 @@ public class BioportalRestService extends BaseCacheObservable
 	 * @param url the url
 	 */
 	protected void purgeCache(String url){
-		String fullUrl = this.appendApiKey(url);
+		String key = CacheKeys.getKey(url);
 		
 		synchronized(cache){
 		
-			this.cache.remove(fullUrl);
+			this.removeCachedResponse(key);
 			
 			try {
-				this.writeCache();
+				this.cacheCommitter.onWrite();
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
@@ -578,19 +887,43 @@ public class BioportalRestService extends BaseCacheObservable
 	 * Do call bioportal mem cache.
 	 *
 	 * @param url the url
+	 * @param category the kind of call, for cache statistics
 	 * @return the string
 	 */
-	protected String doCallBioportalMemCache(String url){
-		String fullUrl = url + ( url.contains("?") ? "&" : "?") + API_KEY_PARAM + "=" + this.apiKey;
+	protected String doCallBioportalMemCache(final String url, final MemoryResponseCache.Category category){
+		final String key = CacheKeys.getKey(url);
 		
-		if(! this.memCache.containsKey(fullUrl)){
+		String xml = this.memCache.get(key, category);
+		
+		if(xml == null){
 	
-			String xml = this.callBioportal(fullUrl);
-			
-			this.memCache.put(fullUrl, xml);
+			xml = this.requestCoalescer.execute(key, getEndpoint(url), new Callable<String>(){
+
+				public String call() throws Exception {
+					String response = callBioportal(appendApiKey(url));
+					
+					memCache.put(key, response, category);
+					
+					return response;
+				}
+				
+			});
 		}
 		
-		return new String(this.memCache.get(fullUrl));
+		return xml;
+	}
+	
+	/**
+	 * Gets the endpoint name of a url -- the first path segment after
+	 * '/bioportal/', for example 'concepts' or 'search'.
+	 *
+	 * @param url the url
+	 * @return the endpoint
+	 */
+	protected static String getEndpoint(String url){
+		String path = StringUtils.substringAfter(url, BIOPORTAL_URL_PREFIX);
+		
+		return StringUtils.substringBefore(StringUtils.substringBefore(path, "/"), "?");
 	}
 	
 	/**
@@ -652,6 +985,11 @@ public class BioportalRestService extends BaseCacheObservable
     	
     	this.setApiKey();
     	
+    	BioportalRestUtils.initDocumentBuilderPool(this.documentBuilderPoolSize);
+    	
+    	this.clientHttpRequestFactory = this.createClientHttpRequestFactory();
+    	this.restTemplate.setRequestFactory(this.clientHttpRequestFactory);
+    	
     	if(StringUtils.isBlank(this.cachePath)){
     		this.cachePath = 
 				this.pluginConfigManager.getPluginWorkDirectory(BIOPORTAL_CONFIG_NAMESPACE).
@@ -668,10 +1006,226 @@ public class BioportalRestService extends BaseCacheObservable
 			
 		this.cache = this.createCache(file);
 		
-		//not sure this is helping the cause.
-		//this.startRssChangeTimer();
+		this.cacheCommitter = new CacheCommitter(
+				this.db, 
+				this.cache,
+				CacheCommitter.toMode(this.cacheCommitMode), 
+				this.cacheCommitBatchSize, 
+				ONE_SECOND * this.cacheCommitInterval);
+		this.cacheCommitter.start();
+		
+		this.getCacheTagIndex();
+		
+		this.migrateCacheKeys();
+		
+		this.getCachePolicy();
+		
+		this.startCacheMaintenance();
+		
+		if(this.cacheUpdatePeriod > 0 && this.bioportalRssFeedClient != null){
+			this.startRssChangeTimer();
+		}
 	}
     
+    /**
+     * Start the background maintenance of the cache: every few minutes
+     * the expired responses are removed and, if the cache is over its size
+     * limit, the oldest are evicted; every 'cacheCompactionPeriod' hours
+     * the cache file is compacted, if anything was removed since the last
+     * compaction. None of this runs on the request path.
+     */
+    public synchronized void startCacheMaintenance(){
+    	if(this.maintenanceScheduler != null){
+    		return;
+    	}
+    	
+    	this.maintenanceScheduler = Executors.newSingleThreadScheduledExecutor(
+    			new NamedThreadFactory("bioportal-cache-maintenance"));
+    	
+    	if(this.cacheMaxSize > 0 || this.cacheTimeToLive > 0){
+	    	this.maintenanceScheduler.scheduleWithFixedDelay(new Runnable(){
+	
+				public void run() {
+					try {
+						maintainCache();
+					} catch (Throwable e) {
+						log.warn("Error maintaining the cache.", e);
+					}
+				}
+	    		
+	    	}, CACHE_MAINTENANCE_PERIOD, CACHE_MAINTENANCE_PERIOD, TimeUnit.MINUTES);
+    	}
+    	
+    	if(this.cacheCompactionPeriod > 0){
+	    	this.maintenanceScheduler.scheduleWithFixedDelay(new Runnable(){
+	
+				public void run() {
+					try {
+						if(removedSinceCompaction.get() > 0){
+							compactCache();
+						}
+					} catch (Throwable e) {
+						log.warn("Error compacting the cache.", e);
+					}
+				}
+	    		
+	    	}, this.cacheCompactionPeriod, this.cacheCompactionPeriod, TimeUnit.HOURS);
+    	}
+    }
+    
+    /**
+     * Remove the expired responses and, if the cache is over its size limit,
+     * the oldest ones. They are selected without holding up cache writes;
+     * a response stored again in the meantime is kept.
+     *
+     * @return the number of responses removed
+     */
+    public int maintainCache(){
+    	PersistentCachePolicy policy = this.getCachePolicy();
+    	
+    	long now = System.currentTimeMillis();
+    	
+    	Map<String,Long> selected = policy.selectForRemoval(now);
+    	if(selected.isEmpty()){
+    		return 0;
+    	}
+    	
+    	int removed = 0;
+    	synchronized(this.cache){
+    		for(Map.Entry<String,Long> entry : selected.entrySet()){
+    			if(policy.evict(entry.getKey(), entry.getValue(), now)){
+    				this.removeCachedResponse(entry.getKey());
+    				removed++;
+    			}
+    		}
+    		
+    		this.cacheCommitter.onWrite();
+    	}
+    	
+    	log.info("Removed " + removed + " expired or evicted cached responses - " + policy);
+    	
+    	return removed;
+    }
+    
+    /**
+     * Compact the cache file, reclaiming the space of removed responses.
+     * Pending writes are committed first; the compaction itself runs
+     * without the cache lock -- MapDB compacts safely alongside readers
+     * and writers -- so requests are not held up while it runs.
+     */
+    public void compactCache(){
+    	if(this.db == null){
+    		return;
+    	}
+    	
+    	long start = System.currentTimeMillis();
+    	
+    	synchronized(this.cache){
+    		this.cacheCommitter.flush();
+    		this.removedSinceCompaction.set(0);
+    	}
+    	
+    	this.db.compact();
+    	
+    	this.lastCompactionMillis = System.currentTimeMillis() - start;
+    	this.compactionCount.incrementAndGet();
+    	
+    	log.info("Compacted the cache in " + this.lastCompactionMillis + 
+    			" ms, the cache file is now " + this.getCacheFileSize() + " bytes.");
+    }
+    
+    /**
+     * Gets the size of the cache file(s) on disk.
+     *
+     * @return the size in bytes
+     */
+    public long getCacheFileSize(){
+    	File cacheFile = this.getCacheFile();
+    	File[] files = cacheFile.getParentFile() != null ? cacheFile.getParentFile().listFiles() : null;
+    	
+    	long size = 0;
+    	if(files != null){
+	    	for(File file : files){
+	    		if(file.getName().startsWith(cacheFile.getName())){
+	    			size += file.length();
+	    		}
+	    	}
+    	}
+    	
+    	return size;
+    }
+    
+    /**
+     * Gets how long the last compaction took.
+     *
+     * @return the time in milliseconds, or -1 if the cache was never compacted
+     */
+    public long getLastCompactionMillis(){
+    	return this.lastCompactionMillis;
+    }
+    
+    public long getCompactionCount(){
+    	return this.compactionCount.get();
+    }
+    
+    /**
+     * Rekey, in place, a cache written with the old keys -- the full url, 
+     * API key included. Runs once per cache: when done, the key format is
+     * recorded with the cache.
+     *
+     * @return the number of entries rekeyed
+     */
+    protected int migrateCacheKeys(){
+    	Map<String,String> cacheInfo = this.getCacheInfo();
+    	if(CACHE_KEY_FORMAT.equals(cacheInfo.get(CACHE_KEY_FORMAT_PROP))){
+    		return 0;
+    	}
+    	
+    	CacheTagIndex index = this.getCacheTagIndex();
+    	
+    	int migrated = 0;
+    	synchronized(this.cache){
+    		for(String oldKey : new ArrayList<String>(this.cache.keySet())){
+    			String key = CacheKeys.getKey(oldKey);
+    			if(! key.equals(oldKey)){
+    				Object value = this.cache.get(oldKey);
+    				this.removeCachedResponse(oldKey);
+    				
+    				if(value != null && ! this.cache.containsKey(key)){
+    					this.cache.put(key, value);
+    					index.add(key);
+    					this.getCachePolicy().onPut(key, value);
+    				}
+    				migrated++;
+    			}
+    		}
+    		
+    		cacheInfo.put(CACHE_KEY_FORMAT_PROP, CACHE_KEY_FORMAT);
+    		
+    		this.cacheCommitter.onWrite();
+    		this.cacheCommitter.flush();
+    	}
+    	
+    	if(migrated > 0){
+    		log.info("Rekeyed " + migrated + " cached responses.");
+    	}
+    	
+    	return migrated;
+    }
+    
+    /**
+     * Gets what is recorded about the cache itself (its key format).
+     *
+     * @return the cache info
+     */
+    private Map<String,String> getCacheInfo(){
+    	if(this.db != null){
+    		return this.db.getHashMap(BIOPORTAL_CACHE_INFO_NAME);
+    	} else {
+    		return new HashMap<String,String>();
+    	}
+    }
+    
     private File getCacheFile(){
     	String cacheFilePath = 
 	    		this.cachePath + "/cache.out";
@@ -687,23 +1241,51 @@ public class BioportalRestService extends BaseCacheObservable
     }
     
     /**
-     * Start rss change timer.
+     * Start checking the RSS feed for updated ontologies, every
+     * 'cacheUpdatePeriod' minutes, on a background thread.
      */
-    public void startRssChangeTimer(){
-    	Timer timer = new Timer(true);
-    	timer.scheduleAtFixedRate(new TimerTask(){
+    public synchronized void startRssChangeTimer(){
+    	if(this.updateScheduler != null){
+    		return;
+    	}
+    	
+    	this.updateScheduler = Executors.newSingleThreadScheduledExecutor(
+    			new NamedThreadFactory("bioportal-rss-updates"));
+    	
+    	this.updateScheduler.scheduleWithFixedDelay(new Runnable(){
 
-			@Override
 			public void run() {
-				checkForUpdates(
-						bioportalRssFeedClient.getBioportalRssFeed());
+				checkForUpdates();
 			}
     		
-    	}, 0, ONE_MINUTE * this.cacheUpdatePeriod);
+    	}, 0, this.cacheUpdatePeriod, TimeUnit.MINUTES);
+    }
+    
+    /**
+     * Check the RSS feed for updates. Never throws -- a failure is
+     * logged and the check is retried next period.
+     */
+    protected void checkForUpdates(){
+        try {
+            SyndFeed feed = this.bioportalRssFeedClient.getBioportalRssFeed();
+            
+            if(feed != null){
+                this.checkForUpdates(feed);
+            }
+        } catch(Exception e){
+            log.warn("Error reading RSS feed.", e);
+        }
     }
     
     /**
-     * Check for updates.
+     * Check for updates. The ontologies updated since the high-water mark 
+     * (the newest entry date seen last time, kept in the update log) have
+     * all their dependent cache entries invalidated, then the mark is moved
+     * forward and the observers are told.
+     * 
+     * With no update log yet (a new cache, or the first check after an
+     * upgrade) there is nothing to compare against, so the first check
+     * only records the mark.
      *
      * @param feed the feed
      */
@@ -714,26 +1296,142 @@ public class BioportalRestService extends BaseCacheObservable
             Date lastUpdateFromFeed = this.getLastUpdateFromFeed(feed);
 
             //account for a null feed coming back from bioportal
-            if(lastUpdateFromFeed != null &&
-                    (lastUpdate == null || lastUpdateFromFeed.after(lastUpdate)) ){
+            if(lastUpdateFromFeed != null && lastUpdate == null){
+                log.info("No update log found, recording the RSS feed high-water mark.");
+
+                this.writeUpdateLog(lastUpdateFromFeed);
+            } else if(lastUpdateFromFeed != null && lastUpdateFromFeed.after(lastUpdate)){
                 List<String> ontologyIds =
-                    this.getUpdatedOntologies(feed, lastUpdateFromFeed);
+                    this.getUpdatedOntologies(feed, lastUpdate);
 
-                for(String ontologyId : ontologyIds) {
-                    this.purgeGetLatestOntologyVersions();
-                    this.purgeGetLatestOntologyVersionByOntologyId(ontologyId);
-                    this.purgeGetOntologyVersionsByOntologyId(ontologyId);
+                if(! ontologyIds.isEmpty()){
+                    this.invalidateOntologies(ontologyIds);
                 }
 
                 this.writeUpdateLog(lastUpdateFromFeed);
 
-                this.fireOnCodeSystemsChangeEvent(ontologyIds);
+                if(! ontologyIds.isEmpty()){
+                    this.fireOnCodeSystemsChangeEvent(ontologyIds);
+                }
             }
         } catch(Exception e){
             log.warn("Error reading RSS feed.", e);
         }
     }
     
+    /**
+     * Invalidate every cached response depending on an ontology.
+     *
+     * @param ontologyId the ontology id
+     * @return the number of persistent cache entries removed
+     * @see #invalidateOntologies(Collection)
+     */
+    public int invalidateOntology(String ontologyId){
+    	return this.invalidateOntologies(Collections.singleton(ontologyId));
+    }
+    
+    /**
+     * Invalidate every cached response depending on the given ontologies:
+     * the ontology and view listings, their versions and concepts, and
+     * searches over them (or over all ontologies) -- in the persistent 
+     * cache and the memory cache. The parsed response caches are keyed
+     * by the response content, so they never serve a stale response.
+     *
+     * @param ontologyIds the ontology ids
+     * @return the number of persistent cache entries removed
+     */
+    public int invalidateOntologies(Collection<String> ontologyIds){
+    	Set<String> tags = new LinkedHashSet<String>();
+    	tags.add(CacheTags.LISTING);
+    	tags.add(CacheTags.ALL_ONTOLOGIES);
+    	
+    	for(String ontologyId : ontologyIds){
+    		tags.add(CacheTags.ontology(ontologyId));
+    		for(String ontologyVersionId : this.getCachedOntologyVersionIds(ontologyId)){
+    			tags.add(CacheTags.version(ontologyVersionId));
+    		}
+    	}
+    	
+    	int removed = this.invalidateTags(tags);
+    	
+    	log.info("Invalidated the cached responses of ontologies: " + ontologyIds);
+    	
+    	return removed;
+    }
+    
+    /**
+     * Invalidate every cached response with any of the given {@link CacheTags}.
+     * The keys come from the tag indexes, so this costs in proportion to the
+     * number of entries removed, not to the size of the cache. The 
+     * {@link CacheTagObserver}s are then told once per tag.
+     *
+     * @param tags the tags
+     * @return the number of persistent cache entries removed
+     */
+    public int invalidateTags(Collection<String> tags){
+    	CacheTagIndex index = this.getCacheTagIndex();
+    	
+    	int removed = 0;
+    	synchronized(this.cache){
+    		for(String tag : tags){
+    			for(String key : index.getKeys(tag)){
+    				if(this.removeCachedResponse(key)){
+    					removed++;
+    				}
+    			}
+    		}
+    		
+    		this.cacheCommitter.onWrite();
+    	}
+    	
+    	int memRemoved = 0;
+    	for(String tag : tags){
+    		memRemoved += this.memCache.removeTagged(tag);
+    	}
+    	
+    	for(String tag : tags){
+    		this.fireOnCacheTagInvalidated(tag);
+    	}
+    	
+    	log.info("Invalidated " + removed + " cached and " + memRemoved + 
+    			" in-memory responses tagged: " + tags);
+    	
+    	return removed;
+    }
+    
+    /**
+     * Gets the version ids of an ontology known to the cache, without
+     * calling Bioportal -- from its cached version listing and latest version.
+     *
+     * @param ontologyId the ontology id
+     * @return the ontology version ids
+     */
+    protected Set<String> getCachedOntologyVersionIds(String ontologyId){
+    	Set<String> ontologyVersionIds = new HashSet<String>();
+    	
+    	try {
+    		String versionsXml = this.getCachedResponse(
+    				CacheKeys.getKey(this.buildGetOntologyVersionsByOntologyIdUrl(ontologyId)));
+    		if(versionsXml != null){
+    			for(OntologyBean bean : TransformUtils.getOntologyBeanList(versionsXml)){
+    				ontologyVersionIds.add(bean.get(ONTOLOGY_VERSION_ID));
+    			}
+    		}
+    		
+    		String latestXml = this.getCachedResponse(
+    				CacheKeys.getKey(this.buildGetLatestOntologyVersionByOntologyIdUrl(ontologyId)));
+    		if(latestXml != null){
+    			ontologyVersionIds.add(TransformUtils.getOntologyBean(latestXml).get(ONTOLOGY_VERSION_ID));
+    		}
+    	} catch (Exception e) {
+    		log.warn("Could not read the cached versions of ontology: " + ontologyId, e);
+    	}
+    	
+    	ontologyVersionIds.remove(null);
+    	
+    	return ontologyVersionIds;
+    }
+    
     /**
      * Gets the last update from feed.
      *
@@ -744,10 +1442,8 @@ public class BioportalRestService extends BaseCacheObservable
     	Date latestDate = null;
     	
     	for(Object entry : feed.getEntries()){
-			SyndEntry  syndEntry = (SyndEntry)entry;
-			DateModule date = (DateModule) syndEntry.getModule(DateModule.URI);
-			Date foundDate = date.getDate();
-			if(latestDate == null || foundDate.after(latestDate)){
+			Date foundDate = getDate((SyndEntry)entry);
+			if(foundDate != null && (latestDate == null || foundDate.after(latestDate))){
 				latestDate = foundDate;
 			}
 		}
@@ -756,36 +1452,45 @@ public class BioportalRestService extends BaseCacheObservable
     }
     
     /**
-     * Gets the updated ontologies.
+     * Gets the ontologies updated after a date.
      *
      * @param feed the feed
-     * @param fromDate the from date
-     * @return the updated ontologies
+     * @param fromDate the from date (exclusive), or null for all entries
+     * @return the updated ontologies, each listed once
      */
     protected List<String> getUpdatedOntologies(SyndFeed feed, Date fromDate){
   
-    	List<String> ontologyIdList = new ArrayList<String>();
+    	Set<String> ontologyIds = new LinkedHashSet<String>();
     	
     	for(Object entry : feed.getEntries()){
 			SyndEntry  syndEntry = (SyndEntry)entry;
-			DateModule date = (DateModule) syndEntry.getModule(DateModule.URI);
-			Date foundDate = date.getDate();
-			if(foundDate.after(foundDate)){
-				ontologyIdList.add(
-						StringUtils.substringAfterLast(syndEntry.getLink(), "/"));
+			Date foundDate = getDate(syndEntry);
+			if(foundDate != null && (fromDate == null || foundDate.after(fromDate))){
+				String ontologyId = StringUtils.substringAfterLast(syndEntry.getLink(), "/");
+				if(StringUtils.isNotBlank(ontologyId)){
+					ontologyIds.add(ontologyId);
+				}
 			}
 		}
     	
-    	return ontologyIdList;
+    	return new ArrayList<String>(ontologyIds);
+    }
+    
+    private static Date getDate(SyndEntry syndEntry){
+    	DateModule date = (DateModule) syndEntry.getModule(DateModule.URI);
+    	
+    	return date != null ? date.getDate() : null;
     }
 
 	/**
-	 * Write cache.
-	 *
-	 * @throws IOException Signals that an I/O exception has occurred.
+	 * Commit any cache writes still pending in write-behind mode.
 	 */
-	private void writeCache() {
-		this.db.commit();
+	public void flushCache() {
+		this.cacheCommitter.flush();
+	}
+	
+	public CacheCommitter getCacheCommitter() {
+		return cacheCommitter;
 	}
 	
 	/**
@@ -852,6 +1557,302 @@ public class BioportalRestService extends BaseCacheObservable
 		return cacheUpdatePeriod;
 	}
 
+	public String getCacheCommitMode() {
+		return cacheCommitMode;
+	}
+
+	/**
+	 * Sets the cache commit mode, either 'sync' (commit on every write) or
+	 * 'writeBehind' (commit in batches on a background thread).
+	 *
+	 * @param cacheCommitMode the new cache commit mode
+	 */
+	public void setCacheCommitMode(String cacheCommitMode) {
+		this.cacheCommitMode = cacheCommitMode;
+	}
+
+	public int getCacheCommitBatchSize() {
+		return cacheCommitBatchSize;
+	}
+
+	public void setCacheCommitBatchSize(int cacheCommitBatchSize) {
+		this.cacheCommitBatchSize = cacheCommitBatchSize;
+	}
+
+	public int getCacheCommitInterval() {
+		return cacheCommitInterval;
+	}
+
+	/**
+	 * Sets the max time between write-behind commits.
+	 *
+	 * @param cacheCommitInterval the new cache commit interval, in seconds
+	 */
+	public void setCacheCommitInterval(int cacheCommitInterval) {
+		this.cacheCommitInterval = cacheCommitInterval;
+	}
+
+	public int getHttpMaxConnections() {
+		return httpMaxConnections;
+	}
+
+	public void setHttpMaxConnections(int httpMaxConnections) {
+		this.httpMaxConnections = httpMaxConnections;
+	}
+
+	public int getDocumentBuilderPoolSize() {
+		return documentBuilderPoolSize;
+	}
+
+	/**
+	 * Sets the number of XML parsers shared by all requests. The pool is
+	 * sized once, on startup.
+	 *
+	 * @param documentBuilderPoolSize the size, or 0 for twice the number of processors
+	 */
+	public void setDocumentBuilderPoolSize(int documentBuilderPoolSize) {
+		this.documentBuilderPoolSize = documentBuilderPoolSize;
+	}
+
+	public int getHttpMaxConnectionsPerHost() {
+		return httpMaxConnectionsPerHost;
+	}
+
+	public void setHttpMaxConnectionsPerHost(int httpMaxConnectionsPerHost) {
+		this.httpMaxConnectionsPerHost = httpMaxConnectionsPerHost;
+	}
+
+	public int getHttpConnectTimeout() {
+		return httpConnectTimeout;
+	}
+
+	/**
+	 * Sets the connect timeout.
+	 *
+	 * @param httpConnectTimeout the new connect timeout, in seconds
+	 */
+	public void setHttpConnectTimeout(int httpConnectTimeout) {
+		this.httpConnectTimeout = httpConnectTimeout;
+	}
+
+	public int getHttpReadTimeout() {
+		return httpReadTimeout;
+	}
+
+	/**
+	 * Sets the read timeout.
+	 *
+	 * @param httpReadTimeout the new read timeout, in seconds
+	 */
+	public void setHttpReadTimeout(int httpReadTimeout) {
+		this.httpReadTimeout = httpReadTimeout;
+	}
+
+	public int getHttpKeepAlive() {
+		return httpKeepAlive;
+	}
+
+	/**
+	 * Sets how long an idle pooled connection is kept open.
+	 *
+	 * @param httpKeepAlive the new keep alive, in seconds
+	 */
+	public void setHttpKeepAlive(int httpKeepAlive) {
+		this.httpKeepAlive = httpKeepAlive;
+	}
+
+	public boolean isHttpCompression() {
+		return httpCompression;
+	}
+
+	public void setHttpCompression(boolean httpCompression) {
+		this.httpCompression = httpCompression;
+	}
+
+	/**
+	 * Gets the name of the codec the persistent cache stores responses with.
+	 *
+	 * @return the codec name, or 'none'
+	 */
+	public String getCacheCompression() {
+		return this.cacheValueCodec != null ? this.cacheValueCodec.getName() : CacheValueCodecs.NONE;
+	}
+
+	/**
+	 * Sets the codec the persistent cache stores new responses with -- 
+	 * 'none', 'deflate' or 'deflate-dictionary'. Responses already cached
+	 * stay readable whatever they were stored with.
+	 *
+	 * @param cacheCompression the codec name
+	 */
+	public void setCacheCompression(String cacheCompression) {
+		this.cacheValueCodec = CacheValueCodecs.forName(cacheCompression);
+	}
+
+	public CacheValueCodec getCacheValueCodec() {
+		return cacheValueCodec;
+	}
+
+	/**
+	 * Plug in a codec of your own for the persistent cache.
+	 *
+	 * @param cacheValueCodec the codec, or null to store responses as they are
+	 */
+	public void setCacheValueCodec(CacheValueCodec cacheValueCodec) {
+		this.cacheValueCodec = cacheValueCodec;
+	}
+
+	/**
+	 * Gets the max size of the persistent cache.
+	 *
+	 * @return the max size in megabytes, or 0 for no limit
+	 */
+	public int getCacheMaxSize() {
+		return cacheMaxSize;
+	}
+
+	public synchronized void setCacheMaxSize(int cacheMaxSize) {
+		this.cacheMaxSize = cacheMaxSize;
+		if(this.cachePolicy != null){
+			this.cachePolicy.setMaxBytes(ONE_MEGABYTE * cacheMaxSize);
+		}
+	}
+
+	/**
+	 * Gets how long a response is kept in the persistent cache.
+	 *
+	 * @return the time to live in days, or 0 for no expiry
+	 */
+	public int getCacheTimeToLive() {
+		return cacheTimeToLive;
+	}
+
+	public synchronized void setCacheTimeToLive(int cacheTimeToLive) {
+		this.cacheTimeToLive = cacheTimeToLive;
+		if(this.cachePolicy != null){
+			this.cachePolicy.setTimeToLiveMillis(ONE_DAY * cacheTimeToLive);
+		}
+	}
+
+	/**
+	 * Gets how often the cache file is compacted.
+	 *
+	 * @return the period in hours, or 0 if never
+	 */
+	public int getCacheCompactionPeriod() {
+		return cacheCompactionPeriod;
+	}
+
+	public void setCacheCompactionPeriod(int cacheCompactionPeriod) {
+		this.cacheCompactionPeriod = cacheCompactionPeriod;
+	}
+
+	public RequestCoalescer getRequestCoalescer() {
+		return requestCoalescer;
+	}
+
+	public MemoryResponseCache getMemCache() {
+		return memCache;
+	}
+
+	public int getMemCacheMaxEntries() {
+		return this.memCache.getMaxEntries();
+	}
+
+	public void setMemCacheMaxEntries(int memCacheMaxEntries) {
+		this.memCache.setMaxEntries(memCacheMaxEntries);
+	}
+
+	/**
+	 * Gets the max size of the in-memory response cache.
+	 *
+	 * @return the max size, in megabytes
+	 */
+	public int getMemCacheMaxSize() {
+		return (int) (this.memCache.getMaxBytes() / ONE_MEGABYTE);
+	}
+
+	public void setMemCacheMaxSize(int memCacheMaxSize) {
+		this.memCache.setMaxBytes(ONE_MEGABYTE * memCacheMaxSize);
+	}
+
+	/**
+	 * Gets how long an in-memory response is valid.
+	 *
+	 * @return the time to live, in minutes
+	 */
+	public int getMemCacheTimeToLive() {
+		return (int) (this.memCache.getTimeToLiveMillis() / ONE_MINUTE);
+	}
+
+	public void setMemCacheTimeToLive(int memCacheTimeToLive) {
+		this.memCache.setTimeToLiveMillis(ONE_MINUTE * memCacheTimeToLive);
+	}
+
+	/**
+	 * Gets how long an entity id Bioportal answered 'not found' for
+	 * is remembered as missing.
+	 *
+	 * @return the time to live, in minutes
+	 */
+	public int getEntityNotFoundTimeToLive() {
+		return entityNotFoundTimeToLive;
+	}
+
+	public void setEntityNotFoundTimeToLive(int entityNotFoundTimeToLive) {
+		this.entityNotFoundTimeToLive = entityNotFoundTimeToLive;
+	}
+
+	/**
+	 * Checks if the spellings of an entity id should be tried
+	 * concurrently instead of one after another.
+	 *
+	 * @return true, if concurrent
+	 */
+	public boolean isConcurrentEntityLookup() {
+		return concurrentEntityLookup;
+	}
+
+	public void setConcurrentEntityLookup(boolean concurrentEntityLookup) {
+		this.concurrentEntityLookup = concurrentEntityLookup;
+	}
+
+	/**
+	 * Gets the ontology ids whose entities are indexed locally
+	 * for search, comma separated.
+	 *
+	 * @return the local search ontology ids
+	 */
+	public String getLocalSearchOntologyIds() {
+		return localSearchOntologyIds;
+	}
+
+	public void setLocalSearchOntologyIds(String localSearchOntologyIds) {
+		this.localSearchOntologyIds = localSearchOntologyIds;
+	}
+
+	/**
+	 * Gets the most associations followed from any one entity
+	 * when traversing an association graph, 0 for no limit.
+	 *
+	 * @return the graph fan out limit
+	 */
+	public int getGraphFanOutLimit() {
+		return graphFanOutLimit;
+	}
+
+	public void setGraphFanOutLimit(int graphFanOutLimit) {
+		this.graphFanOutLimit = graphFanOutLimit;
+	}
+
+	public LocalEntitySearch getLocalEntitySearch() {
+		return localEntitySearch;
+	}
+
+	public void setLocalEntitySearch(LocalEntitySearch localEntitySearch) {
+		this.localEntitySearch = localEntitySearch;
+	}
+
 	public String getCachePath() {
 		return cachePath;
 	}
@@ -864,10 +1865,17 @@ public class BioportalRestService extends BaseCacheObservable
 		return apiKey;
 	}
 
+	/**
+	 * Sets the api key. Neither the cache nor anything built from it is
+	 * keyed by the api key, so rotating it keeps everything warm and the
+	 * observers are not told.
+	 *
+	 * @param apiKey the new api key
+	 */
 	public void setApiKey(String apiKey) {
-		this.apiKey = apiKey;
-		if(this.propertiesSet){
-			this.fireApiKeyChangeEvent();
+		if(this.propertiesSet && ! StringUtils.equals(this.apiKey, apiKey)){
+			log.info("Bioportal API Key changed.");
 		}
+		this.apiKey = apiKey;
 	}
 }
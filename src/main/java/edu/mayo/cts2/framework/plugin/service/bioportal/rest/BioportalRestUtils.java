@@ -28,6 +28,8 @@ import java.io.StringReader;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 
@@ -40,17 +42,15 @@ import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
  * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
  */
 public class BioportalRestUtils {
+	
+	private static Log log = LogFactory.getLog(BioportalRestUtils.class);
 		
 	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
 	
-	private static final DocumentBuilder DOCUMENT_BUILDER;
-	static {
-		try{
-		DOCUMENT_BUILDER = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
-		} catch(Exception e){
-			throw new Cts2RuntimeException(e);
-		}
-	}
+	private static final int DEFAULT_DOCUMENT_BUILDER_POOL_SIZE = 
+			Runtime.getRuntime().availableProcessors() * 2;
+	
+	private static volatile DocumentBuilderPool documentBuilderPool;
 	
 	/**
 	 * Instantiates a new bioportal rest utils.
@@ -72,17 +72,56 @@ public class BioportalRestUtils {
 		
 		Document doc;
 		
+		DocumentBuilderPool pool = getDocumentBuilderPool();
+		
+		DocumentBuilder builder = pool.borrow();
 		try {
-			synchronized(DOCUMENT_BUILDER){
-				doc = DOCUMENT_BUILDER.parse(inputStream);
-			}
+			doc = builder.parse(inputStream);
 		} catch (Exception e) {
 			throw new Cts2RuntimeException(e);
-		} 
+		} finally {
+			pool.release(builder);
+		}
 		
 		return doc;
 	}
 	
+	/**
+	 * Gets the pool backing {@link #getDocument(String)}, mainly
+	 * for access to its size and wait time statistics.
+	 *
+	 * @return the document builder pool
+	 */
+	public static DocumentBuilderPool getDocumentBuilderPool() {
+		DocumentBuilderPool pool = documentBuilderPool;
+		if(pool == null){
+			pool = initDocumentBuilderPool(0);
+		}
+		
+		return pool;
+	}
+	
+	/**
+	 * Creates the pool backing {@link #getDocument(String)}. The pool is 
+	 * sized once, at startup -- by the first call, or else by the first 
+	 * parse. Later calls get the existing pool.
+	 *
+	 * @param size the size, or 0 for twice the number of processors
+	 * @return the document builder pool
+	 */
+	public static synchronized DocumentBuilderPool initDocumentBuilderPool(int size) {
+		int maxSize = size > 0 ? size : DEFAULT_DOCUMENT_BUILDER_POOL_SIZE;
+		
+		if(documentBuilderPool == null){
+			documentBuilderPool = new DocumentBuilderPool(DOCUMENT_BUILDER_FACTORY, maxSize);
+		} else if(documentBuilderPool.getMaxSize() != maxSize){
+			log.warn("XML parser pool already sized at " + documentBuilderPool.getMaxSize() + 
+					", ignoring size " + maxSize + ".");
+		}
+		
+		return documentBuilderPool;
+	}
+	
 	/**
 	 * Gets the end.
 	 *
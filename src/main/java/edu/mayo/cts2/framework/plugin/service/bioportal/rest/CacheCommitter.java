@@ -0,0 +1,257 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mapdb.DB;
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.NamedThreadFactory;
+
+/**
+ * Decides when writes to the MapDB response cache are committed.
+ * <p>
+ * In {@link Mode#SYNC} mode every write is committed before the request
+ * returns. In {@link Mode#WRITE_BEHIND} mode writes are grouped, and are
+ * committed on a background thread once <code>batchSize</code> writes are
+ * pending or every <code>intervalMillis</code>, whichever comes first.
+ * A crash in write-behind mode loses at most the uncommitted writes -- the
+ * cache itself stays consistent at its last commit.
+ * <p>
+ * Commits hold the same lock the writers to the cache hold, so a commit
+ * never runs in the middle of a write.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class CacheCommitter {
+
+	private static Log log = LogFactory.getLog(CacheCommitter.class);
+
+	/**
+	 * The commit mode.
+	 */
+	public enum Mode {SYNC, WRITE_BEHIND};
+
+	private final DB db;
+
+	private final Object lock;
+
+	private final Mode mode;
+
+	private final int batchSize;
+
+	private final long intervalMillis;
+
+	private final AtomicInteger pending = new AtomicInteger();
+
+	private final AtomicLong commitCount = new AtomicLong();
+
+	private final AtomicLong writeCount = new AtomicLong();
+
+	private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+	private volatile ScheduledExecutorService scheduler;
+
+	private final Runnable flushTask = new Runnable(){
+
+		public void run() {
+			flushRequested.set(false);
+			try {
+				flush();
+			} catch (Exception e) {
+				log.warn("Error committing Bioportal cache.", e);
+			}
+		}
+
+	};
+
+	/**
+	 * Instantiates a new cache committer.
+	 *
+	 * @param db the db
+	 * @param lock the lock held by writers to the cache
+	 * @param mode the mode
+	 * @param batchSize the number of pending writes that triggers a commit
+	 * @param intervalMillis the max time between write-behind commits
+	 */
+	public CacheCommitter(DB db, Object lock, Mode mode, int batchSize, long intervalMillis){
+		super();
+		this.db = db;
+		this.lock = lock;
+		this.mode = mode;
+		this.batchSize = Math.max(1, batchSize);
+		this.intervalMillis = intervalMillis;
+	}
+
+	/**
+	 * Parse a configured mode name, falling back to {@link Mode#SYNC}.
+	 *
+	 * @param modeName the mode name
+	 * @return the mode
+	 */
+	public static Mode toMode(String modeName){
+		if(StringUtils.isBlank(modeName)){
+			return Mode.SYNC;
+		}
+
+		String normalized = modeName.trim().toUpperCase().replace('-', '_');
+		if(normalized.equals("WRITEBEHIND")){
+			normalized = Mode.WRITE_BEHIND.name();
+		}
+
+		try {
+			return Mode.valueOf(normalized);
+		} catch (IllegalArgumentException e) {
+			log.warn("Unknown cache commit mode: " + modeName + ", using " + Mode.SYNC);
+			return Mode.SYNC;
+		}
+	}
+
+	/**
+	 * Start the background commit thread, if needed.
+	 */
+	public synchronized void start() {
+		if(this.mode == Mode.WRITE_BEHIND && this.scheduler == null){
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(
+					new NamedThreadFactory("bioportal-cache-commit"));
+
+			this.scheduler.scheduleWithFixedDelay(this.flushTask, 
+					this.intervalMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Record that a write was made to the cache.
+	 */
+	public void onWrite() {
+		this.writeCount.incrementAndGet();
+
+		if(this.mode == Mode.SYNC){
+			this.commit();
+		} else if(this.pending.incrementAndGet() >= this.batchSize){
+			this.requestFlush();
+		}
+	}
+
+	/**
+	 * Have the background thread commit a full batch, so the write that
+	 * completed it doesn't pay for the commit. Until the background thread
+	 * is started the batch is committed right away.
+	 */
+	private void requestFlush() {
+		ScheduledExecutorService scheduler = this.scheduler;
+		if(scheduler == null){
+			this.flush();
+			return;
+		}
+
+		if(this.flushRequested.compareAndSet(false, true)){
+			try {
+				scheduler.execute(this.flushTask);
+			} catch (RejectedExecutionException e) {
+				//shutting down -- the shutdown commits
+				this.flushRequested.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Commit any pending writes.
+	 */
+	public void flush() {
+		if(this.pending.get() > 0){
+			this.commit();
+		}
+	}
+
+	/**
+	 * Commit now, regardless of mode.
+	 */
+	public void commit() {
+		synchronized(this.lock){
+			int committing = this.pending.getAndSet(0);
+			this.db.commit();
+			this.commitCount.incrementAndGet();
+
+			if(log.isDebugEnabled() && committing > 0){
+				log.debug("Committed " + committing + " Bioportal cache write(s).");
+			}
+		}
+	}
+
+	/**
+	 * Stop the background thread and commit any pending writes.
+	 */
+	public synchronized void shutdown() {
+		if(this.scheduler != null){
+			this.scheduler.shutdown();
+			try {
+				this.scheduler.awaitTermination(this.intervalMillis + 1000, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.scheduler = null;
+		}
+
+		this.commit();
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public long getIntervalMillis() {
+		return intervalMillis;
+	}
+
+	/**
+	 * Gets the number of writes not yet committed.
+	 *
+	 * @return the pending count
+	 */
+	public int getPendingCount() {
+		return this.pending.get();
+	}
+
+	public long getCommitCount() {
+		return this.commitCount.get();
+	}
+
+	public long getWriteCount() {
+		return this.writeCount.get();
+	}
+}
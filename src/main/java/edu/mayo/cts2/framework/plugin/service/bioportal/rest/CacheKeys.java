@@ -0,0 +1,86 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Builds the keys Bioportal responses are cached under. A key is the url
+ * without its credential (the 'apikey' parameter) and with its query 
+ * parameters in sorted order, so the same call made with a different (or 
+ * rotated) API key, or with its parameters in another order, shares one
+ * cache entry.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public final class CacheKeys {
+
+	/**
+	 * The Bioportal API key parameter.
+	 */
+	public static final String API_KEY_PARAM = "apikey";
+
+	private CacheKeys(){
+		super();
+	}
+
+	/**
+	 * Gets the cache key of a url.
+	 *
+	 * @param url the url, with or without an API key
+	 * @return the cache key
+	 */
+	public static String getKey(String url) {
+		String base = StringUtils.substringBefore(url, "?");
+		String query = StringUtils.substringAfter(url, "?");
+
+		List<String> parameters = new ArrayList<String>();
+		for(String parameter : StringUtils.split(query, '&')){
+			if(! StringUtils.substringBefore(parameter, "=").equals(API_KEY_PARAM)){
+				parameters.add(parameter);
+			}
+		}
+
+		if(parameters.isEmpty()){
+			return base;
+		} else {
+			Collections.sort(parameters);
+			return base + "?" + StringUtils.join(parameters, '&');
+		}
+	}
+
+	/**
+	 * Checks if a url is already in cache key form.
+	 *
+	 * @param url the url
+	 * @return true, if it is its own cache key
+	 */
+	public static boolean isKey(String url) {
+		return url.equals(getKey(url));
+	}
+}
@@ -41,7 +41,5 @@ public interface CacheObserver {
 	 * @param changedOntologyIds the changed ontology ids
 	 */
 	public void onCodeSystemsChangeEvent(List<String> changedOntologyIds);
-	
-	public void onApiKeyChange();
 
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.HashSet;
+import java.util.NavigableSet;
+import java.util.Set;
+
+/**
+ * A secondary index of cache keys by their {@link CacheTags}, so everything
+ * depending on an ontology or ontology version can be found without scanning
+ * the whole cache. Each (tag, key) pair is one entry of a sorted set -- 
+ * the keys of a tag are the range of entries starting with that tag. The 
+ * backing set may be persistent (a MapDB tree set, committed with the cache
+ * it indexes) or in-memory, and this index is as thread safe as that set.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class CacheTagIndex {
+
+	private static final char SEPARATOR = ' ';
+
+	private static final char SEPARATOR_END = SEPARATOR + 1;
+
+	/*
+	 * tag + SEPARATOR + key
+	 */
+	private final NavigableSet<String> entries;
+
+	/**
+	 * Instantiates a new cache tag index.
+	 *
+	 * @param entries the (empty or previously populated) backing set
+	 */
+	public CacheTagIndex(NavigableSet<String> entries){
+		super();
+		this.entries = entries;
+	}
+
+	/**
+	 * Index a key under all of its tags.
+	 *
+	 * @param key the cache key (the url)
+	 */
+	public void add(String key) {
+		for(String tag : CacheTags.getTags(key)){
+			this.entries.add(tag + SEPARATOR + key);
+		}
+	}
+
+	/**
+	 * Drop a key from all of its tags.
+	 *
+	 * @param key the cache key (the url)
+	 */
+	public void remove(String key) {
+		for(String tag : CacheTags.getTags(key)){
+			this.entries.remove(tag + SEPARATOR + key);
+		}
+	}
+
+	/**
+	 * Gets the keys with a tag. The cost is proportional to the number 
+	 * of keys returned, not to the size of the cache.
+	 *
+	 * @param tag the tag
+	 * @return a copy of the keys
+	 */
+	public Set<String> getKeys(String tag) {
+		Set<String> keys = new HashSet<String>();
+
+		int prefixLength = tag.length() + 1;
+		for(String entry : this.entries.subSet(tag + SEPARATOR, true, tag + SEPARATOR_END, false)){
+			keys.add(entry.substring(prefixLength));
+		}
+
+		return keys;
+	}
+
+	public boolean isEmpty() {
+		return this.entries.isEmpty();
+	}
+
+	public void clear() {
+		this.entries.clear();
+	}
+}
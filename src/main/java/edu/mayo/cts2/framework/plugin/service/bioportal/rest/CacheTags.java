@@ -0,0 +1,170 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Derives, from the url of a Bioportal call, what its response depends on:
+ * the ontologies ('ontology:' + ontology id) and ontology versions 
+ * ('version:' + ontology version id) it describes, whether it is one of
+ * the ontology or view listings, and whether it is a search over all
+ * ontologies. A response has to be dropped when anything it is tagged 
+ * with changes.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public final class CacheTags {
+
+	/**
+	 * The tag of the ontology and view listings.
+	 */
+	public static final String LISTING = "listing";
+
+	/**
+	 * The tag of searches not restricted to any ontology.
+	 */
+	public static final String ALL_ONTOLOGIES = "all-ontologies";
+
+	private static final String ONTOLOGY_PREFIX = "ontology:";
+
+	private static final String VERSION_PREFIX = "version:";
+
+	private static final String BIOPORTAL_URL_PREFIX = "/bioportal/";
+
+	private static final String ONTOLOGY_IDS_PARAM = "ontologyids";
+
+	private CacheTags(){
+		super();
+	}
+
+	/**
+	 * Gets the tag of an ontology.
+	 *
+	 * @param ontologyId the ontology id
+	 * @return the tag
+	 */
+	public static String ontology(String ontologyId) {
+		return ONTOLOGY_PREFIX + ontologyId;
+	}
+
+	/**
+	 * Gets the tag of an ontology version.
+	 *
+	 * @param ontologyVersionId the ontology version id
+	 * @return the tag
+	 */
+	public static String version(String ontologyVersionId) {
+		return VERSION_PREFIX + ontologyVersionId;
+	}
+
+	/**
+	 * Gets the ontology id of an ontology tag.
+	 *
+	 * @param tag the tag
+	 * @return the ontology id, or null if not an ontology tag
+	 */
+	public static String getOntologyId(String tag) {
+		return getTagValue(tag, ONTOLOGY_PREFIX);
+	}
+
+	/**
+	 * Gets the ontology version id of a version tag.
+	 *
+	 * @param tag the tag
+	 * @return the ontology version id, or null if not a version tag
+	 */
+	public static String getOntologyVersionId(String tag) {
+		return getTagValue(tag, VERSION_PREFIX);
+	}
+
+	private static String getTagValue(String tag, String prefix) {
+		return StringUtils.startsWith(tag, prefix) ? tag.substring(prefix.length()) : null;
+	}
+
+	/**
+	 * Gets the tags of a url. Urls this doesn't know (the RSS feed,
+	 * for example) have no tags.
+	 *
+	 * @param url the url, with or without its query string
+	 * @return the tags
+	 */
+	public static Set<String> getTags(String url) {
+		Set<String> tags = new HashSet<String>();
+
+		String path = StringUtils.substringAfter(url, BIOPORTAL_URL_PREFIX);
+		String query = StringUtils.substringAfter(path, "?");
+
+		String[] segments = StringUtils.split(StringUtils.substringBefore(path, "?"), '/');
+		if(segments.length == 0){
+			return tags;
+		}
+
+		String endpoint = segments[0];
+
+		if(endpoint.equals("ontologies") || endpoint.equals("views")){
+			if(segments.length == 1){
+				tags.add(LISTING);
+			} else if(segments[1].equals("versions")){
+				if(segments.length > 2){
+					tags.add(ontology(segments[2]));
+				}
+			} else {
+				tags.add(version(segments[1]));
+			}
+		} else if(endpoint.equals("virtual")){
+			if(segments.length > 2 && segments[1].equals("ontology")){
+				tags.add(ontology(segments[2]));
+			}
+		} else if(endpoint.equals("concepts")){
+			if(segments.length > 1){
+				tags.add(version(segments[1]));
+			}
+		} else if(endpoint.equals("search")){
+			String ontologyIds = getParameter(query, ONTOLOGY_IDS_PARAM);
+			if(StringUtils.isBlank(ontologyIds)){
+				tags.add(ALL_ONTOLOGIES);
+			} else {
+				for(String ontologyId : StringUtils.split(ontologyIds, ',')){
+					tags.add(ontology(ontologyId));
+				}
+			}
+		}
+
+		return tags;
+	}
+
+	private static String getParameter(String query, String name) {
+		for(String parameter : StringUtils.split(query, '&')){
+			if(StringUtils.substringBefore(parameter, "=").equals(name)){
+				return StringUtils.substringAfter(parameter, "=");
+			}
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+/**
+ * Encodes (usually compresses) the Bioportal responses stored in the 
+ * persistent cache. Each encoded value is stored behind the id of its 
+ * codec, so values written by one codec stay readable after another is 
+ * configured -- see {@link CacheValueCodecs}.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public interface CacheValueCodec {
+
+	/**
+	 * Gets the name the codec is configured by.
+	 *
+	 * @return the name
+	 */
+	public String getName();
+
+	/**
+	 * Gets the id stored with every value this codec encodes. Ids of the
+	 * built-in codecs are positive -- use a negative id for your own.
+	 *
+	 * @return the id
+	 */
+	public byte getId();
+
+	/**
+	 * Encode a response.
+	 *
+	 * @param xml the response
+	 * @return the encoded bytes
+	 */
+	public byte[] encode(String xml);
+
+	/**
+	 * Decode a response.
+	 *
+	 * @param data the buffer holding the encoded bytes
+	 * @param offset where the encoded bytes start
+	 * @param length the number of encoded bytes
+	 * @return the response
+	 */
+	public String decode(byte[] data, int offset, int length);
+
+}
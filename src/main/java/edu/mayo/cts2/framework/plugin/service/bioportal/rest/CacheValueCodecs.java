@@ -0,0 +1,184 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.zip.Deflater;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The built-in {@link CacheValueCodec}s, and the framing of the values in
+ * the persistent cache: a response stored without a codec is a plain 
+ * String (as every response was before there were codecs), an encoded one
+ * is a byte array whose first byte is the id of its codec.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public final class CacheValueCodecs {
+
+	private static Log log = LogFactory.getLog(CacheValueCodecs.class);
+
+	/**
+	 * The name of 'no codec' -- responses are stored as they are.
+	 */
+	public static final String NONE = "none";
+
+	/*
+	 * The elements (and their usual nesting) common to Bioportal REST 
+	 * responses. Deflate matches best against the end of a dictionary,
+	 * so the most frequent strings are last.
+	 *
+	 * FROZEN -- never edit this dictionary. Every value stored with codec
+	 * id 2 needs these exact bytes to be read back (their zlib header holds
+	 * the dictionary's Adler-32, 0x6c7b4d81, which CacheValueCodecsTest
+	 * pins). To improve it, add a new dictionary under a new codec id and
+	 * keep this one for the values already on disk.
+	 */
+	private static final String BIOPORTAL_XML_DICTIONARY =
+		"<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+		"<contactName></contactName><contactEmail></contactEmail><homepage></homepage>" +
+		"<documentation></documentation><publication></publication><urn></urn>" +
+		"<codingScheme></codingScheme><isFoundry>0</isFoundry><isMetadataOnly>0</isMetadataOnly>" +
+		"<internalVersionNumber></internalVersionNumber><userId></userId><versionStatus></versionStatus>" +
+		"<dateCreated></dateCreated><dateReleased></dateReleased><isManual>1</isManual>" +
+		"<isRemote>0</isRemote><statusId>3</statusId><isView>false</isView><viewDefinition></viewDefinition>" +
+		"<virtualViewIds></virtualViewIds><userAcl></userAcl><hasViews></hasViews><categoryIds></categoryIds>" +
+		"<groupIds></groupIds><filenames></filenames><format>OWL</format><format>OBO</format>" +
+		"<abbreviation></abbreviation><description></description><displayLabel></displayLabel>" +
+		"<versionNumber></versionNumber><ontologyBean><id></id><ontologyId></ontologyId></ontologyBean>" +
+		"<contents class=\"org.ncbo.stanford.bean.search.SearchResultListBean\"><searchResultList>" +
+		"<searchBean><ontologyVersionId></ontologyVersionId><ontologyId></ontologyId>" +
+		"<ontologyDisplayLabel></ontologyDisplayLabel><recordType>apreferredname</recordType>" +
+		"<recordType>asynonym</recordType><objectType>class</objectType><conceptId></conceptId>" +
+		"<conceptIdShort></conceptIdShort><preferredName></preferredName><contents></contents></searchBean>" +
+		"</searchResultList></contents><page><pageNum>1</pageNum><numPages></numPages><pageSize></pageSize>" +
+		"<numResultsPage></numResultsPage><numResultsTotal></numResultsTotal></page>" +
+		"<entry><string>SuperClass</string><list></list></entry><entry><string>[R]SubClass</string>" +
+		"<entry><string>Definition</string><entry><string>Synonym</string><entry><string>ChildCount</string>" +
+		"<int></int></entry><relations></relations><type>class</type><isObsolete>0</isObsolete>" +
+		"<success><accessedResource>/bioportal/</accessedResource><accessDate> PST</accessDate> PDT</accessDate>" +
+		"<data><list></list></data></success>" +
+		"<classBean><id></id><fullId>http://purl.bioontology.org/ontology/</fullId><label></label>" +
+		"<type>class</type><relations><entry><string>SubClass</string><list><classBean><id></id>" +
+		"<fullId>http://purl.bioontology.org/ontology/</fullId><label></label><type>class</type>" +
+		"<relations><entry><string>ChildCount</string><int></int></entry></relations></classBean>";
+
+	/**
+	 * Plain Deflate.
+	 */
+	public static final CacheValueCodec DEFLATE = 
+		new DeflateCacheValueCodec("deflate", (byte) 1, Deflater.DEFAULT_COMPRESSION, null);
+
+	/**
+	 * Deflate with a preset dictionary of Bioportal XML. Its id is bound to
+	 * the dictionary -- see the note on BIOPORTAL_XML_DICTIONARY.
+	 */
+	public static final CacheValueCodec DEFLATE_DICTIONARY = 
+		new DeflateCacheValueCodec("deflate-dictionary", (byte) 2, Deflater.DEFAULT_COMPRESSION, BIOPORTAL_XML_DICTIONARY);
+
+	private static final CacheValueCodec[] BUILT_IN = new CacheValueCodec[]{DEFLATE, DEFLATE_DICTIONARY};
+
+	private CacheValueCodecs(){
+		super();
+	}
+
+	/**
+	 * Gets a built-in codec by name.
+	 *
+	 * @param name the name, or 'none'
+	 * @return the codec, or null for 'none'
+	 */
+	public static CacheValueCodec forName(String name) {
+		if(StringUtils.isBlank(name) || name.trim().equalsIgnoreCase(NONE)){
+			return null;
+		}
+
+		for(CacheValueCodec codec : BUILT_IN){
+			if(codec.getName().equalsIgnoreCase(name.trim())){
+				return codec;
+			}
+		}
+
+		log.warn("Unknown cache compression: " + name + ", using " + NONE);
+		return null;
+	}
+
+	/**
+	 * Encode a response for the cache.
+	 *
+	 * @param xml the response
+	 * @param codec the codec, or null to store the response as it is
+	 * @return the value to store
+	 */
+	public static Object encode(String xml, CacheValueCodec codec) {
+		if(codec == null || xml == null){
+			return xml;
+		}
+
+		byte[] encoded = codec.encode(xml);
+
+		byte[] value = new byte[encoded.length + 1];
+		value[0] = codec.getId();
+		System.arraycopy(encoded, 0, value, 1, encoded.length);
+
+		return value;
+	}
+
+	/**
+	 * Decode a value from the cache, whatever codec (if any) stored it.
+	 *
+	 * @param value the stored value
+	 * @param codec the configured codec, or null -- consulted for ids that
+	 * are not built in
+	 * @return the response
+	 */
+	public static String decode(Object value, CacheValueCodec codec) {
+		if(value == null || value instanceof String){
+			return (String) value;
+		}
+
+		byte[] data = (byte[]) value;
+		if(data.length == 0){
+			throw new IllegalStateException("Empty cache value.");
+		}
+
+		return getCodec(data[0], codec).decode(data, 1, data.length - 1);
+	}
+
+	private static CacheValueCodec getCodec(byte id, CacheValueCodec codec) {
+		if(codec != null && codec.getId() == id){
+			return codec;
+		}
+
+		for(CacheValueCodec builtIn : BUILT_IN){
+			if(builtIn.getId() == id){
+				return builtIn;
+			}
+		}
+
+		throw new IllegalStateException("No cache value codec with id: " + id);
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+
+/**
+ * A {@link CacheValueCodec} compressing responses with Deflate, optionally
+ * primed with a preset dictionary. Bioportal responses are small, repetitive
+ * XML documents -- a dictionary of their common elements lets even a short 
+ * response compress well, as the first occurrence of each element is 
+ * already 'seen'.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class DeflateCacheValueCodec implements CacheValueCodec {
+
+	private static final String UTF_8 = "UTF-8";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final String name;
+
+	private final byte id;
+
+	private final int level;
+
+	private final byte[] dictionary;
+
+	private final long dictionaryId;
+
+	/**
+	 * Instantiates a new deflate cache value codec.
+	 *
+	 * @param name the name
+	 * @param id the id
+	 * @param level the compression level (0-9)
+	 * @param dictionary the preset dictionary, or null for none
+	 */
+	public DeflateCacheValueCodec(String name, byte id, int level, String dictionary){
+		super();
+		this.name = name;
+		this.id = id;
+		this.level = level;
+		this.dictionary = dictionary != null ? getBytes(dictionary) : null;
+		this.dictionaryId = this.dictionary != null ? adler32(this.dictionary) : -1;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheValueCodec#encode(java.lang.String)
+	 */
+	public byte[] encode(String xml) {
+		byte[] input = getBytes(xml);
+
+		Deflater deflater = new Deflater(this.level);
+		try {
+			if(this.dictionary != null){
+				deflater.setDictionary(this.dictionary);
+			}
+			deflater.setInput(input);
+			deflater.finish();
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 4 + 16);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while(! deflater.finished()){
+				int count = deflater.deflate(buffer);
+				output.write(buffer, 0, count);
+			}
+
+			return output.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheValueCodec#decode(byte[], int, int)
+	 */
+	public String decode(byte[] data, int offset, int length) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data, offset, length);
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream(length * 4);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while(! inflater.finished()){
+				int count = inflater.inflate(buffer);
+				if(count == 0){
+					if(inflater.needsDictionary() && this.dictionary != null){
+						if(inflater.getAdler() != this.dictionaryId){
+							throw new DataFormatException("Cache value written with another dictionary.");
+						}
+						inflater.setDictionary(this.dictionary);
+					} else if(inflater.needsInput() || inflater.needsDictionary()){
+						throw new DataFormatException("Truncated or unreadable cache value.");
+					}
+				}
+				output.write(buffer, 0, count);
+			}
+
+			return new String(output.toByteArray(), UTF_8);
+		} catch (DataFormatException e) {
+			throw new Cts2RuntimeException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static long adler32(byte[] value) {
+		Adler32 adler32 = new Adler32();
+		adler32.update(value);
+
+		return adler32.getValue();
+	}
+
+	private static byte[] getBytes(String value) {
+		try {
+			return value.getBytes(UTF_8);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public byte getId() {
+		return this.id;
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+}
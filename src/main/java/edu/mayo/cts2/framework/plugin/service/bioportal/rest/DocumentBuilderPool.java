@@ -0,0 +1,182 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+
+/**
+ * A bounded pool of {@link DocumentBuilder}s. A DocumentBuilder is not
+ * thread safe, so each parsing thread borrows its own instance and returns
+ * it when done. Builders are created lazily up to the maximum pool size, after
+ * which callers wait for one to be released. The size is fixed when the pool
+ * is created.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class DocumentBuilderPool {
+
+	private static Log log = LogFactory.getLog(DocumentBuilderPool.class);
+
+	private final DocumentBuilderFactory documentBuilderFactory;
+
+	private final int maxSize;
+
+	private final BlockingQueue<DocumentBuilder> idle = new LinkedBlockingQueue<DocumentBuilder>();
+
+	private final AtomicInteger created = new AtomicInteger();
+
+	private final AtomicLong borrowCount = new AtomicLong();
+
+	private final AtomicLong waitCount = new AtomicLong();
+
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+
+	/**
+	 * Instantiates a new document builder pool.
+	 *
+	 * @param documentBuilderFactory the document builder factory
+	 * @param maxSize the max number of builders
+	 */
+	public DocumentBuilderPool(DocumentBuilderFactory documentBuilderFactory, int maxSize){
+		super();
+		if(maxSize < 1){
+			throw new IllegalArgumentException("Pool size must be at least 1.");
+		}
+		this.documentBuilderFactory = documentBuilderFactory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Borrow a builder, creating one if the pool has not reached
+	 * its max size, or waiting for one to be released if it has.
+	 *
+	 * @return the document builder
+	 */
+	public DocumentBuilder borrow() {
+		this.borrowCount.incrementAndGet();
+
+		DocumentBuilder builder = this.idle.poll();
+		if(builder != null){
+			return builder;
+		}
+
+		builder = this.createIfUnderMax();
+		if(builder != null){
+			return builder;
+		}
+
+		long start = System.nanoTime();
+		try {
+			builder = this.idle.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new Cts2RuntimeException(e);
+		} finally {
+			this.waitCount.incrementAndGet();
+			this.totalWaitNanos.addAndGet(System.nanoTime() - start);
+		}
+
+		return builder;
+	}
+
+	/**
+	 * Return a builder to the pool.
+	 *
+	 * @param builder the builder
+	 */
+	public void release(DocumentBuilder builder) {
+		try {
+			builder.reset();
+		} catch (UnsupportedOperationException e) {
+			//older (pre JAXP 1.3) parsers can't be reset, but they
+			//can still be reused for subsequent parses.
+		}
+
+		this.idle.offer(builder);
+	}
+
+	private DocumentBuilder createIfUnderMax() {
+		while(true){
+			int count = this.created.get();
+			if(count >= this.maxSize){
+				return null;
+			}
+			if(this.created.compareAndSet(count, count + 1)){
+				try {
+					log.debug("Creating DocumentBuilder " + (count + 1) + " of " + this.maxSize);
+					return this.documentBuilderFactory.newDocumentBuilder();
+				} catch (Exception e) {
+					this.created.decrementAndGet();
+					throw new Cts2RuntimeException(e);
+				}
+			}
+		}
+	}
+
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * Gets the number of builders created so far.
+	 *
+	 * @return the created count
+	 */
+	public int getCreatedCount() {
+		return this.created.get();
+	}
+
+	public int getIdleCount() {
+		return this.idle.size();
+	}
+
+	public long getBorrowCount() {
+		return this.borrowCount.get();
+	}
+
+	/**
+	 * Gets the number of borrows that had to wait for a builder to be released.
+	 *
+	 * @return the wait count
+	 */
+	public long getWaitCount() {
+		return this.waitCount.get();
+	}
+
+	public long getTotalWaitTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.totalWaitNanos.get());
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe, in-memory cache of Bioportal responses that are not worth
+ * persisting (concepts, hierarchy roots and searches). Entries are evicted
+ * least-recently-used first once either the entry count or the total
+ * weight (approximate size in bytes) is exceeded, and expire after a
+ * time-to-live. Entries are also indexed by their {@link CacheTags}, so
+ * those depending on an ontology can be dropped without a scan.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class MemoryResponseCache {
+
+	/**
+	 * The kind of call a cached response came from, used for statistics.
+	 */
+	public enum Category {CONCEPT, ROOT, SEARCH};
+
+	private final LinkedHashMap<String,Entry> map = new LinkedHashMap<String,Entry>(16, 0.75f, true);
+
+	private final Map<Category,Stats> stats = new EnumMap<Category,Stats>(Category.class);
+
+	private final CacheTagIndex tagIndex = new CacheTagIndex(new TreeSet<String>());
+
+	private int maxEntries;
+
+	private long maxBytes;
+
+	private long timeToLiveMillis;
+
+	private long bytes;
+
+	/**
+	 * Instantiates a new memory response cache.
+	 *
+	 * @param maxEntries the max number of entries
+	 * @param maxBytes the max total weight, in bytes
+	 * @param timeToLiveMillis how long an entry is valid, or 0 for no expiry
+	 */
+	public MemoryResponseCache(int maxEntries, long maxBytes, long timeToLiveMillis){
+		super();
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.timeToLiveMillis = timeToLiveMillis;
+
+		for(Category category : Category.values()){
+			this.stats.put(category, new Stats());
+		}
+	}
+
+	private static class Entry {
+		private final String value;
+		private final Category category;
+		private final long weight;
+		private final long created;
+
+		private Entry(String value, Category category, long weight, long created){
+			this.value = value;
+			this.category = category;
+			this.weight = weight;
+			this.created = created;
+		}
+	}
+
+	/**
+	 * Hit, miss and eviction counts for one {@link Category}.
+	 */
+	public static class Stats {
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong misses = new AtomicLong();
+		private final AtomicLong evictions = new AtomicLong();
+
+		public long getHitCount() {
+			return hits.get();
+		}
+
+		public long getMissCount() {
+			return misses.get();
+		}
+
+		public long getEvictionCount() {
+			return evictions.get();
+		}
+
+		@Override
+		public String toString() {
+			return "[hits=" + this.getHitCount() +
+					", misses=" + this.getMissCount() +
+					", evictions=" + this.getEvictionCount() + "]";
+		}
+	}
+
+	/**
+	 * Get a cached response.
+	 *
+	 * @param key the key
+	 * @param category the category
+	 * @return the response, or null if not cached or expired
+	 */
+	public String get(String key, Category category) {
+		Stats categoryStats = this.stats.get(category);
+
+		synchronized(this){
+			Entry entry = this.map.get(key);
+
+			if(entry != null && this.isExpired(entry, System.currentTimeMillis())){
+				this.remove(key);
+				this.stats.get(entry.category).evictions.incrementAndGet();
+				entry = null;
+			}
+
+			if(entry == null){
+				categoryStats.misses.incrementAndGet();
+				return null;
+			} else {
+				categoryStats.hits.incrementAndGet();
+				return entry.value;
+			}
+		}
+	}
+
+	/**
+	 * Cache a response. Responses heavier than the whole cache are not cached.
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @param category the category
+	 */
+	public void put(String key, String value, Category category) {
+		long weight = weigh(key, value);
+
+		synchronized(this){
+			this.remove(key);
+
+			if(weight > this.maxBytes || this.maxEntries < 1){
+				return;
+			}
+
+			this.map.put(key, new Entry(value, category, weight, System.currentTimeMillis()));
+			this.tagIndex.add(key);
+			this.bytes += weight;
+
+			this.trim();
+		}
+	}
+
+	/**
+	 * Remove everything from the cache.
+	 */
+	public synchronized void clear() {
+		this.map.clear();
+		this.tagIndex.clear();
+		this.bytes = 0;
+	}
+
+	/**
+	 * Remove all entries tagged with the given tag.
+	 *
+	 * @param tag the tag
+	 * @return the number of entries removed
+	 */
+	public synchronized int removeTagged(String tag) {
+		int removed = 0;
+
+		for(String key : this.tagIndex.getKeys(tag)){
+			if(this.remove(key)){
+				removed++;
+			}
+		}
+
+		return removed;
+	}
+
+	private boolean remove(String key) {
+		Entry old = this.map.remove(key);
+		if(old != null){
+			this.bytes -= old.weight;
+			this.tagIndex.remove(key);
+		}
+
+		return old != null;
+	}
+
+	/**
+	 * Evict least-recently-used entries until the cache is back within
+	 * its limits. Expired entries are dropped lazily, when next read.
+	 */
+	private void trim() {
+		Iterator<Map.Entry<String,Entry>> itr = this.map.entrySet().iterator();
+		while(itr.hasNext() &&
+				(this.map.size() > this.maxEntries || this.bytes > this.maxBytes)){
+			Map.Entry<String,Entry> eldestEntry = itr.next();
+			Entry eldest = eldestEntry.getValue();
+			itr.remove();
+			this.tagIndex.remove(eldestEntry.getKey());
+			this.bytes -= eldest.weight;
+			this.stats.get(eldest.category).evictions.incrementAndGet();
+		}
+	}
+
+	private boolean isExpired(Entry entry, long now) {
+		return this.timeToLiveMillis > 0 && (now - entry.created) > this.timeToLiveMillis;
+	}
+
+	/**
+	 * Approximate the in-memory size of a response -- two bytes per char.
+	 */
+	private static long weigh(String key, String value) {
+		return 2L * (key.length() + (value != null ? value.length() : 0));
+	}
+
+	public Stats getStats(Category category) {
+		return this.stats.get(category);
+	}
+
+	public synchronized int getSize() {
+		return this.map.size();
+	}
+
+	/**
+	 * Gets the approximate total size of the cached responses.
+	 *
+	 * @return the weight in bytes
+	 */
+	public synchronized long getWeight() {
+		return this.bytes;
+	}
+
+	public synchronized int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public synchronized void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+		this.trim();
+	}
+
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		this.trim();
+	}
+
+	public synchronized long getTimeToLiveMillis() {
+		return timeToLiveMillis;
+	}
+
+	public synchronized void setTimeToLiveMillis(long timeToLiveMillis) {
+		this.timeToLiveMillis = timeToLiveMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "MemoryResponseCache [size=" + this.getSize() +
+				", weight=" + this.getWeight() +
+				", " + this.stats + "]";
+	}
+}
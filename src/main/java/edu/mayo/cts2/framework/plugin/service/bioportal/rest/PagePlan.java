@@ -0,0 +1,145 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.mayo.cts2.framework.model.command.Page;
+
+/**
+ * Maps a CTS2 (start, max) window onto aligned Bioportal pages. Bioportal 
+ * only pages by (page number, page size), so a window that doesn't start on 
+ * a page boundary has to be read out of one or more whole pages.
+ * 
+ * The plan is the smallest single page size (between max and 2 * max) that
+ * has one page covering the whole window -- or, if there is none, the two
+ * consecutive pages of size max that straddle it, to be fetched in parallel.
+ * Either way no more than 2 * max results are read.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class PagePlan {
+
+	private final int start;
+	private final int max;
+	private final List<Page> pages;
+
+	private PagePlan(int start, int max, List<Page> pages){
+		super();
+		this.start = start;
+		this.max = max;
+		this.pages = Collections.unmodifiableList(pages);
+	}
+
+	/**
+	 * Plan the Bioportal pages for a window.
+	 *
+	 * @param start the (zero based) index of the first result
+	 * @param max the max number of results
+	 * @return the page plan
+	 */
+	public static PagePlan plan(int start, int max){
+		if(start < 0 || max < 1){
+			throw new IllegalArgumentException("Invalid window - start: " + start + " max: " + max);
+		}
+
+		List<Page> pages = new ArrayList<Page>();
+
+		for(int pageSize = max; pageSize < 2 * max; pageSize++){
+			int pageNumber = start / pageSize;
+
+			if((pageNumber + 1) * pageSize >= start + max){
+				pages.add(createPage(pageNumber, pageSize));
+
+				return new PagePlan(start, max, pages);
+			}
+		}
+
+		pages.add(createPage(start / max, max));
+		pages.add(createPage((start / max) + 1, max));
+
+		return new PagePlan(start, max, pages);
+	}
+
+	private static Page createPage(int pageNumber, int pageSize){
+		Page page = new Page();
+		page.setPage(pageNumber);
+		page.setMaxToReturn(pageSize);
+
+		return page;
+	}
+
+	/**
+	 * Gets the aligned Bioportal pages, in order.
+	 *
+	 * @return the pages
+	 */
+	public List<Page> getPages() {
+		return this.pages;
+	}
+
+	/**
+	 * Gets the index, within the given page, of the first result of the window.
+	 *
+	 * @param page the page
+	 * @return the from index (inclusive)
+	 */
+	public int getFrom(Page page) {
+		return Math.max(this.start - BioportalRestUtils.getStart(page), 0);
+	}
+
+	/**
+	 * Gets the index, within the given page, after the last result of the window.
+	 *
+	 * @param page the page
+	 * @return the to index (exclusive)
+	 */
+	public int getTo(Page page) {
+		return Math.min(this.start + this.max - BioportalRestUtils.getStart(page), page.getMaxToReturn());
+	}
+
+	/**
+	 * Gets the total number of results read from Bioportal for the window.
+	 *
+	 * @return the fetched size
+	 */
+	public int getFetchedSize() {
+		int size = 0;
+		for(Page page : this.pages){
+			size += page.getMaxToReturn();
+		}
+
+		return size;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getMax() {
+		return max;
+	}
+}
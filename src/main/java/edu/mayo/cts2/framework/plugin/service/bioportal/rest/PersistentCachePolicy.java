@@ -0,0 +1,286 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the persistent response cache. For every cached response it keeps
+ * when it was stored and how big it is, so responses older than the 
+ * time-to-live can be expired and, once the cache is over its size limit,
+ * the oldest responses evicted. It only decides -- the cache owner does the
+ * removing, see {@link #selectForRemoval(long)} and
+ * {@link #evict(String, long, long)}.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class PersistentCachePolicy {
+
+	private static final int CREATED = 0;
+
+	private static final int WEIGHT = 1;
+
+	/*
+	 * key -> {created, weight}
+	 */
+	private final Map<String,long[]> entries;
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong expirations = new AtomicLong();
+
+	private volatile long maxBytes;
+
+	private volatile long timeToLiveMillis;
+
+	/**
+	 * Instantiates a new persistent cache policy.
+	 *
+	 * @param entries the (empty or previously populated) store of the entry timestamps and sizes
+	 * @param maxBytes the max total size, in bytes, or 0 for no limit
+	 * @param timeToLiveMillis how long a response is valid, or 0 for no expiry
+	 */
+	public PersistentCachePolicy(Map<String,long[]> entries, long maxBytes, long timeToLiveMillis){
+		super();
+		this.entries = entries;
+		this.maxBytes = maxBytes;
+		this.timeToLiveMillis = timeToLiveMillis;
+
+		for(long[] entry : entries.values()){
+			this.bytes.addAndGet(entry[WEIGHT]);
+		}
+	}
+
+	/**
+	 * Track the responses of a cache written before there was a policy --
+	 * they count as stored now.
+	 *
+	 * @param cache the cache
+	 */
+	public void track(Map<String,Object> cache) {
+		long now = System.currentTimeMillis();
+		for(Map.Entry<String,Object> entry : cache.entrySet()){
+			if(! this.entries.containsKey(entry.getKey())){
+				this.onPut(entry.getKey(), entry.getValue(), now);
+			}
+		}
+	}
+
+	/**
+	 * Record that a response was stored.
+	 *
+	 * @param key the key
+	 * @param value the stored value
+	 */
+	public void onPut(String key, Object value) {
+		this.onPut(key, value, System.currentTimeMillis());
+	}
+
+	private void onPut(String key, Object value, long now) {
+		long weight = weigh(key, value);
+
+		long[] old = this.entries.put(key, new long[]{now, weight});
+
+		this.bytes.addAndGet(weight - (old != null ? old[WEIGHT] : 0));
+	}
+
+	/**
+	 * Record that a response was removed.
+	 *
+	 * @param key the key
+	 */
+	public void onRemove(String key) {
+		long[] old = this.entries.remove(key);
+		if(old != null){
+			this.bytes.addAndGet(- old[WEIGHT]);
+		}
+	}
+
+	/**
+	 * Checks if a response has outlived the time-to-live.
+	 *
+	 * @param key the key
+	 * @param now the current time
+	 * @return true, if expired
+	 */
+	public boolean isExpired(String key, long now) {
+		if(this.timeToLiveMillis <= 0){
+			return false;
+		}
+
+		long[] entry = this.entries.get(key);
+
+		return entry != null && this.isExpired(entry, now);
+	}
+
+	private boolean isExpired(long[] entry, long now) {
+		return this.timeToLiveMillis > 0 && (now - entry[CREATED]) > this.timeToLiveMillis;
+	}
+
+	/**
+	 * Select the responses to remove: all expired ones and then, oldest
+	 * first, as many as it takes to bring the cache back within its size 
+	 * limit. Nothing is removed yet, so this can run without holding up
+	 * cache writes.
+	 *
+	 * @param now the current time
+	 * @return the keys to remove, each with when it was stored
+	 */
+	public Map<String,Long> selectForRemoval(long now) {
+		Map<String,Long> keys = new LinkedHashMap<String,Long>();
+		List<Map.Entry<String,long[]>> live = new ArrayList<Map.Entry<String,long[]>>();
+
+		long remaining = 0;
+		for(Map.Entry<String,long[]> entry : this.entries.entrySet()){
+			if(this.isExpired(entry.getValue(), now)){
+				keys.put(entry.getKey(), entry.getValue()[CREATED]);
+			} else {
+				live.add(entry);
+				remaining += entry.getValue()[WEIGHT];
+			}
+		}
+
+		if(this.maxBytes > 0 && remaining > this.maxBytes){
+			Collections.sort(live, OLDEST_FIRST);
+
+			for(Map.Entry<String,long[]> entry : live){
+				if(remaining <= this.maxBytes){
+					break;
+				}
+				keys.put(entry.getKey(), entry.getValue()[CREATED]);
+				remaining -= entry.getValue()[WEIGHT];
+			}
+		}
+
+		return keys;
+	}
+
+	/**
+	 * Stop tracking a response selected for removal, counting it as expired
+	 * or evicted -- unless it was stored again since it was selected. The
+	 * caller removes the response itself, holding whatever lock its writes
+	 * take, and only if this returns true.
+	 *
+	 * @param key the key
+	 * @param created when the response was stored, as selected
+	 * @param now the current time
+	 * @return true, if the response should be removed
+	 */
+	public boolean evict(String key, long created, long now) {
+		long[] entry = this.entries.get(key);
+		if(entry == null || entry[CREATED] != created){
+			return false;
+		}
+
+		if(this.isExpired(entry, now)){
+			this.expirations.incrementAndGet();
+		} else {
+			this.evictions.incrementAndGet();
+		}
+
+		this.onRemove(key);
+
+		return true;
+	}
+
+	private static final Comparator<Map.Entry<String,long[]>> OLDEST_FIRST = 
+		new Comparator<Map.Entry<String,long[]>>(){
+
+		public int compare(Map.Entry<String,long[]> e1, Map.Entry<String,long[]> e2) {
+			long c1 = e1.getValue()[CREATED];
+			long c2 = e2.getValue()[CREATED];
+
+			return c1 < c2 ? -1 : (c1 == c2 ? 0 : 1);
+		}
+	};
+
+	/**
+	 * Approximate the stored size of a response -- one byte per char of
+	 * the key and of a plain value, or the length of an encoded one.
+	 */
+	private static long weigh(String key, Object value) {
+		long weight = key.length();
+
+		if(value instanceof byte[]){
+			weight += ((byte[]) value).length;
+		} else if(value != null){
+			weight += value.toString().length();
+		}
+
+		return weight;
+	}
+
+	/**
+	 * Gets the approximate total size of the cached responses.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getBytes() {
+		return this.bytes.get();
+	}
+
+	public int getEntryCount() {
+		return this.entries.size();
+	}
+
+	public long getEvictionCount() {
+		return this.evictions.get();
+	}
+
+	public long getExpirationCount() {
+		return this.expirations.get();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public long getTimeToLiveMillis() {
+		return timeToLiveMillis;
+	}
+
+	public void setTimeToLiveMillis(long timeToLiveMillis) {
+		this.timeToLiveMillis = timeToLiveMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "PersistentCachePolicy [entries=" + this.getEntryCount() +
+				", bytes=" + this.getBytes() +
+				", evictions=" + this.getEvictionCount() +
+				", expirations=" + this.getExpirationCount() + "]";
+	}
+}
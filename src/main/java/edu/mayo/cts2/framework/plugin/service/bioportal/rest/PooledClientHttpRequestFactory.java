@@ -0,0 +1,213 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.CommonsClientHttpRequestFactory;
+
+/**
+ * A {@link ClientHttpRequestFactory} backed by a pooled, keep-alive
+ * Commons HttpClient. Connections to Bioportal are reused across calls
+ * instead of being opened per request, idle connections are closed after
+ * the keep-alive period, and responses may be gzip/deflate compressed.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class PooledClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+	private static final String ACCEPT_ENCODING = "Accept-Encoding";
+	private static final String CONTENT_ENCODING = "Content-Encoding";
+	private static final String GZIP = "gzip";
+	private static final String DEFLATE = "deflate";
+
+	private final MultiThreadedHttpConnectionManager connectionManager;
+
+	private final CommonsClientHttpRequestFactory delegate;
+
+	private final IdleConnectionTimeoutThread idleConnectionTimeoutThread;
+
+	private final boolean compression;
+
+	/**
+	 * Instantiates a new pooled client http request factory.
+	 *
+	 * @param maxConnections the max total connections
+	 * @param maxConnectionsPerHost the max connections to any one host
+	 * @param connectTimeout the connect timeout, in milliseconds
+	 * @param readTimeout the read (socket) timeout, in milliseconds
+	 * @param keepAlive how long an idle connection is kept open, in milliseconds
+	 * @param compression whether to ask for gzip/deflate compressed responses
+	 */
+	public PooledClientHttpRequestFactory(
+			int maxConnections,
+			int maxConnectionsPerHost,
+			int connectTimeout,
+			int readTimeout,
+			long keepAlive,
+			boolean compression){
+		super();
+		this.compression = compression;
+
+		this.connectionManager = new MultiThreadedHttpConnectionManager();
+
+		HttpConnectionManagerParams params = this.connectionManager.getParams();
+		params.setMaxTotalConnections(maxConnections);
+		params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+		params.setConnectionTimeout(connectTimeout);
+		params.setSoTimeout(readTimeout);
+		params.setStaleCheckingEnabled(true);
+
+		this.delegate = new CommonsClientHttpRequestFactory(new HttpClient(this.connectionManager));
+
+		this.idleConnectionTimeoutThread = new IdleConnectionTimeoutThread();
+		this.idleConnectionTimeoutThread.setName("bioportal-http-idle");
+		this.idleConnectionTimeoutThread.setConnectionTimeout(keepAlive);
+		this.idleConnectionTimeoutThread.setTimeoutInterval(Math.max(1000L, keepAlive / 2));
+		this.idleConnectionTimeoutThread.addConnectionManager(this.connectionManager);
+		this.idleConnectionTimeoutThread.start();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.http.client.ClientHttpRequestFactory#createRequest(java.net.URI, org.springframework.http.HttpMethod)
+	 */
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+		ClientHttpRequest request = this.delegate.createRequest(uri, httpMethod);
+
+		if(this.compression){
+			request.getHeaders().set(ACCEPT_ENCODING, GZIP + ", " + DEFLATE);
+			return new DecompressingClientHttpRequest(request);
+		} else {
+			return request;
+		}
+	}
+
+	/**
+	 * Close all pooled connections and stop the idle connection thread.
+	 */
+	public void shutdown() {
+		this.idleConnectionTimeoutThread.shutdown();
+		this.connectionManager.shutdown();
+	}
+
+	public MultiThreadedHttpConnectionManager getConnectionManager() {
+		return connectionManager;
+	}
+
+	/**
+	 * A request whose response body is transparently decompressed.
+	 */
+	private static class DecompressingClientHttpRequest implements ClientHttpRequest {
+
+		private final ClientHttpRequest request;
+
+		private DecompressingClientHttpRequest(ClientHttpRequest request){
+			this.request = request;
+		}
+
+		public ClientHttpResponse execute() throws IOException {
+			return new DecompressingClientHttpResponse(this.request.execute());
+		}
+
+		public OutputStream getBody() throws IOException {
+			return this.request.getBody();
+		}
+
+		public HttpHeaders getHeaders() {
+			return this.request.getHeaders();
+		}
+
+		public HttpMethod getMethod() {
+			return this.request.getMethod();
+		}
+
+		public URI getURI() {
+			return this.request.getURI();
+		}
+	}
+
+	/**
+	 * A response decoding a 'gzip' or 'deflate' Content-Encoding.
+	 */
+	private static class DecompressingClientHttpResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+
+		private InputStream body;
+
+		private DecompressingClientHttpResponse(ClientHttpResponse response){
+			this.response = response;
+		}
+
+		public InputStream getBody() throws IOException {
+			if(this.body == null){
+				InputStream stream = this.response.getBody();
+				String encoding = StringUtils.lowerCase(
+						this.response.getHeaders().getFirst(CONTENT_ENCODING));
+
+				if(stream != null && StringUtils.contains(encoding, GZIP)){
+					this.body = new GZIPInputStream(stream);
+				} else if(stream != null && StringUtils.contains(encoding, DEFLATE)){
+					this.body = new InflaterInputStream(stream);
+				} else {
+					this.body = stream;
+				}
+			}
+
+			return this.body;
+		}
+
+		public HttpHeaders getHeaders() {
+			return this.response.getHeaders();
+		}
+
+		public HttpStatus getStatusCode() throws IOException {
+			return this.response.getStatusCode();
+		}
+
+		public String getStatusText() throws IOException {
+			return this.response.getStatusText();
+		}
+
+		public void close() {
+			this.response.close();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+
+/**
+ * Collapses concurrent identical requests into one. The first caller for a
+ * key runs the request; any caller arriving while it is still in flight
+ * waits for, and shares, that same result (or exception).
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class RequestCoalescer {
+
+	private final ConcurrentMap<String,FutureTask<String>> inFlight =
+			new ConcurrentHashMap<String,FutureTask<String>>();
+
+	private final ConcurrentMap<String,AtomicLong> executed =
+			new ConcurrentHashMap<String,AtomicLong>();
+
+	private final ConcurrentMap<String,AtomicLong> coalesced =
+			new ConcurrentHashMap<String,AtomicLong>();
+
+	/**
+	 * Execute the request, or join an identical one already in flight.
+	 *
+	 * @param key the request key (usually the full url)
+	 * @param endpoint the endpoint name, used for the counters
+	 * @param request the request
+	 * @return the result
+	 */
+	public String execute(String key, String endpoint, Callable<String> request) {
+		FutureTask<String> task = new FutureTask<String>(request);
+
+		FutureTask<String> existing = this.inFlight.putIfAbsent(key, task);
+
+		if(existing == null){
+			increment(this.executed, endpoint);
+			try {
+				task.run();
+			} finally {
+				this.inFlight.remove(key, task);
+			}
+
+			return this.getResult(task);
+		} else {
+			increment(this.coalesced, endpoint);
+
+			return this.getResult(existing);
+		}
+	}
+
+	private String getResult(FutureTask<String> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new Cts2RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException){
+				throw (RuntimeException) cause;
+			}
+			if(cause instanceof Error){
+				throw (Error) cause;
+			}
+			throw new Cts2RuntimeException(cause);
+		}
+	}
+
+	private static void increment(ConcurrentMap<String,AtomicLong> counters, String endpoint) {
+		AtomicLong counter = counters.get(endpoint);
+		if(counter == null){
+			AtomicLong newCounter = new AtomicLong();
+			counter = counters.putIfAbsent(endpoint, newCounter);
+			if(counter == null){
+				counter = newCounter;
+			}
+		}
+		counter.incrementAndGet();
+	}
+
+	private static Map<String,Long> snapshot(ConcurrentMap<String,AtomicLong> counters) {
+		Map<String,Long> returnMap = new HashMap<String,Long>();
+		for(Map.Entry<String,AtomicLong> entry : counters.entrySet()){
+			returnMap.put(entry.getKey(), entry.getValue().get());
+		}
+
+		return returnMap;
+	}
+
+	/**
+	 * Gets the number of callers, per endpoint, that joined an
+	 * in-flight request instead of making their own.
+	 *
+	 * @return the coalesced counts
+	 */
+	public Map<String,Long> getCoalescedCounts() {
+		return snapshot(this.coalesced);
+	}
+
+	/**
+	 * Gets the number of requests, per endpoint, that were actually made.
+	 *
+	 * @return the executed counts
+	 */
+	public Map<String,Long> getExecutedCounts() {
+		return snapshot(this.executed);
+	}
+
+	/**
+	 * Gets the number of requests currently in flight.
+	 *
+	 * @return the in flight count
+	 */
+	public int getInFlightCount() {
+		return this.inFlight.size();
+	}
+}
@@ -28,12 +28,20 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Resource;
 
-import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
 import org.w3c.dom.Document;
@@ -47,8 +55,11 @@ import edu.mayo.cts2.framework.model.core.Property;
 import edu.mayo.cts2.framework.model.core.ResourceVersionDescription;
 import edu.mayo.cts2.framework.model.core.ResourceVersionDescriptionDirectoryEntry;
 import edu.mayo.cts2.framework.model.core.SourceAndNotation;
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
 import edu.mayo.cts2.framework.model.util.ModelUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.AsyncBioportalRestService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver;
 import edu.mayo.cts2.framework.plugin.service.bioportal.util.BioportalConstants;
 
 /**
@@ -59,12 +70,15 @@ import edu.mayo.cts2.framework.plugin.service.bioportal.util.BioportalConstants;
  * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
  */
 @Component
-public abstract class AbstractBioportalOntologyVersionTransformTemplate<R extends ResourceVersionDescription, S extends ResourceVersionDescriptionDirectoryEntry> extends AbstractOntologyTransform {
+public abstract class AbstractBioportalOntologyVersionTransformTemplate<R extends ResourceVersionDescription, S extends ResourceVersionDescriptionDirectoryEntry> extends AbstractOntologyTransform 
+	implements InitializingBean, CacheObserver {
 	private static final String DOWNLOAD_LOCATION = "downloadLocation";
 	
-	@SuppressWarnings("unchecked")
-	private Map<Integer,List<S>> 
-		cachedVersionSummaries = new LRUMap(1);
+	private final ConcurrentMap<String,VersionSummaries<S>> 
+		cachedVersionSummaries = new ConcurrentHashMap<String,VersionSummaries<S>>();
+	
+	@Resource
+	private AsyncBioportalRestService asyncBioportalRestService;
 	
 	private static final ThreadLocal<SoftReference<DateFormat>> threadLocal = new ThreadLocal<SoftReference<DateFormat>>();
 
@@ -278,64 +292,173 @@ public abstract class AbstractBioportalOntologyVersionTransformTemplate<R extend
 	}
 
 	/**
-	 * Transform resource versions.
+	 * Transform resource versions -- all versions of each ontology in the
+	 * listing. The version summaries of each ontology are cached, keyed by 
+	 * ontology id and checked against the latest version id in the listing, 
+	 * and only the ontologies missing from the cache are fetched (in
+	 * parallel).
 	 *
 	 * @param xml the xml
 	 * @return the list
 	 */
 	public List<S> transformResourceVersions(
 			String xml){
+		Document doc = BioportalRestUtils.getDocument(xml);
+
+		List<Node> nodeList = TransformUtils.getNodeListWithPath(doc, "success.data.list.ontologyBean");
+
+		final Map<String,VersionSummaries<S>> current = 
+			new ConcurrentHashMap<String,VersionSummaries<S>>();
+		
+		Map<String,Callable<Void>> fetches = new LinkedHashMap<String,Callable<Void>>();
+		
+		for(Node node : nodeList){
+			final String ontologyId = TransformUtils.getNamedChildText(node, ONTOLOGY_ID);
+			final String latestVersionId = TransformUtils.getNamedChildText(node, ONTOLOGY_VERSION_ID);
+			
+			if(ontologyId == null || current.containsKey(ontologyId) || fetches.containsKey(ontologyId)){
+				continue;
+			}
+			
+			VersionSummaries<S> cached = this.cachedVersionSummaries.get(ontologyId);
+			
+			if(cached != null && cached.isFor(latestVersionId)){
+				current.put(ontologyId, cached);
+			} else {
+				fetches.put(ontologyId, new Callable<Void>(){
 
-		if(! this.cachedVersionSummaries.containsKey(xml.hashCode())){
-			this.cachedVersionSummaries.clear();
+					public Void call() throws Exception {
+						try {
+							VersionSummaries<S> summaries = new VersionSummaries<S>(
+									latestVersionId, 
+									doTransformResourceVersions(ontologyId));
+
+							cachedVersionSummaries.put(ontologyId, summaries);
+							current.put(ontologyId, summaries);
+						} catch (HttpClientErrorException e) {
+							log.warn("An HTTP Error Occured connecting to Bioportal.", e);
+						}
+						
+						return null;
+					}
+				});
+			}
+		}
+		
+		this.runAll(fetches.values());
+		
+		List<S> entryList = new ArrayList<S>();
+		
+		for(Node node : nodeList){
+			String ontologyId = TransformUtils.getNamedChildText(node, ONTOLOGY_ID);
 			
-			this.cachedVersionSummaries.put(xml.hashCode(),
-				this.doTransformResourceVersions(xml));
+			VersionSummaries<S> summaries = ontologyId != null ? current.get(ontologyId) : null;
+			if(summaries != null){
+				entryList.addAll(summaries.getSummaries());
+			}
 		}
 		
-		return new ArrayList<S>(
-				this.cachedVersionSummaries.get(xml.hashCode()));
+		return entryList;
 	}
 	
 	/**
 	 * Do transform resource versions.
 	 *
-	 * @param xml the xml
+	 * @param ontologyId the ontology id
 	 * @return the list
 	 */
 	private List<S> doTransformResourceVersions(
-			String xml) {
+			String ontologyId) {
 		List<S> entryList = 
 			new ArrayList<S>();
-	 
-		Document doc = BioportalRestUtils.getDocument(xml);
+		
+		String versionsXml = 
+			this.getBioportalRestService().getOntologyVersionsByOntologyId(ontologyId);
+		
+		Document versionsDoc = BioportalRestUtils.getDocument(versionsXml);
+		
+		List<Node> versionsNodeList = TransformUtils.getNodeListWithPath(versionsDoc, "success.data.list.ontologyBean");
+		
+		for(Node version : versionsNodeList) {
+				
+			S entry = transformVersionSummary(version);
 
+			entryList.add(entry);
+		}
 	
-		List<Node> nodeList = TransformUtils.getNodeListWithPath(doc, "success.data.list.ontologyBean");
-
-		for(Node node : nodeList){
-			
-			String ontologyId = TransformUtils.getNamedChildText(node, ONTOLOGY_ID);
-			
-			String versionsXml = 
-				this.getBioportalRestService().getOntologyVersionsByOntologyId(ontologyId);
-			
-			Document versionsDoc = BioportalRestUtils.getDocument(versionsXml);
-			
-			List<Node> versionsNodeList = TransformUtils.getNodeListWithPath(versionsDoc, "success.data.list.ontologyBean");
-			
-			for(Node version : versionsNodeList) {
-					
-				S entry = transformVersionSummary(version);
+		return entryList;
+	}
 	
-				entryList.add(entry);
+	/**
+	 * Run the tasks on the {@link AsyncBioportalRestService} pool (or one 
+	 * after another if there is none), and wait for all of them.
+	 *
+	 * @param tasks the tasks
+	 */
+	private void runAll(Collection<Callable<Void>> tasks) {
+		if(this.asyncBioportalRestService != null){
+			this.asyncBioportalRestService.invokeAll(tasks);
+		} else {
+			for(Callable<Void> task : tasks){
+				try {
+					task.call();
+				} catch (Exception e) {
+					throw new Cts2RuntimeException(e);
+				}
 			}
 		}
+	}
 	
-		return entryList;
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		this.getBioportalRestService().addObserver(this);
 	}
 
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver#onCodeSystemsChangeEvent(java.util.List)
+	 */
+	public void onCodeSystemsChangeEvent(List<String> changedOntologyIds) {
+		for(String ontologyId : changedOntologyIds){
+			this.cachedVersionSummaries.remove(ontologyId);
+		}
+	}
 	
+	/**
+	 * Sets the async bioportal rest service.
+	 *
+	 * @param asyncBioportalRestService the new async bioportal rest service
+	 */
+	public void setAsyncBioportalRestService(
+			AsyncBioportalRestService asyncBioportalRestService) {
+		this.asyncBioportalRestService = asyncBioportalRestService;
+	}
+	
+	/**
+	 * The version summaries of one ontology, along with the latest 
+	 * version id they were built for.
+	 */
+	private static class VersionSummaries<S> {
+		
+		private final String latestVersionId;
+		
+		private final List<S> summaries;
+		
+		private VersionSummaries(String latestVersionId, List<S> summaries){
+			this.latestVersionId = latestVersionId;
+			this.summaries = Collections.unmodifiableList(summaries);
+		}
+		
+		private boolean isFor(String latestVersionId){
+			return StringUtils.equals(this.latestVersionId, latestVersionId);
+		}
+		
+		private List<S> getSummaries(){
+			return this.summaries;
+		}
+	}
+
 	/**
 	 * Transform version summary.
 	 *
@@ -41,7 +41,6 @@ import edu.mayo.cts2.framework.model.core.StatementTarget;
 import edu.mayo.cts2.framework.model.core.ValueSetDefinitionReference;
 import edu.mayo.cts2.framework.model.core.ValueSetReference;
 import edu.mayo.cts2.framework.model.util.ModelUtils;
-import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.util.BioportalConstants;
 
 /**
@@ -181,9 +180,7 @@ public abstract class AbstractOntologyTransform extends AbstractTransform {
 			this.getIdentityConverter().codeSystemNameToOntologyId(codeSystemName);
 		String xml = this.getBioportalRestService().getLatestOntologyVersionByOntologyId(ontologyId);
 		
-		Node node = TransformUtils.getNamedChildWithPath(BioportalRestUtils.getDocument(xml), ONTOLOGY_BEAN);
-
-		String ontologyVersionId = TransformUtils.getNamedChildText(node, ONTOLOGY_VERSION_ID);
+		String ontologyVersionId = TransformUtils.getOntologyBean(xml).get(ONTOLOGY_VERSION_ID);
 		
 		String codeSystemVersionName = this.getIdentityConverter().
 			ontologyVersionIdToCodeSystemVersionName(ontologyId, ontologyVersionId);
@@ -213,9 +210,7 @@ public abstract class AbstractOntologyTransform extends AbstractTransform {
 		
 		String xml = this.getBioportalRestService().getLatestOntologyVersionByOntologyId(ontologyId);
 		
-		Node node = TransformUtils.getNamedChildWithPath(BioportalRestUtils.getDocument(xml), ONTOLOGY_BEAN);
-
-		String ontologyVersionId = TransformUtils.getNamedChildText(node, ONTOLOGY_VERSION_ID);
+		String ontologyVersionId = TransformUtils.getOntologyBean(xml).get(ONTOLOGY_VERSION_ID);
 		
 		String valueSetDefinitionName = this.getIdentityConverter().
 			ontologyVersionIdToValueSetDefinitionName(ontologyId, ontologyVersionId);
@@ -35,10 +35,12 @@ import com.google.common.collect.Iterables;
 
 import edu.mayo.cts2.framework.model.association.AssociationDirectoryEntry;
 import edu.mayo.cts2.framework.model.association.GraphNode;
+import edu.mayo.cts2.framework.model.association.types.GraphDirection;
 import edu.mayo.cts2.framework.model.core.EntitySynopsis;
 import edu.mayo.cts2.framework.model.core.PredicateReference;
 import edu.mayo.cts2.framework.model.core.StatementTarget;
 import edu.mayo.cts2.framework.model.core.URIAndEntityName;
+import edu.mayo.cts2.framework.model.core.types.AssociationDirection;
 import edu.mayo.cts2.framework.model.directory.DirectoryResult;
 import edu.mayo.cts2.framework.model.entity.EntityDirectoryEntry;
 import edu.mayo.cts2.framework.model.util.ModelUtils;
@@ -54,6 +56,8 @@ public class AssociationTransform extends AbstractTransform{
 	
 	private static final String NODE = "success.data.classBean";
 	
+	private static final String REVERSE_PREFIX = "[R]";
+	
 	/**
 	 * Transform entities for relationship.
 	 *
@@ -229,6 +233,8 @@ public class AssociationTransform extends AbstractTransform{
 	 * @param subjectNode the subject node
 	 * @param predicateNode the predicate node
 	 * @param targetNode the target node
+	 * @param reverse if the predicate is a '[R]' (reverse) relation -- the
+	 * target node is then the subject of the association
 	 * @param clazz the clazz
 	 * @return the t
 	 */
@@ -238,21 +244,26 @@ public class AssociationTransform extends AbstractTransform{
 			Node subjectNode,
 			Node predicateNode,
 			Node targetNode,
+			boolean reverse,
 			Class<T> clazz) {
 
+		Node sourceNode = reverse ? targetNode : subjectNode;
+		Node destinationNode = reverse ? subjectNode : targetNode;
+		
 		String subjectName = TransformUtils.getNamedChildText(
-				subjectNode, "id");
+				sourceNode, "id");
 
 		String subjectAbout = TransformUtils.getNamedChildText(
-			subjectNode, "fullId");
+			sourceNode, "fullId");
 
-		String predicateName = this.getPredicate(predicateNode);
+		String predicateName = StringUtils.removeStart(
+				this.getPredicate(predicateNode), REVERSE_PREFIX);
 		
 		String targetName = TransformUtils.getNamedChildText(
-				targetNode, "id");
+				destinationNode, "id");
 
 		String targetAbout = TransformUtils.getNamedChildText(
-				targetNode, "fullId");
+				destinationNode, "fullId");
 		String version=  this.getIdentityConverter().codeSystemVersionNameToVersion(codeSystemVersionName);
 
 		T entry;
@@ -282,19 +293,26 @@ public class AssociationTransform extends AbstractTransform{
 						version, targetName));
 		
 		if(clazz.equals(GraphNode.class)){
-			String targetLabel = TransformUtils.getNamedChildText(
+			//the node is always the related entity, whichever the direction
+			String nodeName = TransformUtils.getNamedChildText(
+					targetNode, "id");
+			String nodeAbout = TransformUtils.getNamedChildText(
+					targetNode, "fullId");
+			String nodeLabel = TransformUtils.getNamedChildText(
 					targetNode, "label");
 			
 			GraphNode graphNode = (GraphNode)entry;
 			graphNode.setNodeEntity(new EntitySynopsis());
-			graphNode.getNodeEntity().setDesignation(targetLabel);
+			graphNode.getNodeEntity().setDesignation(nodeLabel);
 			
-			graphNode.getNodeEntity().setName(targetName);
+			graphNode.getNodeEntity().setName(nodeName);
 			graphNode.getNodeEntity().setNamespace(codeSystemName);
-			graphNode.getNodeEntity().setUri(targetAbout);
+			graphNode.getNodeEntity().setUri(nodeAbout);
 			graphNode.getNodeEntity().setHref(
 					this.getUrlConstructor().createEntityUrl(codeSystemName,
-							version, targetName));
+							version, nodeName));
+			graphNode.setDirection(reverse ? 
+					AssociationDirection.TARGET_TO_SOURCE : AssociationDirection.SOURCE_TO_TARGET);
 		}
 
 		PredicateReference predicateRef = new PredicateReference();
@@ -323,6 +341,7 @@ public class AssociationTransform extends AbstractTransform{
 				xml, 
 				codeSystemName, 
 				codeSystemVersionName, 
+				false,
 				AssociationDirectoryEntry.class);
 	}
 
@@ -343,9 +362,49 @@ public class AssociationTransform extends AbstractTransform{
 				xml, 
 				codeSystemName, 
 				codeSystemVersionName, 
+				false,
 				GraphNode.class);
 	}
 	
+	/**
+	 * Transform the associations of an entity into graph nodes, one per
+	 * related entity. 'FORWARD' follows the entity's own relations, 
+	 * 'BACKWARD' follows the '[R]' (reverse) relations -- anything else
+	 * follows both.
+	 *
+	 * @param xml the xml
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @param direction the direction
+	 * @return the list
+	 */
+	public List<GraphNode> transformAssociationForGraph(
+			String xml,
+			String codeSystemName,
+			String codeSystemVersionName,
+			GraphDirection direction) {
+		List<GraphNode> returnList = new ArrayList<GraphNode>();
+		
+		if(direction != GraphDirection.BACKWARD){
+			returnList.addAll(this.transformAssociationForRelationships(
+					xml, 
+					codeSystemName, 
+					codeSystemVersionName, 
+					false,
+					GraphNode.class));
+		}
+		if(direction != GraphDirection.FORWARD){
+			returnList.addAll(this.transformAssociationForRelationships(
+					xml, 
+					codeSystemName, 
+					codeSystemVersionName, 
+					true,
+					GraphNode.class));
+		}
+		
+		return returnList;
+	}
+	
 	/**
 	 * Transform association for relationships.
 	 *
@@ -353,6 +412,7 @@ public class AssociationTransform extends AbstractTransform{
 	 * @param xml the xml
 	 * @param codeSystemName the code system name
 	 * @param codeSystemVersionName the code system version name
+	 * @param reverse true for the '[R]' (reverse) relations, false for the others
 	 * @param clazz the clazz
 	 * @return the list
 	 */
@@ -360,6 +420,7 @@ public class AssociationTransform extends AbstractTransform{
 			String xml,
 			String codeSystemName,
 			String codeSystemVersionName,
+			boolean reverse,
 			Class<T> clazz) {
 		List<T> entryList = new ArrayList<T>();
 
@@ -375,6 +436,13 @@ public class AssociationTransform extends AbstractTransform{
 				"entry");
 
 		for (Node predicateNode : relations) {
+			
+			String predicateName = TransformUtils.getNamedChildText(predicateNode, "string");
+			
+			if (StringUtils.isBlank(predicateName) || 
+					predicateName.startsWith(REVERSE_PREFIX) != reverse) {
+				continue;
+			}
 
 			List<Node> objects = TransformUtils.getNodeListWithPath(
 					predicateNode,
@@ -390,8 +458,10 @@ public class AssociationTransform extends AbstractTransform{
 							subjectNode, 
 							predicateNode, 
 							objectNode,
+							reverse,
 							clazz);
-					if (StringUtils.isNotBlank(entry.getPredicate().getName()) && ! entry.getPredicate().getName().startsWith("[R]")) {
+					
+					if (StringUtils.isNotBlank(entry.getPredicate().getName())) {
 					   entryList.add(entry);
 					}
 				}
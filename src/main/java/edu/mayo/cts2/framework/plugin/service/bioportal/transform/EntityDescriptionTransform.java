@@ -58,6 +58,7 @@ import edu.mayo.cts2.framework.model.entity.PredicateDescription;
 import edu.mayo.cts2.framework.model.entity.types.DesignationRole;
 import edu.mayo.cts2.framework.model.util.ModelUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.StreamingPageReader.StreamingPage;
 import edu.mayo.cts2.framework.plugin.service.bioportal.util.UriUtils;
 
 /**
@@ -323,21 +324,43 @@ public class EntityDescriptionTransform extends AbstractTransform {
 			String xml, 
 			String codeSystemName,
 			String codeSystemVersionName) {
+		return this.transformEntityDirectory(
+				0, 
+				Integer.MAX_VALUE, 
+				xml, 
+				codeSystemName, 
+				codeSystemVersionName);
+	}
+
+	/**
+	 * Transform entity directory, only materializing the entries
+	 * between <code>start</code> and <code>end</code> (inclusive).
+	 *
+	 * @param start the start
+	 * @param end the end
+	 * @param xml the xml
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @return the directory result
+	 */
+	public DirectoryResult<EntityDirectoryEntry>  transformEntityDirectory(
+			int start,
+			int end,
+			String xml, 
+			String codeSystemName,
+			String codeSystemVersionName) {
 		List<EntityDirectoryEntry> entryList = new ArrayList<EntityDirectoryEntry>();
 	
-		Document doc = BioportalRestUtils.getDocument(xml);
-		
-		List<Node> nodeList = TransformUtils.getNodeListWithPath(doc, NODELIST);
+		StreamingPage streamingPage = 
+				StreamingPageReader.read(xml, NODELIST, start, end, ABOUT, NAME, LABEL);
 		
-		for(int i=0;i<nodeList.size();i++){
+		for(Map<String,String> resultMap : streamingPage.getEntries()){
 			EntityDirectoryEntry entry = new EntityDirectoryEntry();
 		
-			Node node = nodeList.get(i);
+			String about = resultMap.get(ABOUT);
+			String name = UriUtils.getLocalName(resultMap.get(NAME));
 		
-			String about = TransformUtils.getNamedChildText(node, ABOUT);
-			String name = UriUtils.getLocalName(TransformUtils.getNamedChildText(node, NAME));
-		
-			String label = TransformUtils.getNamedChildText(node, LABEL);
+			String label = resultMap.get(LABEL);
 			
 			entry.setAbout(about);
 			
@@ -357,12 +380,7 @@ public class EntityDescriptionTransform extends AbstractTransform {
 			
 		}
 		
-		int totalCount = TransformUtils.getTotalCount(xml);
-		int page = TransformUtils.getPageNumber(xml);
-		int pageSize = TransformUtils.getPageSize(xml);
-		int numOfResultsOnPage = TransformUtils.getNumberOfResultsOnPage(xml);
-	
-		boolean atEnd = totalCount <= ( ( (page - 1) * pageSize) + numOfResultsOnPage);
+		boolean atEnd = streamingPage.getPageInfo().isAtEnd(0);
 		
 		return new DirectoryResult<EntityDirectoryEntry>(entryList, atEnd);
 	}
@@ -403,31 +421,25 @@ public class EntityDescriptionTransform extends AbstractTransform {
 		
 		long time = System.currentTimeMillis();
 
-		long time2 = System.currentTimeMillis();
-		
-		Document doc = BioportalRestUtils.getDocument(xml);
-		
-		List<Node> nodeList = TransformUtils.getNodeListWithPath(doc, SEARCH_NODELIST);
-		log.debug("transformEntityDirectoryFromSearch" + (System.currentTimeMillis() - time2) + " ms inner");
+		String conceptIdKey = "conceptId";
+		String conceptIdShortKey = "conceptIdShort";
+		String preferredNameKey = "preferredName";
+		String ontologyIdKey = "ontologyId";
+		String ontologyVersionIdKey = "ontologyVersionId";
+		
+		StreamingPage streamingPage = StreamingPageReader.read(
+				xml, 
+				SEARCH_NODELIST, 
+				start, 
+				end, 
+				conceptIdKey, conceptIdShortKey, preferredNameKey, ontologyIdKey, ontologyVersionIdKey);
 
 		int skipped = 0;
 
-		for(int i = start; i<nodeList.size() && i <= end; i++){
+		for(Map<String,String> resultMap : streamingPage.getEntries()){
 
 			EntityDirectoryEntry entry = new EntityDirectoryEntry();
 
-			Node node = nodeList.get(i);
-
-			String conceptIdKey = "conceptId";
-			String conceptIdShortKey = "conceptIdShort";
-			String preferredNameKey = "preferredName";
-			String ontologyIdKey = "ontologyId";
-			String ontologyVersionIdKey = "ontologyVersionId";
-
-			Map<String, String> resultMap = this
-					.getChildrenTextMap(node, conceptIdKey, conceptIdShortKey,
-							preferredNameKey, ontologyIdKey, ontologyVersionIdKey);
-
 			String about = resultMap.get(conceptIdKey);
 			String name = UriUtils.getLocalName( resultMap.get(conceptIdShortKey) );
 
@@ -489,14 +501,9 @@ public class EntityDescriptionTransform extends AbstractTransform {
 			entryList.add(entry);
 		}
 		
-		log.debug("transformEntityDirectoryFromSearch" + (System.currentTimeMillis() - time) + " ms outer");
+		log.debug("transformEntityDirectoryFromSearch" + (System.currentTimeMillis() - time) + " ms");
 		
-		int totalCount = TransformUtils.getTotalCount(xml) - skipped;
-		int page = TransformUtils.getPageNumber(xml);
-		int pageSize = TransformUtils.getPageSize(xml);
-		int numOfResultsOnPage = TransformUtils.getNumberOfResultsOnPage(xml);
-	
-		boolean atEnd = totalCount <= ( ( (page - 1) * pageSize) + numOfResultsOnPage);
+		boolean atEnd = streamingPage.getPageInfo().isAtEnd(skipped);
 	
 		return new DirectoryResult<EntityDirectoryEntry>(entryList, atEnd);
 	}
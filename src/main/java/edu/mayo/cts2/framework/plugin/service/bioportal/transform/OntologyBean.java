@@ -0,0 +1,125 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A parsed, immutable view of a Bioportal 'ontologyBean'. Holds the text
+ * of each child element along with the 'filenames' and
+ * 'viewOnOntologyVersionId' lists.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class OntologyBean {
+
+	private static final String FILENAMES = "filenames";
+	private static final String VIEW_ON_ONTOLOGY_VERSION_ID = "viewOnOntologyVersionId";
+	private static final String STRING = "string";
+	private static final String INT = "int";
+
+	private final Map<String,String> fields;
+	private final List<String> filenames;
+	private final List<String> viewOnOntologyVersionIds;
+
+	/**
+	 * Instantiates a new ontology bean.
+	 *
+	 * @param fields the fields
+	 * @param filenames the filenames
+	 * @param viewOnOntologyVersionIds the view on ontology version ids
+	 */
+	private OntologyBean(
+			Map<String,String> fields,
+			List<String> filenames,
+			List<String> viewOnOntologyVersionIds){
+		super();
+		this.fields = Collections.unmodifiableMap(fields);
+		this.filenames = Collections.unmodifiableList(filenames);
+		this.viewOnOntologyVersionIds = Collections.unmodifiableList(viewOnOntologyVersionIds);
+	}
+
+	/**
+	 * Build an ontology bean from an 'ontologyBean' node.
+	 *
+	 * @param node the node
+	 * @return the ontology bean
+	 */
+	public static OntologyBean fromNode(Node node){
+		Map<String,String> fields = new HashMap<String,String>();
+
+		NodeList childList = node.getChildNodes();
+		for(int i=0;i<childList.getLength();i++){
+			Node child = childList.item(i);
+
+			if(child.getNodeType() == Node.ELEMENT_NODE &&
+					! fields.containsKey(child.getNodeName())){
+				fields.put(child.getNodeName(), TransformUtils.getNodeText(child));
+			}
+		}
+
+		return new OntologyBean(
+				fields,
+				getTextList(node, FILENAMES, STRING),
+				getTextList(node, VIEW_ON_ONTOLOGY_VERSION_ID, INT));
+	}
+
+	private static List<String> getTextList(Node node, String listName, String itemName){
+		List<String> returnList = new ArrayList<String>();
+
+		Node listNode = TransformUtils.getNamedChild(node, listName);
+		if(listNode != null){
+			for(Node item : TransformUtils.getNodeList(listNode, itemName)){
+				returnList.add(TransformUtils.getNodeText(item));
+			}
+		}
+
+		return returnList;
+	}
+
+	/**
+	 * Gets the text of a child element.
+	 *
+	 * @param name the child element name
+	 * @return the text, or null if there is no such child
+	 */
+	public String get(String name) {
+		return this.fields.get(name);
+	}
+
+	public List<String> getFilenames() {
+		return filenames;
+	}
+
+	public List<String> getViewOnOntologyVersionIds() {
+		return viewOnOntologyVersionIds;
+	}
+}
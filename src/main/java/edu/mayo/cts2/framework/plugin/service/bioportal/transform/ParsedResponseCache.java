@@ -0,0 +1,189 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.collections.map.LRUMap;
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+
+/**
+ * A bounded, least-recently-used cache of models parsed out of Bioportal
+ * responses, keyed by a digest of the response content. Only the digest
+ * is held, not the response, so large listings and pages are not pinned
+ * on the heap. Parsed models are immutable, so unlike a DOM they can be
+ * safely shared across threads.
+ *
+ * @param <T> the type of the parsed model
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class ParsedResponseCache<T> {
+
+	private final String name;
+
+	private final Parser<T> parser;
+
+	private final Map<String,T> cache;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Parses a response into a model.
+	 *
+	 * @param <T> the type of the parsed model
+	 */
+	public static interface Parser<T> {
+
+		/**
+		 * Parse the xml.
+		 *
+		 * @param xml the xml
+		 * @return the parsed model
+		 */
+		public T parse(String xml);
+	}
+
+	/**
+	 * Instantiates a new parsed response cache.
+	 *
+	 * @param name the name, used for reporting
+	 * @param maxSize the max number of parsed responses to hold
+	 * @param parser the parser
+	 */
+	@SuppressWarnings("unchecked")
+	public ParsedResponseCache(String name, int maxSize, Parser<T> parser){
+		super();
+		this.name = name;
+		this.parser = parser;
+		this.cache = new LRUMap(maxSize);
+	}
+
+	/**
+	 * Get the parsed model of the xml, parsing it only if it
+	 * has not already been parsed.
+	 *
+	 * @param xml the xml
+	 * @return the parsed model
+	 */
+	public T get(String xml) {
+		String key = this.getKey(xml);
+
+		T parsed;
+		synchronized(this.cache){
+			parsed = this.cache.get(key);
+		}
+
+		if(parsed != null){
+			this.hits.incrementAndGet();
+			return parsed;
+		}
+
+		this.misses.incrementAndGet();
+
+		//parse outside of the lock -- a concurrent miss on the same
+		//xml will parse twice, but both results are equivalent.
+		parsed = this.parser.parse(xml);
+
+		synchronized(this.cache){
+			this.cache.put(key, parsed);
+		}
+
+		return parsed;
+	}
+
+	/**
+	 * Gets the cache key of the xml -- the SHA-1 digest of its content.
+	 *
+	 * @param xml the xml
+	 * @return the key
+	 */
+	protected String getKey(String xml) {
+		return digest(xml);
+	}
+
+	/**
+	 * Gets the SHA-1 digest of a response's content, as a hex string.
+	 *
+	 * @param xml the xml
+	 * @return the digest
+	 */
+	public static String digest(String xml) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(xml.getBytes("UTF-8"));
+
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for(byte b : digest){
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+				sb.append(Character.forDigit(b & 0xF, 16));
+			}
+
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new Cts2RuntimeException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new Cts2RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Remove all parsed responses.
+	 */
+	public void clear() {
+		synchronized(this.cache){
+			this.cache.clear();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getSize() {
+		synchronized(this.cache){
+			return this.cache.size();
+		}
+	}
+
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	@Override
+	public String toString() {
+		return this.name + " [size=" + this.getSize() +
+				", hits=" + this.getHitCount() +
+				", misses=" + this.getMissCount() + "]";
+	}
+}
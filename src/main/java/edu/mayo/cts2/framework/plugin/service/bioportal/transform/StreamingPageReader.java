@@ -0,0 +1,295 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang.StringUtils;
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+
+/**
+ * Pull-parses a paged Bioportal response (a search result or concept list),
+ * materializing only the entries that fall inside a requested window.
+ * Entries before the window are skipped without being read, and parsing
+ * stops as soon as the end of the window has been reached.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class StreamingPageReader {
+
+	private static final String[] PAGE_PATH = {"success", "data", "page"};
+
+	private static final String TOTAL_COUNT = "numResultsTotal";
+	private static final String PAGE_NUMBER = "pageNum";
+	private static final String PAGE_SIZE = "pageSize";
+	private static final String NUMBER_OF_PAGES = "numPages";
+	private static final String NUMBER_OF_RESULTS_ON_PAGE = "numResultsPage";
+
+	private static final Set<String> PAGE_FIELDS = new HashSet<String>(Arrays.asList(
+			TOTAL_COUNT, PAGE_NUMBER, PAGE_SIZE, NUMBER_OF_PAGES, NUMBER_OF_RESULTS_ON_PAGE));
+
+	private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+	static {
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+	}
+
+	/**
+	 * Instantiates a new streaming page reader.
+	 */
+	private StreamingPageReader(){
+		super();
+	}
+
+	/**
+	 * The entries read from a page, along with its paging information.
+	 */
+	public static class StreamingPage {
+
+		private List<Map<String,String>> entries;
+		private PageInfo pageInfo;
+
+		private StreamingPage(List<Map<String,String>> entries, PageInfo pageInfo){
+			this.entries = entries;
+			this.pageInfo = pageInfo;
+		}
+
+		/**
+		 * Gets the entries within the window, each one a map of
+		 * requested child element name to its normalized text.
+		 *
+		 * @return the entries
+		 */
+		public List<Map<String, String>> getEntries() {
+			return entries;
+		}
+
+		public PageInfo getPageInfo() {
+			return pageInfo;
+		}
+	}
+
+	/**
+	 * Read the entries at the given path whose position is between
+	 * <code>start</code> and <code>end</code> (inclusive).
+	 *
+	 * @param xml the xml
+	 * @param dotSeparatedEntryPath the path of the repeating entry element
+	 * @param start the first entry index to read
+	 * @param end the last entry index to read
+	 * @param children the child elements of each entry to capture
+	 * @return the streaming page
+	 */
+	public static StreamingPage read(
+			String xml,
+			String dotSeparatedEntryPath,
+			int start,
+			int end,
+			String... children) {
+		String[] entryPath = StringUtils.split(dotSeparatedEntryPath, '.');
+		Set<String> childSet = new HashSet<String>(Arrays.asList(children));
+
+		List<Map<String,String>> entries = new ArrayList<Map<String,String>>();
+		Map<String,String> pageFields = new HashMap<String,String>();
+
+		List<String> path = new ArrayList<String>();
+		int index = 0;
+
+		XMLStreamReader reader = null;
+		try {
+			reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+
+			while(reader.hasNext()){
+				int event = reader.next();
+
+				if(event == XMLStreamConstants.START_ELEMENT){
+					String name = reader.getLocalName();
+
+					if(pathEquals(path, entryPath, name)){
+						if(index >= start && index <= end){
+							entries.add(readChildren(reader, childSet));
+						} else {
+							skipElement(reader);
+						}
+						index++;
+
+						if(index > end && pageFields.size() == PAGE_FIELDS.size()){
+							break;
+						}
+					} else if(PAGE_FIELDS.contains(name) && pathEquals(path, PAGE_PATH, null)){
+						pageFields.put(name, reader.getElementText());
+					} else {
+						path.add(name);
+					}
+				} else if(event == XMLStreamConstants.END_ELEMENT){
+					path.remove(path.size() - 1);
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new Cts2RuntimeException(e);
+		} finally {
+			close(reader);
+		}
+
+		return new StreamingPage(entries, toPageInfo(pageFields));
+	}
+
+	/**
+	 * Read only the paging information of a response, stopping
+	 * as soon as it has been found.
+	 *
+	 * @param xml the xml
+	 * @return the page info
+	 */
+	public static PageInfo readPageInfo(String xml) {
+		return read(xml, "success.data.page.contents", 0, -1).getPageInfo();
+	}
+
+	private static boolean pathEquals(List<String> path, String[] expected, String current) {
+		int length = path.size() + (current != null ? 1 : 0);
+		if(length != expected.length){
+			return false;
+		}
+		for(int i=0;i<path.size();i++){
+			if(! path.get(i).equals(expected[i])){
+				return false;
+			}
+		}
+
+		return current == null || current.equals(expected[expected.length - 1]);
+	}
+
+	/**
+	 * Read the requested direct children of the current element, leaving
+	 * the reader positioned on the current element's END_ELEMENT.
+	 */
+	private static Map<String,String> readChildren(XMLStreamReader reader, Set<String> children) throws XMLStreamException {
+		Map<String,String> returnMap = new HashMap<String,String>();
+
+		while(reader.hasNext()){
+			int event = reader.next();
+
+			if(event == XMLStreamConstants.START_ELEMENT){
+				String name = reader.getLocalName();
+				if(children.contains(name)){
+					returnMap.put(name, TransformUtils.normalizeText(readText(reader)));
+				} else {
+					skipElement(reader);
+				}
+			} else if(event == XMLStreamConstants.END_ELEMENT){
+				break;
+			}
+		}
+
+		return returnMap;
+	}
+
+	/**
+	 * Read all text content of the current element and its descendants.
+	 */
+	private static String readText(XMLStreamReader reader) throws XMLStreamException {
+		StringBuilder sb = new StringBuilder();
+		int depth = 1;
+
+		while(depth > 0 && reader.hasNext()){
+			int event = reader.next();
+
+			switch(event){
+				case XMLStreamConstants.START_ELEMENT : {
+					depth++;
+					break;
+				}
+				case XMLStreamConstants.END_ELEMENT : {
+					depth--;
+					break;
+				}
+				case XMLStreamConstants.CHARACTERS :
+				case XMLStreamConstants.CDATA :
+				case XMLStreamConstants.SPACE : {
+					sb.append(reader.getText());
+					break;
+				}
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Skip the current element and all of its descendants.
+	 */
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+
+		while(depth > 0 && reader.hasNext()){
+			int event = reader.next();
+
+			if(event == XMLStreamConstants.START_ELEMENT){
+				depth++;
+			} else if(event == XMLStreamConstants.END_ELEMENT){
+				depth--;
+			}
+		}
+	}
+
+	private static PageInfo toPageInfo(Map<String,String> pageFields) {
+		if(pageFields.size() != PAGE_FIELDS.size()){
+			throw new Cts2RuntimeException("Bioportal response is missing paging information.");
+		}
+
+		return new PageInfo(
+				toInt(pageFields, TOTAL_COUNT),
+				toInt(pageFields, PAGE_NUMBER),
+				toInt(pageFields, PAGE_SIZE),
+				toInt(pageFields, NUMBER_OF_PAGES),
+				toInt(pageFields, NUMBER_OF_RESULTS_ON_PAGE));
+	}
+
+	private static int toInt(Map<String,String> pageFields, String field) {
+		return Integer.valueOf(TransformUtils.normalizeText(pageFields.get(field)));
+	}
+
+	private static void close(XMLStreamReader reader) {
+		if(reader != null){
+			try {
+				reader.close();
+			} catch (XMLStreamException e) {
+				//nothing to do
+			}
+		}
+	}
+}
@@ -27,6 +27,7 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.httpclient.util.URIUtil;
@@ -47,11 +48,40 @@ import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
  */
 public class TransformUtils {
 
-	private static final String COUNT = "success.data.page.numResultsTotal";
-	private static final String PAGE_NUMBER = "success.data.page.pageNum";
-	private static final String PAGE_SIZE = "success.data.page.pageSize";
-	private static final String NUMBER_OF_PAGES = "success.data.page.numPages";
-	private static final String NUMBER_OF_RESULTS_ON_PAGE = "success.data.page.numResultsPage";
+	private static final String ONTOLOGY_BEAN = "success.data.ontologyBean";
+	private static final String ONTOLOGY_BEAN_LIST = "success.data.list.ontologyBean";
+
+	private static final int ONTOLOGY_BEAN_CACHE_SIZE = 500;
+	private static final int ONTOLOGY_BEAN_LIST_CACHE_SIZE = 500;
+
+	private static final ParsedResponseCache<OntologyBean> ONTOLOGY_BEAN_CACHE = 
+		new ParsedResponseCache<OntologyBean>("ontologyBean", ONTOLOGY_BEAN_CACHE_SIZE, 
+			new ParsedResponseCache.Parser<OntologyBean>(){
+
+			public OntologyBean parse(String xml) {
+				Node node = getNamedChildWithPath(BioportalRestUtils.getDocument(xml), ONTOLOGY_BEAN);
+				if(node == null){
+					throw new Cts2RuntimeException("No ontologyBean found in response.");
+				}
+
+				return OntologyBean.fromNode(node);
+			}
+		});
+
+	private static final ParsedResponseCache<List<OntologyBean>> ONTOLOGY_BEAN_LIST_CACHE = 
+		new ParsedResponseCache<List<OntologyBean>>("ontologyBeanList", ONTOLOGY_BEAN_LIST_CACHE_SIZE, 
+			new ParsedResponseCache.Parser<List<OntologyBean>>(){
+
+			public List<OntologyBean> parse(String xml) {
+				List<OntologyBean> returnList = new ArrayList<OntologyBean>();
+
+				for(Node node : getNodeListWithPath(BioportalRestUtils.getDocument(xml), ONTOLOGY_BEAN_LIST)){
+					returnList.add(OntologyBean.fromNode(node));
+				}
+
+				return Collections.unmodifiableList(returnList);
+			}
+		});
 
 	/**
 	 * Instantiates a new transform utils.
@@ -103,6 +133,60 @@ public class TransformUtils {
 		return resolvedFilter != null && StringUtils.isNotBlank(resolvedFilter.getMatchValue());
 	}
 
+	/**
+	 * Gets the page info. It is not cached: reading it stops after the
+	 * page header, which is cheaper than digesting the whole response.
+	 *
+	 * @param xml the xml
+	 * @return the page info
+	 */
+	public static PageInfo getPageInfo(String xml) {
+		return StreamingPageReader.readPageInfo(xml);
+	}
+
+	/**
+	 * Gets the 'success.data.ontologyBean' of a single ontology response.
+	 *
+	 * @param xml the xml
+	 * @return the ontology bean
+	 */
+	public static OntologyBean getOntologyBean(String xml) {
+		return ONTOLOGY_BEAN_CACHE.get(xml);
+	}
+
+	/**
+	 * Gets the 'success.data.list.ontologyBean' list of an ontology listing response.
+	 *
+	 * @param xml the xml
+	 * @return the ontology bean list
+	 */
+	public static List<OntologyBean> getOntologyBeanList(String xml) {
+		return ONTOLOGY_BEAN_LIST_CACHE.get(xml);
+	}
+
+	/**
+	 * Gets the caches of parsed responses, mainly for reporting
+	 * hit and miss counts.
+	 *
+	 * @return the parsed response caches
+	 */
+	public static List<ParsedResponseCache<?>> getParsedResponseCaches() {
+		List<ParsedResponseCache<?>> returnList = new ArrayList<ParsedResponseCache<?>>();
+		returnList.add(ONTOLOGY_BEAN_CACHE);
+		returnList.add(ONTOLOGY_BEAN_LIST_CACHE);
+
+		return returnList;
+	}
+
+	/**
+	 * Clear the caches of parsed responses.
+	 */
+	public static void clearParsedResponseCaches() {
+		for(ParsedResponseCache<?> cache : getParsedResponseCaches()){
+			cache.clear();
+		}
+	}
+
 	/**
 	 * Gets the total count.
 	 *
@@ -110,8 +194,7 @@ public class TransformUtils {
 	 * @return the total count
 	 */
 	public static int getTotalCount(String xml) {
-		return Integer.valueOf(TransformUtils.getNamedChildTextWithPath(
-				BioportalRestUtils.getDocument(xml), COUNT));
+		return getPageInfo(xml).getTotalCount();
 	}
 	
 	/**
@@ -121,8 +204,7 @@ public class TransformUtils {
 	 * @return the page number
 	 */
 	public static int getPageNumber(String xml) {
-		return Integer.valueOf(TransformUtils.getNamedChildTextWithPath(
-				BioportalRestUtils.getDocument(xml), PAGE_NUMBER));
+		return getPageInfo(xml).getPageNumber();
 	}
 	
 	/**
@@ -132,8 +214,7 @@ public class TransformUtils {
 	 * @return the page size
 	 */
 	public static int getPageSize(String xml) {
-		return Integer.valueOf(TransformUtils.getNamedChildTextWithPath(
-				BioportalRestUtils.getDocument(xml), PAGE_SIZE));
+		return getPageInfo(xml).getPageSize();
 	}
 	
 
@@ -144,13 +225,11 @@ public class TransformUtils {
 	 * @return the number of pages
 	 */
 	public static int getNumberOfPages(String xml) {
-		return Integer.valueOf(TransformUtils.getNamedChildTextWithPath(
-				BioportalRestUtils.getDocument(xml), NUMBER_OF_PAGES));
+		return getPageInfo(xml).getNumberOfPages();
 	}
 	
 	public static int getNumberOfResultsOnPage(String xml) {
-		return Integer.valueOf(TransformUtils.getNamedChildTextWithPath(
-				BioportalRestUtils.getDocument(xml), NUMBER_OF_RESULTS_ON_PAGE));
+		return getPageInfo(xml).getNumberOfResultsOnPage();
 	}
 
 	/**
@@ -239,7 +318,20 @@ public class TransformUtils {
 	 * @return the node text
 	 */
 	public static String getNodeText(Node node){
-		return StringUtils.trim(node.getTextContent()).replaceAll("[\\n\\t]", "");
+		return normalizeText(node.getTextContent());
+	}
+
+	/**
+	 * Trim the text and remove any newlines or tabs.
+	 *
+	 * @param text the text
+	 * @return the normalized text
+	 */
+	public static String normalizeText(String text){
+		if(text == null){
+			return null;
+		}
+		return StringUtils.trim(text).replaceAll("[\\n\\t]", "");
 	}
 
 	/**
@@ -1,23 +1,51 @@
 package edu.mayo.cts2.framework.plugin.service.bioportal.util;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Resource;
 
+import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
 
 import edu.mayo.cts2.framework.model.core.ScopedEntityName;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.AsyncBioportalRestService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
 
 @Component
 public class EntityResolver {
 	
+	private static final int NOT_FOUND_CACHE_SIZE = 10000;
+	
+	private static final long ONE_MINUTE = 60000L;
+	
 	@Resource
 	private BioportalRestService bioportalRestService;
+	
+	@Resource
+	private AsyncBioportalRestService asyncBioportalRestService;
+	
+	/*
+	 * ontologyVersionId + entityId -> when the 'not found' expires
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String,Long> notFound = 
+		Collections.synchronizedMap(new LRUMap(NOT_FOUND_CACHE_SIZE));
+	
+	/*
+	 * ontologyVersionId -> the index of the id variant that last found an entity
+	 */
+	private Map<String,Integer> preferredVariant = new ConcurrentHashMap<String,Integer>();
+	
+	private AtomicLong notFoundHits = new AtomicLong();
 
 	public String getEntityXml(ScopedEntityName name, String ontologyVersionId){
 		return this.getXmlForEntityName(
@@ -30,6 +58,13 @@ public class EntityResolver {
 	}
 	
 	private String doGetEntityXml(String ontologyVersionId, String entityId){
+		String key = this.createKey(ontologyVersionId, entityId);
+		
+		if(this.isKnownNotFound(key)){
+			this.notFoundHits.incrementAndGet();
+			return null;
+		}
+		
 		String xml = null;
 		try {
 			xml = this.bioportalRestService
@@ -38,7 +73,7 @@ public class EntityResolver {
 							entityId);
 		} catch (HttpClientErrorException e) {
 			if(e.getStatusCode().equals(HttpStatus.NOT_FOUND)){
-				//
+				this.rememberNotFound(key);
 			} else {
 				throw e;
 			}
@@ -47,19 +82,99 @@ public class EntityResolver {
 		return xml;
 	}
 	
-	protected String getXmlForEntityName(ScopedEntityName name, String ontologyVersionId){
+	private String createKey(String ontologyVersionId, String entityId){
+		return ontologyVersionId + " " + entityId;
+	}
+	
+	private boolean isKnownNotFound(String key){
+		Long expires = this.notFound.get(key);
+		if(expires == null){
+			return false;
+		}
+		
+		if(expires < System.currentTimeMillis()){
+			this.notFound.remove(key);
+			return false;
+		}
+		
+		return true;
+	}
+	
+	private void rememberNotFound(String key){
+		long timeToLive = ONE_MINUTE * this.bioportalRestService.getEntityNotFoundTimeToLive();
+		if(timeToLive > 0){
+			this.notFound.put(key, System.currentTimeMillis() + timeToLive);
+		}
+	}
+	
+	/**
+	 * The spellings of an entity id Bioportal may know it by, in
+	 * the order they are tried by default.
+	 */
+	protected List<String> getIdVariants(ScopedEntityName name){
 		List<String> tries = new ArrayList<String>();
 		tries.add(name.getName());
 		tries.add(StringUtils.replace(name.getName(), "_", ":"));
 		tries.add(name.getNamespace() + ":" +name.getName());
 		tries.add(name.getNamespace() + "#" +name.getName());
-				
-		for(String str : tries){
-			String xml = this.doGetEntityXml(ontologyVersionId, str);
-			if(xml != null){
-				return xml;
+		
+		return tries;
+	}
+	
+	/**
+	 * The indexes of the id variants to try, the one that worked last
+	 * for the ontology version first.
+	 */
+	private List<Integer> getVariantOrder(String ontologyVersionId, int variants){
+		List<Integer> order = new ArrayList<Integer>();
+		
+		Integer preferred = this.preferredVariant.get(ontologyVersionId);
+		if(preferred != null && preferred < variants){
+			order.add(preferred);
+		}
+		for(int i=0;i<variants;i++){
+			if(! order.contains(i)){
+				order.add(i);
 			}
 		}
+		
+		return order;
+	}
+	
+	protected String getXmlForEntityName(ScopedEntityName name, final String ontologyVersionId){
+		final List<String> tries = this.getIdVariants(name);
+		
+		List<Integer> order = this.getVariantOrder(ontologyVersionId, tries.size());
+		
+		if(this.bioportalRestService.isConcurrentEntityLookup() && 
+				this.asyncBioportalRestService != null){
+			List<Callable<Hit>> tasks = new ArrayList<Callable<Hit>>();
+			for(final Integer variant : order){
+				tasks.add(new Callable<Hit>(){
+
+					public Hit call() throws Exception {
+						String xml = doGetEntityXml(ontologyVersionId, tries.get(variant));
+						
+						return xml != null ? new Hit(variant, xml) : null;
+					}
+				});
+			}
+			
+			Hit hit = this.asyncBioportalRestService.firstNonNull(tasks);
+			if(hit != null){
+				this.preferredVariant.put(ontologyVersionId, hit.variant);
+				return hit.xml;
+			}
+		} else {
+			for(Integer variant : order){
+				String xml = this.doGetEntityXml(ontologyVersionId, tries.get(variant));
+				if(xml != null){
+					this.preferredVariant.put(ontologyVersionId, variant);
+					return xml;
+				}
+			}
+		}
+		
 		return null;
 		/* If we need to do a search... hopefully this isn't needed.
 		ResolvedFilter filter = new ResolvedFilter();
@@ -81,4 +196,31 @@ public class EntityResolver {
 		return xml;
 		*/
 	}
+	
+	/**
+	 * Clear the remembered 'not found' ids and preferred variants.
+	 */
+	public void clear(){
+		this.notFound.clear();
+		this.preferredVariant.clear();
+	}
+	
+	/**
+	 * Gets the number of lookups answered from the 'not found' cache.
+	 *
+	 * @return the not found hit count
+	 */
+	public long getNotFoundHitCount(){
+		return this.notFoundHits.get();
+	}
+	
+	private static class Hit {
+		private final int variant;
+		private final String xml;
+		
+		private Hit(int variant, String xml){
+			this.variant = variant;
+			this.xml = xml;
+		}
+	}
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A gzipped data file that starts with a magic number and a format
+ * version. A file of any other format is ignored, never partially read.
+ * <p>
+ * A file is written to a temporary file first, and only replaces the
+ * existing one once completely written and closed, so a failure never
+ * leaves a half-written file behind.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class SnapshotFile {
+
+	private static final Log log = LogFactory.getLog(SnapshotFile.class);
+
+	private final File file;
+
+	private final int magic;
+
+	private final int formatVersion;
+
+	/**
+	 * Writes the content of a file, after the header.
+	 */
+	public interface Writer {
+
+		public void write(DataOutputStream out) throws IOException;
+	}
+
+	/**
+	 * Reads the content of a file, after the header.
+	 *
+	 * @param <T> the type read
+	 */
+	public interface Reader<T> {
+
+		public T read(DataInputStream in) throws IOException;
+	}
+
+	/**
+	 * Instantiates a new snapshot file.
+	 *
+	 * @param file the file
+	 * @param magic the magic number identifying the kind of file
+	 * @param formatVersion the current format version
+	 */
+	public SnapshotFile(File file, int magic, int formatVersion){
+		super();
+		this.file = file;
+		this.magic = magic;
+		this.formatVersion = formatVersion;
+	}
+
+	/**
+	 * Write the file, replacing any existing one.
+	 *
+	 * @param writer the content writer
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void write(Writer writer) throws IOException {
+		if(this.file.getParentFile() != null){
+			FileUtils.forceMkdir(this.file.getParentFile());
+		}
+
+		File tempFile = new File(this.file.getPath() + ".tmp");
+
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(
+						new GZIPOutputStream(
+								new FileOutputStream(tempFile))));
+		boolean written = false;
+		try {
+			out.writeInt(this.magic);
+			out.writeInt(this.formatVersion);
+
+			writer.write(out);
+
+			//closing writes the gzip trailer -- it has to succeed too
+			out.close();
+			written = true;
+		} finally {
+			if(! written){
+				IOUtils.closeQuietly(out);
+				FileUtils.deleteQuietly(tempFile);
+			}
+		}
+
+		FileUtils.deleteQuietly(this.file);
+		if(! tempFile.renameTo(this.file)){
+			FileUtils.deleteQuietly(tempFile);
+			throw new IOException("Could not replace: " + this.file);
+		}
+	}
+
+	/**
+	 * Read the file.
+	 *
+	 * @param reader the content reader
+	 * @return what was read, or null if the file is missing, of another 
+	 * format, or unreadable
+	 */
+	public <T> T read(Reader<T> reader) {
+		if(! this.file.exists()){
+			return null;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(
+					new BufferedInputStream(
+							new GZIPInputStream(
+									new FileInputStream(this.file))));
+
+			if(in.readInt() != this.magic){
+				log.warn("Ignoring " + this.file + " -- not the expected kind of file.");
+				return null;
+			}
+
+			int version = in.readInt();
+			if(version != this.formatVersion){
+				log.warn("Ignoring " + this.file + " -- format " + version + 
+						", expected " + this.formatVersion + ".");
+				return null;
+			}
+
+			return reader.read(in);
+		} catch (IOException e) {
+			log.warn("Ignoring unreadable " + this.file + ".", e);
+			return null;
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Delete the file.
+	 */
+	public void delete() {
+		FileUtils.deleteQuietly(this.file);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Write a possibly null string. Strings are written as length-prefixed
+	 * chars rather than with writeUTF, which is limited to 64K.
+	 *
+	 * @param out the out
+	 * @param string the string
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void writeString(DataOutputStream out, String string) throws IOException {
+		if(string == null){
+			out.writeInt(-1);
+		} else {
+			out.writeInt(string.length());
+			out.writeChars(string);
+		}
+	}
+
+	/**
+	 * Read a string written by {@link #writeString(DataOutputStream, String)}.
+	 *
+	 * @param in the in
+	 * @return the string, possibly null
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if(length < 0){
+			return null;
+		}
+
+		char[] chars = new char[length];
+		for(int i=0;i<length;i++){
+			chars[i] = in.readChar();
+		}
+
+		return new String(chars);
+	}
+}
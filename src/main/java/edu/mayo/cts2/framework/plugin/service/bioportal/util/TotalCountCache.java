@@ -0,0 +1,172 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.util;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.collections.map.LRUMap;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Remembers the total result counts ('numResultsTotal') Bioportal reports
+ * with every page of a paged query, keyed by the query without its paging,
+ * so counting a query that has already been paged through needs no extra
+ * Bioportal call.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class TotalCountCache {
+
+	private static final String KEY_SEPARATOR = "|";
+
+	/*
+	 * query key -> total count
+	 */
+	private final Map<String,Count> counts;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Instantiates a new total count cache.
+	 *
+	 * @param maxEntries the max number of queries to remember
+	 */
+	@SuppressWarnings("unchecked")
+	public TotalCountCache(int maxEntries){
+		super();
+		this.counts = Collections.synchronizedMap(new LRUMap(maxEntries));
+	}
+
+	/**
+	 * Creates a query key from its (paging independent) parts.
+	 *
+	 * @param parts the parts
+	 * @return the key
+	 */
+	public static String createKey(String... parts){
+		return StringUtils.join(parts, KEY_SEPARATOR);
+	}
+
+	/**
+	 * Gets the total count of a query.
+	 *
+	 * @param key the query key
+	 * @return the total count, or null if it is not known (or has expired)
+	 */
+	public Integer get(String key){
+		Count count = this.counts.get(key);
+
+		if(count != null && count.expires > 0 && count.expires < System.currentTimeMillis()){
+			this.counts.remove(key);
+			count = null;
+		}
+
+		if(count == null){
+			this.misses.incrementAndGet();
+			return null;
+		} else {
+			this.hits.incrementAndGet();
+			return count.total;
+		}
+	}
+
+	/**
+	 * Remember the total count of a query.
+	 *
+	 * @param key the query key
+	 * @param total the total count
+	 * @param timeToLiveMillis how long the count is good for -- 0 for ever
+	 */
+	public void put(String key, int total, long timeToLiveMillis){
+		long expires = timeToLiveMillis > 0 ? System.currentTimeMillis() + timeToLiveMillis : 0;
+
+		this.counts.put(key, new Count(total, expires));
+	}
+
+	/**
+	 * Forget the count of a query.
+	 *
+	 * @param key the query key
+	 */
+	public void remove(String key){
+		this.counts.remove(key);
+	}
+
+	/**
+	 * Forget the counts of all queries whose key starts with the given parts.
+	 *
+	 * @param parts the leading parts of the keys
+	 * @return the number of counts forgotten
+	 */
+	public int removeAll(String... parts){
+		String prefix = createKey(parts) + KEY_SEPARATOR;
+
+		int removed = 0;
+		synchronized(this.counts){
+			Iterator<String> itr = this.counts.keySet().iterator();
+			while(itr.hasNext()){
+				if(itr.next().startsWith(prefix)){
+					itr.remove();
+					removed++;
+				}
+			}
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Forget all counts.
+	 */
+	public void clear(){
+		this.counts.clear();
+	}
+
+	public int size(){
+		return this.counts.size();
+	}
+
+	public long getHitCount(){
+		return this.hits.get();
+	}
+
+	public long getMissCount(){
+		return this.misses.get();
+	}
+
+	private static class Count {
+		private final int total;
+		private final long expires;
+
+		private Count(int total, long expires){
+			this.total = total;
+			this.expires = expires;
+		}
+	}
+}
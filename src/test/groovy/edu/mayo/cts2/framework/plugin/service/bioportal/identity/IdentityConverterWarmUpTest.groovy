@@ -0,0 +1,92 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.AsyncBioportalRestService
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.StubBioportalRestService
+
+class IdentityConverterWarmUpTest {
+
+	static final int ONTOLOGIES = 40
+
+	@Test
+	void testWarmUpCachesAllOntologies(){
+		def converter = createConverter(createStub(), true)
+
+		(1..ONTOLOGIES).each {
+			assertEquals "ONT${it}_1-0_OWL".toString(),
+				converter.ontologyVersionIdToCodeSystemVersionName("${it + 1000}".toString())
+			assertEquals "ONT${it}".toString(), converter.ontologyIdToCodeSystemName("${it}".toString())
+		}
+	}
+
+	@Test
+	void testWarmUpIsFailSoft(){
+		def stub = createStub(failingOntologyId: "3")
+		def converter = createConverter(stub, true)
+
+		def index = converter.index
+
+		assertNull index.get(IdentityIndex.ONTOLOGY_VERSION_ID_TO_NAME, "1003")
+		assertEquals "ONT4_1-0_OWL", index.get(IdentityIndex.ONTOLOGY_VERSION_ID_TO_NAME, "1004")
+		assertEquals "ONT${ONTOLOGIES}_1-0_OWL".toString(), index.get(IdentityIndex.ONTOLOGY_VERSION_ID_TO_NAME, "${ONTOLOGIES + 1000}".toString())
+	}
+
+	@Test
+	void testWarmUpCallsRunConcurrently(){
+		def sequential = createStub()
+		createConverter(sequential, false)
+
+		assertEquals 1, sequential.maxConcurrentCalls.get()
+
+		//the first two ontology calls only return once both are running
+		def parallel = createStub(latch: new CountDownLatch(2))
+		createConverter(parallel, true)
+
+		assertTrue parallel.maxConcurrentCalls.get() > 1
+	}
+
+	/**
+	 * Serves ONTOLOGIES ontologies. The per-ontology calls can be made to
+	 * fail for one ontology, or to wait on a latch.
+	 */
+	private createStub(Map options = [:]){
+		def stub = StubBioportalRestService.ontologies(ONTOLOGIES)
+
+		["getOntologyVersionsByOntologyId", "getLatestOntologyVersionByOntologyId"].each { name ->
+			def response = stub.responses[name]
+			stub.responses[name] = { ontologyId ->
+				if(options.latch != null){
+					options.latch.countDown()
+					options.latch.await(5, TimeUnit.SECONDS)
+				}
+				if(ontologyId == options.failingOntologyId){
+					throw new IllegalStateException("Bioportal error")
+				}
+				response(ontologyId)
+			}
+		}
+
+		stub
+	}
+
+	private createConverter(stub, boolean parallel){
+		def converter = new IdentityConverter(bioportalRestService: stub)
+
+		if(parallel){
+			def async = new AsyncBioportalRestService(bioportalRestService: stub)
+			async.afterPropertiesSet()
+			converter.asyncBioportalRestService = async
+		}
+
+		converter.afterPropertiesSet()
+
+		converter
+	}
+
+}
@@ -0,0 +1,141 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.StubBioportalRestService
+
+class IdentityIndexTest {
+
+	static final String MAP = IdentityIndex.ONTOLOGY_VERSION_ID_TO_NAME
+
+	@Test
+	void testBuilderDoesNotChangeBase(){
+		def base = new IdentityIndex.Builder().put(MAP, "1", "one").build()
+
+		def builder = new IdentityIndex.Builder(base).put(MAP, "2", "two")
+
+		assertEquals "one", builder.get(MAP, "1")
+		assertEquals "two", builder.get(MAP, "2")
+		assertNull base.get(MAP, "2")
+
+		def updated = builder.build()
+		assertEquals(["1", "2"] as Set, updated.keySet(MAP))
+		assertEquals(["1"] as Set, base.keySet(MAP))
+	}
+
+	@Test
+	void testBuildOnReplacedIndex(){
+		def base = new IdentityIndex.Builder().put(MAP, "1", "one").build()
+
+		def first = new IdentityIndex.Builder(base).put(MAP, "2", "two")
+		def second = new IdentityIndex.Builder(base).put(MAP, "3", "three")
+
+		def merged = second.buildOn(first.build())
+
+		assertEquals(["1", "2", "3"] as Set, merged.keySet(MAP))
+	}
+
+	@Test(expected=UnsupportedOperationException)
+	void testIndexIsImmutable(){
+		def index = new IdentityIndex.Builder().put(MAP, "1", "one").build()
+
+		index.getMaps().get(MAP).put("2", "two")
+	}
+
+	@Test
+	void testManySmallUpdates(){
+		def index = new IdentityIndex.Builder().put(MAP, "0", "zero").build()
+
+		//crosses MAX_RECENT, so the recent entries are merged along the way
+		(1..IdentityIndex.MAX_RECENT * 3).each {
+			index = new IdentityIndex.Builder(index).put(MAP, "${it}".toString(), "v${it}".toString()).build()
+		}
+		index = new IdentityIndex.Builder(index).put(MAP, "0", "replaced").build()
+
+		assertEquals IdentityIndex.MAX_RECENT * 3 + 1, index.size(MAP)
+		assertEquals "replaced", index.get(MAP, "0")
+		assertEquals "v1", index.get(MAP, "1")
+		assertEquals "v${IdentityIndex.MAX_RECENT * 3}".toString(), index.get(MAP, "${IdentityIndex.MAX_RECENT * 3}".toString())
+		assertEquals index.size(MAP), index.getMaps().get(MAP).size()
+	}
+
+	@Test
+	void testChangesSince(){
+		def base = new IdentityIndex.Builder().put(MAP, "1", "one").put(MAP, "2", "two").build()
+
+		def updated = new IdentityIndex.Builder(base).put(MAP, "2", "TWO").put(MAP, "3", "three").build()
+
+		assertEquals([(MAP): ["2": "TWO", "3": "three"]], updated.changesSince(base))
+		assertEquals([:], base.changesSince(base))
+
+		//re-applied to a rebuilt index
+		def rebuilt = new IdentityIndex.Builder().put(MAP, "4", "four").build()
+		def merged = new IdentityIndex.Builder(rebuilt).putAll(updated.changesSince(base)).build()
+
+		assertEquals(["2", "3", "4"] as Set, merged.keySet(MAP))
+	}
+
+	@Test
+	void testEmpty(){
+		assertNull IdentityIndex.EMPTY.get(MAP, "1")
+		assertFalse IdentityIndex.EMPTY.containsKey(MAP, "1")
+		assertEquals 0, IdentityIndex.EMPTY.size(MAP)
+	}
+
+	@Test
+	void testRefreshDuringHeavyReads(){
+		def converter = new IdentityConverter(
+			bioportalRestService: StubBioportalRestService.ontologies(IdentityConverterWarmUpTest.ONTOLOGIES))
+		converter.afterPropertiesSet()
+
+		def running = new AtomicBoolean(true)
+		def reads = new AtomicLong()
+		def errors = new CopyOnWriteArrayList()
+
+		def executor = Executors.newFixedThreadPool(9)
+		try {
+			def readers = (1..8).collect {
+				executor.submit({
+					def random = new Random()
+					while(running.get()){
+						try {
+							def i = random.nextInt(IdentityConverterWarmUpTest.ONTOLOGIES) + 1
+							def name = converter.ontologyVersionIdToCodeSystemVersionName("${i + 1000}".toString())
+							if(name != "ONT${i}_1-0_OWL".toString()){
+								errors.add("Read ${name} for ${i}")
+							}
+							assertEquals "${i + 1000}".toString(), converter.codeSystemVersionNameToOntologyId(name)
+							reads.incrementAndGet()
+						} catch (Throwable e) {
+							errors.add(e)
+						}
+					}
+				} as Callable)
+			}
+
+			def refreshes = executor.submit({
+				20.times { converter.onCodeSystemsChangeEvent(["1", "2"]) }
+			} as Callable)
+
+			refreshes.get(60, TimeUnit.SECONDS)
+			running.set(false)
+			readers.each { it.get(10, TimeUnit.SECONDS) }
+		} finally {
+			running.set(false)
+			executor.shutdownNow()
+		}
+
+		assertTrue errors.toString(), errors.isEmpty()
+		assertTrue reads.get() > 0
+	}
+
+}
@@ -0,0 +1,91 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.zip.GZIPOutputStream
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.StubBioportalRestService
+
+class IdentitySnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	@Test
+	void testRoundTrip(){
+		def snapshot = new IdentitySnapshot(new File(folder.root, "identity.snapshot"))
+
+		def maps = [
+			one: [a: "1", b: null, c: "x" * 70000],
+			two: [:]
+		]
+
+		snapshot.write(maps)
+
+		assertEquals maps, snapshot.read()
+	}
+
+	@Test
+	void testMissingSnapshot(){
+		assertNull new IdentitySnapshot(new File(folder.root, "identity.snapshot")).read()
+	}
+
+	@Test
+	void testOtherFormatVersionIgnored(){
+		def file = new File(folder.root, "identity.snapshot")
+
+		new DataOutputStream(new GZIPOutputStream(new FileOutputStream(file))).withStream {
+			it.writeInt(0xB105A7ED)
+			it.writeInt(IdentitySnapshot.FORMAT_VERSION + 1)
+		}
+
+		assertNull new IdentitySnapshot(file).read()
+	}
+
+	@Test
+	void testCorruptSnapshotIgnored(){
+		def file = new File(folder.root, "identity.snapshot")
+		file.text = "not a snapshot"
+
+		assertNull new IdentitySnapshot(file).read()
+	}
+
+	@Test
+	void testRestartServesFromSnapshot(){
+		def first = new IdentityConverter(bioportalRestService: createStub())
+		first.afterPropertiesSet()
+
+		assertTrue new File(folder.root, "identity.snapshot").exists()
+
+		def release = new CountDownLatch(1)
+		def blocked = createStub()
+		def latestOntologyVersions = blocked.responses.getLatestOntologyVersions
+		blocked.responses.getLatestOntologyVersions = {
+			release.await(5, TimeUnit.SECONDS)
+			latestOntologyVersions()
+		}
+
+		def second = new IdentityConverter(bioportalRestService: blocked)
+		second.afterPropertiesSet()
+
+		//Bioportal has not answered yet, but the names are already there
+		assertEquals "ONT7_1-0_OWL", second.ontologyVersionIdToCodeSystemVersionName("1007")
+		assertEquals "1007", second.codeSystemVersionNameToOntologyId("ONT7_1-0_OWL")
+
+		release.countDown()
+	}
+
+	private createStub(){
+		def stub = StubBioportalRestService.ontologies(IdentityConverterWarmUpTest.ONTOLOGIES)
+		stub.cachePath = folder.root.path
+
+		stub
+	}
+
+}
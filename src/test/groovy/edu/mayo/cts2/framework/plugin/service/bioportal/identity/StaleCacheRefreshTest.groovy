@@ -0,0 +1,107 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import static edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalXml.*
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.StubBioportalRestService
+
+class StaleCacheRefreshTest {
+
+	def updated = false
+
+	@Test
+	void testOnlyChangedOntologiesAreFetched(){
+		def stub = createStub()
+
+		def converter = new IdentityConverter(bioportalRestService: stub)
+		converter.afterPropertiesSet()
+
+		updated = true
+		stub.calls.clear()
+
+		assertEquals "5000", converter.codeSystemVersionNameToOntologyId("ONT5_2-0_OWL")
+
+		assertEquals 1, stub.getCallCount("getOntologyVersionsByOntologyId")
+		assertEquals 0, stub.getCallCount("getOntologyByOntologyVersionId")
+
+		//probing would have called once for every id in 1041..5000
+		assertEquals 5000 - 1040 - 1, converter.staleCacheCallsAvoided
+	}
+
+	@Test
+	void testVersionMissingFromListIsFetchedById(){
+		def stub = createStub(false)
+
+		def converter = new IdentityConverter(bioportalRestService: stub)
+		converter.afterPropertiesSet()
+
+		updated = true
+
+		//not in the version list, so named by its id
+		assertEquals "5000", converter.codeSystemVersionNameToOntologyId("ONT5_5000_OWL")
+		assertEquals 1, stub.getCallCount("getOntologyByOntologyVersionId")
+	}
+
+	@Test
+	void testChangeEventRefreshesOnlyChangedOntologies(){
+		def stub = createStub()
+
+		def converter = new IdentityConverter(bioportalRestService: stub)
+		converter.afterPropertiesSet()
+
+		updated = true
+		stub.calls.clear()
+
+		converter.onCodeSystemsChangeEvent(["5"])
+
+		assertEquals([["5"]], stub.getCalls("getOntologyVersionsByOntologyId"))
+		assertEquals 0, stub.getCallCount("getLatestOntologyVersionByOntologyId")
+		assertEquals 0, stub.getCallCount("getOntologyByOntologyVersionId")
+
+		assertEquals "5000", converter.index.get(IdentityIndex.NAME_TO_ONTOLOGY_VERSION_ID, "ONT5_2-0_OWL")
+	}
+
+	/**
+	 * Once 'updated', ontology 5 gets a new version with id 5000.
+	 */
+	private createStub(boolean listIncludesNewVersion = true){
+		def stub = StubBioportalRestService.ontologies(IdentityConverterWarmUpTest.ONTOLOGIES)
+		def responses = stub.responses.clone()
+
+		stub.responses.getLatestOntologyVersions = {
+			list((1..IdentityConverterWarmUpTest.ONTOLOGIES).collect {
+				(updated && it == 5) ? newVersion() : ontology(it)
+			})
+		}
+		stub.responses.getOntologyVersionsByOntologyId = { ontologyId ->
+			if(updated && ontologyId == "5" && listIncludesNewVersion){
+				list([ontology(5), newVersion()])
+			} else {
+				responses.getOntologyVersionsByOntologyId(ontologyId)
+			}
+		}
+		stub.responses.getOntologyByOntologyVersionId = { ontologyVersionId ->
+			if(ontologyVersionId == "5000"){
+				data(newVersion())
+			} else {
+				responses.getOntologyByOntologyVersionId(ontologyVersionId)
+			}
+		}
+
+		stub
+	}
+
+	private newVersion(){
+		ontologyBean(
+			id: 5000,
+			ontologyId: 5,
+			abbreviation: "ONT5",
+			displayLabel: "Ontology 5",
+			versionNumber: "2.0",
+			format: "OWL",
+			isView: false)
+	}
+
+}
@@ -0,0 +1,66 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.index;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.filter.match.AttributeResolver
+import edu.mayo.cts2.framework.model.command.ResolvedFilter
+import edu.mayo.cts2.framework.model.core.PropertyReference
+import edu.mayo.cts2.framework.model.core.URIAndEntityName
+import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference
+
+class CatalogIndexTest {
+
+	def entries = ["Gene Ontology", "Human Disease Ontology", "SNOMED CT", "NCI Thesaurus", null]
+
+	def index = new CatalogIndex<String>(entries, 
+		["name": { [it] } as AttributeResolver])
+
+	@Test
+	void testNoFilters(){
+		assertEquals entries, index.getCandidates(null)
+		assertEquals entries, index.getCandidates([] as Set)
+	}
+
+	@Test
+	void testExactMatch(){
+		assertEquals(["SNOMED CT"], index.getCandidates([filter("name", " snomed ct", StandardMatchAlgorithmReference.EXACT_MATCH)] as Set))
+		assertEquals([], index.getCandidates([filter("name", "SNOMED", StandardMatchAlgorithmReference.EXACT_MATCH)] as Set))
+	}
+
+	@Test
+	void testContains(){
+		assertEquals(["Gene Ontology", "Human Disease Ontology"], 
+			index.getCandidates([filter("name", "ontology", StandardMatchAlgorithmReference.CONTAINS)] as Set))
+		assertEquals(["Human Disease Ontology"], 
+			index.getCandidates([filter("name", "disease ONTO", StandardMatchAlgorithmReference.CONTAINS)] as Set))
+		assertEquals([], 
+			index.getCandidates([filter("name", "xyz", StandardMatchAlgorithmReference.CONTAINS)] as Set))
+	}
+
+	@Test
+	void testCandidatesAreASupersetForShortValues(){
+		assertEquals entries, index.getCandidates([filter("name", "ct", StandardMatchAlgorithmReference.CONTAINS)] as Set)
+	}
+
+	@Test
+	void testUnindexedPropertyDoesNotNarrow(){
+		assertEquals entries, index.getCandidates([filter("keyword", "gene", StandardMatchAlgorithmReference.EXACT_MATCH)] as Set)
+	}
+
+	@Test
+	void testFiltersIntersect(){
+		assertEquals(["Gene Ontology"], index.getCandidates([
+			filter("name", "ontology", StandardMatchAlgorithmReference.CONTAINS),
+			filter("name", "gene", StandardMatchAlgorithmReference.CONTAINS)] as Set))
+	}
+
+	private filter(name, value, algorithm){
+		new ResolvedFilter(
+			matchValue: value,
+			matchAlgorithmReference: algorithm.matchAlgorithmReference,
+			propertyReference: new PropertyReference(
+				referenceTarget: new URIAndEntityName(name: name)))
+	}
+}
@@ -0,0 +1,113 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.index;
+
+import static org.junit.Assert.*
+
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import edu.mayo.cts2.framework.model.command.Page
+import edu.mayo.cts2.framework.model.command.ResolvedFilter
+import edu.mayo.cts2.framework.model.core.PropertyReference
+import edu.mayo.cts2.framework.model.core.URIAndEntityName
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.StreamingPageReader
+import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference
+
+class EntitySearchIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	def searchIndex
+
+	@Before
+	void setUp(){
+		def builder = new EntityTermIndex.Builder("1001", "2001")
+		builder.add("http://test/Heart", "Heart", "Heart")
+		builder.add("http://test/HeartValve", "HeartValve", "Heart valve & root")
+		builder.add("http://test/Lung", "Lung", "Lung")
+
+		searchIndex = new EntitySearchIndex()
+		searchIndex.bioportalRestService = new BioportalRestService(localSearchOntologyIds: "1001, 1002")
+		searchIndex.putIndex(builder.build())
+	}
+
+	@Test
+	void testSearchIsAnsweredLocally(){
+		def xml = searchIndex.search(["1001"], filter("heart", null), page(0, 10))
+
+		def streamingPage = StreamingPageReader.read(xml, 
+			"success.data.page.contents.searchResultList.searchBean", 0, 10, "conceptId", "preferredName", "ontologyVersionId")
+
+		assertEquals(["http://test/Heart", "http://test/HeartValve"], streamingPage.entries*.conceptId)
+		assertEquals(["Heart", "Heart valve & root"], streamingPage.entries*.preferredName)
+		assertEquals(["2001", "2001"], streamingPage.entries*.ontologyVersionId)
+		assertEquals 2, streamingPage.pageInfo.totalCount
+		assertTrue streamingPage.pageInfo.isAtEnd(0)
+	}
+
+	@Test
+	void testPaging(){
+		def xml = searchIndex.search(["1001"], filter("heart", null), page(1, 1))
+
+		def pageInfo = StreamingPageReader.readPageInfo(xml)
+
+		assertEquals 2, pageInfo.pageNumber
+		assertEquals 2, pageInfo.numberOfPages
+		assertEquals 1, pageInfo.numberOfResultsOnPage
+		assertTrue pageInfo.isAtEnd(0)
+	}
+
+	@Test
+	void testFallsBackToBioportal(){
+		//not configured
+		assertNull searchIndex.search(["1003"], filter("heart", null), page(0, 10))
+		//all ontologies
+		assertNull searchIndex.search(null, filter("heart", null), page(0, 10))
+		//definitions aren't indexed
+		assertNull searchIndex.search(["1001"], filter("heart", BioportalRestService.DEFINITIONS_NAME), page(0, 10))
+		assertNull searchIndex.search(["1001"], filter("heart", BioportalRestService.PROPERTIES_NAME), page(0, 10))
+	}
+
+	@Test
+	void testWriteAndRead(){
+		def file = new File(folder.root, "entity-index/2001.idx")
+
+		def builder = new EntityTermIndex.Builder("1001", "2001")
+		builder.add("http://test/Heart", "Heart", "Heart " + ("x" * 70000))
+		builder.add("http://test/Lung", "Lung", null)
+
+		EntitySearchIndex.write(file, builder.build())
+
+		def index = EntitySearchIndex.read(file)
+
+		assertEquals "1001", index.ontologyId
+		assertEquals "2001", index.ontologyVersionId
+		assertEquals 2, index.size()
+		assertEquals(["http://test/Heart"], index.search("heart", false)*.fullId)
+		assertEquals(["http://test/Lung"], index.search("lung", true)*.fullId)
+	}
+
+	@Test
+	void testReadIgnoresOtherFiles(){
+		def file = new File(folder.root, "garbage.idx")
+		file.text = "not an index"
+
+		assertNull EntitySearchIndex.read(file)
+		assertNull EntitySearchIndex.read(new File(folder.root, "missing.idx"))
+	}
+
+	private filter(value, propertyName){
+		new ResolvedFilter(
+			matchValue: value,
+			matchAlgorithmReference: StandardMatchAlgorithmReference.CONTAINS.matchAlgorithmReference,
+			propertyReference: new PropertyReference(
+				referenceTarget: new URIAndEntityName(name: propertyName)))
+	}
+
+	private page(number, size){
+		new Page(page: number, maxToReturn: size)
+	}
+}
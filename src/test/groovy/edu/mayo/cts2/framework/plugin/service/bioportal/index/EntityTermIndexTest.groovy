@@ -0,0 +1,71 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.index;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class EntityTermIndexTest {
+
+	def index = build()
+
+	private build(){
+		def builder = new EntityTermIndex.Builder("1001", "2001")
+		builder.add("http://test/Heart", "Heart", "Heart")
+		builder.add("http://test/HeartValve", "HeartValve", "Heart valve")
+		builder.add("http://test/CongenitalHeartDisease", "C0001", "Congenital heart disease")
+		builder.add("http://test/Lung", "Lung", "Lung")
+		builder.add("http://test/Heart", "Heart", "Duplicate")
+		builder.build()
+	}
+
+	@Test
+	void testDuplicatesKeepFirst(){
+		assertEquals 4, index.size()
+		assertEquals([], index.search("duplicate", false))
+		assertEquals(["Heart"], index.search("heart", true)*.label)
+	}
+
+	@Test
+	void testContainsRanksExactThenPrefixThenOther(){
+		assertEquals(["Heart", "Heart valve", "Congenital heart disease"], index.search("heart", false)*.label)
+	}
+
+	@Test
+	void testContainsMatchesTermPrefixes(){
+		assertEquals(["Congenital heart disease"], index.search("congen HEA", false)*.label)
+		assertEquals(["Heart valve"], index.search("valv", false)*.label)
+		assertEquals([], index.search("eart", false))
+	}
+
+	@Test
+	void testExactMatch(){
+		assertEquals(["Heart valve"], index.search(" heart  VALVE", true)*.label)
+		assertEquals([], index.search("heart val", true))
+	}
+
+	@Test
+	void testExactMatchOnId(){
+		assertEquals(["Congenital heart disease"], index.search("c0001", true)*.label)
+	}
+
+	@Test
+	void testHitCarriesEntity(){
+		def hit = index.search("lung", false)[0]
+
+		assertEquals "http://test/Lung", hit.fullId
+		assertEquals "Lung", hit.id
+		assertEquals "1001", hit.ontologyId
+		assertEquals "2001", hit.ontologyVersionId
+	}
+
+	@Test
+	void testNoTerms(){
+		assertEquals([], index.search("  ,; ", false))
+		assertEquals([], index.search(null, false))
+	}
+
+	@Test
+	void testTokenize(){
+		assertEquals(["ncit", "c1234", "heart", "valve"], EntityTermIndex.tokenize("NCIT:C1234 heart-valve"))
+	}
+}
@@ -0,0 +1,117 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.index;
+
+import static org.junit.Assert.*
+import static edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalXml.*
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.AsyncBioportalRestService
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.StubBioportalRestService
+
+class ValueSetCodeSystemIndexTest {
+
+	@Test
+	void testCodeSystemsOfValueSet(){
+		def index = createIndex(createStub())
+
+		assertEquals(["ONT1", "ONT2"] as Set, index.getCodeSystemsOfValueSet("VIEW10"))
+		assertEquals(["ONT2"] as Set, index.getCodeSystemsOfValueSet("VIEW11"))
+		assertEquals([] as Set, index.getCodeSystemsOfValueSet("VIEW99"))
+	}
+
+	@Test
+	void testValueSetsOfCodeSystem(){
+		def index = createIndex(createStub())
+
+		assertEquals(["VIEW10", "VIEW11"] as Set, index.getValueSetsOfCodeSystem("ONT2"))
+		assertEquals(["VIEW10"] as Set, index.getValueSetsOfCodeSystem("ONT1"))
+	}
+
+	@Test
+	void testBuiltOnceAndRebuiltOnChange(){
+		def stub = createStub()
+		def index = createIndex(stub)
+
+		3.times { index.getCodeSystemsOfValueSet("VIEW10") }
+		assertEquals 1, stub.getCallCount("getLatestViews")
+
+		index.onCodeSystemsChangeEvent(["1"])
+		index.getCodeSystemsOfValueSet("VIEW10")
+		assertEquals 2, stub.getCallCount("getLatestViews")
+	}
+
+	@Test
+	void testUnresolvableVersionIsLeftOut(){
+		def index = createIndex(createStub("1001"))
+
+		assertEquals(["ONT2"] as Set, index.getCodeSystemsOfValueSet("VIEW10"))
+	}
+
+	@Test
+	void testMappingBuiltWithFailuresIsRebuilt(){
+		def failing = ["1001"]
+		def stub = createStub()
+		def response = stub.responses.getOntologyByOntologyVersionId
+		stub.responses.getOntologyByOntologyVersionId = { ontologyVersionId ->
+			if(ontologyVersionId in failing){
+				throw new IllegalStateException("Bioportal error")
+			}
+			response(ontologyVersionId)
+		}
+
+		def index = createIndex(stub)
+
+		assertEquals(["ONT2"] as Set, index.getCodeSystemsOfValueSet("VIEW10"))
+
+		//Bioportal recovers -- the next request rebuilds, and that one is kept
+		failing.clear()
+		assertEquals(["ONT1", "ONT2"] as Set, index.getCodeSystemsOfValueSet("VIEW10"))
+		assertEquals(["ONT1", "ONT2"] as Set, index.getCodeSystemsOfValueSet("VIEW10"))
+
+		assertEquals 2, stub.getCallCount("getLatestViews")
+	}
+
+	/**
+	 * Two views: 10 on versions 1001 and 1002, 11 on version 1002 only 
+	 * (listed without its version ids, so they have to be fetched).
+	 */
+	private createStub(failingOntologyVersionId = null){
+		new StubBioportalRestService(responses: [
+			getLatestViews: { 
+				list([view(10, [1001, 1002]), view(11, [])]) 
+			},
+			getLatestOntologyVersionByOntologyId: { ontologyId -> 
+				data(view(ontologyId, [1002])) 
+			},
+			getOntologyByOntologyVersionId: { ontologyVersionId ->
+				if(ontologyVersionId == failingOntologyVersionId){
+					throw new IllegalStateException("Bioportal error")
+				}
+				data(ontologyBean(abbreviation: "ONT${(ontologyVersionId as int) - 1000}"))
+			}
+		])
+	}
+
+	private view(ontologyId, versionIds){
+		ontologyBean(ontologyId: ontologyId, isView: true, viewOnOntologyVersionId: versionIds)
+	}
+
+	private createIndex(stub){
+		def async = new AsyncBioportalRestService(bioportalRestService: stub)
+		async.afterPropertiesSet()
+
+		new ValueSetCodeSystemIndex(
+			bioportalRestService: stub,
+			asyncBioportalRestService: async,
+			identityConverter: new StubIdentityConverter())
+	}
+
+	static class StubIdentityConverter extends IdentityConverter {
+
+		@Override
+		public String ontologyIdToValueSetName(String ontologyId){
+			"VIEW${ontologyId}".toString()
+		}
+	}
+}
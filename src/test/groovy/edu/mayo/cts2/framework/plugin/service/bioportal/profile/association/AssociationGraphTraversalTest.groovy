@@ -0,0 +1,96 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.profile.association;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.model.association.GraphNode
+import edu.mayo.cts2.framework.model.core.EntitySynopsis
+import edu.mayo.cts2.framework.model.core.PredicateReference
+import edu.mayo.cts2.framework.model.core.StatementTarget
+import edu.mayo.cts2.framework.model.core.URIAndEntityName
+
+class AssociationGraphTraversalTest {
+
+	/*
+	 *   a -> b -> d
+	 *   a -> c -> d -> a
+	 */
+	def edges = [
+		a: ["b", "c"],
+		b: ["d"],
+		c: ["d"],
+		d: ["a"]
+	]
+
+	def calls = new AtomicInteger()
+
+	def source = { uri ->
+		calls.incrementAndGet()
+		(edges[uri] ?: []).collect { node(uri, it) }
+	} as AssociationGraphTraversal.NeighbourSource
+
+	@Test
+	void testDepthOne(){
+		def graph = new AssociationGraphTraversal(source, null, 0).traverse("a", source.getNeighbours("a"), 1)
+
+		assertEquals(["b", "c"], graph*.nodeEntity*.uri)
+		assertEquals 1, calls.get()
+	}
+
+	@Test
+	void testBreadthFirstNumbering(){
+		def graph = new AssociationGraphTraversal(source, null, 0).traverse("a", source.getNeighbours("a"), 3)
+
+		assertEquals(["a->b", "a->c", "b->d", "c->d", "d->a"], graph.collect { it.subject.uri + "->" + it.target.entity.uri })
+		assertEquals((0L..4L).toList(), graph*.nodeNumber)
+		assertEquals((1L..5L).toList(), graph*.nextNodeNumber)
+	}
+
+	@Test
+	void testEachEntityExpandedOnce(){
+		new AssociationGraphTraversal(source, null, 0).traverse("a", source.getNeighbours("a"), 10)
+
+		//a, then b, c, d -- 'a' again and 'd' twice are not re-fetched
+		assertEquals 4, calls.get()
+	}
+
+	@Test
+	void testFanOutLimit(){
+		def graph = new AssociationGraphTraversal(source, null, 1).traverse("a", source.getNeighbours("a"), 2)
+
+		assertEquals(["a->b", "b->d"], graph.collect { it.subject.uri + "->" + it.target.entity.uri })
+	}
+
+	@Test
+	void testAssociationReachedFromBothEndsListedOnce(){
+		def both = { uri ->
+			if(uri == "a"){
+				[node("a", "b")]
+			} else {
+				//the same association, seen from its target
+				[node("a", "b", "a")]
+			}
+		} as AssociationGraphTraversal.NeighbourSource
+
+		def graph = new AssociationGraphTraversal(both, null, 0).traverse("a", both.getNeighbours("a"), 2)
+
+		assertEquals 1, graph.size()
+	}
+
+	@Test(expected=IllegalArgumentException)
+	void testInvalidDepth(){
+		new AssociationGraphTraversal(source, null, 0).traverse("a", [], 0)
+	}
+
+	private node(subject, target, nodeUri = target){
+		def node = new GraphNode()
+		node.subject = new URIAndEntityName(uri: subject, name: subject)
+		node.predicate = new PredicateReference(name: "rel")
+		node.target = new StatementTarget(entity: new URIAndEntityName(uri: target, name: target))
+		node.nodeEntity = new EntitySynopsis(uri: nodeUri, name: nodeUri)
+		node
+	}
+}
@@ -0,0 +1,139 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class AsyncBioportalRestServiceTest {
+
+	def stub
+	def async
+	def latch
+
+	@Before
+	void setUp(){
+		stub = new StubBioportalRestService(httpMaxConnectionsPerHost: 4, responses: [
+			getEntityByOntologyVersionIdAndEntityId: { ontologyVersionId, entityId ->
+				if(latch != null){
+					latch.countDown()
+					//only returns once all the calls are running at the same time
+					assertTrue latch.await(5, TimeUnit.SECONDS)
+				}
+				"${ontologyVersionId}:${entityId}"
+			}
+		])
+
+		async = new AsyncBioportalRestService(bioportalRestService: stub)
+		async.afterPropertiesSet()
+	}
+
+	@After
+	void tearDown(){
+		async.destroy()
+	}
+
+	@Test
+	void testCallsRunConcurrently(){
+		latch = new CountDownLatch(4)
+
+		def futures = (1..4).collect {
+			async.getEntityByOntologyVersionIdAndEntityId("1234", "entity${it}")
+		}
+
+		futures.eachWithIndex { future, i ->
+			assertEquals "1234:entity${i + 1}".toString(), future.get(5, TimeUnit.SECONDS)
+		}
+	}
+
+	@Test
+	void testPoolSizedToConnections(){
+		assertEquals 4, async.poolSize
+	}
+
+	@Test
+	void testInvokeAllKeepsOrder(){
+		def tasks = (1..20).collect { i -> { -> i * 2 } as Callable }
+
+		assertEquals((1..20).collect { it * 2 }, async.invokeAll(tasks))
+	}
+
+	@Test(timeout=10000L)
+	void testNestedCallsDoNotDeadlock(){
+		//more outer tasks than threads, each waiting on inner tasks
+		def tasks = (1..8).collect { i ->
+			{ ->
+				async.firstNonNull([
+					{ -> null } as Callable,
+					{ -> async.invokeAll([{ -> i } as Callable]).get(0) } as Callable
+				])
+			} as Callable
+		}
+
+		assertEquals((1..8).collect { it }, async.invokeAll(tasks))
+	}
+
+	@Test
+	void testFirstNonNullOutlivesAFailedTask(){
+		def tasks = [
+			{ -> throw new IllegalStateException("not found") } as Callable,
+			{ -> null } as Callable,
+			{ -> "found" } as Callable
+		]
+
+		assertEquals "found", async.firstNonNull(tasks)
+	}
+
+	@Test(expected=IllegalStateException)
+	void testFirstNonNullFailsIfNoTaskSucceeds(){
+		async.firstNonNull([
+			{ -> null } as Callable,
+			{ -> throw new IllegalStateException() } as Callable
+		])
+	}
+
+	@Test
+	void testFirstNonNullDoesNotInterruptOtherTasks(){
+		def started = new CountDownLatch(1)
+		def release = new CountDownLatch(1)
+		def finished = new CountDownLatch(1)
+		def interrupted = false
+
+		def slow = { ->
+			started.countDown()
+			try {
+				release.await(5, TimeUnit.SECONDS)
+			} catch (InterruptedException e) {
+				interrupted = true
+			} finally {
+				finished.countDown()
+			}
+			null
+		} as Callable
+
+		def fast = { ->
+			assertTrue started.await(5, TimeUnit.SECONDS)
+			"fast"
+		} as Callable
+
+		assertEquals "fast", async.firstNonNull([slow, fast])
+
+		release.countDown()
+
+		assertTrue finished.await(5, TimeUnit.SECONDS)
+		assertFalse interrupted
+	}
+
+	@Test(expected=IllegalStateException)
+	void testExceptionIsRethrown(){
+		def future = async.submit({ throw new IllegalStateException() } as Callable)
+
+		AsyncBioportalRestService.getResult(future)
+	}
+
+}
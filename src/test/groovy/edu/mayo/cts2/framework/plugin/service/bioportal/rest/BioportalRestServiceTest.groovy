@@ -1,54 +1,72 @@
-package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
-
-import static org.junit.Assert.*
-
-import org.junit.After
-import org.junit.Test
-
-import edu.mayo.cts2.framework.core.config.ConfigConstants
-import edu.mayo.cts2.framework.model.command.ResolvedFilter
-import edu.mayo.cts2.framework.model.core.PropertyReference
-import edu.mayo.cts2.framework.model.core.URIAndEntityName
-import groovy.mock.interceptor.*
-
-class BioportalRestServiceTest {
-	
-	def service = new BioportalRestService()
-
-	@After
-	void tearDown(){
-		System.clearProperty(ConfigConstants.CTS2_CONFIG_DIRECTORY_ENV_VARIABLE)
-	}
-
-	@Test
-	void testGetBioportalQueryStringForFilterDefinitions(){
-		
-		def uriAndName = new PropertyReference(
-				referenceTarget: new URIAndEntityName(
-					name:BioportalRestService.DEFINITIONS_NAME,
-					uri:BioportalRestService.DEFINITIONS_URI))
-		
-		def filter = new ResolvedFilter(
-			propertyReference:uriAndName)
-		
-		def url = service.getBioportalQueryStringForFilter(filter);
-		
-		assertEquals "&includedefinitions=true", url
-	}
-
-	@Test
-	void testGetBioportalQueryStringForFilterProperties(){
-		
-		def uriAndName = new PropertyReference(
-				referenceTarget: new URIAndEntityName(
-					name:BioportalRestService.PROPERTIES_NAME,
-					uri:BioportalRestService.PROPERTIES_URI))
-		
-		def filter = new ResolvedFilter(
-			propertyReference:uriAndName)
-		
-		def url = service.getBioportalQueryStringForFilter(filter);
-		
-		assertEquals "&includeproperties=true", url
-	}
-}
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.After
+import org.junit.Test
+
+import edu.mayo.cts2.framework.core.config.ConfigConstants
+import edu.mayo.cts2.framework.model.command.ResolvedFilter
+import edu.mayo.cts2.framework.model.core.PropertyReference
+import edu.mayo.cts2.framework.model.core.URIAndEntityName
+import groovy.mock.interceptor.*
+
+class BioportalRestServiceTest {
+	
+	def service = new BioportalRestService()
+
+	@After
+	void tearDown(){
+		System.clearProperty(ConfigConstants.CTS2_CONFIG_DIRECTORY_ENV_VARIABLE)
+	}
+
+	@Test
+	void testGetBioportalQueryStringForFilterDefinitions(){
+		
+		def uriAndName = new PropertyReference(
+				referenceTarget: new URIAndEntityName(
+					name:BioportalRestService.DEFINITIONS_NAME,
+					uri:BioportalRestService.DEFINITIONS_URI))
+		
+		def filter = new ResolvedFilter(
+			propertyReference:uriAndName)
+		
+		def url = service.getBioportalQueryStringForFilter(filter);
+		
+		assertEquals "&includedefinitions=true", url
+	}
+
+	@Test
+	void testGetBioportalQueryStringForFilterProperties(){
+		
+		def uriAndName = new PropertyReference(
+				referenceTarget: new URIAndEntityName(
+					name:BioportalRestService.PROPERTIES_NAME,
+					uri:BioportalRestService.PROPERTIES_URI))
+		
+		def filter = new ResolvedFilter(
+			propertyReference:uriAndName)
+		
+		def url = service.getBioportalQueryStringForFilter(filter);
+		
+		assertEquals "&includeproperties=true", url
+	}
+
+	@Test
+	void testCoalescedCallRechecksTheCache(){
+		def checks = new AtomicInteger()
+		def service = new StubBioportalRestService() {
+			@Override
+			protected String getCachedResponse(String key){
+				//the first check misses, and another call caches the response right after
+				checks.getAndIncrement() == 0 ? null : "<cached/>"
+			}
+		}
+
+		assertEquals "<cached/>", service.doCallBioportal("http://rest.bioontology.org/bioportal/ontologies")
+		assertEquals 2, checks.get()
+		assertEquals 0, service.getCallCount("callBioportal")
+	}
+}
@@ -0,0 +1,50 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+/**
+ * Builds Bioportal response xml for the stubbed tests.
+ */
+class BioportalXml {
+
+	/**
+	 * An ontologyBean with the given fields, in order. A collection
+	 * value becomes a list of int elements.
+	 */
+	static String ontologyBean(Map fields){
+		def children = fields.collect { name, value ->
+			def content = value instanceof Collection ? value.collect { "<int>${it}</int>" }.join('') : value
+			"<${name}>${content}</${name}>"
+		}
+
+		"<ontologyBean>${children.join('')}</ontologyBean>".toString()
+	}
+
+	/**
+	 * The bean of test ontology 'i': its version is 'i + 1000', its
+	 * abbreviation 'ONTi', in OWL, version 1.0.
+	 */
+	static String ontology(int i){
+		ontologyBean(
+			id: i + 1000,
+			ontologyId: i,
+			abbreviation: "ONT${i}",
+			displayLabel: "Ontology ${i}",
+			versionNumber: "1.0",
+			format: "OWL",
+			isView: false)
+	}
+
+	/**
+	 * A response listing the beans.
+	 */
+	static String list(Collection beans){
+		"<success><data><list>${beans.join('')}</list></data></success>".toString()
+	}
+
+	/**
+	 * A response of a single bean.
+	 */
+	static String data(String bean){
+		"<success><data>${bean}</data></success>".toString()
+	}
+
+}
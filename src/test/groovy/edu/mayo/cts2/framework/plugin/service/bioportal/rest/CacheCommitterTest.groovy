@@ -0,0 +1,181 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mapdb.DBMaker
+
+class CacheCommitterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	def db
+	def lock = new Object()
+
+	@After
+	void tearDown(){
+		if(db != null){
+			db.close()
+		}
+	}
+
+	@Test
+	void testSyncCommitsEveryWrite(){
+		def committer = new CacheCommitter(openDb(), lock, CacheCommitter.Mode.SYNC, 10, 1000)
+
+		3.times { committer.onWrite() }
+
+		assertEquals 3, committer.commitCount
+		assertEquals 0, committer.pendingCount
+	}
+
+	@Test
+	void testWriteBehindCommitsOnBatchSize(){
+		def committer = new CacheCommitter(openDb(), lock, CacheCommitter.Mode.WRITE_BEHIND, 3, 60000)
+
+		2.times { committer.onWrite() }
+
+		assertEquals 0, committer.commitCount
+		assertEquals 2, committer.pendingCount
+
+		committer.onWrite()
+
+		assertEquals 1, committer.commitCount
+		assertEquals 0, committer.pendingCount
+	}
+
+	@Test
+	void testWriteBehindCommitsFullBatchInBackground(){
+		def committer = new CacheCommitter(openDb(), lock, CacheCommitter.Mode.WRITE_BEHIND, 3, 3600000)
+		committer.start()
+
+		try {
+			3.times { committer.onWrite() }
+
+			def waited = 0
+			while(committer.pendingCount > 0 && waited < 5000){
+				Thread.sleep(50)
+				waited += 50
+			}
+
+			assertEquals 0, committer.pendingCount
+			assertEquals 1, committer.commitCount
+		} finally {
+			committer.shutdown()
+		}
+	}
+
+	@Test
+	void testWriteBehindCommitsOnInterval(){
+		def committer = new CacheCommitter(openDb(), lock, CacheCommitter.Mode.WRITE_BEHIND, 100, 50)
+		committer.start()
+
+		try {
+			committer.onWrite()
+
+			def waited = 0
+			while(committer.pendingCount > 0 && waited < 5000){
+				Thread.sleep(50)
+				waited += 50
+			}
+
+			assertEquals 0, committer.pendingCount
+			assertTrue committer.commitCount >= 1
+		} finally {
+			committer.shutdown()
+		}
+	}
+
+	@Test
+	void testShutdownFlushes(){
+		def committer = new CacheCommitter(openDb(), lock, CacheCommitter.Mode.WRITE_BEHIND, 100, 60000)
+		committer.start()
+
+		committer.onWrite()
+		committer.shutdown()
+
+		assertEquals 0, committer.pendingCount
+		assertEquals 1, committer.commitCount
+	}
+
+	@Test
+	void testCommitWaitsForWriters(){
+		def committer = new CacheCommitter(openDb(), lock, CacheCommitter.Mode.SYNC, 10, 1000)
+
+		def writer
+		synchronized(lock){
+			writer = Thread.start { committer.onWrite() }
+
+			writer.join(200)
+			assertTrue writer.alive
+			assertEquals 0, committer.commitCount
+		}
+
+		writer.join(5000)
+		assertEquals 1, committer.commitCount
+	}
+
+	@Test
+	void testToMode(){
+		assertEquals CacheCommitter.Mode.SYNC, CacheCommitter.toMode(null)
+		assertEquals CacheCommitter.Mode.SYNC, CacheCommitter.toMode("sync")
+		assertEquals CacheCommitter.Mode.WRITE_BEHIND, CacheCommitter.toMode("writeBehind")
+		assertEquals CacheCommitter.Mode.WRITE_BEHIND, CacheCommitter.toMode("write-behind")
+		assertEquals CacheCommitter.Mode.SYNC, CacheCommitter.toMode("bogus")
+	}
+
+	/**
+	 * Simulates a crash in write-behind mode: everything committed before
+	 * the crash must survive, uncommitted writes are lost, and the cache
+	 * must open cleanly afterwards.
+	 */
+	@Test
+	void testCrashRecovery(){
+		def service = createService()
+		try {
+			(1..5).each { service.doCallBioportal("http://test/committed/${it}?") }
+			service.flushCache()
+
+			(1..3).each { service.doCallBioportal("http://test/uncommitted/${it}?") }
+			assertEquals 3, service.cacheCommitter.pendingCount
+
+			//crash -- the uncommitted writes are lost
+			service.db.rollback()
+		} finally {
+			service.destroy()
+		}
+
+		def recovered = createService()
+		try {
+			(1..5).each { recovered.doCallBioportal("http://test/committed/${it}?") }
+			assertEquals 0, recovered.getCallCount("callBioportal")
+
+			(1..3).each { recovered.doCallBioportal("http://test/uncommitted/${it}?") }
+			assertEquals 3, recovered.getCallCount("callBioportal")
+		} finally {
+			recovered.destroy()
+		}
+	}
+
+	private createService(){
+		def service = StubBioportalRestService.echo(
+			cachePath: folder.root.path,
+			apiKey: "key",
+			cacheCommitMode: "writeBehind",
+			cacheCommitBatchSize: 100,
+			cacheCommitInterval: 3600)
+		service.afterPropertiesSet()
+
+		return service
+	}
+
+	private openDb(){
+		db = DBMaker.newFileDB(new File(folder.root, "test.out")).make()
+		return db
+	}
+
+}
@@ -0,0 +1,69 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mapdb.DBMaker
+
+class CacheKeysTest {
+
+	def prefix = "http://rest.bioontology.org/bioportal/"
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	@Test
+	void testApiKeyIsStripped(){
+		assertEquals prefix + "ontologies", CacheKeys.getKey(prefix + "ontologies?apikey=abc")
+		assertEquals prefix + "ontologies", CacheKeys.getKey(prefix + "ontologies?")
+		assertEquals prefix + "concepts/1/root", CacheKeys.getKey(prefix + "concepts/1/root?apikey=abc")
+	}
+
+	@Test
+	void testParametersAreSorted(){
+		def key = prefix + "search/heart?isexactmatch=1&ontologyids=1001&pagenum=1&pagesize=10"
+
+		assertEquals key, CacheKeys.getKey(prefix + "search/heart?pagenum=1&pagesize=10&ontologyids=1001&isexactmatch=1&apikey=abc")
+		assertEquals key, CacheKeys.getKey(prefix + "search/heart?apikey=def&isexactmatch=1&&pagesize=10&pagenum=1&ontologyids=1001")
+		assertTrue CacheKeys.isKey(key)
+		assertFalse CacheKeys.isKey(key + "&apikey=abc")
+	}
+
+	@Test
+	void testOldCacheIsRekeyedAndSurvivesKeyRotation(){
+		def db = DBMaker.newFileDB(new File(folder.root, "cache.out")).randomAccessFileEnable().make()
+		def map = db.getHashMap(BioportalRestService.BIOPORTAL_CACHE_NAME)
+		map[prefix + "ontologies?apikey=old"] = "<ontologies/>"
+		map[prefix + "concepts/2001/all?pagenum=1&pagesize=10&apikey=old"] = "<page/>"
+		db.commit()
+		db.close()
+
+		def events = 0
+		def service = StubBioportalRestService.echo(cachePath: folder.root.path, apiKey: "new")
+		service.afterPropertiesSet()
+		service.addObserver([
+			onCodeSystemsChangeEvent: { events++ }
+		] as CacheObserver)
+		try {
+			assertEquals "<ontologies/>", service.doCallBioportal(prefix + "ontologies?")
+			assertEquals "<page/>", service.doCallBioportal(prefix + "concepts/2001/all?pagesize=10&pagenum=1")
+
+			service.apiKey = "rotated"
+
+			assertEquals "<ontologies/>", service.doCallBioportal(prefix + "ontologies?")
+			assertEquals 0, service.getCallCount("callBioportal")
+			assertEquals 0, events
+			assertEquals([prefix + "concepts/2001/all?pagenum=1&pagesize=10"] as Set, 
+				service.cacheTagIndex.getKeys(CacheTags.version("2001")))
+
+			//the credential is still sent to Bioportal
+			assertEquals "<success>${prefix}concepts/2002/root?apikey=rotated</success>".toString(),
+				service.doCallBioportal(prefix + "concepts/2002/root")
+		} finally {
+			service.destroy()
+		}
+	}
+
+}
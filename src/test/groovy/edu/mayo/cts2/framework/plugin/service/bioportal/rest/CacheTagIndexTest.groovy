@@ -0,0 +1,53 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.ConcurrentSkipListSet
+
+import org.junit.Test
+
+class CacheTagIndexTest {
+
+	def prefix = "http://rest.bioontology.org/bioportal/"
+
+	@Test
+	void testGetKeys(){
+		def index = new CacheTagIndex(new ConcurrentSkipListSet())
+
+		def concept = prefix + "concepts/2001?conceptid=a&apikey=key"
+		def all = prefix + "concepts/2001/all?pagenum=1&pagesize=10&apikey=key"
+		def other = prefix + "concepts/20011/all?pagenum=1&pagesize=10&apikey=key"
+		def search = prefix + "search/heart attack?pagenum=1&ontologyids=1001,1002&apikey=key"
+
+		[concept, all, other, search].each { index.add(it) }
+
+		assertEquals([concept, all] as Set, index.getKeys(CacheTags.version("2001")))
+		assertEquals([other] as Set, index.getKeys(CacheTags.version("20011")))
+		assertEquals([search] as Set, index.getKeys(CacheTags.ontology("1001")))
+		assertEquals([search] as Set, index.getKeys(CacheTags.ontology("1002")))
+		assertTrue index.getKeys(CacheTags.ontology("100")).isEmpty()
+	}
+
+	@Test
+	void testRemove(){
+		def index = new CacheTagIndex(new ConcurrentSkipListSet())
+
+		def search = prefix + "search/a?pagenum=1&ontologyids=1001,1002&apikey=key"
+		index.add(search)
+		index.remove(search)
+
+		assertTrue index.getKeys(CacheTags.ontology("1001")).isEmpty()
+		assertTrue index.getKeys(CacheTags.ontology("1002")).isEmpty()
+		assertTrue index.isEmpty()
+	}
+
+	@Test
+	void testUntaggedKeysAreNotIndexed(){
+		def index = new CacheTagIndex(new ConcurrentSkipListSet())
+
+		index.add("http://bioportal.bioontology.org/syndication/rss")
+
+		assertTrue index.isEmpty()
+	}
+
+}
@@ -0,0 +1,53 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class CacheTagsTest {
+
+	def prefix = "http://rest.bioontology.org/bioportal/"
+
+	@Test
+	void testTagValues(){
+		assertEquals "1001", CacheTags.getOntologyId(CacheTags.ontology("1001"))
+		assertNull CacheTags.getOntologyVersionId(CacheTags.ontology("1001"))
+		assertEquals "2001", CacheTags.getOntologyVersionId(CacheTags.version("2001"))
+		assertNull CacheTags.getOntologyId(CacheTags.LISTING)
+	}
+
+	@Test
+	void testListings(){
+		assertEquals([CacheTags.LISTING] as Set, CacheTags.getTags(prefix + "ontologies?apikey=abc"))
+		assertEquals([CacheTags.LISTING] as Set, CacheTags.getTags(prefix + "views?"))
+	}
+
+	@Test
+	void testOntologyUrls(){
+		assertEquals(["ontology:1001"] as Set, CacheTags.getTags(prefix + "virtual/ontology/1001?apikey=abc"))
+		assertEquals(["ontology:1001"] as Set, CacheTags.getTags(prefix + "ontologies/versions/1001"))
+		assertEquals(["ontology:1001"] as Set, CacheTags.getTags(prefix + "views/versions/1001?apikey=abc"))
+	}
+
+	@Test
+	void testVersionUrls(){
+		assertEquals(["version:2001"] as Set, CacheTags.getTags(prefix + "ontologies/2001?apikey=abc"))
+		assertEquals(["version:2001"] as Set, CacheTags.getTags(prefix + "concepts/2001?conceptid=abc&apikey=abc"))
+		assertEquals(["version:2001"] as Set, CacheTags.getTags(prefix + "concepts/2001/root?apikey=abc"))
+		assertEquals(["version:2001"] as Set, CacheTags.getTags(prefix + "concepts/2001/all?pagenum=1&pagesize=10&apikey=abc"))
+	}
+
+	@Test
+	void testSearchUrls(){
+		assertEquals(["ontology:1001", "ontology:1002"] as Set, 
+			CacheTags.getTags(prefix + "search/heart?pagenum=1&pagesize=10&ontologyids=1001,1002&apikey=abc"))
+		assertEquals([CacheTags.ALL_ONTOLOGIES] as Set, 
+			CacheTags.getTags(prefix + "search/heart?pagenum=1&pagesize=10&isexactmatch=1&apikey=abc"))
+	}
+
+	@Test
+	void testUnknownUrls(){
+		assertEquals([] as Set, CacheTags.getTags("http://bioportal.bioontology.org/syndication/rss"))
+		assertEquals([] as Set, CacheTags.getTags(prefix))
+	}
+}
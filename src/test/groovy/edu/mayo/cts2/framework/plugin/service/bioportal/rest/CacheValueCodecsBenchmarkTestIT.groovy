@@ -0,0 +1,99 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.lang.management.ManagementFactory
+
+import org.apache.commons.io.FileUtils
+import org.apache.commons.logging.LogFactory
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mapdb.DBMaker
+
+/**
+ * Codec benchmark -- stores the responses of the test cache.out fixture
+ * with each codec, and logs the on-disk size, the CPU time spent
+ * encoding and the average read (get and decode) latency.
+ */
+class CacheValueCodecsBenchmarkTestIT {
+
+	def log = LogFactory.getLog(CacheValueCodecsBenchmarkTestIT)
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	@Test
+	void testCodecs(){
+		def responses = fixtureResponses()
+		def codecs = [null, CacheValueCodecs.DEFLATE, CacheValueCodecs.DEFLATE_DICTIONARY]
+		def threads = ManagementFactory.getThreadMXBean()
+
+		def sizes = [:]
+		codecs.each { codec ->
+			def name = codec != null ? codec.name : CacheValueCodecs.NONE
+			def file = new File(folder.root, name + ".out")
+
+			def db = DBMaker.newFileDB(file).randomAccessFileEnable().make()
+			def map = db.getHashMap(BioportalRestService.BIOPORTAL_CACHE_NAME)
+
+			def cpuStart = threads.currentThreadCpuTime
+			def encoded = [:]
+			responses.each { key, xml -> encoded[key] = CacheValueCodecs.encode(xml, codec) }
+			def encodeCpuMillis = (threads.currentThreadCpuTime - cpuStart).intdiv(1000000)
+
+			map.putAll(encoded)
+			db.commit()
+			db.close()
+
+			def size = folder.root.listFiles().findAll { it.name.startsWith(file.name) }.sum { it.length() }
+			sizes[name] = size
+
+			db = DBMaker.newFileDB(file).randomAccessFileEnable().make()
+			map = db.getHashMap(BioportalRestService.BIOPORTAL_CACHE_NAME)
+
+			def reads = 0
+			def start = System.nanoTime()
+			3.times {
+				responses.each { key, xml ->
+					assertEquals xml, CacheValueCodecs.decode(map.get(key), codec)
+					reads++
+				}
+			}
+			def micros = (System.nanoTime() - start).intdiv(1000)
+			db.close()
+
+			log.info("CacheValueCodec ${name}: ${responses.size()} responses, ${size} bytes on disk, " +
+				"${encodeCpuMillis} ms CPU encoding, ${micros.intdiv(reads)} us/read")
+		}
+
+		assertTrue sizes[CacheValueCodecs.DEFLATE.name] < sizes[CacheValueCodecs.NONE]
+	}
+
+	/*
+	 * The responses of the cache.out fixture -- or, if it can't be read,
+	 * the sample responses.
+	 */
+	private fixtureResponses(){
+		def fixture = new File("src/test/resources/cache")
+		def copy = new File(folder.root, "fixture")
+		FileUtils.copyDirectory(fixture, copy)
+
+		def responses = [:]
+		try {
+			def db = DBMaker.newFileDB(new File(copy, "cache.out")).randomAccessFileEnable().make()
+			try {
+				db.getHashMap(BioportalRestService.BIOPORTAL_CACHE_NAME).each { key, value ->
+					responses[key] = CacheValueCodecs.decode(value, null)
+				}
+			} finally {
+				db.close()
+			}
+		} catch (Exception e) {
+			log.warn("Could not read the cache.out fixture, using the sample responses.", e)
+		}
+
+		return responses ?: CacheValueCodecsTest.samples()
+	}
+
+}
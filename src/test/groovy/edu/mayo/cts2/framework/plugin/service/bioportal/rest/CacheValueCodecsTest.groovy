@@ -0,0 +1,118 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.zip.Deflater
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException
+
+class CacheValueCodecsTest {
+
+	@Test
+	void testRoundTrip(){
+		samples().values().each { xml ->
+			[CacheValueCodecs.DEFLATE, CacheValueCodecs.DEFLATE_DICTIONARY].each { codec ->
+				def value = CacheValueCodecs.encode(xml, codec)
+
+				assertTrue value instanceof byte[]
+				assertEquals codec.id, value[0]
+				assertTrue value.length < xml.length()
+				assertEquals xml, CacheValueCodecs.decode(value, null)
+			}
+		}
+	}
+
+	@Test
+	void testDictionaryHelps(){
+		def xml = samples()["entity.xml"]
+
+		assertTrue CacheValueCodecs.encode(xml, CacheValueCodecs.DEFLATE_DICTIONARY).length <
+			CacheValueCodecs.encode(xml, CacheValueCodecs.DEFLATE).length
+	}
+
+	@Test
+	void testDictionaryIsFrozen(){
+		def value = CacheValueCodecs.encode("<success/>", CacheValueCodecs.DEFLATE_DICTIONARY)
+
+		//after the codec id, the zlib header: CMF, FLG, then the Adler-32 of the dictionary
+		assertEquals 0x6c7b4d81L, new BigInteger(1, value[3..6] as byte[]).longValue()
+	}
+
+	@Test
+	void testOtherDictionaryIsRejected(){
+		def other = new DeflateCacheValueCodec("other", (byte) 2, Deflater.DEFAULT_COMPRESSION, "<other/>")
+
+		def value = CacheValueCodecs.encode("<success/>", other)
+
+		try {
+			CacheValueCodecs.decode(value, null)
+			fail()
+		} catch (Cts2RuntimeException e) {
+			//expected -- the dictionary doesn't match the stored one
+		}
+	}
+
+	@Test
+	void testPlainValuesStayReadable(){
+		assertEquals "<success/>", CacheValueCodecs.encode("<success/>", null)
+		assertEquals "<success/>", CacheValueCodecs.decode("<success/>", CacheValueCodecs.DEFLATE)
+		assertNull CacheValueCodecs.decode(null, CacheValueCodecs.DEFLATE)
+	}
+
+	@Test
+	void testCustomCodec(){
+		def reverse = [
+			getName: { "reverse" },
+			getId: { (byte) -1 },
+			encode: { String xml -> xml.reverse().getBytes("UTF-8") },
+			decode: { byte[] data, int offset, int length -> new String(data, offset, length, "UTF-8").reverse() }
+		] as CacheValueCodec
+
+		def value = CacheValueCodecs.encode("<success/>", reverse)
+
+		assertEquals "<success/>", CacheValueCodecs.decode(value, reverse)
+
+		try {
+			CacheValueCodecs.decode(value, null)
+			fail()
+		} catch (IllegalStateException e) {
+			//expected -- nothing knows the id
+		}
+	}
+
+	@Test
+	void testForName(){
+		assertNull CacheValueCodecs.forName("none")
+		assertNull CacheValueCodecs.forName(null)
+		assertNull CacheValueCodecs.forName("lz4")
+		assertSame CacheValueCodecs.DEFLATE, CacheValueCodecs.forName("deflate")
+		assertSame CacheValueCodecs.DEFLATE_DICTIONARY, CacheValueCodecs.forName(" Deflate-Dictionary ")
+	}
+
+	@Test
+	void testServiceReadsAnyCodec(){
+		def service = new BioportalRestService(cache: [:])
+
+		service.cache["a"] = "<a/>"
+		service.cache["b"] = CacheValueCodecs.encode("<b/>", CacheValueCodecs.DEFLATE)
+		service.cacheCompression = "none"
+		service.cache["c"] = CacheValueCodecs.encode("<c/>", CacheValueCodecs.DEFLATE_DICTIONARY)
+
+		assertEquals "none", service.cacheCompression
+		assertEquals "<a/>", service.getCachedResponse("a")
+		assertEquals "<b/>", service.getCachedResponse("b")
+		assertEquals "<c/>", service.getCachedResponse("c")
+	}
+
+	static samples(){
+		def samples = [:]
+		["entity.xml", "entitySearch.xml", "codeSystemVersion.xml", "valueSetDefinition.xml"].each {
+			samples[it] = new File("src/test/resources/bioportalXml/" + it).getText("UTF-8")
+		}
+
+		return samples
+	}
+
+}
@@ -0,0 +1,57 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+import org.apache.commons.logging.LogFactory
+import org.junit.Test
+
+/**
+ * Contention benchmark -- logs parse throughput as the number of
+ * parsing threads grows up to the number of cores.
+ */
+class DocumentBuilderPoolBenchmarkTestIT {
+
+	def log = LogFactory.getLog(DocumentBuilderPoolBenchmarkTestIT)
+
+	def xml = new File("src/test/resources/bioportalXml/entitySearch.xml").text
+
+	@Test
+	void testThroughputScaling(){
+		def parses = 400
+		def cores = Runtime.getRuntime().availableProcessors()
+
+		//warm up
+		parseConcurrently(1, 50)
+
+		[1, 2, cores].unique().each { threads ->
+			def start = System.nanoTime()
+			assertEquals parses, parseConcurrently(threads, parses).size()
+			def millis = Math.max(1L, (System.nanoTime() - start).intdiv(1000000))
+
+			log.info("DocumentBuilderPool: ${threads} thread(s), ${parses} parses, " +
+				"${millis} ms, ${(parses * 1000).intdiv(millis)} parses/sec")
+		}
+
+		def pool = BioportalRestUtils.documentBuilderPool
+		assertTrue pool.createdCount <= pool.maxSize
+
+		log.info("DocumentBuilderPool: size ${pool.createdCount}/${pool.maxSize}, " +
+			"waits ${pool.waitCount}, total wait ${pool.totalWaitTimeMillis} ms")
+	}
+
+	private parseConcurrently(int threads, int parses){
+		def executor = Executors.newFixedThreadPool(threads)
+		try {
+			def tasks = (1..parses).collect {
+				{ -> BioportalRestUtils.getDocument(xml) } as Callable
+			}
+			return executor.invokeAll(tasks).collect { it.get() }
+		} finally {
+			executor.shutdown()
+		}
+	}
+
+}
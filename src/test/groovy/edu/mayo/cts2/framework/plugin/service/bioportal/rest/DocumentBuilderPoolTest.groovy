@@ -0,0 +1,93 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+import javax.xml.parsers.DocumentBuilderFactory
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils
+
+class DocumentBuilderPoolTest {
+
+	def xml = new File("src/test/resources/bioportalXml/entitySearch.xml").text
+
+	@Test
+	void testBorrowCreatesUpToMax(){
+		def pool = new DocumentBuilderPool(DocumentBuilderFactory.newInstance(), 2)
+
+		def b1 = pool.borrow()
+		def b2 = pool.borrow()
+
+		assertEquals 2, pool.createdCount
+		assertNotSame b1, b2
+
+		pool.release(b1)
+
+		assertSame b1, pool.borrow()
+		assertEquals 2, pool.createdCount
+	}
+
+	@Test
+	void testReleaseMakesBuilderIdle(){
+		def pool = new DocumentBuilderPool(DocumentBuilderFactory.newInstance(), 2)
+
+		pool.release(pool.borrow())
+
+		assertEquals 1, pool.idleCount
+		assertEquals 1, pool.borrowCount
+		assertEquals 0, pool.waitCount
+	}
+
+	@Test
+	void testPoolIsSizedOnce(){
+		def pool = BioportalRestUtils.initDocumentBuilderPool(0)
+		def size = pool.maxSize
+
+		assertSame pool, BioportalRestUtils.initDocumentBuilderPool(size + 1)
+		assertSame pool, BioportalRestUtils.documentBuilderPool
+		assertEquals size, pool.maxSize
+	}
+
+	@Test
+	void testServiceKeepsPoolSize(){
+		assertEquals 3, new BioportalRestService(documentBuilderPoolSize: 3).documentBuilderPoolSize
+		assertEquals 0, new BioportalRestService().documentBuilderPoolSize
+	}
+
+	@Test(expected=IllegalArgumentException)
+	void testInvalidSize(){
+		new DocumentBuilderPool(DocumentBuilderFactory.newInstance(), 0)
+	}
+
+	@Test
+	void testConcurrentParsing(){
+		def before = BioportalRestUtils.documentBuilderPool.createdCount
+
+		def results = parseConcurrently(8, 200)
+
+		results.each {
+			assertEquals "25", TransformUtils.getNamedChildTextWithPath(it, "success.data.page.numResultsTotal")
+		}
+
+		def pool = BioportalRestUtils.documentBuilderPool
+		assertTrue pool.createdCount >= before
+		assertTrue pool.createdCount <= pool.maxSize
+	}
+
+	private parseConcurrently(int threads, int parses){
+		def executor = Executors.newFixedThreadPool(threads)
+		try {
+			def tasks = (1..parses).collect {
+				{ -> BioportalRestUtils.getDocument(xml) } as Callable
+			}
+			return executor.invokeAll(tasks).collect { it.get() }
+		} finally {
+			executor.shutdown()
+		}
+	}
+
+}
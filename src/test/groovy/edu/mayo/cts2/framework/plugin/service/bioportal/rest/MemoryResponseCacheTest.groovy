@@ -0,0 +1,139 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.MemoryResponseCache.Category
+
+class MemoryResponseCacheTest {
+
+	@Test
+	void testHitAndMiss(){
+		def cache = new MemoryResponseCache(10, 1024, 0)
+
+		assertNull cache.get("a", Category.CONCEPT)
+
+		cache.put("a", "value", Category.CONCEPT)
+
+		assertEquals "value", cache.get("a", Category.CONCEPT)
+		assertEquals 1, cache.getStats(Category.CONCEPT).hitCount
+		assertEquals 1, cache.getStats(Category.CONCEPT).missCount
+		assertEquals 0, cache.getStats(Category.SEARCH).hitCount
+	}
+
+	@Test
+	void testEvictsByEntryCount(){
+		def cache = new MemoryResponseCache(2, 1024, 0)
+
+		cache.put("a", "1", Category.CONCEPT)
+		cache.put("b", "2", Category.CONCEPT)
+		cache.get("a", Category.CONCEPT)
+		cache.put("c", "3", Category.ROOT)
+
+		assertEquals 2, cache.size
+		assertNotNull cache.get("a", Category.CONCEPT)
+		assertNull cache.get("b", Category.CONCEPT)
+		assertEquals 1, cache.getStats(Category.CONCEPT).evictionCount
+	}
+
+	@Test
+	void testEvictsByWeight(){
+		//each entry weighs 2 * (1 + 9) = 20 bytes
+		def cache = new MemoryResponseCache(100, 50, 0)
+
+		cache.put("a", "123456789", Category.SEARCH)
+		cache.put("b", "123456789", Category.SEARCH)
+		cache.put("c", "123456789", Category.SEARCH)
+
+		assertEquals 2, cache.size
+		assertEquals 40, cache.weight
+		assertNull cache.get("a", Category.SEARCH)
+	}
+
+	@Test
+	void testTooHeavyNotCached(){
+		def cache = new MemoryResponseCache(100, 10, 0)
+
+		cache.put("a", "123456789", Category.SEARCH)
+
+		assertEquals 0, cache.size
+		assertEquals 0, cache.weight
+	}
+
+	@Test
+	void testExpires(){
+		def cache = new MemoryResponseCache(100, 1024, 20)
+
+		cache.put("a", "1", Category.ROOT)
+		Thread.sleep(100)
+
+		assertNull cache.get("a", Category.ROOT)
+		assertEquals 0, cache.weight
+		assertEquals 1, cache.getStats(Category.ROOT).evictionCount
+	}
+
+	@Test
+	void testShrinkLimits(){
+		def cache = new MemoryResponseCache(100, 1024, 0)
+
+		(1..10).each { cache.put("k${it}", "v", Category.CONCEPT) }
+
+		cache.maxEntries = 3
+
+		assertEquals 3, cache.size
+	}
+
+	@Test
+	void testRemoveTagged(){
+		def prefix = "http://rest.bioontology.org/bioportal/"
+		def cache = new MemoryResponseCache(2, 1024, 0)
+
+		cache.put(prefix + "concepts/2001?conceptid=a", "1", Category.CONCEPT)
+		cache.put(prefix + "concepts/2001?conceptid=b", "2", Category.CONCEPT)
+		cache.put(prefix + "concepts/2002?conceptid=a", "3", Category.CONCEPT)
+
+		//the evicted entry is no longer indexed
+		assertEquals 1, cache.removeTagged(CacheTags.version("2001"))
+		assertEquals 0, cache.removeTagged(CacheTags.version("2001"))
+
+		assertEquals 1, cache.size
+		assertEquals 2 * ((prefix + "concepts/2002?conceptid=a").length() + 1), cache.weight
+	}
+
+	@Test
+	void testConcurrentAccess(){
+		def cache = new MemoryResponseCache(50, 1024 * 1024, 0)
+		def executor = Executors.newFixedThreadPool(8)
+
+		try {
+			def tasks = (1..2000).collect { i ->
+				{ ->
+					def key = "k${i % 100}".toString()
+					if(cache.get(key, Category.CONCEPT) == null){
+						cache.put(key, "value${i}", Category.CONCEPT)
+					}
+				} as Callable
+			}
+			executor.invokeAll(tasks).each { it.get() }
+		} finally {
+			executor.shutdown()
+		}
+
+		assertTrue cache.size <= 50
+
+		def expectedWeight = 0
+		(0..99).each {
+			def key = "k${it}".toString()
+			def value = cache.get(key, Category.CONCEPT)
+			if(value != null){
+				expectedWeight += 2 * (key.length() + value.length())
+			}
+		}
+		assertEquals expectedWeight, cache.weight
+	}
+
+}
@@ -0,0 +1,38 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.apache.commons.logging.LogFactory
+import org.junit.Test
+
+/**
+ * Deep offset benchmark -- logs how much is fetched for a window deep in
+ * a listing, against the single grown page fetched before, and how long
+ * planning takes.
+ */
+class PagePlanBenchmarkTestIT {
+
+	def log = LogFactory.getLog(PagePlanBenchmarkTestIT)
+
+	@Test
+	void testDeepOffsets(){
+		def max = 50
+		def offsets = [1000, 10001, 100025, 1000049, 5000013]
+
+		offsets.each { start ->
+			def plan = PagePlan.plan(start, max)
+
+			//what was fetched before: the window's page, grown to reach the start
+			def overFetched = (start - ((int)(start / max) * max)) + max
+
+			def time = System.nanoTime()
+			1000.times { PagePlan.plan(start, max) }
+			def planMicros = (System.nanoTime() - time) / 1000 / 1000
+
+			assertTrue plan.fetchedSize <= 2 * max
+
+			log.info("start: ${start}, max: ${max} -- pages: ${plan.pages.size()}, " +
+				"fetched: ${plan.fetchedSize} (was ${overFetched}), plan: ${planMicros}us")
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class PagePlanTest {
+
+	@Test
+	void testAlignedWindowIsOnePage(){
+		def plan = PagePlan.plan(200, 10)
+
+		assertEquals 1, plan.pages.size()
+		assertEquals 20, plan.pages[0].page
+		assertEquals 10, plan.pages[0].maxToReturn
+		assertEquals 0, plan.getFrom(plan.pages[0])
+		assertEquals 10, plan.getTo(plan.pages[0])
+	}
+
+	@Test
+	void testFirstPage(){
+		def plan = PagePlan.plan(0, 10)
+
+		assertEquals 1, plan.pages.size()
+		assertEquals 0, plan.pages[0].page
+		assertEquals 10, plan.pages[0].maxToReturn
+	}
+
+	@Test
+	void testUnalignedWindowUsesSmallestCoveringPage(){
+		def plan = PagePlan.plan(9, 10)
+
+		assertEquals 1, plan.pages.size()
+		assertEquals 0, plan.pages[0].page
+		assertEquals 19, plan.pages[0].maxToReturn
+		assertEquals 9, plan.getFrom(plan.pages[0])
+		assertEquals 19, plan.getTo(plan.pages[0])
+	}
+
+	@Test
+	void testUnalignedWindowFallsBackToTwoPages(){
+		def plan = PagePlan.plan(1005, 10)
+
+		assertEquals 2, plan.pages.size()
+		assertEquals([100, 101], plan.pages*.page)
+		assertEquals([10, 10], plan.pages*.maxToReturn)
+
+		assertEquals 5, plan.getFrom(plan.pages[0])
+		assertEquals 10, plan.getTo(plan.pages[0])
+		assertEquals 0, plan.getFrom(plan.pages[1])
+		assertEquals 5, plan.getTo(plan.pages[1])
+	}
+
+	@Test
+	void testPlansAlwaysCoverTheWindow(){
+		[1, 2, 7, 10, 50].each { max ->
+			(0..1000).each { start ->
+				def plan = PagePlan.plan(start, max)
+
+				def covered = []
+				plan.pages.each { page ->
+					def pageStart = BioportalRestUtils.getStart(page)
+					(plan.getFrom(page)..<plan.getTo(page)).each { covered << pageStart + it }
+				}
+
+				assertEquals "start: ${start} max: ${max}".toString(), (start..<start + max).toList(), covered
+				assertTrue plan.fetchedSize <= 2 * max
+			}
+		}
+	}
+
+	@Test(expected=IllegalArgumentException)
+	void testInvalidWindow(){
+		PagePlan.plan(0, 0)
+	}
+
+	@Test
+	void testDeepOffsets(){
+		def max = 50
+
+		[1000, 10001, 100025, 1000049, 5000013].each { start ->
+			def plan = PagePlan.plan(start, max)
+
+			assertEquals start, BioportalRestUtils.getStart(plan.pages[0]) + plan.getFrom(plan.pages[0])
+			assertTrue plan.fetchedSize <= 2 * max
+		}
+	}
+}
\ No newline at end of file
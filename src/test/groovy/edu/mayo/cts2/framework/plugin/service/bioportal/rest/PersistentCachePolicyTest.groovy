@@ -0,0 +1,154 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.ConcurrentHashMap
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class PersistentCachePolicyTest {
+
+	def prefix = "http://rest.bioontology.org/bioportal/"
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	@Test
+	void testTracksBytes(){
+		def policy = new PersistentCachePolicy(new ConcurrentHashMap(), 0, 0)
+
+		policy.onPut("a", "12345")
+		policy.onPut("b", [1, 2, 3] as byte[])
+
+		assertEquals 10, policy.bytes
+		assertEquals 2, policy.entryCount
+
+		policy.onPut("a", "1")
+		policy.onRemove("b")
+		policy.onRemove("c")
+
+		assertEquals 2, policy.bytes
+		assertEquals 1, policy.entryCount
+	}
+
+	@Test
+	void testBytesRestoredFromEntries(){
+		def entries = new ConcurrentHashMap()
+		new PersistentCachePolicy(entries, 0, 0).onPut("a", "12345")
+
+		assertEquals 6, new PersistentCachePolicy(entries, 0, 0).bytes
+	}
+
+	@Test
+	void testExpiry(){
+		def policy = new PersistentCachePolicy(new ConcurrentHashMap(), 0, 1000)
+		def now = System.currentTimeMillis()
+
+		policy.onPut("a", "1")
+
+		assertFalse policy.isExpired("a", now)
+		assertTrue policy.isExpired("a", now + 2000)
+		assertFalse policy.isExpired("b", now + 2000)
+
+		def selected = policy.selectForRemoval(now + 2000)
+		assertEquals(["a"] as Set, selected.keySet())
+
+		assertTrue policy.evict("a", selected["a"], now + 2000)
+		assertEquals 1, policy.expirationCount
+		assertEquals 0, policy.entryCount
+	}
+
+	@Test
+	void testEvictsOldestOverMaxBytes(){
+		def entries = new ConcurrentHashMap()
+		def policy = new PersistentCachePolicy(entries, 20, 0)
+
+		["a", "b", "c"].eachWithIndex { key, i ->
+			policy.onPut(key, "123456789")
+			entries[key][0] = 1000L * i
+		}
+
+		def now = System.currentTimeMillis()
+		def selected = policy.selectForRemoval(now)
+		assertEquals(["a"] as Set, selected.keySet())
+
+		assertTrue policy.evict("a", selected["a"], now)
+		assertEquals 1, policy.evictionCount
+
+		policy.maxBytes = 0
+		assertTrue policy.selectForRemoval(System.currentTimeMillis()).isEmpty()
+	}
+
+	@Test
+	void testEvictKeepsRestoredResponse(){
+		def entries = new ConcurrentHashMap()
+		def policy = new PersistentCachePolicy(entries, 0, 1000)
+		def now = System.currentTimeMillis()
+
+		policy.onPut("a", "1")
+		entries["a"][0] = now - 5000
+		def selected = policy.selectForRemoval(now)
+
+		//stored again after it was selected
+		policy.onPut("a", "1")
+
+		assertFalse policy.evict("a", selected["a"], now)
+		assertEquals 1, policy.entryCount
+		assertEquals 0, policy.expirationCount
+	}
+
+	@Test
+	void testTrack(){
+		def policy = new PersistentCachePolicy(new ConcurrentHashMap(), 0, 0)
+
+		policy.track(["a": "1", "b": "12"])
+
+		assertEquals 2, policy.entryCount
+		assertEquals 5, policy.bytes
+	}
+
+	@Test
+	void testMaintainAndCompact(){
+		def service = StubBioportalRestService.echo(
+			cachePath: folder.root.path, 
+			apiKey: "key", 
+			cacheCompression: "none",
+			cacheMaxSize: 0,
+			cacheCompactionPeriod: 0)
+		service.afterPropertiesSet()
+		try {
+			(1..50).each { service.doCallBioportal(prefix + "concepts/2001/all?pagenum=${it}&pagesize=500") }
+			service.doCallBioportal(prefix + "ontologies")
+
+			assertEquals 51, service.cachePolicy.entryCount
+
+			//make the listing the newest response, and halve the limit
+			def entries = service.cachePolicy.entries
+			def listing = prefix + "ontologies"
+			entries[listing] = [Long.MAX_VALUE, entries[listing][1]] as long[]
+			service.cachePolicy.maxBytes = service.cachePolicy.bytes.intdiv(2)
+
+			def removed = service.maintainCache()
+			assertTrue removed >= 25
+			assertEquals 51 - removed, service.cachePolicy.entryCount
+			assertTrue service.cachePolicy.bytes <= service.cachePolicy.maxBytes
+			assertNotNull service.getCachedResponse(prefix + "ontologies")
+			assertTrue service.cacheTagIndex.getKeys(CacheTags.version("2001")).size() < 50
+
+			assertEquals(-1, service.lastCompactionMillis)
+			service.compactCache()
+			assertEquals 1, service.compactionCount
+			assertTrue service.lastCompactionMillis >= 0
+			assertTrue service.cacheFileSize > 0
+
+			//the survivors are still readable after compaction
+			service.doCallBioportal(prefix + "ontologies")
+			assertEquals 51, service.getCallCount("callBioportal")
+		} finally {
+			service.destroy()
+		}
+	}
+
+}
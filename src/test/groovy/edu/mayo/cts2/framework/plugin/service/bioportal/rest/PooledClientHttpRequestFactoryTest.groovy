@@ -0,0 +1,122 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.zip.GZIPOutputStream
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.springframework.web.client.RestTemplate
+
+class PooledClientHttpRequestFactoryTest {
+
+	def server
+	def connections = new AtomicInteger()
+	def gzip = false
+	def acceptEncoding
+
+	def factory
+
+	@Before
+	void setUp(){
+		server = new ServerSocket(0)
+		Thread.start {
+			while(! server.closed){
+				try {
+					def socket = server.accept()
+					connections.incrementAndGet()
+					Thread.start { serve(socket) }
+				} catch (SocketException e) {
+					//closed
+				}
+			}
+		}
+	}
+
+	@After
+	void tearDown(){
+		factory?.shutdown()
+		server.close()
+	}
+
+	/**
+	 * A minimal keep-alive HTTP/1.1 server -- keeps answering on the same
+	 * socket until the client closes it.
+	 */
+	private serve(Socket socket){
+		socket.withStreams { input, output ->
+			def reader = new DataInputStream(input)
+			while(true){
+				def line = reader.readLine()
+				if(line == null){
+					return
+				}
+				while(line){
+					if(line.toLowerCase().startsWith("accept-encoding:")){
+						acceptEncoding = line.substring(16).trim()
+					}
+					line = reader.readLine()
+				}
+
+				def body = "<success>ok</success>".getBytes("UTF-8")
+				def headers = "HTTP/1.1 200 OK\r\nContent-Type: application/xml\r\n"
+				if(gzip){
+					def bytes = new ByteArrayOutputStream()
+					def zip = new GZIPOutputStream(bytes)
+					zip.write(body)
+					zip.close()
+					body = bytes.toByteArray()
+					headers += "Content-Encoding: gzip\r\n"
+				}
+				headers += "Content-Length: ${body.length}\r\n\r\n"
+
+				output.write(headers.getBytes("UTF-8"))
+				output.write(body)
+				output.flush()
+			}
+		}
+	}
+
+	private RestTemplate createRestTemplate(boolean compression){
+		factory = new PooledClientHttpRequestFactory(10, 5, 5000, 5000, 30000, compression)
+
+		def restTemplate = new RestTemplate()
+		restTemplate.setRequestFactory(factory)
+
+		restTemplate
+	}
+
+	@Test
+	void testConnectionIsReused(){
+		def restTemplate = createRestTemplate(false)
+
+		10.times {
+			assertEquals "<success>ok</success>",
+				restTemplate.getForObject("http://localhost:${server.localPort}/bioportal/ontologies/${it}".toString(), String.class)
+		}
+
+		assertEquals 1, connections.get()
+	}
+
+	@Test
+	void testGzipResponseIsDecoded(){
+		gzip = true
+		def restTemplate = createRestTemplate(true)
+
+		assertEquals "<success>ok</success>",
+			restTemplate.getForObject("http://localhost:${server.localPort}/bioportal/ontologies".toString(), String.class)
+		assertTrue acceptEncoding.contains("gzip")
+	}
+
+	@Test
+	void testNoCompressionHeaderWhenDisabled(){
+		def restTemplate = createRestTemplate(false)
+
+		restTemplate.getForObject("http://localhost:${server.localPort}/bioportal/ontologies".toString(), String.class)
+
+		assertNull acceptEncoding
+	}
+
+}
@@ -0,0 +1,108 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+class RequestCoalescerTest {
+
+	@Test
+	void testConcurrentCallersShareOneRequest(){
+		def coalescer = new RequestCoalescer()
+		def calls = new AtomicInteger()
+		def release = new CountDownLatch(1)
+		def threads = 10
+
+		def request = {
+			calls.incrementAndGet()
+			release.await(5, TimeUnit.SECONDS)
+			return "result"
+		} as Callable
+
+		def executor = Executors.newFixedThreadPool(threads)
+		try {
+			def futures = (1..threads).collect {
+				executor.submit({ coalescer.execute("http://test/concepts/1", "concepts", request) } as Callable)
+			}
+
+			waitFor { coalescer.coalescedCounts.get("concepts") == threads - 1 }
+			release.countDown()
+
+			futures.each { assertEquals "result", it.get() }
+		} finally {
+			executor.shutdown()
+		}
+
+		assertEquals 1, calls.get()
+		assertEquals 1L, coalescer.executedCounts.get("concepts")
+		assertEquals 0, coalescer.inFlightCount
+	}
+
+	@Test
+	void testSequentialCallersAreNotCoalesced(){
+		def coalescer = new RequestCoalescer()
+		def calls = 0
+
+		2.times {
+			coalescer.execute("key", "search", { calls++; "result" } as Callable)
+		}
+
+		assertEquals 2, calls
+		assertNull coalescer.coalescedCounts.get("search")
+	}
+
+	@Test
+	void testExceptionIsShared(){
+		def coalescer = new RequestCoalescer()
+		def release = new CountDownLatch(1)
+
+		def request = {
+			release.await(5, TimeUnit.SECONDS)
+			throw new IllegalStateException("failed")
+		} as Callable
+
+		def executor = Executors.newFixedThreadPool(2)
+		try {
+			def futures = (1..2).collect {
+				executor.submit({
+					try {
+						coalescer.execute("key", "ontologies", request)
+						return null
+					} catch (IllegalStateException e) {
+						return e.message
+					}
+				} as Callable)
+			}
+
+			waitFor { coalescer.coalescedCounts.get("ontologies") == 1 }
+			release.countDown()
+
+			futures.each { assertEquals "failed", it.get() }
+		} finally {
+			executor.shutdown()
+		}
+	}
+
+	@Test
+	void testGetEndpoint(){
+		assertEquals "concepts", BioportalRestService.getEndpoint("http://rest.bioontology.org/bioportal/concepts/123?conceptid=abc")
+		assertEquals "search", BioportalRestService.getEndpoint("http://rest.bioontology.org/bioportal/search/heart?pagenum=1")
+		assertEquals "ontologies", BioportalRestService.getEndpoint("http://rest.bioontology.org/bioportal/ontologies?")
+	}
+
+	private waitFor(Closure condition){
+		def waited = 0
+		while(! condition() && waited < 5000){
+			Thread.sleep(10)
+			waited += 10
+		}
+		assertTrue condition()
+	}
+
+}
@@ -0,0 +1,147 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mapdb.DBMaker
+
+import com.sun.syndication.feed.synd.SyndEntryImpl
+import com.sun.syndication.feed.synd.SyndFeedImpl
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.MemoryResponseCache.Category
+
+class RssUpdateTest {
+
+	def prefix = "http://rest.bioontology.org/bioportal/"
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	def db
+
+	def service
+
+	def changes = []
+
+	@Before
+	void setUp(){
+		db = DBMaker.newMemoryDB().make()
+
+		service = new BioportalRestService(apiKey: "key", cachePath: folder.root.path)
+		service.cache = [:]
+		service.cacheCommitter = new CacheCommitter(db, service.cache, CacheCommitter.Mode.SYNC, 10, 1000)
+		service.addObserver([
+			onCodeSystemsChangeEvent: { changes << it }
+		] as CacheObserver)
+	}
+
+	@After
+	void tearDown(){
+		db.close()
+	}
+
+	@Test
+	void testGetUpdatedOntologies(){
+		def feed = feed([1001: 1000L, 1002: 2000L, 1003: 3000L])
+		feed.entries << entry("1002", 4000L)
+
+		assertEquals(["1003", "1002"], service.getUpdatedOntologies(feed, new Date(2000L)))
+		assertEquals(["1001", "1002", "1003"], service.getUpdatedOntologies(feed, null))
+		assertEquals([], service.getUpdatedOntologies(feed, new Date(4000L)))
+	}
+
+	@Test
+	void testCheckForUpdatesUsesHighWaterMark(){
+		service.checkForUpdates(feed([1001: 1000L]))
+
+		//the first check only records the mark
+		assertEquals new Date(1000L), service.lastUpdate
+		assertEquals([], changes)
+
+		//nothing new
+		service.checkForUpdates(feed([1001: 1000L]))
+		assertEquals([], changes)
+
+		service.checkForUpdates(feed([1001: 1000L, 1002: 2000L]))
+		assertEquals([["1002"]], changes)
+		assertEquals new Date(2000L), service.lastUpdate
+	}
+
+	@Test
+	void testFirstCheckInvalidatesNothing(){
+		service.cache[prefix + "ontologies/versions/1001"] = "<success/>"
+
+		service.checkForUpdates(feed([1001: 1000L, 1002: 2000L]))
+
+		assertEquals 1, service.cache.size()
+		assertEquals([], changes)
+		assertEquals new Date(2000L), service.lastUpdate
+	}
+
+	@Test
+	void testInvalidateOntologies(){
+		service.cache[prefix + "ontologies/versions/1001"] = 
+			"<success><data><list><ontologyBean><id>2001</id></ontologyBean><ontologyBean><id>2000</id></ontologyBean></list></data></success>"
+		service.cache[prefix + "concepts/2001/all?pagenum=1&pagesize=10&apikey=key"] = "<page/>"
+		service.cache[prefix + "concepts/2000/all?pagenum=1&pagesize=10&apikey=key"] = "<page/>"
+		service.cache[prefix + "ontologies?apikey=key"] = "<list/>"
+		service.cache[prefix + "concepts/3001/all?pagenum=1&pagesize=10&apikey=key"] = "<page/>"
+		service.cache[prefix + "virtual/ontology/1002?apikey=key"] = "<ontology/>"
+
+		service.memCache.put(prefix + "concepts/2001?conceptid=a&apikey=key", "<concept/>", Category.CONCEPT)
+		service.memCache.put(prefix + "search/a?pagenum=1&ontologyids=1001&apikey=key", "<search/>", Category.SEARCH)
+		service.memCache.put(prefix + "search/a?pagenum=1&apikey=key", "<search/>", Category.SEARCH)
+		service.memCache.put(prefix + "search/a?pagenum=1&ontologyids=1002&apikey=key", "<search/>", Category.SEARCH)
+
+		assertEquals 4, service.invalidateOntologies(["1001"])
+
+		assertEquals([
+			prefix + "concepts/3001/all?pagenum=1&pagesize=10&apikey=key",
+			prefix + "virtual/ontology/1002?apikey=key"] as Set, service.cache.keySet())
+
+		assertEquals 1, service.memCache.size
+		assertNotNull service.memCache.get(prefix + "search/a?pagenum=1&ontologyids=1002&apikey=key", Category.SEARCH)
+	}
+
+	@Test
+	void testTagObserversToldOncePerTag(){
+		def tags = []
+		service.addObserver([
+			onCodeSystemsChangeEvent: { },
+			onCacheTagInvalidated: { tags << it }
+		] as CacheTagObserver)
+
+		service.cache[prefix + "ontologies/versions/1001"] = 
+			"<success><data><list><ontologyBean><id>2001</id></ontologyBean></list></data></success>"
+		(1..5).each {
+			service.cache[prefix + "concepts/2001/all?pagenum=${it}&pagesize=10&apikey=key".toString()] = "<page/>"
+		}
+
+		assertEquals 6, service.invalidateOntology("1001")
+
+		assertEquals([
+			CacheTags.LISTING, 
+			CacheTags.ALL_ONTOLOGIES, 
+			CacheTags.ontology("1001"), 
+			CacheTags.version("2001")], tags)
+		assertTrue service.cache.isEmpty()
+		assertTrue service.cacheTagIndex.isEmpty()
+	}
+
+	private feed(Map<Integer,Long> dates){
+		def feed = new SyndFeedImpl()
+		feed.entries = dates.collect { id, time -> entry(id.toString(), time) }
+		feed
+	}
+
+	private entry(String ontologyId, long time){
+		def entry = new SyndEntryImpl()
+		entry.link = "http://bioportal.bioontology.org/ontologies/" + ontologyId
+		entry.modules = [new DateModule(new Date(time))]
+		entry
+	}
+}
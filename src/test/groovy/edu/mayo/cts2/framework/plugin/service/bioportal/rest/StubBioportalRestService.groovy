@@ -0,0 +1,142 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalXml.*
+
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A BioportalRestService answering from closures instead of Bioportal.
+ * Each call is answered by the closure in 'responses' named after the
+ * method, called with the method's arguments (less any forceRefresh flag),
+ * for example:
+ * <pre>
+ * new StubBioportalRestService(responses: [
+ *     getLatestViews: { BioportalXml.list([]) }
+ * ])
+ * </pre>
+ * Requests the stub has no method for reach 'callBioportal' with their
+ * URL. A call without a response fails. Every call is recorded, as is the
+ * most calls seen running at once.
+ */
+class StubBioportalRestService extends BioportalRestService {
+
+	def responses = [:]
+
+	def calls = Collections.synchronizedList([])
+
+	def concurrentCalls = new AtomicInteger()
+
+	def maxConcurrentCalls = new AtomicInteger()
+
+	/**
+	 * A stub serving the test ontologies 1 to 'count', each with one
+	 * version (see {@link BioportalXml#ontology(int)}), and no views.
+	 */
+	static StubBioportalRestService ontologies(int count){
+		new StubBioportalRestService(responses: [
+			getLatestOntologyVersions: {
+				list((1..count).collect { ontology(it) })
+			},
+			getLatestViews: {
+				list([])
+			},
+			getOntologyVersionsByOntologyId: { ontologyId ->
+				list([ontology(ontologyId as int)])
+			},
+			getLatestOntologyVersionByOntologyId: { ontologyId ->
+				data(ontology(ontologyId as int))
+			},
+			getLatestOntologyVersionByVirtualId: { virtualId ->
+				data(ontology(virtualId as int))
+			},
+			getOntologyByOntologyVersionId: { ontologyVersionId ->
+				data(ontology((ontologyVersionId as int) - 1000))
+			}
+		])
+	}
+
+	/**
+	 * A stub answering every Bioportal request with its URL, wrapped in a
+	 * success element, for tests of the cache rather than the content.
+	 */
+	static StubBioportalRestService echo(Map properties){
+		def stub = new StubBioportalRestService(properties)
+		stub.responses.callBioportal = { url -> "<success>${url}</success>" }
+		stub
+	}
+
+	/**
+	 * The arguments of each call made to a method, in call order.
+	 */
+	List getCalls(String name){
+		synchronized(calls){
+			calls.findAll { it[0] == name }.collect { it.size() > 1 ? it[1..-1] : [] }
+		}
+	}
+
+	int getCallCount(String name){
+		getCalls(name).size()
+	}
+
+	protected respond(String name, Object... args){
+		calls.add([name] + (args as List))
+
+		def running = concurrentCalls.incrementAndGet()
+		try {
+			synchronized(maxConcurrentCalls){
+				maxConcurrentCalls.set(Math.max(maxConcurrentCalls.get(), running))
+			}
+
+			def response = responses[name]
+			if(response == null){
+				throw new IllegalStateException("No stub response for: " + name)
+			}
+
+			def xml = response.call(*args)
+			return xml != null ? xml.toString() : null
+		} finally {
+			concurrentCalls.decrementAndGet()
+		}
+	}
+
+	@Override
+	protected String callBioportal(String url){
+		respond("callBioportal", url)
+	}
+
+	@Override
+	public String getEntityByOntologyVersionIdAndEntityId(String ontologyVersionId, String entityId){
+		respond("getEntityByOntologyVersionIdAndEntityId", ontologyVersionId, entityId)
+	}
+
+	@Override
+	public String getLatestOntologyVersions(boolean forceRefresh){
+		respond("getLatestOntologyVersions")
+	}
+
+	@Override
+	public String getLatestViews(boolean forceRefresh){
+		respond("getLatestViews")
+	}
+
+	@Override
+	public String getOntologyVersionsByOntologyId(String ontologyId, boolean forceRefresh){
+		respond("getOntologyVersionsByOntologyId", ontologyId)
+	}
+
+	@Override
+	public String getLatestOntologyVersionByOntologyId(String ontologyId){
+		respond("getLatestOntologyVersionByOntologyId", ontologyId)
+	}
+
+	@Override
+	public String getLatestOntologyVersionByVirtualId(String virtualId){
+		respond("getLatestOntologyVersionByVirtualId", virtualId)
+	}
+
+	@Override
+	public String getOntologyByOntologyVersionId(String ontologyVersionId){
+		respond("getOntologyByOntologyVersionId", ontologyVersionId)
+	}
+
+}
@@ -12,6 +12,8 @@ import org.springframework.core.io.ClassPathResource
 import org.w3c.dom.*
 
 import edu.mayo.cts2.framework.core.url.UrlConstructor
+import edu.mayo.cts2.framework.model.association.types.GraphDirection
+import edu.mayo.cts2.framework.model.core.types.AssociationDirection
 import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter
 
 class AssociationTransformTest {
@@ -152,4 +154,28 @@ class AssociationTransformTest {
 			assertNotNull it.getAbout()
 		}
 	}
+	
+	@Test
+	void testTransformAssociationForGraphDirection(){
+		def transform = new AssociationTransform()
+		transform.setUrlConstructor(urlConstructor)
+		transform.setIdentityConverter(idConverter)
+		
+		def xml = """<success><data><classBean><id>A</id><fullId>http://test/A</fullId><label>a</label><relations>
+			<entry><string>SubClass</string><list><classBean><id>B</id><fullId>http://test/B</fullId><label>b</label></classBean></list></entry>
+			<entry><string>[R]part_of</string><list><classBean><id>C</id><fullId>http://test/C</fullId><label>c</label></classBean></list></entry>
+			</relations></classBean></data></success>"""
+		
+		def forward = transform.transformAssociationForGraph(xml, "cs", "csv", GraphDirection.FORWARD)
+		assertEquals(["http://test/B"], forward*.nodeEntity*.uri)
+		assertEquals "http://test/A", forward[0].subject.uri
+		assertEquals AssociationDirection.SOURCE_TO_TARGET, forward[0].direction
+		
+		def backward = transform.transformAssociationForGraph(xml, "cs", "csv", GraphDirection.BACKWARD)
+		assertEquals(["http://test/C"], backward*.nodeEntity*.uri)
+		assertEquals "http://test/C", backward[0].subject.uri
+		assertEquals "http://test/A", backward[0].target.entity.uri
+		assertEquals "part_of", backward[0].predicate.name
+		assertEquals AssociationDirection.TARGET_TO_SOURCE, backward[0].direction
+	}
 }
@@ -0,0 +1,74 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class ParsedResponseCacheTest {
+
+	@Test
+	void testParsedOnce(){
+		def parses = 0
+		def cache = new ParsedResponseCache("test", 10, { parses++; it.length() } as ParsedResponseCache.Parser)
+
+		assertEquals 3, cache.get("abc")
+		assertEquals 3, cache.get("abc")
+		assertEquals 3, cache.get(new String("abc"))
+
+		assertEquals 1, parses
+		assertEquals 2, cache.hitCount
+		assertEquals 1, cache.missCount
+	}
+
+	@Test
+	void testKeyedByDigest(){
+		def cache = new ParsedResponseCache("test", 10, { it.length() } as ParsedResponseCache.Parser)
+
+		def key = cache.getKey("<success><data/></success>")
+
+		assertEquals 40, key.length()
+		assertEquals key, cache.getKey(new String("<success><data/></success>"))
+		assertFalse key == cache.getKey("<success><data></data></success>")
+	}
+
+	@Test
+	void testBounded(){
+		def cache = new ParsedResponseCache("test", 2, { it.length() } as ParsedResponseCache.Parser)
+
+		cache.get("a")
+		cache.get("bb")
+		cache.get("ccc")
+
+		assertEquals 2, cache.size
+
+		cache.get("a")
+
+		assertEquals 4, cache.missCount
+	}
+
+	@Test
+	void testGetOntologyBean(){
+		def xml = new File("src/test/resources/bioportalXml/codeSystemVersion.xml").text
+
+		def bean = TransformUtils.getOntologyBean(xml)
+
+		assertEquals "BRO", bean.get("abbreviation")
+		assertEquals "44450", bean.get("id")
+		assertEquals(["BRO_v3.2.1.owl"], bean.filenames)
+		assertTrue bean.viewOnOntologyVersionIds.isEmpty()
+
+		assertSame bean, TransformUtils.getOntologyBean(xml)
+	}
+
+	@Test
+	void testGetOntologyBeanList(){
+		def xml = new File("src/test/resources/bioportalXml/valueSetDefinition.xml").text
+
+		def beans = TransformUtils.getOntologyBeanList(xml)
+
+		assertEquals 2, beans.size()
+		assertEquals(["42122"], beans.get(0).viewOnOntologyVersionIds)
+		assertEquals(["fake.zip", "######DIR######"], beans.get(0).filenames)
+	}
+
+}
@@ -0,0 +1,60 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils
+
+class StreamingPageReaderTest {
+
+	def SEARCH_NODELIST = "success.data.page.contents.searchResultList.searchBean"
+
+	def xml = new File("src/test/resources/bioportalXml/entitySearch.xml").text
+
+	@Test
+	void testReadAll(){
+		def page = StreamingPageReader.read(xml, SEARCH_NODELIST, 0, Integer.MAX_VALUE, "conceptId")
+
+		assertEquals 25, page.entries.size()
+	}
+
+	@Test
+	void testReadWindow(){
+		def page = StreamingPageReader.read(xml, SEARCH_NODELIST, 22, 24, "conceptIdShort")
+
+		assertEquals 3, page.entries.size()
+
+		def nodes = TransformUtils.getNodeListWithPath(BioportalRestUtils.getDocument(xml), SEARCH_NODELIST)
+
+		assertEquals TransformUtils.getNamedChildText(nodes.get(22), "conceptIdShort"), page.entries.get(0).conceptIdShort
+		assertEquals TransformUtils.getNamedChildText(nodes.get(24), "conceptIdShort"), page.entries.get(2).conceptIdShort
+	}
+
+	@Test
+	void testReadNormalizesText(){
+		def page = StreamingPageReader.read(xml, SEARCH_NODELIST, 0, 1, "conceptId")
+
+		assertEquals "http://purl.bioontology.org/ontology/ICD10CM/Y93.71", page.entries.get(0).conceptId
+		assertEquals "http://purl.bioontology.org/ontology/MSH/D001914", page.entries.get(1).conceptId
+	}
+
+	@Test
+	void testReadOnlyRequestedChildren(){
+		def page = StreamingPageReader.read(xml, SEARCH_NODELIST, 0, 0, "preferredName")
+
+		assertEquals(["preferredName"] as Set, page.entries.get(0).keySet())
+	}
+
+	@Test
+	void testReadPageInfo(){
+		def pageInfo = StreamingPageReader.readPageInfo(xml)
+
+		assertEquals TransformUtils.getTotalCount(xml), pageInfo.totalCount
+		assertEquals TransformUtils.getPageNumber(xml), pageInfo.pageNumber
+		assertEquals TransformUtils.getPageSize(xml), pageInfo.pageSize
+		assertEquals TransformUtils.getNumberOfResultsOnPage(xml), pageInfo.numberOfResultsOnPage
+		assertTrue pageInfo.isAtEnd(0)
+	}
+
+}
@@ -0,0 +1,104 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform
+
+import static org.junit.Assert.*
+import static edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalXml.*
+
+import org.junit.Test
+import org.w3c.dom.Node
+
+import edu.mayo.cts2.framework.model.codesystemversion.CodeSystemVersionCatalogEntrySummary
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.AsyncBioportalRestService
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.StubBioportalRestService
+
+class VersionSummaryCacheTest {
+
+	@Test
+	void testAllVersionsInListingOrder(){
+		def transform = createTransform(createStub())
+
+		def names = transform.transformResourceVersions(listing([3: 30, 1: 10, 2: 20])).collect { it.codeSystemVersionName }
+
+		assertEquals(["3-a", "3-b", "1-a", "1-b", "2-a", "2-b"], names)
+	}
+
+	@Test
+	void testVersionsAreFetchedOncePerOntology(){
+		def stub = createStub()
+		def transform = createTransform(stub)
+
+		transform.transformResourceVersions(listing([1: 10, 2: 20]))
+		transform.transformResourceVersions(listing([1: 10, 2: 20, 3: 30]))
+
+		assertEquals 1, fetches(stub, "1")
+		assertEquals 1, fetches(stub, "2")
+		assertEquals 1, fetches(stub, "3")
+	}
+
+	@Test
+	void testNewLatestVersionRefetches(){
+		def stub = createStub()
+		def transform = createTransform(stub)
+
+		transform.transformResourceVersions(listing([1: 10, 2: 20]))
+		transform.transformResourceVersions(listing([1: 11, 2: 20]))
+
+		assertEquals 2, fetches(stub, "1")
+		assertEquals 1, fetches(stub, "2")
+	}
+
+	@Test
+	void testChangeEventInvalidatesOnlyChangedOntologies(){
+		def stub = createStub()
+		def transform = createTransform(stub)
+
+		transform.transformResourceVersions(listing([1: 10, 2: 20]))
+		transform.onCodeSystemsChangeEvent(["2"])
+		transform.transformResourceVersions(listing([1: 10, 2: 20]))
+
+		assertEquals 1, fetches(stub, "1")
+		assertEquals 2, fetches(stub, "2")
+	}
+
+	private listing(Map latestVersionIds){
+		list(latestVersionIds.collect { ontologyId, versionId ->
+			ontologyBean(id: versionId, ontologyId: ontologyId)
+		})
+	}
+
+	/**
+	 * Every ontology has two versions, 'a' and 'b'.
+	 */
+	private createStub(){
+		new StubBioportalRestService(responses: [
+			getOntologyVersionsByOntologyId: { ontologyId ->
+				list(["a", "b"].collect { 
+					ontologyBean(ontologyId: ontologyId, versionNumber: "${ontologyId}-${it}")
+				})
+			}
+		])
+	}
+
+	private fetches(stub, ontologyId){
+		stub.getCalls("getOntologyVersionsByOntologyId").count { it[0] == ontologyId }
+	}
+
+	private createTransform(stub){
+		def async = new AsyncBioportalRestService(bioportalRestService: stub)
+		async.afterPropertiesSet()
+
+		def transform = new StubCodeSystemVersionTransform()
+		transform.bioportalRestService = stub
+		transform.asyncBioportalRestService = async
+
+		transform
+	}
+
+	static class StubCodeSystemVersionTransform extends CodeSystemVersionTransform {
+
+		@Override
+		protected CodeSystemVersionCatalogEntrySummary transformVersionSummary(Node node) {
+			new CodeSystemVersionCatalogEntrySummary(
+				codeSystemVersionName: TransformUtils.getNamedChildText(node, "versionNumber"))
+		}
+	}
+}
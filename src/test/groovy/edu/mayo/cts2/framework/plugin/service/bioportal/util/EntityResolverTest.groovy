@@ -0,0 +1,92 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.util;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+import org.springframework.http.HttpStatus
+import org.springframework.web.client.HttpClientErrorException
+
+import edu.mayo.cts2.framework.model.core.ScopedEntityName
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.AsyncBioportalRestService
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.StubBioportalRestService
+
+class EntityResolverTest {
+
+	@Test
+	void testPreferredVariantTriedFirst(){
+		def stub = createStub()
+		def resolver = new EntityResolver(bioportalRestService: stub)
+
+		assertEquals "<entity>ns:a_b</entity>", resolver.getEntityXml(name("a_b"), "1")
+		assertEquals(["a_b", "a:b", "ns:a_b"], entityIds(stub))
+
+		stub.calls.clear()
+
+		assertEquals "<entity>ns:c_d</entity>", resolver.getEntityXml(name("c_d"), "1")
+		assertEquals(["ns:c_d"], entityIds(stub))
+	}
+
+	@Test
+	void testNotFoundIsRemembered(){
+		def stub = createStub()
+		def resolver = new EntityResolver(bioportalRestService: stub)
+
+		assertNull resolver.getEntityXml("missing", "1")
+		assertNull resolver.getEntityXml("missing", "1")
+
+		assertEquals(["missing"], entityIds(stub))
+		assertEquals 1, resolver.notFoundHitCount
+	}
+
+	@Test
+	void testNotFoundNotRememberedWithoutTimeToLive(){
+		def stub = createStub()
+		stub.entityNotFoundTimeToLive = 0
+		def resolver = new EntityResolver(bioportalRestService: stub)
+
+		2.times { resolver.getEntityXml("missing", "1") }
+
+		assertEquals(["missing", "missing"], entityIds(stub))
+	}
+
+	@Test
+	void testConcurrentLookup(){
+		def stub = createStub()
+		stub.concurrentEntityLookup = true
+
+		def async = new AsyncBioportalRestService(bioportalRestService: stub)
+		async.afterPropertiesSet()
+
+		try {
+			def resolver = new EntityResolver(bioportalRestService: stub, asyncBioportalRestService: async)
+
+			assertEquals "<entity>ns:a_b</entity>", resolver.getEntityXml(name("a_b"), "1")
+			assertEquals 2, resolver.preferredVariant.get("1")
+		} finally {
+			async.destroy()
+		}
+	}
+
+	private name(String name){
+		new ScopedEntityName(name: name, namespace: "ns")
+	}
+
+	/**
+	 * Only knows entities by their 'ns:name' id.
+	 */
+	private createStub(){
+		new StubBioportalRestService(responses: [
+			getEntityByOntologyVersionIdAndEntityId: { ontologyVersionId, entityId ->
+				if(entityId.startsWith("ns:")){
+					return "<entity>${entityId}</entity>"
+				}
+				throw new HttpClientErrorException(HttpStatus.NOT_FOUND)
+			}
+		])
+	}
+
+	private entityIds(stub){
+		stub.getCalls("getEntityByOntologyVersionIdAndEntityId").collect { it[1] }
+	}
+
+}
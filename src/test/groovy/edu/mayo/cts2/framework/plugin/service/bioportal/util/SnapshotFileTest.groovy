@@ -0,0 +1,58 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.util;
+
+import static org.junit.Assert.*
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class SnapshotFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	@Test
+	void testRoundTrip(){
+		def file = new SnapshotFile(new File(folder.root, "test.snapshot"), 0x12345678, 1)
+
+		file.write({ out ->
+			SnapshotFile.writeString(out, "x" * 70000)
+			SnapshotFile.writeString(out, null)
+		} as SnapshotFile.Writer)
+
+		assertEquals(["x" * 70000, null],
+			file.read({ in -> [SnapshotFile.readString(in), SnapshotFile.readString(in)] } as SnapshotFile.Reader))
+	}
+
+	@Test
+	void testOtherFormatIgnored(){
+		def written = new SnapshotFile(new File(folder.root, "test.snapshot"), 0x12345678, 1)
+		written.write({ out -> out.writeInt(1) } as SnapshotFile.Writer)
+
+		def reader = { in -> in.readInt() } as SnapshotFile.Reader
+
+		assertEquals 1, written.read(reader)
+		assertNull new SnapshotFile(written.file, 0x12345678, 2).read(reader)
+		assertNull new SnapshotFile(written.file, 0x87654321, 1).read(reader)
+	}
+
+	@Test
+	void testFailedWriteKeepsExistingFile(){
+		def file = new SnapshotFile(new File(folder.root, "test.snapshot"), 0x12345678, 1)
+		file.write({ out -> out.writeInt(1) } as SnapshotFile.Writer)
+
+		try {
+			file.write({ out ->
+				out.writeInt(2)
+				throw new IOException("failed")
+			} as SnapshotFile.Writer)
+			fail()
+		} catch (IOException e) {
+			//expected
+		}
+
+		assertEquals 1, file.read({ in -> in.readInt() } as SnapshotFile.Reader)
+		assertFalse new File(folder.root, "test.snapshot.tmp").exists()
+	}
+
+}
@@ -0,0 +1,64 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.util;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class TotalCountCacheTest {
+
+	@Test
+	void testHitAndMiss(){
+		def cache = new TotalCountCache(10)
+		def key = TotalCountCache.createKey("search", "1032", "heart", "contains", null)
+
+		assertNull cache.get(key)
+
+		cache.put(key, 25, 0)
+
+		assertEquals 25, cache.get(key)
+		assertEquals 1, cache.hitCount
+		assertEquals 1, cache.missCount
+	}
+
+	@Test
+	void testKeysDifferByPart(){
+		def cache = new TotalCountCache(10)
+
+		cache.put(TotalCountCache.createKey("search", "1032", "heart"), 25, 0)
+
+		assertNull cache.get(TotalCountCache.createKey("search", "1033", "heart"))
+		assertNull cache.get(TotalCountCache.createKey("search", null, "heart"))
+	}
+
+	@Test
+	void testExpires(){
+		def cache = new TotalCountCache(10)
+
+		cache.put("key", 25, 20)
+		Thread.sleep(100)
+
+		assertNull cache.get("key")
+		assertEquals 0, cache.size()
+	}
+
+	@Test
+	void testBounded(){
+		def cache = new TotalCountCache(3)
+
+		(1..10).each { cache.put("key${it}".toString(), it, 0) }
+
+		assertEquals 3, cache.size()
+		assertEquals 10, cache.get("key10")
+		assertNull cache.get("key1")
+	}
+
+	@Test
+	void testClear(){
+		def cache = new TotalCountCache(10)
+
+		cache.put("key", 25, 0)
+		cache.clear()
+
+		assertNull cache.get("key")
+	}
+}